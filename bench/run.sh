@@ -0,0 +1,24 @@
+#!/bin/sh
+# Builds and runs the DevilUtil benchmarks from the command line, without an IDE.
+#
+# Set DEVIL_CLASSPATH to the LWJGL 3.3.4 (with natives), JFLAC 1.3 and JMH 1.37
+# jars, separated by ':'. JMH needs jmh-core, jmh-generator-annprocess and their
+# dependencies, jopt-simple and commons-math3. Any arguments are passed on to
+# JMH, for example:
+#
+#   DEVIL_CLASSPATH=... bench/run.sh Json -prof gc
+set -e
+: "${DEVIL_CLASSPATH:?Set DEVIL_CLASSPATH to the LWJGL, JFLAC and JMH jars.}"
+cd "$(dirname "$0")/.."
+
+out=bench/out
+rm -rf "$out"
+mkdir -p "$out/classes"
+find src bench/src -name '*.java' > "$out/sources.txt"
+
+# JMH's annotation processor generates the benchmark stubs and the benchmark
+# list next to the compiled classes.
+javac -encoding UTF-8 -cp "$DEVIL_CLASSPATH" -d "$out/classes" \
+    -processor org.openjdk.jmh.generators.BenchmarkProcessor @"$out/sources.txt"
+
+java -cp "$out/classes:$DEVIL_CLASSPATH" com.samrj.devil.bench.Benchmarks "$@"
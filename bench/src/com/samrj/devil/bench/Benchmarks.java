@@ -0,0 +1,37 @@
+package com.samrj.devil.bench;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the DevilUtil benchmark suite with JMH. Outside the IDE, bench/run.sh
+ * compiles the suite and passes its arguments on to this launcher.
+ *
+ * Accepts the same arguments as JMH's own launcher; for example, passing
+ * "Json" runs only the benchmarks whose names contain "Json", "-f 0" runs
+ * them without forking, which is handy under a debugger, and "-prof gc"
+ * attaches the GC profiler to report how many bytes each benchmark allocates
+ * per operation. Leave the profiler off for timing runs.
+ *
+ * @author Samuel Johnson (SmashMaster)
+ * @copyright 2022 Samuel Johnson
+ * @license https://github.com/SmashMaster/DevilUtil/blob/master/LICENSE
+ */
+public final class Benchmarks
+{
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException
+    {
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args));
+
+        new Runner(options.build()).run();
+    }
+
+    private Benchmarks()
+    {
+    }
+}
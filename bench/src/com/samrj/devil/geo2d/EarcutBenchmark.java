@@ -0,0 +1,67 @@
+package com.samrj.devil.geo2d;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Triangulates a generated concave polygon: a star with the given number of
+ * points, punched through by a ring of square holes.
+ *
+ * @author Samuel Johnson (SmashMaster)
+ * @copyright 2022 Samuel Johnson
+ * @license https://github.com/SmashMaster/DevilUtil/blob/master/LICENSE
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EarcutBenchmark
+{
+    private static final int HOLES = 8;
+
+    @Param({"16", "256"})
+    public int points;
+
+    private double[] data;
+    private int[] holeIndices;
+
+    @Setup
+    public void setup()
+    {
+        int outline = points*2;
+        data = new double[(outline + HOLES*4)*2];
+        holeIndices = new int[HOLES];
+
+        int d = 0;
+        for (int i=0; i<outline; i++)
+        {
+            double angle = i*Math.PI/points;
+            double radius = i % 2 == 0 ? 10.0 : 7.0;
+            data[d++] = radius*Math.cos(angle);
+            data[d++] = radius*Math.sin(angle);
+        }
+
+        for (int h=0; h<HOLES; h++)
+        {
+            holeIndices[h] = d/2;
+            double angle = h*2.0*Math.PI/HOLES;
+            double cx = 4.0*Math.cos(angle), cy = 4.0*Math.sin(angle);
+
+            //Holes wind opposite the outline.
+            data[d++] = cx - 0.5; data[d++] = cy - 0.5;
+            data[d++] = cx - 0.5; data[d++] = cy + 0.5;
+            data[d++] = cx + 0.5; data[d++] = cy + 0.5;
+            data[d++] = cx + 0.5; data[d++] = cy - 0.5;
+        }
+    }
+
+    @Benchmark
+    public List<Integer> earcut()
+    {
+        return Earcut.earcut(data, holeIndices, 2);
+    }
+}
@@ -0,0 +1,50 @@
+package com.samrj.devil.geo3d;
+
+import com.samrj.devil.math.Vec3;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Steps an actor walking in circles over tiled terrain, jumping every so
+ * often, at sixty steps per second.
+ *
+ * @author Samuel Johnson (SmashMaster)
+ * @copyright 2022 Samuel Johnson
+ * @license https://github.com/SmashMaster/DevilUtil/blob/master/LICENSE
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ActorDriverBenchmark
+{
+    private static final float DT = 1.0f/60.0f;
+
+    private List<GeoMesh> terrain;
+    private ActorDriver driver;
+    private int steps;
+
+    @Setup
+    public void setup()
+    {
+        terrain = TerrainFixture.generate(8, 16, 0.5f);
+        driver = new ActorDriver();
+        driver.pos.set(0.0f, TerrainFixture.height(0.0f, 0.0f) + 2.0f, 0.0f);
+    }
+
+    @Benchmark
+    public Vec3 step()
+    {
+        float angle = steps*DT*0.5f;
+        driver.moveDir.set((float)Math.cos(angle), 0.0f, (float)Math.sin(angle));
+        if (steps % 90 == 0 && driver.onGround()) driver.jump();
+        steps++;
+
+        driver.step(terrain, DT);
+        return driver.pos;
+    }
+}
@@ -0,0 +1,83 @@
+package com.samrj.devil.geo3d;
+
+import com.samrj.devil.math.Vec3;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ray casts, intersection tests and sweeps against tiled terrain, from a fixed
+ * set of random positions around the middle of the terrain.
+ *
+ * @author Samuel Johnson (SmashMaster)
+ * @copyright 2022 Samuel Johnson
+ * @license https://github.com/SmashMaster/DevilUtil/blob/master/LICENSE
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class Geo3DBenchmark
+{
+    private static final int QUERIES = 256;
+
+    private List<GeoMesh> terrain;
+    private final Vec3[] origins = new Vec3[QUERIES];
+    private final Vec3 down = new Vec3(0.0f, -8.0f, 0.0f);
+    private final Vec3 slide = new Vec3(1.5f, -0.5f, 0.75f);
+    private final Ellipsoid shape = new Ellipsoid();
+    private int query;
+
+    @Setup
+    public void setup()
+    {
+        terrain = TerrainFixture.generate(8, 16, 0.5f);
+        shape.radii.set(0.5f, 0.875f, 0.5f);
+
+        Random random = new Random(8675309L);
+        for (int i=0; i<QUERIES; i++)
+        {
+            float x = (random.nextFloat() - 0.5f)*24.0f;
+            float z = (random.nextFloat() - 0.5f)*24.0f;
+            origins[i] = new Vec3(x, TerrainFixture.height(x, z) + 0.5f, z);
+        }
+    }
+
+    private Vec3 nextOrigin()
+    {
+        query = (query + 1) % QUERIES;
+        return origins[query];
+    }
+
+    @Benchmark
+    public Ray rayFirst()
+    {
+        Vec3 p0 = new Vec3(nextOrigin()).add(new Vec3(0.0f, 4.0f, 0.0f));
+        return Geo3D.rayFirst(terrain, p0, down, true);
+    }
+
+    @Benchmark
+    public List<Ray> raySorted()
+    {
+        Vec3 p0 = new Vec3(nextOrigin()).add(new Vec3(0.0f, 4.0f, 0.0f));
+        return Geo3D.raySorted(terrain, p0, down, false);
+    }
+
+    @Benchmark
+    public Isect isectDeepest()
+    {
+        shape.pos.set(nextOrigin());
+        return Geo3D.isectDeepest(terrain, shape);
+    }
+
+    @Benchmark
+    public Sweep sweepFirst()
+    {
+        shape.pos.set(nextOrigin()).y += 1.0f;
+        return Geo3D.sweepFirst(terrain, shape, slide);
+    }
+}
@@ -0,0 +1,86 @@
+package com.samrj.devil.geo3d;
+
+import com.samrj.devil.math.Vec3;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates rolling terrain for the collision benchmarks, as a square grid of
+ * tiles. Each tile is a separate GeoMesh, so that the per-mesh bounds checks
+ * cull most of the terrain for any one query, as they would in a real level.
+ *
+ * @author Samuel Johnson (SmashMaster)
+ * @copyright 2022 Samuel Johnson
+ * @license https://github.com/SmashMaster/DevilUtil/blob/master/LICENSE
+ */
+final class TerrainFixture
+{
+    static float height(float x, float z)
+    {
+        return 0.75f*(float)(Math.sin(x*0.31) + Math.cos(z*0.27)) + 0.25f*(float)Math.sin((x + z)*0.83);
+    }
+
+    /**
+     * Returns the given number of tiles along each side, each of the given
+     * number of cells along each side. The terrain is centered on the origin.
+     */
+    static List<GeoMesh> generate(int tiles, int cells, float cellSize)
+    {
+        List<GeoMesh> meshes = new ArrayList<>(tiles*tiles);
+        float offset = -0.5f*tiles*cells*cellSize;
+
+        for (int tz=0; tz<tiles; tz++) for (int tx=0; tx<tiles; tx++)
+        {
+            int side = cells + 1;
+            List<Vec3> verts = new ArrayList<>(side*side);
+            for (int z=0; z<side; z++) for (int x=0; x<side; x++)
+            {
+                float px = offset + (tx*cells + x)*cellSize;
+                float pz = offset + (tz*cells + z)*cellSize;
+                verts.add(new Vec3(px, height(px, pz), pz));
+            }
+
+            //Each cell adds its top and left edges, its diagonal, and two triangles.
+            int[] edges = new int[(cells*side*2 + cells*cells)*2];
+            int[] faces = new int[cells*cells*6];
+            int e = 0, f = 0;
+            for (int z=0; z<side; z++) for (int x=0; x<side; x++)
+            {
+                int i = z*side + x;
+                if (x < cells)
+                {
+                    edges[e++] = i;
+                    edges[e++] = i + 1;
+                }
+                if (z < cells)
+                {
+                    edges[e++] = i;
+                    edges[e++] = i + side;
+                }
+                if (x < cells && z < cells)
+                {
+                    edges[e++] = i + 1;
+                    edges[e++] = i + side;
+
+                    faces[f++] = i;
+                    faces[f++] = i + side;
+                    faces[f++] = i + 1;
+                    faces[f++] = i + 1;
+                    faces[f++] = i + side;
+                    faces[f++] = i + side + 1;
+                }
+            }
+
+            GeoMesh mesh = new GeoMesh(verts, edges, faces);
+            mesh.updateBounds();
+            meshes.add(mesh);
+        }
+
+        return meshes;
+    }
+
+    private TerrainFixture()
+    {
+    }
+}
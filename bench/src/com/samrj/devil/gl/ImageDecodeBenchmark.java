@@ -0,0 +1,132 @@
+package com.samrj.devil.gl;
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static org.lwjgl.system.MemoryUtil.memAlloc;
+import static org.lwjgl.system.MemoryUtil.memFree;
+
+/**
+ * Decodes a generated PNG into an Image, with STB and through ImageIO. The
+ * ImageIO path is measured both with the bulk Image.buffer(Raster) copy and
+ * with the per-sample Raster.getSample() loop it replaced, and the raster copy
+ * is also measured alone. None of these touch OpenGL, so no context is needed.
+ *
+ * @author Samuel Johnson (SmashMaster)
+ * @copyright 2022 Samuel Johnson
+ * @license https://github.com/SmashMaster/DevilUtil/blob/master/LICENSE
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ImageDecodeBenchmark
+{
+    @Param({"512"})
+    public int size;
+
+    private byte[] png;
+    private ByteBuffer encoded;
+    private Raster raster;
+    private Image target;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_4BYTE_ABGR);
+        for (int y=0; y<size; y++) for (int x=0; x<size; x++)
+        {
+            int r = (x*255)/size, g = (y*255)/size, b = ((x ^ y) & 0x3F)*4;
+            int a = 255 - (((x + y)/8) % 2)*64;
+            image.setRGB(x, y, a << 24 | r << 16 | g << 8 | b);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        png = out.toByteArray();
+
+        encoded = memAlloc(png.length).put(png).flip();
+
+        raster = ImageIO.read(new ByteArrayInputStream(png)).getRaster();
+        target = new Image(raster.getWidth(), raster.getHeight(), raster.getNumBands(), Image.getType(raster), false);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        memFree(encoded);
+        target.delete();
+    }
+
+    /**
+     * The per-sample copy which Image.buffer(Raster) used before it copied
+     * whole rows, kept here as a baseline.
+     */
+    private static Image bufferPerSample(Image image, Raster raster)
+    {
+        ByteBuffer buffer = image.buffer;
+        Image.Sampler s;
+        switch (image.type)
+        {
+            case BYTE: s = (x, y, b) -> buffer.put((byte)raster.getSample(x, y, b)); break;
+            case CHAR: s = (x, y, b) -> buffer.putChar((char)raster.getSample(x, y, b)); break;
+            case SHORT: s = (x, y, b) -> buffer.putShort((short)raster.getSample(x, y, b)); break;
+            case INT: s = (x, y, b) -> buffer.putInt(raster.getSample(x, y, b)); break;
+            case FLOAT: s = (x, y, b) -> buffer.putFloat(raster.getSampleFloat(x, y, b)); break;
+            default: throw new IllegalArgumentException();
+        }
+
+        buffer.clear();
+        image.sample(s);
+        buffer.flip();
+        return image;
+    }
+
+    @Benchmark
+    public Image decodeSTB()
+    {
+        Image image = DGL.decodeImage(encoded);
+        image.delete();
+        return image;
+    }
+
+    @Benchmark
+    public Image decodeImageIO() throws IOException
+    {
+        Raster raster = ImageIO.read(new ByteArrayInputStream(png)).getRaster();
+        Image image = new Image(raster.getWidth(), raster.getHeight(), raster.getNumBands(), Image.getType(raster), false).buffer(raster);
+        image.delete();
+        return image;
+    }
+
+    @Benchmark
+    public Image decodeImageIOPerSample() throws IOException
+    {
+        Raster raster = ImageIO.read(new ByteArrayInputStream(png)).getRaster();
+        Image image = bufferPerSample(new Image(raster.getWidth(), raster.getHeight(), raster.getNumBands(), Image.getType(raster), false), raster);
+        image.delete();
+        return image;
+    }
+
+    @Benchmark
+    public Image bufferRaster()
+    {
+        return target.buffer(raster);
+    }
+
+    @Benchmark
+    public Image bufferRasterPerSample()
+    {
+        return bufferPerSample(target, raster);
+    }
+}
@@ -0,0 +1,72 @@
+package com.samrj.devil.graphics;
+
+import com.samrj.devil.math.Vec3;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples simplex noise in two, three and four dimensions, and Worley noise,
+ * along a diagonal line so that each call lands somewhere new.
+ *
+ * @author Samuel Johnson (SmashMaster)
+ * @copyright 2022 Samuel Johnson
+ * @license https://github.com/SmashMaster/DevilUtil/blob/master/LICENSE
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NoiseBenchmark
+{
+    private static final double STEP = 0.137;
+
+    private WorleyNoise3D worley;
+    private final Vec3 coord = new Vec3();
+    private double t;
+
+    @Setup
+    public void setup()
+    {
+        worley = new WorleyNoise3D(64, new SplittableRandom(8675309L));
+    }
+
+    private double next()
+    {
+        t += STEP;
+        if (t > 4096.0) t = 0.0;
+        return t;
+    }
+
+    @Benchmark
+    public double simplex2D()
+    {
+        double x = next();
+        return SimplexNoise.noise(x, x*0.71);
+    }
+
+    @Benchmark
+    public double simplex3D()
+    {
+        double x = next();
+        return SimplexNoise.noise(x, x*0.71, x*0.37);
+    }
+
+    @Benchmark
+    public double simplex4D()
+    {
+        double x = next();
+        return SimplexNoise.noise(x, x*0.71, x*0.37, x*0.19);
+    }
+
+    @Benchmark
+    public float worley3D()
+    {
+        float x = (float)next();
+        coord.set(x, x*0.71f, x*0.37f);
+        return worley.getMinDist(coord);
+    }
+}
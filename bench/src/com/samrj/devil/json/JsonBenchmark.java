@@ -0,0 +1,95 @@
+package com.samrj.devil.json;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses and writes a generated document resembling a saved level: an array of
+ * entities, each with numbers, nested objects and arrays, and strings needing
+ * escapes and multi-byte UTF-8. Parsing is measured from a String, through a
+ * Reader, and straight from UTF-8 bytes.
+ *
+ * @author Samuel Johnson (SmashMaster)
+ * @copyright 2022 Samuel Johnson
+ * @license https://github.com/SmashMaster/DevilUtil/blob/master/LICENSE
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JsonBenchmark {
+
+  private static final String[] KINDS = {"crate", "lamp", "door \"north\"", "sign\tpost", "trésor", "鍵"};
+
+  @Param({"512"})
+  public int entities;
+
+  private JsonValue document;
+  private String text;
+  private byte[] bytes;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(8675309L);
+    JsonArray array = Json.array();
+    for (int i = 0; i < entities; i++) {
+      JsonObject transform = Json.object()
+          .add("position", Json.array(random.nextFloat()*100f, random.nextFloat()*10f, random.nextFloat()*100f))
+          .add("rotation", Json.array(0f, random.nextFloat(), 0f, 1f))
+          .add("scale", 1.0);
+      JsonArray tags = Json.array();
+      for (int t = random.nextInt(4); t > 0; t--) {
+        tags.add("tag" + random.nextInt(16));
+      }
+      array.add(Json.object()
+          .add("id", i)
+          .add("kind", KINDS[random.nextInt(KINDS.length)])
+          .add("enabled", random.nextBoolean())
+          .add("health", random.nextInt(1000)/10.0)
+          .add("seed", random.nextLong())
+          .add("owner", JsonLiteral.makeNull(null))
+          .add("transform", transform)
+          .add("tags", tags));
+    }
+    document = Json.object().add("version", 3).add("entities", array);
+    text = document.toString();
+    bytes = text.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public JsonValue parseString() {
+    return Json.parse(text);
+  }
+
+  @Benchmark
+  public JsonValue parseReader() throws IOException {
+    return Json.parse(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8));
+  }
+
+  @Benchmark
+  public JsonValue parseBytes() {
+    return Json.parse(bytes);
+  }
+
+  @Benchmark
+  public String writeMinimal() {
+    return document.toString();
+  }
+
+  @Benchmark
+  public String writePretty() throws IOException {
+    StringWriter writer = new StringWriter(text.length()*2);
+    document.writeTo(writer, WriterConfig.PRETTY_PRINT);
+    return writer.toString();
+  }
+
+}
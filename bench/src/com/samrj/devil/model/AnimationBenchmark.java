@@ -0,0 +1,80 @@
+package com.samrj.devil.model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluates the animation of a generated armature: a single curve, a whole
+ * action, and posing then solving the armature, IK legs included, from it.
+ *
+ * @author Samuel Johnson (SmashMaster)
+ * @copyright 2022 Samuel Johnson
+ * @license https://github.com/SmashMaster/DevilUtil/blob/master/LICENSE
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AnimationBenchmark
+{
+    private static final float DT = 0.37f;
+
+    private Model model;
+    private Action action;
+    private FCurve fcurve;
+    private ArmatureSolver solver;
+    private final Pose pose = new Pose();
+    private float time;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        Path path = Files.createTempFile("devil-bench", ".blend");
+        BlendFixture.write(path, 4, 8, 4, 60);
+        model = new Model(path);
+        Files.delete(path);
+
+        action = model.actions.require(BlendFixture.ACTION);
+        fcurve = action.fcurves.get(0);
+        ModelObject<?> armature = model.objects.require(BlendFixture.ARMATURE);
+        solver = new ArmatureSolver(armature.requireType(Armature.class));
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        model.destroy();
+    }
+
+    private float nextTime()
+    {
+        time = action.loop(time + DT);
+        return time;
+    }
+
+    @Benchmark
+    public float evaluateFCurve()
+    {
+        return fcurve.evaluate(nextTime());
+    }
+
+    @Benchmark
+    public Pose evaluateAction()
+    {
+        return action.evaluate(pose, nextTime());
+    }
+
+    @Benchmark
+    public ArmatureSolver solveArmature()
+    {
+        solver.setPose(action.evaluate(pose, nextTime()));
+        solver.solve();
+        return solver;
+    }
+}
@@ -0,0 +1,386 @@
+package com.samrj.devil.model;
+
+import com.samrj.devil.model.BlendWriter.Block;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates a .blend file for the model benchmarks, containing:
+ *
+ * - A grid mesh, with a circular n-gon cap, a UV layer, and two bone weights
+ *   per vertex.
+ * - An armature with a chain of spine bones, and a number of two-bone legs
+ *   driven by IK, each with its own target and pole bones.
+ * - An object for each, with the mesh parented to the armature.
+ * - A looping action keying the rotation of every spine and leg bone, and the
+ *   location of every IK target.
+ *
+ * Coordinates are written in Blender's Z-up convention.
+ *
+ * @author Samuel Johnson (SmashMaster)
+ * @copyright 2022 Samuel Johnson
+ * @license https://github.com/SmashMaster/DevilUtil/blob/master/LICENSE
+ */
+final class BlendFixture
+{
+    static final String MESH = "grid", ARMATURE = "rig", ACTION = "walk";
+
+    private static final int OB_MESH = 1, OB_ARMATURE = 25;
+    private static final int PARENT_ARMATURE = 4;
+    private static final int CONSTRAINT_IK = 3;
+    private static final int CD_MLOOPUV = 16;
+    private static final int IPO_LINEAR = 1, IPO_BEZIER = 2;
+    private static final int CAP_VERTS = 32;
+
+    private static BlendWriter declare()
+    {
+        BlendWriter w = new BlendWriter();
+        w.type("char", 1).type("short", 2).type("int", 4).type("float", 4).type("void", 0);
+        w.type("IDProperty", 0).type("Material", 0).type("Collection", 0);
+
+        w.struct("Link", "Link", "*next", "Link", "*prev");
+        w.struct("ListBase", "void", "*first", "void", "*last");
+        w.struct("ID", "char", "name[66]", "IDProperty", "*properties");
+        w.struct("TimeMarker", "TimeMarker", "*next", "TimeMarker", "*prev", "int", "frame", "char", "name[64]");
+        w.struct("BezTriple", "float", "vec[3][3]", "char", "ipo", "char", "pad[3]");
+        w.struct("FCurve", "FCurve", "*next", "FCurve", "*prev", "char", "*rna_path", "int", "array_index",
+                "int", "totvert", "BezTriple", "*bezt");
+        w.struct("bAction", "ID", "id", "ListBase", "curves", "ListBase", "markers");
+        w.struct("AnimData", "bAction", "*action");
+
+        w.struct("MVert", "float", "co[3]");
+        w.struct("MLoop", "int", "v", "int", "e");
+        w.struct("MPoly", "int", "loopstart", "int", "totloop", "short", "mat_nr", "char", "flag", "char", "pad");
+        w.struct("MLoopUV", "float", "uv[2]", "int", "flag");
+        w.struct("MDeformWeight", "int", "def_nr", "float", "weight");
+        w.struct("MDeformVert", "MDeformWeight", "*dw", "int", "totweight", "int", "flag");
+        w.struct("CustomDataLayer", "int", "type", "char", "name[64]", "void", "*data");
+        w.struct("CustomData", "CustomDataLayer", "*layers", "int", "totlayer");
+        w.struct("bDeformGroup", "bDeformGroup", "*next", "bDeformGroup", "*prev", "char", "name[64]");
+        w.struct("Mesh", "ID", "id", "AnimData", "*adt", "short", "totcol", "Material", "**mat",
+                "int", "totvert", "int", "totloop", "int", "totpoly",
+                "MVert", "*mvert", "MLoop", "*mloop", "MPoly", "*mpoly", "MDeformVert", "*dvert",
+                "CustomData", "ldata", "ListBase", "vertex_group_names");
+
+        w.struct("Bone", "Bone", "*next", "Bone", "*prev", "char", "name[64]", "int", "flag",
+                "float", "arm_head[3]", "float", "arm_tail[3]", "float", "arm_mat[4][4]", "ListBase", "childbase");
+        w.struct("bArmature", "ID", "id", "AnimData", "*adt", "ListBase", "bonebase");
+        w.struct("bConstraint", "bConstraint", "*next", "bConstraint", "*prev", "void", "*data",
+                "short", "type", "char", "name[64]");
+        w.struct("bPoseChannel", "bPoseChannel", "*next", "bPoseChannel", "*prev", "char", "name[64]",
+                "ListBase", "constraints", "float", "loc[3]", "float", "quat[4]", "float", "size[3]");
+        w.struct("bPose", "ListBase", "chanbase");
+        w.struct("Object", "ID", "id", "AnimData", "*adt", "short", "type", "short", "rotmode",
+                "float", "loc[3]", "float", "quat[4]", "float", "rot[3]", "float", "scale[3]",
+                "ListBase", "defbase", "bPose", "*pose", "void", "*data", "Object", "*parent",
+                "short", "partype", "char", "parsubstr[64]", "float", "parentinv[4][4]",
+                "bAction", "*action", "char", "empty_drawtype", "Collection", "*instance_collection");
+        w.struct("bKinematicConstraint", "Object", "*tar", "char", "subtarget[64]", "Object", "*poletar",
+                "char", "polesubtarget[64]", "float", "poleangle", "short", "rootbone");
+        return w;
+    }
+
+    private record BoneDef(String name, BoneDef parent, float[] head, float[] tail, boolean keyed) {}
+
+    private static void putMatrix(Block block, String path, float[] x, float[] y, float[] z, float[] t)
+    {
+        block.putFloats(0, path, x[0], x[1], x[2], 0.0f, y[0], y[1], y[2], 0.0f,
+                                 z[0], z[1], z[2], 0.0f, t[0], t[1], t[2], 1.0f);
+    }
+
+    private static float[] normalize(float x, float y, float z)
+    {
+        float length = (float)Math.sqrt(x*x + y*y + z*z);
+        return new float[] {x/length, y/length, z/length};
+    }
+
+    private static float[] cross(float[] a, float[] b)
+    {
+        return new float[] {a[1]*b[2] - a[2]*b[1], a[2]*b[0] - a[0]*b[2], a[0]*b[1] - a[1]*b[0]};
+    }
+
+    private static Block bone(BlendWriter w, BoneDef def)
+    {
+        Block bone = w.block("DATA", "Bone", 1);
+        bone.putString(0, "name", def.name);
+        bone.putFloats(0, "arm_head", def.head);
+        bone.putFloats(0, "arm_tail", def.tail);
+
+        //Bones point down their local Y axis.
+        float[] y = normalize(def.tail[0] - def.head[0], def.tail[1] - def.head[1], def.tail[2] - def.head[2]);
+        float[] up = Math.abs(y[2]) < 0.9f ? new float[] {0.0f, 0.0f, 1.0f} : new float[] {1.0f, 0.0f, 0.0f};
+        float[] x = normalize(cross(y, up)[0], cross(y, up)[1], cross(y, up)[2]);
+        float[] z = cross(x, y);
+        putMatrix(bone, "arm_mat", x, y, z, def.head);
+        return bone;
+    }
+
+    private static Block fcurve(BlendWriter w, String rnaPath, int index, int keyframes, float period, float phase, float amplitude, float base)
+    {
+        Block bezt = w.block("DATA", "BezTriple", keyframes);
+        float spacing = period/(keyframes - 1);
+        for (int i=0; i<keyframes; i++)
+        {
+            float x = i*spacing;
+            float y = base + amplitude*(float)Math.sin(phase + i*2.0*Math.PI/(keyframes - 1));
+            float handle = spacing/3.0f;
+            bezt.putFloats(i, "vec", x - handle, y, 0.0f, x, y, 0.0f, x + handle, y, 0.0f);
+            bezt.putByte(i, "ipo", i % 8 == 7 ? IPO_LINEAR : IPO_BEZIER);
+        }
+
+        Block curve = w.block("DATA", "FCurve", 1);
+        curve.putPointer(0, "rna_path", w.string(rnaPath));
+        curve.putInt(0, "array_index", index);
+        curve.putInt(0, "totvert", keyframes);
+        curve.putPointer(0, "bezt", bezt);
+        return curve;
+    }
+
+    /**
+     * Writes the fixture to the given path.
+     *
+     * @param path Where to write the .blend file.
+     * @param gridSize The number of quads along each side of the mesh.
+     * @param spineBones The number of bones in the spine chain.
+     * @param legs The number of IK-driven legs.
+     * @param keyframes The number of keyframes on each animation curve.
+     */
+    static void write(Path path, int gridSize, int spineBones, int legs, int keyframes) throws IOException
+    {
+        BlendWriter w = declare();
+
+        //Armature.
+        List<BoneDef> bones = new ArrayList<>();
+        BoneDef root = new BoneDef("root", null, new float[] {0, 0, 0}, new float[] {0, 0, 1}, false);
+        bones.add(root);
+
+        BoneDef parent = root;
+        for (int i=0; i<spineBones; i++)
+        {
+            float z = 1.0f + i*0.5f, x = 0.05f*(i % 2);
+            BoneDef spine = new BoneDef("spine." + i, parent, new float[] {x, 0, z}, new float[] {0.05f - x, 0, z + 0.5f}, true);
+            bones.add(spine);
+            parent = spine;
+        }
+
+        for (int i=0; i<legs; i++)
+        {
+            double angle = i*2.0*Math.PI/legs;
+            float dx = (float)Math.cos(angle), dy = (float)Math.sin(angle);
+            BoneDef thigh = new BoneDef("thigh." + i, root, new float[] {0.2f*dx, 0.2f*dy, 1.0f},
+                    new float[] {0.6f*dx, 0.6f*dy, 0.55f}, true);
+            BoneDef shin = new BoneDef("shin." + i, thigh, thigh.tail, new float[] {0.8f*dx, 0.8f*dy, 0.0f}, true);
+            BoneDef target = new BoneDef("target." + i, root, new float[] {0.8f*dx, 0.8f*dy, 0.0f},
+                    new float[] {0.8f*dx, 0.8f*dy, 0.25f}, false);
+            BoneDef pole = new BoneDef("pole." + i, root, new float[] {1.5f*dx, 1.5f*dy, 0.6f},
+                    new float[] {1.5f*dx, 1.5f*dy, 0.85f}, false);
+            bones.add(thigh);
+            bones.add(shin);
+            bones.add(target);
+            bones.add(pole);
+        }
+
+        List<Block> boneBlocks = new ArrayList<>();
+        for (BoneDef def : bones) boneBlocks.add(bone(w, def));
+        List<Block> rootBones = new ArrayList<>();
+        for (int i=0; i<bones.size(); i++)
+        {
+            List<Block> children = new ArrayList<>();
+            for (int j=0; j<bones.size(); j++) if (bones.get(j).parent == bones.get(i)) children.add(boneBlocks.get(j));
+            boneBlocks.get(i).putList(0, "childbase", children);
+            if (bones.get(i).parent == null) rootBones.add(boneBlocks.get(i));
+        }
+
+        Block armature = w.block("AR", "bArmature", 1);
+        armature.putString(0, "id.name", "AR" + ARMATURE);
+        armature.putList(0, "bonebase", rootBones);
+
+        //Action.
+        List<Block> curves = new ArrayList<>();
+        float period = 60.0f;
+        for (int i=0; i<bones.size(); i++)
+        {
+            BoneDef def = bones.get(i);
+            String prefix = "pose.bones[\"" + def.name + "\"].";
+            if (def.keyed)
+            {
+                curves.add(fcurve(w, prefix + "rotation_quaternion", 0, keyframes, period, i, 0.0f, 1.0f));
+                for (int c=1; c<4; c++)
+                    curves.add(fcurve(w, prefix + "rotation_quaternion", c, keyframes, period, i + c, 0.2f, 0.0f));
+            }
+            else if (def.name.startsWith("target."))
+            {
+                for (int c=0; c<3; c++)
+                    curves.add(fcurve(w, prefix + "location", c, keyframes, period, i + c, 0.25f, 0.0f));
+            }
+        }
+
+        List<Block> markers = new ArrayList<>();
+        for (int i=0; i<4; i++)
+        {
+            Block marker = w.block("DATA", "TimeMarker", 1);
+            marker.putInt(0, "frame", Math.round(i*period/4.0f));
+            marker.putString(0, "name", i % 2 == 0 ? "step_left" : "step_right");
+            markers.add(marker);
+        }
+
+        Block action = w.block("AC", "bAction", 1);
+        action.putString(0, "id.name", "AC" + ACTION);
+        action.putList(0, "curves", curves);
+        action.putList(0, "markers", markers);
+
+        //Armature object, with a pose channel for each bone.
+        Block armatureObject = w.block("OB", "Object", 1);
+
+        List<Block> channels = new ArrayList<>();
+        for (BoneDef def : bones)
+        {
+            Block channel = w.block("DATA", "bPoseChannel", 1);
+            channel.putString(0, "name", def.name);
+            channel.putFloats(0, "quat", 1.0f, 0.0f, 0.0f, 0.0f);
+            channel.putFloats(0, "size", 1.0f, 1.0f, 1.0f);
+
+            if (def.name.startsWith("shin."))
+            {
+                String leg = def.name.substring(5);
+                Block ik = w.block("DATA", "bKinematicConstraint", 1);
+                ik.putPointer(0, "tar", armatureObject);
+                ik.putString(0, "subtarget", "target." + leg);
+                ik.putPointer(0, "poletar", armatureObject);
+                ik.putString(0, "polesubtarget", "pole." + leg);
+                ik.putShort(0, "rootbone", 2);
+
+                Block constraint = w.block("DATA", "bConstraint", 1);
+                constraint.putPointer(0, "data", ik);
+                constraint.putShort(0, "type", CONSTRAINT_IK);
+                constraint.putString(0, "name", "IK");
+                channel.putList(0, "constraints", List.of(constraint));
+            }
+            channels.add(channel);
+        }
+
+        Block pose = w.block("DATA", "bPose", 1);
+        pose.putList(0, "chanbase", channels);
+
+        Block animData = w.block("DATA", "AnimData", 1);
+        animData.putPointer(0, "action", action);
+
+        armatureObject.putString(0, "id.name", "OB" + ARMATURE);
+        armatureObject.putPointer(0, "adt", animData);
+        armatureObject.putShort(0, "type", OB_ARMATURE);
+        armatureObject.putFloats(0, "quat", 1.0f, 0.0f, 0.0f, 0.0f);
+        armatureObject.putFloats(0, "scale", 1.0f, 1.0f, 1.0f);
+        armatureObject.putPointer(0, "pose", pose);
+        armatureObject.putPointer(0, "data", armature);
+
+        //Mesh: a grid of quads, plus an n-gon cap floating above it.
+        int side = gridSize + 1;
+        int gridVerts = side*side;
+        int totvert = gridVerts + CAP_VERTS;
+        int totpoly = gridSize*gridSize + 1;
+        int totloop = gridSize*gridSize*4 + CAP_VERTS;
+
+        Block mvert = w.block("DATA", "MVert", totvert);
+        for (int y=0; y<side; y++) for (int x=0; x<side; x++)
+        {
+            float px = x*2.0f/gridSize - 1.0f, py = y*2.0f/gridSize - 1.0f;
+            mvert.putFloats(y*side + x, "co", px, py, 0.1f*(float)Math.sin(4.0f*px)*(float)Math.cos(4.0f*py));
+        }
+        for (int i=0; i<CAP_VERTS; i++)
+        {
+            double angle = i*2.0*Math.PI/CAP_VERTS;
+            float radius = i % 2 == 0 ? 0.5f : 0.4f; //Star-shaped, so it is concave.
+            mvert.putFloats(gridVerts + i, "co", radius*(float)Math.cos(angle), radius*(float)Math.sin(angle), 2.0f);
+        }
+
+        Block mloop = w.block("DATA", "MLoop", totloop);
+        Block mpoly = w.block("DATA", "MPoly", totpoly);
+        Block uvs = w.block("DATA", "MLoopUV", totloop);
+        int loop = 0, poly = 0;
+        for (int y=0; y<gridSize; y++) for (int x=0; x<gridSize; x++)
+        {
+            int i = y*side + x;
+            int[] quad = {i, i + 1, i + side + 1, i + side};
+            mpoly.putInt(poly, "loopstart", loop);
+            mpoly.putInt(poly, "totloop", 4);
+            mpoly.putByte(poly, "flag", (x + y) % 2); //Alternate smooth and flat shading.
+            poly++;
+
+            for (int v : quad)
+            {
+                mloop.putInt(loop, "v", v);
+                uvs.putFloats(loop, "uv", (v % side)/(float)gridSize, (v/side)/(float)gridSize);
+                loop++;
+            }
+        }
+        mpoly.putInt(poly, "loopstart", loop);
+        mpoly.putInt(poly, "totloop", CAP_VERTS);
+        for (int i=0; i<CAP_VERTS; i++)
+        {
+            mloop.putInt(loop, "v", gridVerts + i);
+            uvs.putFloats(loop, "uv", 0.5f + 0.5f*(float)Math.cos(i*2.0*Math.PI/CAP_VERTS),
+                                      0.5f + 0.5f*(float)Math.sin(i*2.0*Math.PI/CAP_VERTS));
+            loop++;
+        }
+
+        Block uvLayer = w.block("DATA", "CustomDataLayer", 1);
+        uvLayer.putInt(0, "type", CD_MLOOPUV);
+        uvLayer.putString(0, "name", "UVMap");
+        uvLayer.putPointer(0, "data", uvs);
+
+        //Weight each vertex to the two spine bones nearest its height in the grid.
+        List<Block> groups = new ArrayList<>();
+        for (int i=0; i<spineBones; i++)
+        {
+            Block group = w.block("DATA", "bDeformGroup", 1);
+            group.putString(0, "name", "spine." + i);
+            groups.add(group);
+        }
+
+        Block dvert = w.block("DATA", "MDeformVert", totvert);
+        for (int i=0; i<totvert; i++)
+        {
+            float t = i < gridVerts ? (i/side)*(spineBones - 1)/(float)gridSize : spineBones - 1;
+            int g0 = Math.min((int)t, spineBones - 1), g1 = Math.min(g0 + 1, spineBones - 1);
+            float blend = t - g0;
+
+            Block dw = w.block("DATA", "MDeformWeight", 2);
+            dw.putInt(0, "def_nr", g0).putFloats(0, "weight", 1.0f - blend);
+            dw.putInt(1, "def_nr", g1).putFloats(1, "weight", blend);
+            dvert.putPointer(i, "dw", dw);
+            dvert.putInt(i, "totweight", 2);
+        }
+
+        Block mesh = w.block("ME", "Mesh", 1);
+        mesh.putString(0, "id.name", "ME" + MESH);
+        mesh.putInt(0, "totvert", totvert);
+        mesh.putInt(0, "totloop", totloop);
+        mesh.putInt(0, "totpoly", totpoly);
+        mesh.putPointer(0, "mvert", mvert);
+        mesh.putPointer(0, "mloop", mloop);
+        mesh.putPointer(0, "mpoly", mpoly);
+        mesh.putPointer(0, "dvert", dvert);
+        mesh.putPointer(0, "ldata.layers", uvLayer);
+        mesh.putInt(0, "ldata.totlayer", 1);
+        mesh.putList(0, "vertex_group_names", groups);
+
+        Block meshObject = w.block("OB", "Object", 1);
+        meshObject.putString(0, "id.name", "OB" + MESH);
+        meshObject.putShort(0, "type", OB_MESH);
+        meshObject.putFloats(0, "quat", 1.0f, 0.0f, 0.0f, 0.0f);
+        meshObject.putFloats(0, "scale", 1.0f, 1.0f, 1.0f);
+        meshObject.putPointer(0, "data", mesh);
+        meshObject.putPointer(0, "parent", armatureObject);
+        meshObject.putShort(0, "partype", PARENT_ARMATURE);
+        putMatrix(meshObject, "parentinv", new float[] {1, 0, 0}, new float[] {0, 1, 0}, new float[] {0, 0, 1}, new float[] {0, 0, 0});
+
+        w.write(path);
+    }
+
+    private BlendFixture()
+    {
+    }
+}
@@ -0,0 +1,311 @@
+package com.samrj.devil.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Writes minimal .blend files: a little-endian, 64-bit header, any number of
+ * blocks of the structs declared here, and an SDNA block describing them. The
+ * declared structs only need the fields which BlendFile's readers look for,
+ * so files can be generated without Blender.
+ *
+ * @author Samuel Johnson (SmashMaster)
+ * @copyright 2022 Samuel Johnson
+ * @license https://github.com/SmashMaster/DevilUtil/blob/master/LICENSE
+ */
+final class BlendWriter
+{
+    private static final int POINTER_SIZE = 8;
+
+    private record Field(int type, int name, String baseName, boolean isPointer, int count, int offset, int length) {}
+
+    private record StructDef(int type, List<Field> fields, HashMap<String, Field> fieldMap) {}
+
+    private final List<String> names = new ArrayList<>();
+    private final HashMap<String, Integer> nameIndices = new HashMap<>();
+    private final List<String> types = new ArrayList<>();
+    private final List<Integer> typeLengths = new ArrayList<>();
+    private final HashMap<String, Integer> typeIndices = new HashMap<>();
+    private final List<StructDef> structs = new ArrayList<>();
+    private final HashMap<String, Integer> structIndices = new HashMap<>();
+    private final List<Block> blocks = new ArrayList<>();
+    private long nextAddress = 0x10000L;
+
+    /**
+     * Declares a primitive or opaque type of the given length in bytes.
+     */
+    BlendWriter type(String name, int length)
+    {
+        if (typeIndices.containsKey(name)) throw new IllegalArgumentException("Duplicate type " + name);
+        typeIndices.put(name, types.size());
+        types.add(name);
+        typeLengths.add(length);
+        return this;
+    }
+
+    private int name(String name)
+    {
+        return nameIndices.computeIfAbsent(name, n ->
+        {
+            names.add(n);
+            return names.size() - 1;
+        });
+    }
+
+    /**
+     * Declares a struct, given alternating field types and field names, as
+     * they would appear in C. For example: "float", "co[3]", "Link", "*next".
+     * Every type used must already be declared.
+     */
+    BlendWriter struct(String typeName, String... fields)
+    {
+        type(typeName, 0);
+        int type = typeIndices.get(typeName);
+
+        List<Field> fieldList = new ArrayList<>(fields.length/2);
+        HashMap<String, Field> fieldMap = new HashMap<>();
+        int offset = 0;
+        for (int i=0; i<fields.length; i+=2)
+        {
+            Integer fieldType = typeIndices.get(fields[i]);
+            if (fieldType == null) throw new IllegalArgumentException("Undeclared type " + fields[i]);
+            String rawName = fields[i + 1];
+
+            boolean isPointer = rawName.startsWith("*");
+            String baseName = rawName.substring(rawName.lastIndexOf('*') + 1);
+            int count = 1;
+            int arrayStart = baseName.indexOf('[');
+            if (arrayStart >= 0)
+            {
+                for (String dim : baseName.substring(arrayStart + 1, baseName.length() - 1).split("\\]\\["))
+                    count *= Integer.parseInt(dim);
+                baseName = baseName.substring(0, arrayStart);
+            }
+
+            int length = (isPointer ? POINTER_SIZE : typeLengths.get(fieldType))*count;
+            Field field = new Field(fieldType, name(rawName), baseName, isPointer, count, offset, length);
+            fieldList.add(field);
+            fieldMap.put(baseName, field);
+            offset += length;
+        }
+
+        typeLengths.set(type, offset);
+        structIndices.put(typeName, structs.size());
+        structs.add(new StructDef(type, fieldList, fieldMap));
+        return this;
+    }
+
+    /**
+     * Adds a block containing the given number of zeroed structs of the given
+     * type.
+     */
+    Block block(String code, String structName, int count)
+    {
+        Integer index = structIndices.get(structName);
+        if (index == null) throw new IllegalArgumentException("Undeclared struct " + structName);
+        StructDef struct = structs.get(index);
+        return add(new Block(code, index, struct, typeLengths.get(struct.type)*count, count));
+    }
+
+    /**
+     * Adds a block containing the given null-terminated string.
+     */
+    Block string(String value)
+    {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        Block block = add(new Block("DATA", 0, null, bytes.length + 1, bytes.length + 1));
+        block.data.put(0, bytes);
+        return block;
+    }
+
+    private Block add(Block block)
+    {
+        blocks.add(block);
+        nextAddress += (block.data.capacity() + 15) & ~15L;
+        nextAddress += 16;
+        return block;
+    }
+
+    private static void putHeader(ByteBuffer out, String code, int size, long address, int sdnaIndex, int count)
+    {
+        byte[] codeBytes = new byte[4];
+        byte[] src = code.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(src, 0, codeBytes, 0, src.length);
+        out.put(codeBytes).putInt(size).putLong(address).putInt(sdnaIndex).putInt(count);
+    }
+
+    private static void putStrings(ByteBuffer out, List<String> strings)
+    {
+        out.putInt(strings.size());
+        for (String s : strings) out.put(s.getBytes(StandardCharsets.US_ASCII)).put((byte)0);
+        align(out);
+    }
+
+    private static void align(ByteBuffer out)
+    {
+        while (out.position() % 4 != 0) out.put((byte)0);
+    }
+
+    private ByteBuffer sdna()
+    {
+        ByteBuffer out = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        out.put("SDNA".getBytes(StandardCharsets.US_ASCII));
+        out.put("NAME".getBytes(StandardCharsets.US_ASCII));
+        putStrings(out, names);
+        out.put("TYPE".getBytes(StandardCharsets.US_ASCII));
+        putStrings(out, types);
+        out.put("TLEN".getBytes(StandardCharsets.US_ASCII));
+        for (int length : typeLengths) out.putShort((short)length);
+        align(out);
+        out.put("STRC".getBytes(StandardCharsets.US_ASCII));
+        out.putInt(structs.size());
+        for (StructDef struct : structs)
+        {
+            out.putShort((short)struct.type).putShort((short)struct.fields.size());
+            for (Field field : struct.fields) out.putShort((short)field.type).putShort((short)field.name);
+        }
+        align(out);
+        return out.flip();
+    }
+
+    /**
+     * Writes every block added so far to the given path.
+     */
+    void write(Path path) throws IOException
+    {
+        ByteBuffer sdna = sdna();
+        int size = 12 + 24*2 + sdna.remaining();
+        for (Block block : blocks) size += 24 + block.data.capacity();
+
+        ByteBuffer out = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        out.put("BLENDER-v300".getBytes(StandardCharsets.US_ASCII));
+        for (Block block : blocks)
+        {
+            putHeader(out, block.code, block.data.capacity(), block.address, block.sdnaIndex, block.count);
+            out.put(block.data.duplicate().clear());
+        }
+        putHeader(out, "DNA1", sdna.remaining(), 0L, 0, 1);
+        out.put(sdna);
+        putHeader(out, "ENDB", 0, 0L, 0, 0);
+
+        Files.write(path, out.array());
+    }
+
+    /**
+     * A block of structs, or of raw data. Fields are set by name, and fields of
+     * nested structs with dotted paths, like "id.name".
+     */
+    final class Block
+    {
+        final long address;
+
+        private final String code;
+        private final int sdnaIndex;
+        private final StructDef struct;
+        private final int count;
+        private final ByteBuffer data;
+
+        private Block(String code, int sdnaIndex, StructDef struct, int size, int count)
+        {
+            this.code = code;
+            this.sdnaIndex = sdnaIndex;
+            this.struct = struct;
+            this.count = count;
+            address = nextAddress;
+
+            //BlendFile aligns SDNA sections relative to the start of the file, so keep every block aligned.
+            data = ByteBuffer.allocate((size + 3) & ~3).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        private Field field(String path, int[] offset)
+        {
+            StructDef def = struct;
+            Field field = null;
+            for (String part : path.split("\\."))
+            {
+                if (def == null) throw new IllegalArgumentException("Not a struct: " + path);
+                field = def.fieldMap.get(part);
+                if (field == null) throw new IllegalArgumentException("No field " + path);
+                offset[0] += field.offset;
+                Integer nested = structIndices.get(types.get(field.type));
+                def = !field.isPointer && nested != null ? structs.get(nested) : null;
+            }
+            return field;
+        }
+
+        private int offset(int index, String path, int bytes)
+        {
+            int[] offset = {typeLengths.get(struct.type)*index};
+            Field field = field(path, offset);
+            if (bytes > field.length) throw new IllegalArgumentException("Field " + path + " too small.");
+            return offset[0];
+        }
+
+        Block putByte(int index, String path, int value)
+        {
+            data.put(offset(index, path, 1), (byte)value);
+            return this;
+        }
+
+        Block putShort(int index, String path, int value)
+        {
+            data.putShort(offset(index, path, 2), (short)value);
+            return this;
+        }
+
+        Block putInt(int index, String path, int value)
+        {
+            data.putInt(offset(index, path, 4), value);
+            return this;
+        }
+
+        Block putFloats(int index, String path, float... values)
+        {
+            int offset = offset(index, path, values.length*4);
+            for (float value : values)
+            {
+                data.putFloat(offset, value);
+                offset += 4;
+            }
+            return this;
+        }
+
+        Block putString(int index, String path, String value)
+        {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            data.put(offset(index, path, bytes.length + 1), bytes);
+            return this;
+        }
+
+        Block putPointer(int index, String path, Block target)
+        {
+            data.putLong(offset(index, path, POINTER_SIZE), target != null ? target.address : 0L);
+            return this;
+        }
+
+        /**
+         * Links the given blocks, each holding one struct with "next" and
+         * "prev" fields, into a ListBase at the given path of this block.
+         */
+        Block putList(int index, String path, List<Block> elements)
+        {
+            if (elements.isEmpty()) return this;
+            for (int i=0; i<elements.size(); i++)
+            {
+                Block element = elements.get(i);
+                element.putPointer(0, "prev", i > 0 ? elements.get(i - 1) : null);
+                element.putPointer(0, "next", i < elements.size() - 1 ? elements.get(i + 1) : null);
+            }
+            putPointer(index, path + ".first", elements.get(0));
+            putPointer(index, path + ".last", elements.get(elements.size() - 1));
+            return this;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.samrj.devil.model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads a generated .blend file: parsing the raw file alone, loading every
+ * data block in it, and building just its mesh, which covers triangulation,
+ * tangent generation and vertex weights.
+ *
+ * @author Samuel Johnson (SmashMaster)
+ * @copyright 2022 Samuel Johnson
+ * @license https://github.com/SmashMaster/DevilUtil/blob/master/LICENSE
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ModelBenchmark
+{
+    @Param({"32", "128"})
+    public int gridSize;
+
+    private Path path;
+    private Model model;
+    private BlendFile.Pointer bMesh;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        path = Files.createTempFile("devil-bench", ".blend");
+        BlendFixture.write(path, gridSize, 8, 4, 60);
+        model = new Model(path);
+        bMesh = new BlendFile(path).getLibrary("Mesh").get(0);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        model.destroy();
+        Files.delete(path);
+    }
+
+    @Benchmark
+    public BlendFile parseBlendFile() throws IOException
+    {
+        BlendFile blend = new BlendFile(path);
+        blend.destroy();
+        return blend;
+    }
+
+    @Benchmark
+    public Model loadModel() throws IOException
+    {
+        Model loaded = new Model(path);
+        loaded.destroy();
+        return loaded;
+    }
+
+    @Benchmark
+    public Mesh buildMesh() throws IOException
+    {
+        Mesh mesh = new Mesh(model, bMesh);
+        mesh.destroy();
+        return mesh;
+    }
+}
@@ -0,0 +1,97 @@
+package com.samrj.devil.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes and decodes the same entity snapshot with Struct and with a
+ * StructSchema instance.
+ *
+ * @author Samuel Johnson (SmashMaster)
+ * @copyright 2022 Samuel Johnson
+ * @license https://github.com/SmashMaster/DevilUtil/blob/master/LICENSE
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StructBenchmark
+{
+    private enum Field
+    {
+        ID, POSITION, VELOCITY, HEALTH, FLAGS, NAME;
+    }
+
+    private static final StructSchema<Field> SCHEMA = new StructSchema<>(Field.class)
+            .addInt(Field.ID)
+            .addFloatArray(Field.POSITION, 3)
+            .addFloatArray(Field.VELOCITY, 3)
+            .addFloat(Field.HEALTH)
+            .addShort(Field.FLAGS)
+            .addString(Field.NAME);
+
+    private final Struct<Field> struct = new Struct<>(Field.class);
+    private final StructSchema<Field>.Instance instance = SCHEMA.newInstance();
+    private final Struct<Field> structResult = new Struct<>(Field.class);
+    private final StructSchema<Field>.Instance instanceResult = SCHEMA.newInstance();
+    private ByteBuffer structBuffer, instanceBuffer;
+
+    @Setup
+    public void setup()
+    {
+        float[] position = {12.5f, 3.0f, -40.25f}, velocity = {0.5f, 0.0f, -1.25f};
+        struct.putInt(Field.ID, 1337);
+        struct.putFloatArray(Field.POSITION, position);
+        struct.putFloatArray(Field.VELOCITY, velocity);
+        struct.putFloat(Field.HEALTH, 87.5f);
+        struct.putShort(Field.FLAGS, (short)0x5);
+        struct.putString(Field.NAME, "goblin_archer");
+        instance.setInt(Field.ID, 1337)
+                .setFloatArray(Field.POSITION, position)
+                .setFloatArray(Field.VELOCITY, velocity)
+                .setFloat(Field.HEALTH, 87.5f)
+                .setShort(Field.FLAGS, (short)0x5)
+                .setString(Field.NAME, "goblin_archer");
+
+        structBuffer = ByteBuffer.allocate(struct.bufferSize());
+        instanceBuffer = ByteBuffer.allocate(instance.bufferSize());
+    }
+
+    @Benchmark
+    public ByteBuffer encodeStruct()
+    {
+        structBuffer.clear();
+        struct.write(structBuffer);
+        return structBuffer;
+    }
+
+    @Benchmark
+    public ByteBuffer encodeSchema()
+    {
+        instanceBuffer.clear();
+        instance.write(instanceBuffer);
+        return instanceBuffer;
+    }
+
+    @Benchmark
+    public Struct<Field> decodeStruct()
+    {
+        structBuffer.clear();
+        struct.write(structBuffer);
+        structResult.read(structBuffer.flip());
+        return structResult;
+    }
+
+    @Benchmark
+    public StructSchema<Field>.Instance decodeSchema()
+    {
+        instanceBuffer.clear();
+        instance.write(instanceBuffer);
+        instanceResult.read(instanceBuffer.flip());
+        return instanceResult;
+    }
+}
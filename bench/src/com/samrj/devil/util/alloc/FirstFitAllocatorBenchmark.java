@@ -0,0 +1,49 @@
+package com.samrj.devil.util.alloc;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Churns a first-fit allocator the way a streaming vertex buffer would: a
+ * fixed number of live regions of random sizes, with one freed at random and a
+ * new one allocated in each operation, leaving the free list fragmented.
+ *
+ * @author angle
+ * @license https://github.com/SmashMaster/DevilUtil/blob/master/LICENSE
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FirstFitAllocatorBenchmark {
+    @Param({"64", "1024"})
+    public int live;
+    
+    private FirstFitAllocator allocator;
+    private Allocation[] regions;
+    private SplittableRandom random;
+    
+    @Setup
+    public void setup() {
+        allocator = new FirstFitAllocator(1 << 16, 16, (a, increaseNeeded) -> a.getCapacity()*2 + increaseNeeded);
+        regions = new Allocation[live];
+        random = new SplittableRandom(8675309L);
+        for (int i = 0; i < live; i++) regions[i] = allocator.allocateRegion(nextSize());
+    }
+    
+    private int nextSize() {
+        return 16 + random.nextInt(4096);
+    }
+    
+    @Benchmark
+    public Allocation churn() {
+        int i = random.nextInt(live);
+        regions[i].deallocate();
+        regions[i] = allocator.allocateRegion(nextSize());
+        return regions[i];
+    }
+}
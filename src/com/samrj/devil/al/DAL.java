@@ -23,24 +23,22 @@
 package com.samrj.devil.al;
 
 import com.samrj.devil.math.Vec3;
-import org.kc7bfi.jflac.FLACDecoder;
 import org.lwjgl.openal.*;
 import org.lwjgl.system.MemoryStack;
 
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.IdentityHashMap;
 import java.util.Locale;
 import java.util.Set;
 
 import static org.lwjgl.openal.AL10.*;
-import static org.lwjgl.system.MemoryUtil.NULL;
-import static org.lwjgl.system.MemoryUtil.memFree;
+import static org.lwjgl.system.MemoryUtil.*;
 
 /**
  * DevilAL. An object-oriented OpenAL wrapper.
@@ -57,6 +55,8 @@ public class DAL
     private static Set<DALObj> objects;
     private static boolean debug;
     private static Thread debugShutdownHook;
+    private static boolean batchSources;
+    private static final ArrayList<Source> deferredSources = new ArrayList<>();
     
     static void checkState()
     {
@@ -119,6 +119,53 @@ public class DAL
         return debug;
     }
     
+    /**
+     * Enables or disables batched source updates. While enabled, source
+     * position, velocity, gain and pitch changes are recorded instead of being
+     * sent to OpenAL, and are all applied at once by flushSources(), with a
+     * single error check. Disabling batching flushes any recorded changes.
+     */
+    public static void setSourceBatching(boolean batch)
+    {
+        checkState();
+        if (batchSources && !batch) flushSources();
+        batchSources = batch;
+    }
+    
+    /**
+     * Returns whether batched source updates are enabled.
+     */
+    public static boolean isSourceBatching()
+    {
+        return batchSources;
+    }
+    
+    static void deferSource(Source source)
+    {
+        deferredSources.add(source);
+    }
+    
+    static void undeferSource(Source source)
+    {
+        deferredSources.remove(source);
+    }
+    
+    /**
+     * Applies every source parameter change recorded while batching. Should be
+     * called once per frame, after all sources have been updated.
+     */
+    public static void flushSources()
+    {
+        checkState();
+        for (Source source : deferredSources)
+        {
+            source.flush();
+            source.deferred = false;
+        }
+        deferredSources.clear();
+        checkError();
+    }
+    
     /**
      * @return The current OpenAL context's capabilities.
      */
@@ -165,37 +212,77 @@ public class DAL
         checkError();
     }
     
-    public static SoundBuffer decodeFlac(InputStream in) throws IOException
+    /**
+     * Decodes the given stream fully into a new, untracked sound buffer. May
+     * be called from any thread.
+     */
+    private static SoundBuffer decode(PCMStream stream) throws IOException
     {
-        FLACDecoder decoder = new FLACDecoder(in);
-        PCMBufferFLAC buffer = new PCMBufferFLAC();
-        try
+        PCMBuffer buffer = new PCMBuffer((int)Math.min(Math.max(stream.length, 32), Integer.MAX_VALUE));
+        ByteBuffer chunk = memAlloc(1 << 16);
+        try (stream)
         {
-            decoder.addPCMProcessor(buffer);
-            decoder.decode();
+            buffer.rate = stream.rate;
+            buffer.channels = stream.channels;
+            buffer.bits = stream.bits;
+            
+            while (stream.read(chunk) > 0)
+            {
+                chunk.flip();
+                buffer.buffer.put(chunk);
+                chunk.clear();
+            }
         }
         catch (Throwable t) //Prevent memory leaks by passing through throwables.
         {
             memFree(buffer.close());
             throw t;
         }
-        in.close();
-        return gen(new SoundBuffer(buffer));
+        finally
+        {
+            memFree(chunk);
+        }
+        return new SoundBuffer(buffer);
+    }
+    
+    /**
+     * Decodes the sound file at the given path, choosing the decoder by its
+     * extension, into an untracked sound buffer. May be called from any
+     * thread.
+     */
+    static SoundBuffer readSound(String path) throws IOException
+    {
+        int i = path.lastIndexOf('.');
+        if (i == -1) throw new IllegalArgumentException("No extension found.");
+        
+        String ext = path.substring(i+1).toLowerCase(Locale.ENGLISH);
+        switch (ext)
+        {
+            case "ogg": return decode(new PCMStreamOgg(path));
+            case "flac": return decode(new PCMStreamFLAC(path));
+        }
+        
+        throw new IllegalArgumentException("Unsupported audio format: " + ext);
+    }
+    
+    public static SoundBuffer decodeFlac(InputStream in) throws IOException
+    {
+        return gen(decode(new PCMStreamFLAC(in)));
     }
     
     public static SoundBuffer decodeFlac(String path) throws IOException
     {
-        return decodeFlac(new FileInputStream(path));
+        return gen(decode(new PCMStreamFLAC(path)));
     }
     
     public static SoundBuffer decodeOgg(InputStream in) throws IOException
     {
-        throw new UnsupportedOperationException();
+        return gen(decode(new PCMStreamOgg(in)));
     }
     
     public static SoundBuffer decodeOgg(String path) throws IOException
     {
-        return decodeOgg(new FileInputStream(path));
+        return gen(decode(new PCMStreamOgg(path)));
     }
     
     public static Sound genSound()
@@ -246,11 +333,93 @@ public class DAL
         throw new IllegalArgumentException("Unsupported audio format: " + ext);
     }
     
+    private static SoundStream stream(PCMStream pcm)
+    {
+        return gen(new SoundStream(pcm, 4, 0.25f));
+    }
+    
+    /**
+     * Opens the given FLAC stream for streaming playback. The stream cannot
+     * loop, and is closed when the returned sound stream is deleted.
+     */
+    public static SoundStream streamFlac(InputStream in) throws IOException
+    {
+        return stream(new PCMStreamFLAC(in));
+    }
+    
+    /**
+     * Opens the FLAC file at the given path for streaming playback.
+     */
+    public static SoundStream streamFlac(String path) throws IOException
+    {
+        return stream(new PCMStreamFLAC(path));
+    }
+    
+    /**
+     * Reads the given Ogg Vorbis stream into memory, still compressed, for
+     * streaming playback.
+     */
+    public static SoundStream streamOgg(InputStream in) throws IOException
+    {
+        return stream(new PCMStreamOgg(in));
+    }
+    
+    /**
+     * Opens the Ogg Vorbis file at the given path for streaming playback.
+     */
+    public static SoundStream streamOgg(String path) throws IOException
+    {
+        return stream(new PCMStreamOgg(path));
+    }
+    
+    public static SoundStream streamSound(String path) throws IOException
+    {
+        int i = path.lastIndexOf('.');
+        if (i == -1) throw new IllegalArgumentException("No extension found.");
+        
+        String ext = path.substring(i+1).toLowerCase(Locale.ENGLISH);
+        switch (ext)
+        {
+            case "ogg": return streamOgg(path);
+            case "flac": return streamFlac(path);
+        }
+        
+        throw new IllegalArgumentException("Unsupported audio format: " + ext);
+    }
+    
+    /**
+     * Updates every sound stream, keeping their sources fed. Should be called
+     * at least once per frame.
+     */
+    public static void updateStreams()
+    {
+        checkState();
+        for (DALObj obj : objects) if (obj instanceof SoundStream) ((SoundStream)obj).update();
+    }
+    
+    /**
+     * Creates a sound bank which decodes sounds on the given number of worker
+     * threads, and caches up to the given number of bytes of decoded sound.
+     */
+    public static SoundBank genSoundBank(int threads, long cacheBytes)
+    {
+        return gen(new SoundBank(threads, cacheBytes));
+    }
+    
     public static Source genSource()
     {
         return gen(new Source());
     }
     
+    /**
+     * Creates a voice manager which plays its voices through the given number
+     * of pooled sources.
+     */
+    public static VoiceManager genVoiceManager(int maxSources)
+    {
+        return gen(new VoiceManager(maxSources));
+    }
+    
     public static EffectSlot genEffectSlot()
     {
         return gen(new EffectSlot());
@@ -314,6 +483,7 @@ public class DAL
             source.stop();
             source.detatchAll();
         }
+        else if (obj instanceof VoiceManager) ((VoiceManager)obj).stopAll();
     }
     
     /**
@@ -328,6 +498,8 @@ public class DAL
         if (isDebugEnabled()) for (DALObj obj : objects) obj.debugLeakTrace();
         Runtime.getRuntime().removeShutdownHook(debugShutdownHook);
         objects = null;
+        batchSources = false;
+        deferredSources.clear();
         
         ALC10.alcDestroyContext(context);
         ALC10.alcCloseDevice(device);
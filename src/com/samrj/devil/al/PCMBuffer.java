@@ -12,9 +12,9 @@ class PCMBuffer
     int rate, channels, bits;
     final DynamicBuffer buffer;
     
-    PCMBuffer()
+    PCMBuffer(int capacity)
     {
-        buffer = new DynamicBuffer();
+        buffer = new DynamicBuffer(capacity);
     }
     
     ByteBuffer close()
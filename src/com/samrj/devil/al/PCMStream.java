@@ -0,0 +1,33 @@
+package com.samrj.devil.al;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Incrementally decodes interleaved PCM sound data, for streaming.
+ * 
+ * @author Samuel Johnson (SmashMaster)
+ * @copyright 2022 Samuel Johnson
+ * @license https://github.com/SmashMaster/DevilUtil/blob/master/LICENSE
+ */
+abstract class PCMStream implements Closeable
+{
+    int rate, channels, bits;
+    long length; //Total bytes of decoded sound, or zero if unknown.
+    
+    /**
+     * Decodes sound data into the given buffer, until it is full or the end of
+     * the stream is reached. Returns the number of bytes written, which is zero
+     * only at the end of the stream.
+     */
+    abstract int read(ByteBuffer buffer) throws IOException;
+    
+    /**
+     * Returns to the start of the stream.
+     */
+    void rewind() throws IOException
+    {
+        throw new IOException("Stream cannot be rewound.");
+    }
+}
@@ -0,0 +1,104 @@
+package com.samrj.devil.al;
+
+import org.kc7bfi.jflac.FLACDecoder;
+import org.kc7bfi.jflac.frame.Frame;
+import org.kc7bfi.jflac.metadata.StreamInfo;
+import org.kc7bfi.jflac.util.ByteData;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes FLAC files one frame at a time with jFLAC.
+ * 
+ * @author Samuel Johnson (SmashMaster)
+ * @copyright 2022 Samuel Johnson
+ * @license https://github.com/SmashMaster/DevilUtil/blob/master/LICENSE
+ */
+final class PCMStreamFLAC extends PCMStream
+{
+    private final String path;
+    private InputStream in;
+    private FLACDecoder decoder;
+    private ByteData pcm;
+    private int pcmPos;
+    
+    /**
+     * Opens the FLAC file at the given path. May be rewound.
+     */
+    PCMStreamFLAC(String path) throws IOException
+    {
+        this.path = path;
+        open(new BufferedInputStream(new FileInputStream(path)));
+    }
+    
+    /**
+     * Decodes the given FLAC stream, which is closed along with this.
+     */
+    PCMStreamFLAC(InputStream in) throws IOException
+    {
+        path = null;
+        open(in);
+    }
+    
+    private void open(InputStream in) throws IOException
+    {
+        this.in = in;
+        try
+        {
+            decoder = new FLACDecoder(in);
+            decoder.readMetadata();
+            StreamInfo info = decoder.getStreamInfo();
+            if (info == null) throw new IOException("FLAC stream has no stream info.");
+            rate = info.getSampleRate();
+            channels = info.getChannels();
+            bits = info.getBitsPerSample();
+            length = info.getTotalSamples()*channels*((bits + 7)/8);
+        }
+        catch (Throwable t)
+        {
+            in.close();
+            throw t;
+        }
+        pcm = null;
+        pcmPos = 0;
+    }
+    
+    @Override
+    int read(ByteBuffer buffer) throws IOException
+    {
+        int start = buffer.position();
+        while (buffer.hasRemaining())
+        {
+            if (pcm == null || pcmPos == pcm.getLen())
+            {
+                Frame frame = decoder.readNextFrame();
+                if (frame == null) break;
+                pcm = decoder.decodeFrame(frame, pcm);
+                pcmPos = 0;
+            }
+            
+            int length = Math.min(pcm.getLen() - pcmPos, buffer.remaining());
+            buffer.put(pcm.getData(), pcmPos, length);
+            pcmPos += length;
+        }
+        return buffer.position() - start;
+    }
+    
+    @Override
+    void rewind() throws IOException
+    {
+        if (path == null) super.rewind();
+        in.close();
+        open(new BufferedInputStream(new FileInputStream(path)));
+    }
+    
+    @Override
+    public void close() throws IOException
+    {
+        in.close();
+    }
+}
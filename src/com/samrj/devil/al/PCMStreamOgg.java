@@ -0,0 +1,116 @@
+package com.samrj.devil.al;
+
+import org.lwjgl.stb.STBVorbisInfo;
+import org.lwjgl.system.MemoryStack;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import static org.lwjgl.stb.STBVorbis.*;
+import static org.lwjgl.system.MemoryUtil.NULL;
+import static org.lwjgl.system.MemoryUtil.memFree;
+
+/**
+ * Decodes Ogg Vorbis files with STB, into 16 bit samples.
+ * 
+ * @author Samuel Johnson (SmashMaster)
+ * @copyright 2022 Samuel Johnson
+ * @license https://github.com/SmashMaster/DevilUtil/blob/master/LICENSE
+ */
+final class PCMStreamOgg extends PCMStream
+{
+    private final ByteBuffer data;
+    private final long handle;
+    
+    /**
+     * Opens the Ogg Vorbis file at the given path, which is read from disk as
+     * it is decoded.
+     */
+    PCMStreamOgg(String path) throws IOException
+    {
+        data = null;
+        try (MemoryStack stack = MemoryStack.stackPush())
+        {
+            IntBuffer error = stack.mallocInt(1);
+            handle = stb_vorbis_open_filename(path, error, null);
+            if (handle == NULL) throw new IOException("Failed to open Ogg Vorbis file " + path + ", error " + error.get(0));
+        }
+        readInfo();
+    }
+    
+    /**
+     * Reads the whole Ogg Vorbis stream into memory, still compressed, and
+     * closes it.
+     */
+    PCMStreamOgg(InputStream in) throws IOException
+    {
+        DynamicBuffer buffer = new DynamicBuffer(Math.max(in.available(), 4096));
+        try (in)
+        {
+            byte[] block = new byte[8192];
+            int length;
+            while ((length = in.read(block)) != -1) buffer.put(block, 0, length);
+        }
+        catch (Throwable t) //Prevent memory leaks by passing through throwables.
+        {
+            memFree(buffer.close());
+            throw t;
+        }
+        data = buffer.close();
+        
+        try (MemoryStack stack = MemoryStack.stackPush())
+        {
+            IntBuffer error = stack.mallocInt(1);
+            handle = stb_vorbis_open_memory(data, error, null);
+            if (handle == NULL)
+            {
+                memFree(data);
+                throw new IOException("Failed to open Ogg Vorbis stream, error " + error.get(0));
+            }
+        }
+        readInfo();
+    }
+    
+    private void readInfo()
+    {
+        try (MemoryStack stack = MemoryStack.stackPush())
+        {
+            STBVorbisInfo info = stb_vorbis_get_info(handle, STBVorbisInfo.malloc(stack));
+            rate = info.sample_rate();
+            channels = info.channels();
+            bits = 16;
+        }
+        length = stb_vorbis_stream_length_in_samples(handle)*(long)channels*2L;
+    }
+    
+    @Override
+    int read(ByteBuffer buffer)
+    {
+        int start = buffer.position();
+        ShortBuffer samples = buffer.asShortBuffer();
+        while (samples.remaining() >= channels)
+        {
+            int frames = stb_vorbis_get_samples_short_interleaved(handle, channels, samples);
+            if (frames == 0) break;
+            samples.position(samples.position() + frames*channels);
+        }
+        buffer.position(start + samples.position()*2);
+        return buffer.position() - start;
+    }
+    
+    @Override
+    void rewind() throws IOException
+    {
+        if (!stb_vorbis_seek_start(handle)) throw new IOException("Failed to rewind Ogg Vorbis stream.");
+    }
+    
+    @Override
+    public void close()
+    {
+        stb_vorbis_close(handle);
+        if (data != null) memFree(data);
+    }
+}
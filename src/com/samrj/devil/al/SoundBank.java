@@ -0,0 +1,350 @@
+package com.samrj.devil.al;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads and shares sounds by path. Sound files are decoded on a pool of worker
+ * threads, and their OpenAL buffers are created during update(), which should
+ * be called once per frame. Concurrent loads of the same file share a single
+ * decode and a single Sound, which is deleted once every load of it has been
+ * released.
+ *
+ * Decoded sound data is also kept in a least recently used cache, up to a
+ * fixed number of bytes, so that sounds which are released and then loaded
+ * again do not need to be decoded again.
+ *
+ * All methods except those of the returned futures must be called on the DAL
+ * thread. Futures are completed on the DAL thread, during update().
+ *
+ * @author Samuel Johnson (SmashMaster)
+ * @copyright 2022 Samuel Johnson
+ * @license https://github.com/SmashMaster/DevilUtil/blob/master/LICENSE
+ */
+public final class SoundBank extends DALObj
+{
+    private static final class Entry
+    {
+        private final String path, key;
+        private final CompletableFuture<Sound> future = new CompletableFuture<>();
+        private Sound sound;
+        private int refs;
+
+        //Set by the decoding worker.
+        private SoundBuffer buffer;
+        private Throwable error;
+
+        private Entry(String path, String key)
+        {
+            this.path = path;
+            this.key = key;
+        }
+    }
+
+    private final ExecutorService workers;
+    private final HashMap<String, Entry> entries = new HashMap<>();
+    private final HashMap<String, Integer> failed = new HashMap<>(); //Unreleased loads which failed, by key.
+    private final ArrayList<Entry> decoded = new ArrayList<>();
+    private final LinkedHashMap<String, SoundBuffer> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private final long cacheBudget;
+    private long cacheBytes;
+    private boolean deleted;
+
+    private long hits, cacheHits, misses;
+    private final AtomicLong decodeCount = new AtomicLong(), decodeNanos = new AtomicLong();
+
+    SoundBank(int threads, long cacheBudget)
+    {
+        if (threads <= 0) throw new IllegalArgumentException("Illegal thread count.");
+        if (cacheBudget < 0) throw new IllegalArgumentException("Illegal cache budget.");
+        this.cacheBudget = cacheBudget;
+
+        workers = Executors.newFixedThreadPool(threads, runnable ->
+        {
+            Thread thread = new Thread(runnable, "DAL sound bank");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static String key(String path)
+    {
+        return Paths.get(path).toAbsolutePath().normalize().toString();
+    }
+
+    private void decode(Entry entry)
+    {
+        long start = System.nanoTime();
+        try
+        {
+            entry.buffer = DAL.readSound(entry.path);
+        }
+        catch (Throwable t)
+        {
+            entry.error = t;
+        }
+        decodeNanos.addAndGet(System.nanoTime() - start);
+        decodeCount.incrementAndGet();
+
+        synchronized (decoded)
+        {
+            if (!deleted) decoded.add(entry);
+            else if (entry.buffer != null) entry.buffer.delete();
+        }
+    }
+
+    /**
+     * Removes the given entry after its load failed, keeping its outstanding
+     * loads so that their releases stay balanced.
+     */
+    private void fail(Entry entry, Throwable error)
+    {
+        entries.remove(entry.key);
+        failed.merge(entry.key, entry.refs, Integer::sum);
+        entry.future.completeExceptionally(error);
+    }
+
+    private void upload(Entry entry, SoundBuffer buffer)
+    {
+        Sound sound = new Sound();
+        try
+        {
+            sound.buffer(buffer);
+        }
+        catch (Throwable t)
+        {
+            sound.delete();
+            fail(entry, t);
+            return;
+        }
+        entry.sound = sound;
+        entry.future.complete(sound);
+    }
+
+    /**
+     * Adds the given decoded sound to the cache, evicting the least recently
+     * used sounds to stay within budget.
+     */
+    private void cache(String key, SoundBuffer buffer)
+    {
+        if (buffer.size > cacheBudget)
+        {
+            buffer.delete();
+            return;
+        }
+
+        cache.put(key, buffer);
+        cacheBytes += buffer.size;
+
+        Iterator<SoundBuffer> it = cache.values().iterator();
+        while (cacheBytes > cacheBudget)
+        {
+            SoundBuffer eldest = it.next();
+            it.remove();
+            cacheBytes -= eldest.size;
+            eldest.delete();
+        }
+    }
+
+    /**
+     * Loads the sound at the given path, or shares it if it is already loaded
+     * or loading. Each load must eventually be matched by a call to release().
+     *
+     * @param path The path of an Ogg Vorbis or FLAC file.
+     * @return A future which completes with the sound once it is loaded.
+     */
+    public CompletableFuture<Sound> load(String path)
+    {
+        DAL.checkState();
+        if (deleted) throw new IllegalStateException("Sound bank deleted.");
+
+        String key = key(path);
+        Entry entry = entries.get(key);
+        if (entry != null)
+        {
+            hits++;
+            entry.refs++;
+            return entry.future;
+        }
+
+        entry = new Entry(path, key);
+        entry.refs = 1;
+        entries.put(key, entry);
+
+        SoundBuffer cached = cache.get(key);
+        if (cached != null)
+        {
+            cacheHits++;
+            upload(entry, cached);
+        }
+        else
+        {
+            misses++;
+            Entry e = entry;
+            workers.execute(() -> decode(e));
+        }
+        return entry.future;
+    }
+
+    /**
+     * Releases one load of the sound at the given path. Once every load of it
+     * is released, its Sound is deleted, so it must no longer be attached to
+     * any source.
+     *
+     * Loads which failed must also be released. Their releases are counted
+     * before those of any later load of the same path, and do nothing else.
+     * Releasing a path which was never loaded does nothing.
+     *
+     * @param path The path the sound was loaded with.
+     */
+    public void release(String path)
+    {
+        DAL.checkState();
+        String key = key(path);
+
+        Integer failures = failed.get(key);
+        if (failures != null)
+        {
+            if (failures > 1) failed.put(key, failures - 1);
+            else failed.remove(key);
+            return;
+        }
+
+        Entry entry = entries.get(key);
+        if (entry == null || --entry.refs > 0) return;
+
+        entries.remove(key);
+        if (entry.sound != null) entry.sound.delete();
+        else entry.future.cancel(false);
+    }
+
+    /**
+     * Creates OpenAL buffers for sounds which have finished decoding, and
+     * completes their futures.
+     */
+    public void update()
+    {
+        DAL.checkState();
+        if (deleted) throw new IllegalStateException("Sound bank deleted.");
+
+        ArrayList<Entry> ready;
+        synchronized (decoded)
+        {
+            if (decoded.isEmpty()) return;
+            ready = new ArrayList<>(decoded);
+            decoded.clear();
+        }
+
+        for (Entry entry : ready)
+        {
+            boolean live = entries.get(entry.key) == entry;
+
+            if (entry.error != null)
+            {
+                if (live) fail(entry, entry.error);
+                else entry.future.completeExceptionally(entry.error);
+                continue;
+            }
+
+            if (live) upload(entry, entry.buffer);
+            if (!cache.containsKey(entry.key)) cache(entry.key, entry.buffer);
+            else entry.buffer.delete();
+            entry.buffer = null;
+        }
+    }
+
+    /**
+     * Returns how many loads were shared with a sound which was already
+     * loaded or loading.
+     */
+    public long getHitCount()
+    {
+        return hits;
+    }
+
+    /**
+     * Returns how many loads were served from the decoded sound cache.
+     */
+    public long getCacheHitCount()
+    {
+        return cacheHits;
+    }
+
+    /**
+     * Returns how many loads had to decode their sound.
+     */
+    public long getMissCount()
+    {
+        return misses;
+    }
+
+    /**
+     * Returns how many sounds have finished decoding.
+     */
+    public long getDecodeCount()
+    {
+        return decodeCount.get();
+    }
+
+    /**
+     * Returns the total time spent decoding sounds, across all workers, in
+     * nanoseconds.
+     */
+    public long getDecodeNanos()
+    {
+        return decodeNanos.get();
+    }
+
+    /**
+     * Returns the number of bytes of decoded sound in the cache.
+     */
+    public long getCacheBytes()
+    {
+        return cacheBytes;
+    }
+
+    /**
+     * Returns the number of distinct sounds which are loaded or loading.
+     */
+    public int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Stops all workers, and deletes every loaded and cached sound. Loads
+     * which have not yet completed are cancelled.
+     */
+    @Override
+    void delete()
+    {
+        if (deleted) return;
+        workers.shutdownNow();
+
+        synchronized (decoded)
+        {
+            deleted = true;
+            for (Entry entry : decoded) if (entry.buffer != null) entry.buffer.delete();
+            decoded.clear();
+        }
+
+        for (Entry entry : entries.values())
+        {
+            if (entry.sound != null) entry.sound.delete();
+            else entry.future.cancel(false);
+        }
+        entries.clear();
+        failed.clear();
+
+        for (SoundBuffer buffer : cache.values()) buffer.delete();
+        cache.clear();
+        cacheBytes = 0;
+    }
+}
@@ -0,0 +1,264 @@
+package com.samrj.devil.al;
+
+import com.samrj.devil.math.Util.PrimType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.lwjgl.openal.AL10.*;
+import static org.lwjgl.system.MemoryUtil.memAlloc;
+import static org.lwjgl.system.MemoryUtil.memFree;
+
+/**
+ * Plays long sounds without decoding them fully into memory. A background
+ * thread decodes a few chunks ahead, and update() feeds them through a small
+ * ring of OpenAL buffers queued on the attached source.
+ *
+ * Attach with Source.setStream(), and then play, pause and stop the source as
+ * usual. update() must be called regularly, at least a few times per chunk
+ * duration, or playback will run dry; DAL.updateStreams() updates every
+ * stream. Stopping a streaming source discards its queued sound, and playback
+ * later resumes from wherever decoding has reached.
+ *
+ * @author Samuel Johnson (SmashMaster)
+ * @copyright 2022 Samuel Johnson
+ * @license https://github.com/SmashMaster/DevilUtil/blob/master/LICENSE
+ */
+public final class SoundStream extends DALObj
+{
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    public final int channels;
+    public final PrimType type;
+    public final int rate;
+
+    private final PCMStream pcm;
+    private final int format;
+    private final int[] buffers;
+    private final ByteBuffer[] chunks;
+    private final ArrayDeque<Integer> idle = new ArrayDeque<>();
+    private final LinkedBlockingQueue<ByteBuffer> free = new LinkedBlockingQueue<>();
+    private final LinkedBlockingQueue<ByteBuffer> filled = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    private volatile boolean looping, closed;
+    private volatile IOException error;
+
+    Source source;
+    boolean playing;
+    private boolean ended;
+
+    SoundStream(PCMStream pcm, int bufferCount, float chunkSeconds)
+    {
+        try
+        {
+            if (bufferCount < 2) throw new IllegalArgumentException("Need at least two buffers.");
+            if (!(chunkSeconds > 0.0f)) throw new IllegalArgumentException("Illegal chunk duration.");
+
+            channels = pcm.channels;
+            if (pcm.bits == 8) type = PrimType.BYTE;
+            else if (pcm.bits == 16) type = PrimType.SHORT;
+            else throw new IllegalArgumentException("Sound must be 8 or 16 bits.");
+
+            format = Sound.getFormat(channels, type);
+            if (format == -1) throw new IllegalArgumentException("Sound must be mono or stereo.");
+
+            rate = pcm.rate;
+            if (rate <= 0) throw new IllegalArgumentException("Illegal sound rate specified.");
+        }
+        catch (Throwable t)
+        {
+            try
+            {
+                pcm.close();
+            }
+            catch (IOException e)
+            {
+                t.addSuppressed(e);
+            }
+            throw t;
+        }
+
+        this.pcm = pcm;
+
+        int frameSize = channels*type.size;
+        int chunkSize = Math.max(Math.round(rate*chunkSeconds), 1)*frameSize;
+
+        buffers = new int[bufferCount];
+        alGenBuffers(buffers);
+        DAL.checkError();
+        for (int buffer : buffers) idle.add(buffer);
+
+        chunks = new ByteBuffer[bufferCount];
+        for (int i=0; i<bufferCount; i++)
+        {
+            chunks[i] = memAlloc(chunkSize);
+            free.add(chunks[i]);
+        }
+
+        thread = new Thread(this::decode, "DevilUtil (DAL) - Sound stream");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void decode()
+    {
+        try
+        {
+            while (!closed)
+            {
+                ByteBuffer chunk = free.take();
+                chunk.clear();
+                boolean end = false;
+                while (chunk.hasRemaining())
+                {
+                    if (pcm.read(chunk) > 0) continue;
+                    if (!looping)
+                    {
+                        end = true;
+                        break;
+                    }
+                    pcm.rewind();
+                    if (pcm.read(chunk) == 0) //Empty stream; avoid spinning.
+                    {
+                        end = true;
+                        break;
+                    }
+                }
+                chunk.flip();
+
+                if (chunk.hasRemaining()) filled.add(chunk);
+                else free.add(chunk);
+
+                if (end) return;
+            }
+        }
+        catch (InterruptedException e)
+        {
+        }
+        catch (IOException e)
+        {
+            error = e;
+        }
+        catch (RuntimeException e) //Decoders may throw these for corrupt streams.
+        {
+            error = new IOException("Failed to decode sound stream.", e);
+        }
+        finally
+        {
+            filled.add(END);
+        }
+    }
+
+    /**
+     * Sets whether this stream starts over when it reaches its end. Has no
+     * effect once the end has been decoded.
+     */
+    public SoundStream setLooping(boolean looping)
+    {
+        this.looping = looping;
+        return this;
+    }
+
+    /**
+     * Returns the error which stopped decoding, if any.
+     */
+    public IOException getError()
+    {
+        return error;
+    }
+
+    /**
+     * Returns whether all of this stream's sound has been queued, and the
+     * attached source has finished playing it.
+     */
+    public boolean isFinished()
+    {
+        return ended && idle.size() == buffers.length;
+    }
+
+    void attach(Source source)
+    {
+        if (this.source != null && this.source != source)
+            throw new IllegalStateException("Sound stream already attached to a source.");
+        this.source = source;
+    }
+
+    /**
+     * Called once the source has been stopped and its buffers removed.
+     */
+    void detach()
+    {
+        source = null;
+        playing = false;
+        idle.clear();
+        for (int buffer : buffers) idle.add(buffer);
+    }
+
+    /**
+     * Reclaims buffers the attached source has finished playing, refills them
+     * with decoded sound, and restarts playback if the source ran dry.
+     */
+    public void update()
+    {
+        if (source == null) return;
+
+        int processed = alGetSourcei(source.id, AL_BUFFERS_PROCESSED);
+        for (int i=0; i<processed; i++) idle.add(alSourceUnqueueBuffers(source.id));
+        DAL.checkError();
+
+        while (!ended && !idle.isEmpty())
+        {
+            ByteBuffer chunk = filled.poll();
+            if (chunk == null) break;
+            if (chunk == END)
+            {
+                ended = true;
+                break;
+            }
+
+            int buffer = idle.poll();
+            alBufferData(buffer, format, chunk, rate);
+            free.add(chunk);
+            alSourceQueueBuffers(source.id, buffer);
+            DAL.checkError();
+        }
+
+        if (playing && idle.size() < buffers.length)
+        {
+            int state = alGetSourcei(source.id, AL_SOURCE_STATE);
+            if (state == AL_INITIAL || state == AL_STOPPED) alSourcePlay(source.id);
+            DAL.checkError();
+        }
+    }
+
+    @Override
+    void delete()
+    {
+        if (source != null) source.setSound(null);
+
+        closed = true;
+        thread.interrupt();
+        try
+        {
+            thread.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        alDeleteBuffers(buffers);
+        DAL.checkError();
+        for (ByteBuffer chunk : chunks) memFree(chunk);
+
+        try
+        {
+            pcm.close();
+        }
+        catch (IOException e)
+        {
+        }
+    }
+}
@@ -3,9 +3,8 @@ package com.samrj.devil.al;
 import com.samrj.devil.math.Util;
 import com.samrj.devil.math.Vec3;
 
-import java.util.HashSet;
-
 import static org.lwjgl.openal.AL10.*;
+import static org.lwjgl.openal.AL11.AL_SEC_OFFSET;
 import static org.lwjgl.openal.AL11.alSource3i;
 import static org.lwjgl.openal.EXTEfx.*;
 
@@ -20,7 +19,15 @@ public class Source extends DALObj
 {
     final int id;
     
-    private final HashSet<Integer> filterSends = new HashSet<>();
+    private static final int DIRTY_POS = 1, DIRTY_VEL = 2, DIRTY_GAIN = 4, DIRTY_PITCH = 8;
+    
+    private int filterSends; //Bitmask of auxiliary sends in use.
+    private SoundStream stream;
+    
+    //Parameters waiting for the next flush, when batching.
+    private float posX, posY, posZ, velX, velY, velZ, gain, pitch;
+    private int dirty;
+    boolean deferred; //Whether this is in DAL's list of sources to flush.
     
     Source()
     {
@@ -28,14 +35,52 @@ public class Source extends DALObj
         DAL.checkError();
     }
     
+    private void detachStream()
+    {
+        if (stream == null) return;
+        alSourceStop(id);
+        alSourcei(id, AL_BUFFER, AL_NONE);
+        DAL.checkError();
+        stream.detach();
+        stream = null;
+    }
+    
+    /**
+     * Sets the sound for this source to play. Detaches any sound stream.
+     */
     public Source setSound(Sound sound)
     {
+        detachStream();
         int bufferID = sound != null ? sound.id : AL_NONE;
         alSourcei(id, AL_BUFFER, bufferID);
         DAL.checkError();
         return this;
     }
     
+    /**
+     * Attaches the given sound stream to this source, which then plays it
+     * through a queue of buffers. Detaches any previous sound or stream. The
+     * stream must not be attached to another source. Streaming sources must not
+     * have looping enabled; use SoundStream.setLooping() instead.
+     */
+    public Source setStream(SoundStream stream)
+    {
+        if (stream == this.stream) return this;
+        if (stream != null) stream.attach(this);
+        setSound(null);
+        this.stream = stream;
+        if (stream != null) stream.update();
+        return this;
+    }
+    
+    /**
+     * Returns the sound stream attached to this source, if any.
+     */
+    public SoundStream getStream()
+    {
+        return stream;
+    }
+    
     public Source setRelative(boolean relative)
     {
         alSourcei(id, AL_SOURCE_RELATIVE, relative ? AL_TRUE : AL_FALSE);
@@ -43,8 +88,37 @@ public class Source extends DALObj
         return this;
     }
     
+    private void defer(int flag)
+    {
+        if (!deferred)
+        {
+            DAL.deferSource(this);
+            deferred = true;
+        }
+        dirty |= flag;
+    }
+    
+    /**
+     * Applies any parameters set while batching. Does not check for errors.
+     */
+    void flush()
+    {
+        if (dirty == 0) return;
+        if ((dirty & DIRTY_POS) != 0) alSource3f(id, AL_POSITION, posX, posY, posZ);
+        if ((dirty & DIRTY_VEL) != 0) alSource3f(id, AL_VELOCITY, velX, velY, velZ);
+        if ((dirty & DIRTY_GAIN) != 0) alSourcef(id, AL_GAIN, gain);
+        if ((dirty & DIRTY_PITCH) != 0) alSourcef(id, AL_PITCH, pitch);
+        dirty = 0;
+    }
+    
     public Source setPitch(float f)
     {
+        if (DAL.isSourceBatching())
+        {
+            pitch = f;
+            defer(DIRTY_PITCH);
+            return this;
+        }
         alSourcef(id, AL_PITCH, f);
         DAL.checkError();
         return this;
@@ -59,6 +133,12 @@ public class Source extends DALObj
     
     public Source setGain(float f)
     {
+        if (DAL.isSourceBatching())
+        {
+            gain = f;
+            defer(DIRTY_GAIN);
+            return this;
+        }
         alSourcef(id, AL_GAIN, f);
         DAL.checkError(f);
         return this;
@@ -66,6 +146,12 @@ public class Source extends DALObj
     
     public Source setPos(Vec3 v)
     {
+        if (DAL.isSourceBatching())
+        {
+            posX = v.x; posY = v.y; posZ = v.z;
+            defer(DIRTY_POS);
+            return this;
+        }
         alSource3f(id, AL_POSITION, v.x, v.y, v.z);
         DAL.checkError();
         return this;
@@ -73,6 +159,12 @@ public class Source extends DALObj
     
     public Source setVel(Vec3 v)
     {
+        if (DAL.isSourceBatching())
+        {
+            velX = v.x; velY = v.y; velZ = v.z;
+            defer(DIRTY_VEL);
+            return this;
+        }
         alSource3f(id, AL_VELOCITY, v.x, v.y, v.z);
         DAL.checkError();
         return this;
@@ -85,6 +177,26 @@ public class Source extends DALObj
         return this;
     }
     
+    /**
+     * Sets the playback position of this source's sound, in seconds.
+     */
+    public Source setOffset(float seconds)
+    {
+        alSourcef(id, AL_SEC_OFFSET, seconds);
+        DAL.checkError();
+        return this;
+    }
+    
+    /**
+     * Returns the playback position of this source's sound, in seconds.
+     */
+    public float getOffset()
+    {
+        float offset = alGetSourcef(id, AL_SEC_OFFSET);
+        DAL.checkError();
+        return offset;
+    }
+    
     public Source paramf(int param, float value)
     {
         alSourcef(id, param, value);
@@ -112,8 +224,9 @@ public class Source extends DALObj
         int sid = slot != null ? slot.id :  AL_EFFECTSLOT_NULL;
         int fid = filter != null ? filter.id :  AL_FILTER_NULL;
         
-        if (slot == null && filter == null) filterSends.remove(localSend);
-        else if (slot != null && filter != null) filterSends.add(localSend);
+        if (localSend < 0 || localSend >= 32) throw new IllegalArgumentException("Illegal auxiliary send " + localSend);
+        if (slot == null && filter == null) filterSends &= ~(1 << localSend);
+        else filterSends |= 1 << localSend;
         
         alSource3i(id, AL_AUXILIARY_SEND_FILTER, sid, localSend, fid);
         DAL.checkError();
@@ -127,6 +240,8 @@ public class Source extends DALObj
     
     public Source play()
     {
+        if (stream != null) stream.playing = true;
+        flush();
         alSourcePlay(id);
         DAL.checkError();
         return this;
@@ -134,6 +249,7 @@ public class Source extends DALObj
     
     public Source pause()
     {
+        if (stream != null) stream.playing = false;
         alSourcePause(id);
         DAL.checkError();
         return this;
@@ -141,6 +257,7 @@ public class Source extends DALObj
     
     public Source stop()
     {
+        if (stream != null) stream.playing = false;
         alSourceStop(id);
         DAL.checkError();
         return this;
@@ -159,13 +276,16 @@ public class Source extends DALObj
     void detatchAll()
     {
         setDirectFilter(null);
-        for (int send : filterSends) sendToEffectSlot(send, null);
+        for (int sends = filterSends; sends != 0; sends &= sends - 1)
+            sendToEffectSlot(Integer.numberOfTrailingZeros(sends), null);
         setSound(null);
     }
     
     @Override
     void delete()
     {
+        if (deferred) DAL.undeferSource(this);
+        detachStream();
         alDeleteSources(id);
         DAL.checkError();
     }
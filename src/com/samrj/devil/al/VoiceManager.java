@@ -0,0 +1,401 @@
+package com.samrj.devil.al;
+
+import com.samrj.devil.math.Vec3;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+
+import static org.lwjgl.openal.AL10.*;
+
+/**
+ * Plays any number of logical voices through a fixed pool of real OpenAL
+ * sources. Each update, playing voices are ranked by priority, and then by
+ * how loud they should be heard, and only the top few are given sources. The
+ * rest are virtual: silent, but still advancing through their sounds, so that
+ * they resume from the right place if they become real again.
+ *
+ * Loudness is estimated from each voice's gain and the inverse clamped
+ * distance model, which is OpenAL's default. Voices quieter than a threshold
+ * are always virtual.
+ *
+ * @author Samuel Johnson (SmashMaster)
+ * @copyright 2022 Samuel Johnson
+ * @license https://github.com/SmashMaster/DevilUtil/blob/master/LICENSE
+ */
+public final class VoiceManager extends DALObj
+{
+    /**
+     * A logical sound emitter, which may or may not currently have a source.
+     */
+    public final class Voice
+    {
+        private final Sound sound;
+        private final float duration;
+        private final Vec3 pos = new Vec3();
+        private float gain = 1.0f, pitch = 1.0f;
+        private float refDistance = 1.0f, rolloff = 1.0f, maxDistance = Float.MAX_VALUE;
+        private int priority;
+        private boolean looping, relative;
+        private boolean playing, active, listed;
+        private float offset, audibility;
+        private Source source;
+
+        private Voice(Sound sound)
+        {
+            this.sound = sound;
+            int frameBytes = sound.getChannels()*sound.getBits()/8;
+            duration = (float)sound.getSize()/(frameBytes*sound.getFrequency());
+        }
+
+        private void apply()
+        {
+            source.setPos(pos);
+            source.setGain(gain);
+            source.setPitch(pitch);
+        }
+
+        /**
+         * Starts or resumes playing this voice.
+         */
+        public Voice play()
+        {
+            playing = true;
+            active = true;
+            if (!listed)
+            {
+                listed = true;
+                voices.add(this);
+            }
+            return this;
+        }
+
+        /**
+         * Pauses this voice, keeping its playback position. It loses its source
+         * on the next update.
+         */
+        public Voice pause()
+        {
+            playing = false;
+            return this;
+        }
+
+        /**
+         * Stops this voice and rewinds it. It is removed from the manager on
+         * the next update, until played again.
+         */
+        public Voice stop()
+        {
+            playing = false;
+            offset = 0.0f;
+            active = false;
+            return this;
+        }
+
+        public Voice setPos(Vec3 v)
+        {
+            pos.set(v);
+            if (source != null) source.setPos(v);
+            return this;
+        }
+
+        public Voice setGain(float gain)
+        {
+            this.gain = gain;
+            if (source != null) source.setGain(gain);
+            return this;
+        }
+
+        public Voice setPitch(float pitch)
+        {
+            this.pitch = pitch;
+            if (source != null) source.setPitch(pitch);
+            return this;
+        }
+
+        /**
+         * Sets the reference distance, rolloff factor and maximum distance of
+         * this voice, as for AL_REFERENCE_DISTANCE, AL_ROLLOFF_FACTOR and
+         * AL_MAX_DISTANCE.
+         */
+        public Voice setAttenuation(float refDistance, float rolloff, float maxDistance)
+        {
+            this.refDistance = refDistance;
+            this.rolloff = rolloff;
+            this.maxDistance = maxDistance;
+            if (source != null) attenuate(source);
+            return this;
+        }
+
+        /**
+         * Sets the priority of this voice. Voices with higher priority are
+         * always given sources before those with lower priority.
+         */
+        public Voice setPriority(int priority)
+        {
+            this.priority = priority;
+            return this;
+        }
+
+        /**
+         * Sets whether this voice's position is relative to the listener. Must
+         * be set before playing.
+         */
+        public Voice setRelative(boolean relative)
+        {
+            this.relative = relative;
+            return this;
+        }
+
+        /**
+         * Sets whether this voice loops. Must be set before playing.
+         */
+        public Voice setLooping(boolean looping)
+        {
+            this.looping = looping;
+            return this;
+        }
+
+        /**
+         * Sets the playback position of this voice, in seconds.
+         */
+        public Voice setOffset(float seconds)
+        {
+            offset = seconds;
+            if (source != null) source.setOffset(seconds);
+            return this;
+        }
+
+        /**
+         * Returns the playback position of this voice, in seconds, as of the
+         * last update.
+         */
+        public float getOffset()
+        {
+            return offset;
+        }
+
+        /**
+         * Returns the duration of this voice's sound, in seconds.
+         */
+        public float getDuration()
+        {
+            return duration;
+        }
+
+        public boolean isPlaying()
+        {
+            return playing;
+        }
+
+        /**
+         * Returns whether this voice currently has a real source.
+         */
+        public boolean isReal()
+        {
+            return source != null;
+        }
+
+        private void attenuate(Source source)
+        {
+            source.paramf(AL_REFERENCE_DISTANCE, refDistance);
+            source.paramf(AL_ROLLOFF_FACTOR, rolloff);
+            source.paramf(AL_MAX_DISTANCE, maxDistance);
+        }
+
+        private float audibility(Vec3 listener)
+        {
+            float dist = relative ? Vec3.length(pos) : Vec3.dist(pos, listener);
+            dist = Math.min(Math.max(dist, refDistance), maxDistance);
+            float denom = refDistance + rolloff*(dist - refDistance);
+            return denom > 0.0f ? gain*refDistance/denom : gain;
+        }
+    }
+
+    //Most important voices first.
+    private static final Comparator<Voice> RANK = Comparator
+            .comparingInt((Voice v) -> v.priority).reversed()
+            .thenComparing((Voice v) -> v.audibility, Comparator.reverseOrder());
+
+    private final Source[] sources;
+    private final ArrayDeque<Source> pool = new ArrayDeque<>();
+    private final ArrayList<Voice> voices = new ArrayList<>();
+    private final ArrayList<Voice> ranked = new ArrayList<>();
+    private float minAudibility = 0.001f;
+    private int realVoices, virtualVoices;
+
+    VoiceManager(int maxSources)
+    {
+        if (maxSources <= 0) throw new IllegalArgumentException("Illegal source count.");
+        sources = new Source[maxSources];
+        for (int i=0; i<maxSources; i++)
+        {
+            sources[i] = new Source();
+            pool.add(sources[i]);
+        }
+    }
+
+    /**
+     * Creates a new, stopped voice for the given sound.
+     */
+    public Voice genVoice(Sound sound)
+    {
+        return new Voice(sound);
+    }
+
+    /**
+     * Creates a new voice for the given sound, and starts playing it.
+     */
+    public Voice play(Sound sound)
+    {
+        return new Voice(sound).play();
+    }
+
+    /**
+     * Sets how loud a voice must be heard to be given a source.
+     */
+    public void setMinAudibility(float minAudibility)
+    {
+        this.minAudibility = minAudibility;
+    }
+
+    private void release(Voice voice)
+    {
+        voice.source.stop();
+        voice.source.setSound(null);
+        pool.add(voice.source);
+        voice.source = null;
+    }
+
+    private void acquire(Voice voice)
+    {
+        Source source = pool.poll();
+        voice.source = source;
+        source.setSound(voice.sound);
+        source.setRelative(voice.relative);
+        source.setLooping(voice.looping);
+        voice.attenuate(source);
+        voice.apply();
+        source.setOffset(voice.offset);
+        source.play();
+    }
+
+    /**
+     * Advances every voice, and gives sources to the most important ones.
+     * Should be called once per frame.
+     *
+     * @param dt The time since the last update, in seconds.
+     * @param listener The position of the listener.
+     */
+    public void update(float dt, Vec3 listener)
+    {
+        DAL.checkState();
+
+        ranked.clear();
+        for (Iterator<Voice> it = voices.iterator(); it.hasNext();)
+        {
+            Voice voice = it.next();
+
+            if (voice.playing)
+            {
+                if (voice.source != null)
+                {
+                    if (voice.source.getState() == AL_STOPPED) voice.stop();
+                    else voice.offset = voice.source.getOffset();
+                }
+                else
+                {
+                    voice.offset += dt*voice.pitch;
+                    if (voice.offset >= voice.duration)
+                    {
+                        if (voice.looping && voice.duration > 0.0f) voice.offset %= voice.duration;
+                        else voice.stop();
+                    }
+                }
+            }
+
+            if (!voice.active)
+            {
+                if (voice.source != null) release(voice);
+                voice.listed = false;
+                it.remove();
+                continue;
+            }
+
+            voice.audibility = voice.audibility(listener);
+            if (voice.playing && voice.audibility >= minAudibility) ranked.add(voice);
+            else if (voice.source != null) release(voice);
+        }
+
+        ranked.sort(RANK);
+
+        for (int i=sources.length; i<ranked.size(); i++)
+        {
+            Voice voice = ranked.get(i);
+            if (voice.source != null) release(voice);
+        }
+
+        int real = Math.min(ranked.size(), sources.length);
+        for (int i=0; i<real; i++)
+        {
+            Voice voice = ranked.get(i);
+            if (voice.source == null) acquire(voice);
+        }
+
+        realVoices = real;
+        virtualVoices = 0;
+        for (Voice voice : voices) if (voice.playing && voice.source == null) virtualVoices++;
+    }
+
+    /**
+     * Returns the number of voices which are playing or paused.
+     */
+    public int getVoiceCount()
+    {
+        return voices.size();
+    }
+
+    /**
+     * Returns the number of voices which had real sources after the last
+     * update.
+     */
+    public int getRealVoiceCount()
+    {
+        return realVoices;
+    }
+
+    /**
+     * Returns the number of playing voices which were virtual after the last
+     * update.
+     */
+    public int getVirtualVoiceCount()
+    {
+        return virtualVoices;
+    }
+
+    /**
+     * Stops every voice and releases their sources.
+     */
+    public void stopAll()
+    {
+        for (Voice voice : voices)
+        {
+            if (voice.source != null) release(voice);
+            voice.playing = false;
+            voice.offset = 0.0f;
+            voice.active = false;
+            voice.listed = false;
+        }
+        voices.clear();
+        realVoices = 0;
+        virtualVoices = 0;
+    }
+
+    @Override
+    void delete()
+    {
+        stopAll();
+        for (Source source : sources) source.delete();
+    }
+}
@@ -0,0 +1,524 @@
+/*
+ * Copyright (c) 2022 Sam Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.samrj.devil.gl;
+
+import com.samrj.devil.graphics.TexUtil;
+import com.samrj.devil.math.Util.PrimType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.lwjgl.opengl.GL11C.*;
+import static org.lwjgl.opengl.GL12C.*;
+import static org.lwjgl.opengl.GL15C.*;
+import static org.lwjgl.opengl.GL21C.GL_PIXEL_UNPACK_BUFFER;
+import static org.lwjgl.opengl.GL30C.*;
+import static org.lwjgl.system.MemoryUtil.*;
+
+/**
+ * Loads textures without stalling the OpenGL thread. Images are decoded, and
+ * their mipmaps generated, on a pool of worker threads. Decoded images are
+ * then uploaded through a pixel buffer object during update(), which should be
+ * called once per frame, and which uploads at most a fixed number of bytes
+ * each time, splitting large images across several frames.
+ *
+ * Each load returns a handle, which gives a shared placeholder texture until
+ * the real texture is fully uploaded. All methods except those of the handles'
+ * futures must be called on the DGL thread.
+ *
+ * @author Samuel Johnson (SmashMaster)
+ */
+public final class AsyncTextureLoader extends DGLObj
+{
+    /**
+     * A texture which is being loaded asynchronously.
+     *
+     * @param <T> The type of texture being loaded.
+     */
+    public static final class Handle<T extends Texture<T>>
+    {
+        private final T placeholder;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private T texture;
+
+        private Handle(T placeholder)
+        {
+            this.placeholder = placeholder;
+        }
+
+        /**
+         * Returns the loaded texture if it is resident, or the placeholder
+         * otherwise. The placeholder is also returned if loading failed.
+         */
+        public T get()
+        {
+            return texture != null ? texture : placeholder;
+        }
+
+        /**
+         * Returns whether the texture has been fully uploaded.
+         */
+        public boolean isResident()
+        {
+            return texture != null;
+        }
+
+        /**
+         * Returns a future which completes on the DGL thread once the texture
+         * is resident, or exceptionally if it could not be loaded.
+         */
+        public CompletableFuture<T> future()
+        {
+            return future;
+        }
+    }
+
+    private static abstract class Job<T extends Texture<T>>
+    {
+        private final Handle<T> handle;
+        private final boolean mipmaps;
+        private List<Image[]> layers; //Mipmap chain of each layer, largest first.
+        private Throwable error;
+
+        private T texture;
+        private int layer, level, row;
+
+        private Job(Handle<T> handle, boolean mipmaps)
+        {
+            this.handle = handle;
+            this.mipmaps = mipmaps;
+        }
+
+        abstract T allocate(Image base, int format, int levels, int depth);
+        abstract void upload(int level, int layer, int row, int width, int rows, int dataFormat, int primType);
+
+        private int levels()
+        {
+            return layers.get(0).length;
+        }
+
+        private void free()
+        {
+            if (layers != null) for (Image[] chain : layers) for (Image image : chain)
+                if (image != null && !image.deleted()) image.delete();
+        }
+    }
+
+    /**
+     * A decode queued on the worker pool. Kept as its own type so that decodes
+     * which never started can be recovered from shutdownNow().
+     */
+    private final class DecodeTask implements Runnable
+    {
+        private final Job<?> job;
+        private final Path[] paths;
+
+        private DecodeTask(Job<?> job, Path[] paths)
+        {
+            this.job = job;
+            this.paths = paths;
+        }
+
+        @Override
+        public void run()
+        {
+            decode(job, paths);
+        }
+    }
+
+    private final ExecutorService workers;
+    private final long bytesPerFrame;
+    private final ArrayDeque<Job<?>> decoded = new ArrayDeque<>(); //Guarded by itself.
+    private final ArrayDeque<Job<?>> uploading = new ArrayDeque<>();
+    private final AtomicInteger decoding = new AtomicInteger();
+    private final BufferObject pbo;
+    private long pboSize;
+    private final Texture2D placeholder2D;
+    private final Texture2DArray placeholder2DArray;
+    private final Texture3D placeholder3D;
+    private long bytesUploaded, totalBytesUploaded;
+    private boolean deleted;
+
+    AsyncTextureLoader(int threads, long bytesPerFrame)
+    {
+        DGL.checkState();
+        if (threads <= 0) throw new IllegalArgumentException("Must use at least one worker thread.");
+        if (bytesPerFrame <= 0) throw new IllegalArgumentException("Upload budget must be positive.");
+
+        this.bytesPerFrame = bytesPerFrame;
+        workers = Executors.newFixedThreadPool(threads, runnable ->
+        {
+            Thread thread = new Thread(runnable, "DGL texture loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        pbo = DGL.genBufferObject(GL_PIXEL_UNPACK_BUFFER);
+
+        Image white = DGL.genImage(1, 1, 4, PrimType.BYTE);
+        white.buffer.put(0, new byte[] {-1, -1, -1, -1});
+        placeholder2D = DGL.loadTex2D(white);
+        placeholder2DArray = DGL.loadTex2DArray(white);
+        placeholder3D = DGL.loadTex3D(white);
+        DGL.delete(white);
+    }
+
+    /**
+     * Returns the number of mipmap levels in a full chain for the given size.
+     */
+    private static int levelCount(int width, int height)
+    {
+        return 32 - Integer.numberOfLeadingZeros(Math.max(width, height));
+    }
+
+    private void decode(Job<?> job, Path[] paths)
+    {
+        try
+        {
+            List<Image[]> layers = new ArrayList<>(paths.length);
+            job.layers = layers;
+
+            for (Path path : paths)
+            {
+                Image base = DGL.readImage(path.toFile());
+                Image[] chain = new Image[job.mipmaps ? levelCount(base.width, base.height) : 1];
+                chain[0] = base;
+                layers.add(chain);
+
+                Image first = layers.get(0)[0];
+                if (base.width != first.width || base.height != first.height || base.bands != first.bands || base.type != first.type)
+                    throw new IOException("Image " + path + " does not match the format of the first layer.");
+                if (TexUtil.getFormat(base) == -1) throw new IOException("Illegal image format in " + path);
+
+                for (int i=1; i<chain.length; i++)
+                {
+                    Image src = chain[i - 1];
+                    chain[i] = new Image(Math.max(src.width/2, 1), Math.max(src.height/2, 1), src.bands, src.type, false);
+                    ImageKernels.downsample(src, chain[i], ImageKernels.MipFilter.BOX, false);
+                }
+            }
+        }
+        catch (Throwable t)
+        {
+            job.free();
+            job.layers = null;
+            job.error = t;
+        }
+
+        synchronized (decoded)
+        {
+            if (!deleted) decoded.add(job);
+            else
+            {
+                job.free();
+                job.handle.future.cancel(false);
+            }
+        }
+        decoding.decrementAndGet();
+    }
+
+    private <T extends Texture<T>> Handle<T> submit(Job<T> job, Path[] paths)
+    {
+        if (deleted) throw new IllegalStateException("Texture loader deleted.");
+        if (paths.length == 0) throw new IllegalArgumentException("No images given.");
+
+        decoding.incrementAndGet();
+        workers.execute(new DecodeTask(job, paths.clone()));
+        return job.handle;
+    }
+
+    /**
+     * Asynchronously loads the image at the given path into a new 2D texture,
+     * optionally with a full chain of mipmaps.
+     */
+    public Handle<Texture2D> loadTex2D(Path path, boolean mipmaps)
+    {
+        return submit(new Job<Texture2D>(new Handle<>(placeholder2D), mipmaps)
+        {
+            @Override
+            Texture2D allocate(Image base, int format, int levels, int depth)
+            {
+                Texture2D texture = DGL.genTex2D().image(base.width, base.height, format);
+                int oldID = texture.tempBind();
+                int baseFormat = TexUtil.getBaseFormat(format), primType = TexUtil.getGLPrimitiveType(format);
+                for (int i=1; i<levels; i++) nglTexImage2D(GL_TEXTURE_2D, i, format,
+                        Math.max(base.width >> i, 1), Math.max(base.height >> i, 1), 0, baseFormat, primType, NULL);
+                texture.tempUnbind(oldID);
+                return texture;
+            }
+
+            @Override
+            void upload(int level, int layer, int row, int width, int rows, int dataFormat, int primType)
+            {
+                glTexSubImage2D(GL_TEXTURE_2D, level, 0, row, width, rows, dataFormat, primType, 0L);
+            }
+        }, new Path[] {path});
+    }
+
+    /**
+     * Asynchronously loads the images at the given paths into the layers of a
+     * new 2D texture array, optionally with a full chain of mipmaps. All images
+     * must have the same size and format.
+     */
+    public Handle<Texture2DArray> loadTex2DArray(boolean mipmaps, Path... paths)
+    {
+        return submit(new Job<Texture2DArray>(new Handle<>(placeholder2DArray), mipmaps)
+        {
+            @Override
+            Texture2DArray allocate(Image base, int format, int levels, int depth)
+            {
+                Texture2DArray texture = DGL.genTex2DArray().image(base.width, base.height, depth, format);
+                int oldID = texture.tempBind();
+                int baseFormat = TexUtil.getBaseFormat(format), primType = TexUtil.getGLPrimitiveType(format);
+                for (int i=1; i<levels; i++) nglTexImage3D(GL_TEXTURE_2D_ARRAY, i, format,
+                        Math.max(base.width >> i, 1), Math.max(base.height >> i, 1), depth, 0, baseFormat, primType, NULL);
+                texture.tempUnbind(oldID);
+                return texture;
+            }
+
+            @Override
+            void upload(int level, int layer, int row, int width, int rows, int dataFormat, int primType)
+            {
+                glTexSubImage3D(GL_TEXTURE_2D_ARRAY, level, 0, row, layer, width, rows, 1, dataFormat, primType, 0L);
+            }
+        }, paths);
+    }
+
+    /**
+     * Asynchronously loads the images at the given paths into the slices of a
+     * new 3D texture. All images must have the same size and format. Mipmaps
+     * of 3D textures shrink in depth as well, so they are not generated here;
+     * call generateMipmap() once the texture is resident if needed.
+     */
+    public Handle<Texture3D> loadTex3D(Path... paths)
+    {
+        return submit(new Job<Texture3D>(new Handle<>(placeholder3D), false)
+        {
+            @Override
+            Texture3D allocate(Image base, int format, int levels, int depth)
+            {
+                return DGL.genTex3D().image(base.width, base.height, depth, format);
+            }
+
+            @Override
+            void upload(int level, int layer, int row, int width, int rows, int dataFormat, int primType)
+            {
+                glTexSubImage3D(GL_TEXTURE_3D, level, 0, row, layer, width, rows, 1, dataFormat, primType, 0L);
+            }
+        }, paths);
+    }
+
+    /**
+     * Uploads as many rows of the given job as fit in the given budget, or at
+     * least one row. Returns the number of bytes uploaded.
+     */
+    private <T extends Texture<T>> long upload(Job<T> job, long budget)
+    {
+        Image[] chain = job.layers.get(job.layer);
+        Image image = chain[job.level];
+        int format = job.texture.getInternalFormat();
+        int dataFormat = TexUtil.getBaseFormat(format), primType = TexUtil.getGLPrimitiveType(format);
+
+        //Image buffers store rows bottom-up, as OpenGL expects.
+        int rowSize = image.width*image.bands*image.type.size;
+        int rows = (int)Math.max(Math.min(budget/rowSize, image.height - job.row), 1);
+        int size = rows*rowSize;
+
+        int oldPBO = pbo.tempBind();
+        if (size > pboSize) pboSize = Math.max(size, bytesPerFrame);
+        glBufferData(GL_PIXEL_UNPACK_BUFFER, pboSize, GL_STREAM_DRAW); //Orphan the previous upload.
+        ByteBuffer mapped = glMapBufferRange(GL_PIXEL_UNPACK_BUFFER, 0, size, GL_MAP_WRITE_BIT | GL_MAP_INVALIDATE_BUFFER_BIT);
+        memCopy(memAddress(image.buffer) + (long)job.row*rowSize, memAddress(mapped), size);
+        glUnmapBuffer(GL_PIXEL_UNPACK_BUFFER);
+
+        int oldID = job.texture.tempBind();
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+        job.upload(job.level, job.layer, job.row, image.width, rows, dataFormat, primType);
+        job.texture.tempUnbind(oldID);
+        pbo.tempUnbind(oldPBO);
+
+        job.row += rows;
+        if (job.row == image.height)
+        {
+            job.row = 0;
+            image.delete();
+            if (++job.level == chain.length)
+            {
+                job.level = 0;
+                job.layer++;
+            }
+        }
+
+        return size;
+    }
+
+    private <T extends Texture<T>> void begin(Job<T> job)
+    {
+        Image base = job.layers.get(0)[0];
+        int format = TexUtil.getFormat(base);
+        int levels = job.levels();
+        job.texture = job.allocate(base, format, levels, job.layers.size());
+
+        long bits = 0, texelBits = TexUtil.getBits(format); //Keeps the products in long arithmetic.
+        for (int i=0; i<levels; i++)
+            bits += texelBits*Math.max(base.width >> i, 1)*Math.max(base.height >> i, 1)*job.layers.size();
+        job.texture.setVRAMUsage(bits);
+
+        int oldID = job.texture.tempBind();
+        glTexParameteri(job.texture.target, GL_TEXTURE_BASE_LEVEL, 0);
+        glTexParameteri(job.texture.target, GL_TEXTURE_MAX_LEVEL, levels - 1);
+        if (levels > 1) glTexParameteri(job.texture.target, GL_TEXTURE_MIN_FILTER, GL_LINEAR_MIPMAP_LINEAR);
+        job.texture.tempUnbind(oldID);
+    }
+
+    private <T extends Texture<T>> void finish(Job<T> job)
+    {
+        job.handle.texture = job.texture;
+        job.handle.future.complete(job.texture);
+    }
+
+    /**
+     * Moves decoded images into the upload queue, then uploads queued images
+     * until this frame's budget is spent. Should be called once per frame.
+     */
+    public void update()
+    {
+        DGL.checkState();
+        if (deleted) throw new IllegalStateException("Texture loader deleted.");
+
+        synchronized (decoded)
+        {
+            uploading.addAll(decoded);
+            decoded.clear();
+        }
+
+        bytesUploaded = 0;
+        while (!uploading.isEmpty() && bytesUploaded < bytesPerFrame)
+        {
+            Job<?> job = uploading.peek();
+            if (job.error != null)
+            {
+                uploading.poll();
+                job.handle.future.completeExceptionally(job.error);
+                continue;
+            }
+
+            if (job.texture == null) begin(job);
+            bytesUploaded += upload(job, bytesPerFrame - bytesUploaded);
+
+            if (job.layer == job.layers.size())
+            {
+                uploading.poll();
+                finish(job);
+            }
+        }
+        totalBytesUploaded += bytesUploaded;
+    }
+
+    /**
+     * Returns the number of loads still being decoded by the worker threads.
+     */
+    public int getDecodeQueueDepth()
+    {
+        return decoding.get();
+    }
+
+    /**
+     * Returns the number of decoded loads waiting for or partway through
+     * upload.
+     */
+    public int getUploadQueueDepth()
+    {
+        synchronized (decoded)
+        {
+            return uploading.size() + decoded.size();
+        }
+    }
+
+    /**
+     * Returns the total number of loads which are not yet resident.
+     */
+    public int getQueueDepth()
+    {
+        return getDecodeQueueDepth() + getUploadQueueDepth();
+    }
+
+    /**
+     * Returns the number of bytes uploaded during the last update.
+     */
+    public long getBytesUploaded()
+    {
+        return bytesUploaded;
+    }
+
+    /**
+     * Returns the number of bytes uploaded since this loader was created.
+     */
+    public long getTotalBytesUploaded()
+    {
+        return totalBytesUploaded;
+    }
+
+    /**
+     * Stops all worker threads and frees any images which were not uploaded,
+     * along with any partially uploaded textures and the placeholders. Loads
+     * which never became resident are completed exceptionally.
+     */
+    @Override
+    void delete()
+    {
+        if (deleted) return;
+        List<Runnable> unstarted = workers.shutdownNow();
+        for (Runnable runnable : unstarted)
+        {
+            DecodeTask task = (DecodeTask)runnable;
+            task.job.handle.future.cancel(false);
+            decoding.decrementAndGet();
+        }
+
+        synchronized (decoded)
+        {
+            deleted = true;
+            uploading.addAll(decoded);
+            decoded.clear();
+        }
+
+        for (Job<?> job : uploading)
+        {
+            job.free();
+            if (job.texture != null) DGL.delete(job.texture);
+            job.handle.future.cancel(false);
+        }
+        uploading.clear();
+
+        DGL.delete(pbo, placeholder2D, placeholder2DArray, placeholder3D);
+    }
+}
@@ -0,0 +1,305 @@
+package com.samrj.devil.gl;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import static org.lwjgl.opengl.EXTTextureCompressionS3TC.*;
+import static org.lwjgl.opengl.EXTTextureSRGB.*;
+import static org.lwjgl.opengl.GL30C.*;
+import static org.lwjgl.opengl.GL42C.*;
+import static org.lwjgl.opengl.GL43C.*;
+import static org.lwjgl.system.MemoryUtil.*;
+
+/**
+ * Reads block-compressed textures from DDS and KTX2 container files. Each file
+ * is read once into native memory, which the resulting image owns and points
+ * straight into, so nothing is decoded or copied again until the data is
+ * uploaded to OpenGL. Files are not memory-mapped, so they are never left
+ * mapped or locked after their image is deleted.
+ *
+ * Supports BC1 through BC7 and ETC2/EAC formats, with any number of mipmap
+ * levels, array layers and cubemap faces. Volume textures and supercompressed
+ * KTX2 files are not supported.
+ *
+ * @author Samuel Johnson (SmashMaster)
+ * @copyright 2022 Samuel Johnson
+ * @license https://github.com/SmashMaster/DevilUtil/blob/master/LICENSE
+ */
+final class CompressedImageReader
+{
+    private static final int DDS_MAGIC = 0x20534444; //"DDS "
+    private static final int DDSD_MIPMAPCOUNT = 0x20000;
+    private static final int DDPF_FOURCC = 0x4;
+    private static final int DDSCAPS2_CUBEMAP = 0x200;
+    private static final int DDSCAPS2_VOLUME = 0x200000;
+    private static final int DDS_RESOURCE_MISC_TEXTURECUBE = 0x4;
+
+    private static final byte[] KTX2_IDENTIFIER = {(byte)0xAB, 'K', 'T', 'X', ' ', '2', '0', (byte)0xBB, '\r', '\n', 0x1A, '\n'};
+
+    private static int fourCC(String code)
+    {
+        return code.charAt(0) | code.charAt(1) << 8 | code.charAt(2) << 16 | code.charAt(3) << 24;
+    }
+
+    /**
+     * Returns the size in bytes of each 4x4 block of the given format.
+     */
+    private static int blockSize(int format)
+    {
+        return switch (format)
+        {
+            case GL_COMPRESSED_RGB_S3TC_DXT1_EXT, GL_COMPRESSED_RGBA_S3TC_DXT1_EXT,
+                 GL_COMPRESSED_SRGB_S3TC_DXT1_EXT, GL_COMPRESSED_SRGB_ALPHA_S3TC_DXT1_EXT,
+                 GL_COMPRESSED_RED_RGTC1, GL_COMPRESSED_SIGNED_RED_RGTC1,
+                 GL_COMPRESSED_RGB8_ETC2, GL_COMPRESSED_SRGB8_ETC2,
+                 GL_COMPRESSED_RGB8_PUNCHTHROUGH_ALPHA1_ETC2, GL_COMPRESSED_SRGB8_PUNCHTHROUGH_ALPHA1_ETC2,
+                 GL_COMPRESSED_R11_EAC, GL_COMPRESSED_SIGNED_R11_EAC -> 8;
+            default -> 16;
+        };
+    }
+
+    private static long levelSize(int format, int width, int height)
+    {
+        return ((width + 3L)/4)*((height + 3L)/4)*blockSize(format);
+    }
+
+    private static int dxgiFormat(int dxgi) throws IOException
+    {
+        return switch (dxgi)
+        {
+            case 71 -> GL_COMPRESSED_RGBA_S3TC_DXT1_EXT;
+            case 72 -> GL_COMPRESSED_SRGB_ALPHA_S3TC_DXT1_EXT;
+            case 74 -> GL_COMPRESSED_RGBA_S3TC_DXT3_EXT;
+            case 75 -> GL_COMPRESSED_SRGB_ALPHA_S3TC_DXT3_EXT;
+            case 77 -> GL_COMPRESSED_RGBA_S3TC_DXT5_EXT;
+            case 78 -> GL_COMPRESSED_SRGB_ALPHA_S3TC_DXT5_EXT;
+            case 80 -> GL_COMPRESSED_RED_RGTC1;
+            case 81 -> GL_COMPRESSED_SIGNED_RED_RGTC1;
+            case 83 -> GL_COMPRESSED_RG_RGTC2;
+            case 84 -> GL_COMPRESSED_SIGNED_RG_RGTC2;
+            case 95 -> GL_COMPRESSED_RGB_BPTC_UNSIGNED_FLOAT;
+            case 96 -> GL_COMPRESSED_RGB_BPTC_SIGNED_FLOAT;
+            case 98 -> GL_COMPRESSED_RGBA_BPTC_UNORM;
+            case 99 -> GL_COMPRESSED_SRGB_ALPHA_BPTC_UNORM;
+            default -> throw new IOException("Unsupported DXGI format " + dxgi);
+        };
+    }
+
+    private static int vkFormat(int vk) throws IOException
+    {
+        return switch (vk)
+        {
+            case 131 -> GL_COMPRESSED_RGB_S3TC_DXT1_EXT;
+            case 132 -> GL_COMPRESSED_SRGB_S3TC_DXT1_EXT;
+            case 133 -> GL_COMPRESSED_RGBA_S3TC_DXT1_EXT;
+            case 134 -> GL_COMPRESSED_SRGB_ALPHA_S3TC_DXT1_EXT;
+            case 135 -> GL_COMPRESSED_RGBA_S3TC_DXT3_EXT;
+            case 136 -> GL_COMPRESSED_SRGB_ALPHA_S3TC_DXT3_EXT;
+            case 137 -> GL_COMPRESSED_RGBA_S3TC_DXT5_EXT;
+            case 138 -> GL_COMPRESSED_SRGB_ALPHA_S3TC_DXT5_EXT;
+            case 139 -> GL_COMPRESSED_RED_RGTC1;
+            case 140 -> GL_COMPRESSED_SIGNED_RED_RGTC1;
+            case 141 -> GL_COMPRESSED_RG_RGTC2;
+            case 142 -> GL_COMPRESSED_SIGNED_RG_RGTC2;
+            case 143 -> GL_COMPRESSED_RGB_BPTC_UNSIGNED_FLOAT;
+            case 144 -> GL_COMPRESSED_RGB_BPTC_SIGNED_FLOAT;
+            case 145 -> GL_COMPRESSED_RGBA_BPTC_UNORM;
+            case 146 -> GL_COMPRESSED_SRGB_ALPHA_BPTC_UNORM;
+            case 147 -> GL_COMPRESSED_RGB8_ETC2;
+            case 148 -> GL_COMPRESSED_SRGB8_ETC2;
+            case 149 -> GL_COMPRESSED_RGB8_PUNCHTHROUGH_ALPHA1_ETC2;
+            case 150 -> GL_COMPRESSED_SRGB8_PUNCHTHROUGH_ALPHA1_ETC2;
+            case 151 -> GL_COMPRESSED_RGBA8_ETC2_EAC;
+            case 152 -> GL_COMPRESSED_SRGB8_ALPHA8_ETC2_EAC;
+            case 153 -> GL_COMPRESSED_R11_EAC;
+            case 154 -> GL_COMPRESSED_SIGNED_R11_EAC;
+            case 155 -> GL_COMPRESSED_RG11_EAC;
+            case 156 -> GL_COMPRESSED_SIGNED_RG11_EAC;
+            default -> throw new IOException("Unsupported Vulkan format " + vk);
+        };
+    }
+
+    /**
+     * Reads the whole file into a new little-endian buffer, which must be
+     * freed with memFree().
+     */
+    private static ByteBuffer load(Path path) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path))
+        {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) throw new IOException("Texture file sizes >2.15GB not supported.");
+            ByteBuffer buffer = memAlloc((int)size);
+            try
+            {
+                while (buffer.hasRemaining())
+                    if (channel.read(buffer) < 0) throw new EOFException("Texture file truncated while reading.");
+            }
+            catch (IOException e)
+            {
+                memFree(buffer);
+                throw e;
+            }
+            return buffer.clear().order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    private static void checkBounds(ByteBuffer buffer, long offset, long length) throws IOException
+    {
+        if (offset < 0 || length < 0 || offset + length > buffer.capacity())
+            throw new IOException("Texture data out of bounds of file.");
+    }
+
+    /**
+     * Checks the header counts against the size of the file before anything is
+     * allocated for them. Every level of every layer and face takes at least
+     * one block, so a corrupt header fails here rather than overflowing.
+     */
+    private static void checkCounts(ByteBuffer buffer, long dataOffset, int format, int width, int height,
+            int levels, int layers, int faces) throws IOException
+    {
+        if (width <= 0 || height <= 0) throw new IOException("Illegal texture size " + width + "x" + height);
+        if (levels <= 0 || levels > 32) throw new IOException("Illegal mipmap level count " + levels);
+        if (layers <= 0) throw new IOException("Illegal array layer count " + layers);
+        if (faces <= 0) throw new IOException("Illegal cubemap face count " + faces);
+        checkBounds(buffer, dataOffset, (long)levels*layers*faces*blockSize(format));
+    }
+
+    /**
+     * Reads the DDS image in the given buffer, which must be little-endian and
+     * allocated with memAlloc(). The image takes ownership of the buffer.
+     */
+    static ImageCompressed readDDS(ByteBuffer buffer) throws IOException
+    {
+        if (buffer.capacity() < 128 || buffer.getInt(0) != DDS_MAGIC) throw new IOException("Not a DDS file.");
+        if (buffer.getInt(4) != 124) throw new IOException("Corrupt DDS header.");
+
+        int flags = buffer.getInt(8);
+        int height = buffer.getInt(12);
+        int width = buffer.getInt(16);
+        int levels = (flags & DDSD_MIPMAPCOUNT) != 0 ? Math.max(buffer.getInt(28), 1) : 1;
+        int pixelFlags = buffer.getInt(80);
+        int fourCC = buffer.getInt(84);
+        int caps2 = buffer.getInt(112);
+
+        if ((caps2 & DDSCAPS2_VOLUME) != 0) throw new IOException("DDS volume textures not supported.");
+        if ((pixelFlags & DDPF_FOURCC) == 0) throw new IOException("Uncompressed DDS files not supported.");
+
+        int layers = 1;
+        int faces = (caps2 & DDSCAPS2_CUBEMAP) != 0 ? 6 : 1;
+        int dataOffset = 128;
+        int format;
+
+        if (fourCC == fourCC("DX10"))
+        {
+            if (buffer.capacity() < 148) throw new IOException("Corrupt DDS header.");
+            format = dxgiFormat(buffer.getInt(128));
+            if (buffer.getInt(132) == 4) throw new IOException("DDS volume textures not supported.");
+            if ((buffer.getInt(136) & DDS_RESOURCE_MISC_TEXTURECUBE) != 0) faces = 6;
+            layers = Math.max(buffer.getInt(140), 1);
+            dataOffset = 148;
+        }
+        else if (fourCC == fourCC("DXT1")) format = GL_COMPRESSED_RGBA_S3TC_DXT1_EXT;
+        else if (fourCC == fourCC("DXT3")) format = GL_COMPRESSED_RGBA_S3TC_DXT3_EXT;
+        else if (fourCC == fourCC("DXT5")) format = GL_COMPRESSED_RGBA_S3TC_DXT5_EXT;
+        else if (fourCC == fourCC("ATI1") || fourCC == fourCC("BC4U")) format = GL_COMPRESSED_RED_RGTC1;
+        else if (fourCC == fourCC("BC4S")) format = GL_COMPRESSED_SIGNED_RED_RGTC1;
+        else if (fourCC == fourCC("ATI2") || fourCC == fourCC("BC5U")) format = GL_COMPRESSED_RG_RGTC2;
+        else if (fourCC == fourCC("BC5S")) format = GL_COMPRESSED_SIGNED_RG_RGTC2;
+        else throw new IOException("Unsupported DDS FourCC " + Integer.toHexString(fourCC));
+
+        checkCounts(buffer, dataOffset, format, width, height, levels, layers, faces);
+
+        //DDS stores each layer and face with its whole mipmap chain, one after another.
+        int[] levelSizes = new int[levels];
+        for (int level=0; level<levels; level++)
+        {
+            long size = levelSize(format, Math.max(width >> level, 1), Math.max(height >> level, 1));
+            checkBounds(buffer, dataOffset, size);
+            levelSizes[level] = (int)size;
+        }
+
+        int[] offsets = new int[levels*layers*faces];
+        long offset = dataOffset;
+        for (int i=0; i<offsets.length; i++)
+        {
+            int size = levelSizes[i % levels];
+            checkBounds(buffer, offset, size);
+            offsets[i] = (int)offset;
+            offset += size;
+        }
+
+        return new ImageCompressed(width, height, format, levels, layers, faces, buffer, levelSizes, offsets);
+    }
+
+    /**
+     * Reads the KTX2 image in the given buffer, which must be little-endian and
+     * allocated with memAlloc(). The image takes ownership of the buffer.
+     */
+    static ImageCompressed readKTX2(ByteBuffer buffer) throws IOException
+    {
+        if (buffer.capacity() < 80) throw new IOException("Not a KTX2 file.");
+        for (int i=0; i<KTX2_IDENTIFIER.length; i++)
+            if (buffer.get(i) != KTX2_IDENTIFIER[i]) throw new IOException("Not a KTX2 file.");
+
+        int format = vkFormat(buffer.getInt(12));
+        int width = buffer.getInt(20);
+        int height = buffer.getInt(24);
+        int depth = buffer.getInt(28);
+        int layers = Math.max(buffer.getInt(32), 1);
+        int faces = buffer.getInt(36);
+        int levels = Math.max(buffer.getInt(40), 1);
+        int supercompression = buffer.getInt(44);
+
+        if (depth > 0) throw new IOException("KTX2 volume textures not supported.");
+        if (faces != 1 && faces != 6) throw new IOException("Illegal KTX2 face count " + faces);
+        if (supercompression != 0) throw new IOException("Supercompressed KTX2 files not supported.");
+        checkCounts(buffer, 80 + levels*24L, format, width, height, levels, layers, faces);
+
+        //KTX2 stores each level with all of its layers and faces, one after another.
+        int[] levelSizes = new int[levels];
+        int[] offsets = new int[levels*layers*faces];
+        for (int level=0; level<levels; level++)
+        {
+            long levelOffset = buffer.getLong(80 + level*24);
+            long levelLength = buffer.getLong(88 + level*24);
+            long size = levelSize(format, Math.max(width >> level, 1), Math.max(height >> level, 1));
+            if (levelLength != size*layers*faces) throw new IOException("Illegal KTX2 level size.");
+            checkBounds(buffer, levelOffset, levelLength);
+
+            levelSizes[level] = (int)size;
+            for (int layer=0; layer<layers; layer++) for (int face=0; face<faces; face++)
+                offsets[(layer*faces + face)*levels + level] = (int)(levelOffset + (layer*faces + face)*size);
+        }
+
+        return new ImageCompressed(width, height, format, levels, layers, faces, buffer, levelSizes, offsets);
+    }
+
+    /**
+     * Reads the given DDS or KTX2 file, and returns an image which owns and
+     * points into the file's data. The image is not tracked by DGL. May be
+     * called from any thread.
+     */
+    static ImageCompressed read(Path path) throws IOException
+    {
+        ByteBuffer buffer = load(path);
+        try
+        {
+            if (buffer.capacity() >= 4 && buffer.getInt(0) == DDS_MAGIC) return readDDS(buffer);
+            return readKTX2(buffer);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            memFree(buffer);
+            throw e;
+        }
+    }
+
+    private CompressedImageReader()
+    {
+    }
+}
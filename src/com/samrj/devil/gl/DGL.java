@@ -35,6 +35,11 @@ import java.awt.image.BufferedImage;
 import java.awt.image.Raster;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.util.Collections;
 import java.util.IdentityHashMap;
@@ -47,7 +52,8 @@ import static org.lwjgl.opengl.GL31C.glDrawArraysInstanced;
 import static org.lwjgl.opengl.GL31C.glDrawElementsInstanced;
 import static org.lwjgl.opengl.GL43C.GL_CONTEXT_FLAG_DEBUG_BIT;
 import static org.lwjgl.opengl.GL43C.glMultiDrawElementsIndirect;
-import static org.lwjgl.system.MemoryUtil.memGetInt;
+import static org.lwjgl.stb.STBImage.*;
+import static org.lwjgl.system.MemoryUtil.*;
 
 /**
  * DevilGL. A state-based, object-oriented, forward compatible OpenGL wrapper;
@@ -145,6 +151,13 @@ public final class DGL
         return obj;
     }
 
+    private static Image gen(Image image)
+    {
+        image.tracked = true;
+        objects.add(image);
+        return image;
+    }
+
     // <editor-fold defaultstate="collapsed" desc="Shader methods">
 
     public static GLSLPreprocessor genGLSLPreprocessor()
@@ -379,6 +392,43 @@ public final class DGL
         return gen(new ImageCompressed(width, height, format));
     }
 
+    /**
+     * Reads the given DDS or KTX2 file and returns a compressed image
+     * containing all of its mipmap levels, array layers and cubemap faces. The
+     * file is read once into native memory, which the image points straight
+     * into and frees when deleted; nothing is decoded.
+     *
+     * @param path The path of a DDS or KTX2 file.
+     * @return A new compressed image.
+     * @throws IOException If the file cannot be read or is not supported.
+     */
+    public static ImageCompressed loadImageCompressed(Path path) throws IOException
+    {
+        checkState();
+        return gen(CompressedImageReader.read(path));
+    }
+
+    /**
+     * Returns a compressed image loaded from the DDS or KTX2 file at the given
+     * path.
+     */
+    public static ImageCompressed loadImageCompressed(String path) throws IOException
+    {
+        return loadImageCompressed(Path.of(path));
+    }
+
+    /**
+     * Buffers the given raster into a new image which is not tracked by DGL,
+     * and may be allocated on any thread.
+     */
+    private static Image readImage(Raster raster)
+    {
+        PrimType type = Image.getType(raster);
+        if (type == null) throw new IllegalArgumentException("Given raster is not bufferable.");
+
+        return new Image(raster.getWidth(), raster.getHeight(), raster.getNumBands(), type, false).buffer(raster);
+    }
+
     /**
      * Allocates an image  buffer for the given raster, then buffers the raster
      * in it. Returns the allocated buffer.
@@ -388,18 +438,107 @@ public final class DGL
      */
     public static Image loadImage(Raster raster)
     {
-        PrimType type = Image.getType(raster);
-        if (type == null) throw new IllegalArgumentException("Given raster is not bufferable.");
+        checkState();
+        return gen(readImage(raster));
+    }
+
+    /**
+     * Decodes the given encoded image with STB, straight into a new image which
+     * is not tracked by DGL. Returns null if STB cannot decode it. May be
+     * called from any thread.
+     */
+    static Image decodeImage(ByteBuffer encoded)
+    {
+        try (MemoryStack stack = MemoryStack.stackPush())
+        {
+            IntBuffer width = stack.mallocInt(1);
+            IntBuffer height = stack.mallocInt(1);
+            IntBuffer bands = stack.mallocInt(1);
+
+            if (stbi_is_hdr_from_memory(encoded))
+            {
+                FloatBuffer pixels = stbi_loadf_from_memory(encoded, width, height, bands, 0);
+                if (pixels == null) return null;
+                try
+                {
+                    return new Image(width.get(0), height.get(0), bands.get(0), PrimType.FLOAT, false).buffer(memByteBuffer(pixels));
+                }
+                finally
+                {
+                    stbi_image_free(pixels);
+                }
+            }
+            else if (stbi_is_16_bit_from_memory(encoded))
+            {
+                ShortBuffer pixels = stbi_load_16_from_memory(encoded, width, height, bands, 0);
+                if (pixels == null) return null;
+                try
+                {
+                    return new Image(width.get(0), height.get(0), bands.get(0), PrimType.CHAR, false).buffer(memByteBuffer(pixels));
+                }
+                finally
+                {
+                    stbi_image_free(pixels);
+                }
+            }
+            else
+            {
+                ByteBuffer pixels = stbi_load_from_memory(encoded, width, height, bands, 0);
+                if (pixels == null) return null;
+                try
+                {
+                    return new Image(width.get(0), height.get(0), bands.get(0), PrimType.BYTE, false).buffer(pixels);
+                }
+                finally
+                {
+                    stbi_image_free(pixels);
+                }
+            }
+        }
+    }
 
-        return genImage(raster.getWidth(), raster.getHeight(), raster.getNumBands(), type).buffer(raster);
+    /**
+     * Decodes the given PNG, JPEG, TGA, BMP, PSD, GIF or HDR image from memory, and returns it in a
+     * newly allocated Image buffer. 16-bit images are loaded as unsigned shorts, and HDR images as
+     * floats. The given buffer must be direct.
+     */
+    public static Image loadImage(ByteBuffer encoded) throws IOException
+    {
+        checkState();
+        Image image = decodeImage(encoded);
+        if (image == null) throw new IOException("Cannot decode image: " + stbi_failure_reason());
+        return gen(image);
     }
 
     /**
-     * Loads an image from the given file path, and returns it in a newly allocated Image buffer.
+     * Reads the image in the given file into a new image which is not tracked
+     * by DGL. May be called from any thread.
      */
-    public static Image loadImage(File file) throws IOException
+    static Image readImage(File file) throws IOException
     {
         if (!file.canRead()) throw new IOException("Cannot read file " + file);
+
+        ByteBuffer encoded;
+        try (FileChannel channel = FileChannel.open(file.toPath()))
+        {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) throw new IOException("Image file sizes >2.15GB not supported.");
+
+            encoded = memAlloc((int)size);
+            while (encoded.hasRemaining() && channel.read(encoded) >= 0);
+            encoded.flip();
+        }
+
+        try
+        {
+            Image image = decodeImage(encoded);
+            if (image != null) return image;
+        }
+        finally
+        {
+            memFree(encoded);
+        }
+
         BufferedImage bImage = ImageIO.read(file);
 
         if (bImage == null) throw new IOException("Cannot read image from " + file);
@@ -411,10 +550,21 @@ public final class DGL
             Graphics2D graphics = rgbImage.createGraphics();
             graphics.drawImage(bImage, 0, 0, null);
             graphics.dispose();
-            return loadImage(rgbImage.getRaster());
+            return readImage(rgbImage.getRaster());
         }
 
-        return loadImage(bImage.getRaster());
+        return readImage(bImage.getRaster());
+    }
+
+    /**
+     * Loads an image from the given file path, and returns it in a newly allocated Image buffer.
+     * Formats supported by STB are decoded natively; see loadImage(ByteBuffer). Anything else is
+     * read through ImageIO.
+     */
+    public static Image loadImage(File file) throws IOException
+    {
+        checkState();
+        return gen(readImage(file));
     }
 
     public static Image loadImage(Path path) throws IOException
@@ -791,6 +941,19 @@ public final class DGL
         return loadTex2DArray(paths);
     }
     
+    /**
+     * Creates a loader which decodes textures on the given number of worker
+     * threads, and uploads at most the given number of bytes per frame.
+     *
+     * @param threads The number of worker threads to decode images on.
+     * @param bytesPerFrame The upload budget of each call to update().
+     * @return A new asynchronous texture loader.
+     */
+    public static AsyncTextureLoader genAsyncTextureLoader(int threads, long bytesPerFrame)
+    {
+        return gen(new AsyncTextureLoader(threads, bytesPerFrame));
+    }
+    
     /**
      * Generates a new OpenGL name for a multisampled 2D texture.
      * 
@@ -810,6 +973,16 @@ public final class DGL
     {
         return gen(new TextureCubemap());
     }
+    
+    /**
+     * Generates a new OpenGL name for a buffer texture.
+     * 
+     * @return A new buffer texture object.
+     */
+    public static TextureBuffer genTextureBuffer()
+    {
+        return gen(new TextureBuffer());
+    }
     // </editor-fold>
     // <editor-fold defaultstate="collapsed" desc="RBO methods">
     /**
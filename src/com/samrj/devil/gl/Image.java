@@ -29,7 +29,9 @@ import com.samrj.devil.math.Vec3;
 import com.samrj.devil.math.Vec4;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
 import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
 import java.awt.image.Raster;
 import java.awt.image.WritableRaster;
 import java.nio.ByteBuffer;
@@ -119,11 +121,38 @@ public final class Image extends DGLObj
     public final int size;
     public final ByteBuffer buffer;
     
+    boolean tracked;
     private boolean deleted;
     
+    /**
+     * Allocates a new image which is not tracked by DGL. Such images may be
+     * allocated and used on any thread, even without an OpenGL context, as
+     * when baking images on a headless machine. They must be freed with
+     * free() rather than DGL.delete().
+     * 
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param bands The number of color bands, from one to four.
+     * @param type The primitive type of each sample.
+     * @return A new untracked image.
+     */
+    public static Image allocateUntracked(int width, int height, int bands, PrimType type)
+    {
+        return new Image(width, height, bands, type, false);
+    }
+    
     Image(int width, int height, int bands, PrimType type)
     {
-        DGL.checkState();
+        this(width, height, bands, type, true);
+    }
+    
+    /**
+     * Images constructed without checking DGL state may be allocated on any
+     * thread, but are not tracked by DGL, so they must be deleted directly.
+     */
+    Image(int width, int height, int bands, PrimType type, boolean checkState)
+    {
+        if (checkState) DGL.checkState();
         if (width < 0 || height < 0)
             throw new IllegalArgumentException("Illegal dimensions specified.");
         if (bands <= 0 || bands > 4)
@@ -276,6 +305,10 @@ public final class Image extends DGLObj
      * format of the raster is not compatible with this image buffer, or if the
      * raster's size is not equal to this buffer's size.
      * 
+     * Rows are copied in bulk rather than sample by sample. Byte rasters which
+     * store their pixels interleaved in a single array, which includes most
+     * images read by ImageIO, are swizzled straight out of that array.
+     * 
      * @param raster The image raster to buffer.
      * @return This image.
      */
@@ -288,23 +321,108 @@ public final class Image extends DGLObj
             throw new IllegalArgumentException("Not enough bands supplied.");
         if (getType(raster) != type) throw new IllegalArgumentException("Illegal raster format supplied.");
         
-        Sampler s;
-        switch (type)
+        int minX = raster.getMinX(), minY = raster.getMinY();
+        int rasterBands = raster.getNumBands();
+        buffer.clear();
+        
+        if (type == PrimType.BYTE && raster.getSampleModel() instanceof ComponentSampleModel && raster.getDataBuffer().getNumBanks() == 1)
         {
-            case BYTE: s = (x, y, b) -> buffer.put((byte)raster.getSample(x, y, b)); break;
-            case CHAR: s = (x, y, b) -> buffer.putChar((char)raster.getSample(x, y, b)); break;
-            case SHORT: s = (x, y, b) -> buffer.putShort((short)raster.getSample(x, y, b)); break;
-            case INT: s = (x, y, b) -> buffer.putInt(raster.getSample(x, y, b)); break;
-            case FLOAT: s = (x, y, b) -> buffer.putFloat(raster.getSampleFloat(x, y, b)); break;
-            default: throw new IllegalArgumentException();
+            ComponentSampleModel model = (ComponentSampleModel)raster.getSampleModel();
+            byte[] data = ((DataBufferByte)raster.getDataBuffer()).getData();
+            int pixelStride = model.getPixelStride();
+            int scanlineStride = model.getScanlineStride();
+            int[] bandOffsets = model.getBandOffsets();
+            int origin = raster.getDataBuffer().getOffset()
+                    + (minY - raster.getSampleModelTranslateY())*scanlineStride
+                    + (minX - raster.getSampleModelTranslateX())*pixelStride;
+            byte[] row = new byte[width*bands];
+            
+            for (int y=0; y<height; y++)
+            {
+                int src = origin + y*scanlineStride;
+                int i = 0;
+                for (int x=0; x<width; x++, src += pixelStride)
+                    for (int b=0; b<bands; b++) row[i++] = data[src + bandOffsets[b]];
+                buffer.put(index(0, y, 0), row);
+            }
+        }
+        else if (type == PrimType.FLOAT)
+        {
+            float[] pixels = new float[width*rasterBands];
+            for (int y=0; y<height; y++)
+            {
+                raster.getPixels(minX, minY + y, width, 1, pixels);
+                int dst = index(0, y, 0);
+                for (int x=0; x<width; x++)
+                    for (int b=0; b<bands; b++, dst += 4) buffer.putFloat(dst, pixels[x*rasterBands + b]);
+            }
+        }
+        else
+        {
+            int[] pixels = new int[width*rasterBands];
+            for (int y=0; y<height; y++)
+            {
+                raster.getPixels(minX, minY + y, width, 1, pixels);
+                int dst = index(0, y, 0);
+                for (int x=0; x<width; x++) for (int b=0; b<bands; b++, dst += type.size)
+                {
+                    int v = pixels[x*rasterBands + b];
+                    switch (type)
+                    {
+                        case BYTE: buffer.put(dst, (byte)v); break;
+                        case CHAR: buffer.putChar(dst, (char)v); break;
+                        case SHORT: buffer.putShort(dst, (short)v); break;
+                        case INT: buffer.putInt(dst, v); break;
+                    }
+                }
+            }
         }
         
+        return this;
+    }
+    
+    /**
+     * Buffers tightly packed pixel data into this image. The data must have
+     * the same band count and primitive type as this image, in the native byte
+     * order, and its rows must be stored from top to bottom, as most image
+     * decoders produce them. Each row is copied in bulk.
+     * 
+     * @param pixels The pixel data to buffer, starting at its position.
+     * @return This image.
+     */
+    public Image buffer(ByteBuffer pixels)
+    {
+        if (deleted) throw new IllegalStateException("Image buffer deleted.");
+        if (pixels.remaining() < size)
+            throw new IllegalArgumentException("Not enough pixel data supplied.");
+        
+        int rowSize = width*bands*type.size;
+        int src = pixels.position();
+        for (int y=0; y<height; y++, src += rowSize) buffer.put(index(0, y, 0), pixels, src, rowSize);
         buffer.clear();
-        sample(s);
-        buffer.flip();
         return this;
     }
     
+    private void shadeRows(Shader shader, int y0, int y1)
+    {
+        for (int y=y0; y<y1; y++)
+        {
+            int i = index(0, y, 0);
+            for (int x=0; x<width; x++) for (int b=0; b<bands; b++, i += type.size)
+            {
+                double v = shader.shade(x, y, b);
+                switch (type)
+                {
+                    case BYTE: buffer.put(i, (byte)v); break;
+                    case CHAR: buffer.putChar(i, (char)v); break;
+                    case SHORT: buffer.putShort(i, (short)v); break;
+                    case INT: buffer.putInt(i, (int)v); break;
+                    case FLOAT: buffer.putFloat(i, (float)v); break;
+                }
+            }
+        }
+    }
+    
     /**
      * Writes data into this image based on the given function.
      * 
@@ -315,20 +433,25 @@ public final class Image extends DGLObj
     {
         if (deleted) throw new IllegalStateException("Image buffer deleted.");
         
-        Sampler s;
-        switch (type)
-        {
-            case BYTE: s = (x, y, b) -> buffer.put((byte)shader.shade(x, y, b)); break;
-            case CHAR: s = (x, y, b) -> buffer.putChar((char)shader.shade(x, y, b)); break;
-            case SHORT: s = (x, y, b) -> buffer.putShort((short)shader.shade(x, y, b)); break;
-            case INT: s = (x, y, b) -> buffer.putInt((int)shader.shade(x, y, b)); break;
-            case FLOAT: s = (x, y, b) -> buffer.putFloat((float)shader.shade(x, y, b)); break;
-            default: throw new IllegalArgumentException();
-        }
+        buffer.clear();
+        for (int y=height-1; y>=0; y--) shadeRows(shader, y, y + 1);
+        return this;
+    }
+    
+    /**
+     * Writes data into this image based on the given function, splitting rows
+     * across the common ForkJoinPool. The function may be called concurrently
+     * from several threads, and in any order, so it must be thread-safe.
+     * 
+     * @param shader The function to use.
+     * @return This image.
+     */
+    public Image shadeParallel(Shader shader)
+    {
+        if (deleted) throw new IllegalStateException("Image buffer deleted.");
         
         buffer.clear();
-        sample(s);
-        buffer.flip();
+        ImageKernels.forEachRow(height, width*bands, (y0, y1) -> shadeRows(shader, y0, y1));
         return this;
     }
     
@@ -400,6 +523,20 @@ public final class Image extends DGLObj
         return deleted;
     }
     
+    /**
+     * Frees this image's native memory, if it is not tracked by DGL. Used for
+     * images from allocateUntracked(), or which were decoded off the DGL
+     * thread. Does nothing if this image is already deleted.
+     * 
+     * @throws IllegalStateException If DGL tracks this image, in which case
+     *         it must be deleted with DGL.delete() instead.
+     */
+    public void free()
+    {
+        if (tracked) throw new IllegalStateException("Image is tracked by DGL; use DGL.delete().");
+        if (!deleted) delete();
+    }
+    
     @Override
     void delete()
     {
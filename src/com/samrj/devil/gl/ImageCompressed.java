@@ -5,7 +5,9 @@ import java.nio.ByteBuffer;
 import static org.lwjgl.system.MemoryUtil.*;
 
 /**
- * Data container for compressed images.
+ * Data container for compressed images. May hold a full chain of mipmap
+ * levels, and several array layers or cubemap faces, as read from a texture
+ * container file by {@link CompressedImageReader}.
  * 
  * @author Samuel Johnson (SmashMaster)
  * @copyright 2019 Samuel Johnson
@@ -15,9 +17,12 @@ public class ImageCompressed extends DGLObj
 {
     public final int width, height;
     public final int format;
+    public final int levels, layers, faces;
     
     private int size = -1;
     private ByteBuffer buffer;
+    private int[] levelSizes;
+    private int[] offsets; //Indexed by (layer*faces + face)*levels + level.
     private boolean deleted;
     
     /**
@@ -38,6 +43,37 @@ public class ImageCompressed extends DGLObj
         this.width = width;
         this.height = height;
         this.format = format;
+        levels = 1;
+        layers = 1;
+        faces = 1;
+    }
+    
+    /**
+     * Wraps compressed data, such as a whole texture file, and takes ownership
+     * of it. The buffer must have been allocated with memAlloc(), and is freed
+     * when this image is deleted. Does not check DGL state, so it may be
+     * constructed on any thread, but is not tracked by DGL until registered.
+     */
+    ImageCompressed(int width, int height, int format, int levels, int layers, int faces,
+            ByteBuffer buffer, int[] levelSizes, int[] offsets)
+    {
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException("Illegal dimensions specified.");
+        if (levels <= 0 || layers <= 0 || faces <= 0)
+            throw new IllegalArgumentException("Illegal level, layer or face count.");
+        if (levelSizes.length != levels || offsets.length != levels*layers*faces)
+            throw new IllegalArgumentException("Illegal data layout.");
+        
+        this.width = width;
+        this.height = height;
+        this.format = format;
+        this.levels = levels;
+        this.layers = layers;
+        this.faces = faces;
+        this.buffer = buffer;
+        this.levelSizes = levelSizes;
+        this.offsets = offsets;
+        size = levelSizes[0];
     }
     
     /**
@@ -53,6 +89,8 @@ public class ImageCompressed extends DGLObj
         
         this.size = size;
         buffer = memAlloc(size);
+        levelSizes = new int[] {size};
+        offsets = new int[] {0};
         return this;
     }
     
@@ -65,21 +103,72 @@ public class ImageCompressed extends DGLObj
     }
     
     /**
-     * @return The native memory location for this image buffer.
+     * @return The native memory location of the first mipmap level, array
+     *         layer and cubemap face, or NULL if unallocated.
      */
     public long address()
     {
-        return memAddressSafe(buffer);
+        return buffer != null ? address(0, 0, 0) : NULL;
     }
     
     /**
-     * @return The size of this image data in bytes, or -1 if unallocated.
+     * @return The size in bytes of the first mipmap level, array layer and
+     *         cubemap face, or -1 if unallocated.
      */
     public int size()
     {
         return size;
     }
     
+    /**
+     * Returns the width of the given mipmap level.
+     */
+    public int width(int level)
+    {
+        return Math.max(width >> level, 1);
+    }
+    
+    /**
+     * Returns the height of the given mipmap level.
+     */
+    public int height(int level)
+    {
+        return Math.max(height >> level, 1);
+    }
+    
+    /**
+     * Returns the size in bytes of one layer and face of the given mipmap
+     * level.
+     */
+    public int size(int level)
+    {
+        if (buffer == null) throw new IllegalStateException("Buffer not allocated.");
+        return levelSizes[level];
+    }
+    
+    /**
+     * Returns the native memory location of the given mipmap level, array
+     * layer and cubemap face.
+     */
+    public long address(int level, int layer, int face)
+    {
+        if (buffer == null) throw new IllegalStateException("Buffer not allocated.");
+        if (level < 0 || level >= levels || layer < 0 || layer >= layers || face < 0 || face >= faces)
+            throw new IndexOutOfBoundsException();
+        return memAddress(buffer) + offsets[(layer*faces + face)*levels + level];
+    }
+    
+    /**
+     * Returns the total size in bytes of every level, layer and face.
+     */
+    public long dataSize()
+    {
+        if (buffer == null) return 0;
+        long total = 0;
+        for (int level=0; level<levels; level++) total += (long)levelSizes[level]*layers*faces;
+        return total;
+    }
+    
     /**
      * @return Whether this image has been deleted.
      */
@@ -0,0 +1,324 @@
+package com.samrj.devil.gl;
+
+import com.samrj.devil.math.Util.PrimType;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Multithreaded CPU kernels for images: mipmap downsampling and format
+ * conversion. Each kernel splits rows across the common ForkJoinPool, and
+ * reads and writes samples with absolute indices, so they may be called from
+ * any thread on images which are not being modified elsewhere.
+ *
+ * Samples are converted to normalized floats while filtering: unsigned bytes
+ * and chars map to [0, 1], shorts and ints to [-1, 1], and floats are used
+ * as-is. When sRGB is requested, the color bands of integer images are
+ * treated as sRGB-encoded, and filtered in linear space. Alpha, the last band
+ * of two and four band images, is always linear, as are float images.
+ *
+ * @author Samuel Johnson (SmashMaster)
+ * @copyright 2022 Samuel Johnson
+ * @license https://github.com/SmashMaster/DevilUtil/blob/master/LICENSE
+ */
+public final class ImageKernels
+{
+    /**
+     * Filters which may be used to downsample images.
+     */
+    public enum MipFilter
+    {
+        /**
+         * Averages each 2x2 block of pixels. Fast, but slightly blurry.
+         */
+        BOX(0, new float[] {0.5f, 0.5f}),
+
+        /**
+         * Kaiser-windowed sinc over six pixels in each direction. Keeps more
+         * detail than the box filter, and rings slightly at hard edges.
+         */
+        KAISER(-2, kaiser(3, 4.0));
+
+        private final int offset;
+        private final float[] weights;
+
+        private MipFilter(int offset, float[] weights)
+        {
+            this.offset = offset;
+            this.weights = weights;
+        }
+    }
+
+    private static final int GRAIN = 1 << 14; //Samples per task.
+    private static final float[] SRGB_TO_LINEAR = new float[256];
+
+    static
+    {
+        for (int i=0; i<256; i++) SRGB_TO_LINEAR[i] = srgbToLinear(i/255.0f);
+    }
+
+    /**
+     * Zeroth-order modified Bessel function of the first kind.
+     */
+    private static double bessel0(double x)
+    {
+        double sum = 1.0, term = 1.0, halfSq = x*x*0.25;
+        for (int k=1; k<32; k++)
+        {
+            term *= halfSq/(k*k);
+            sum += term;
+        }
+        return sum;
+    }
+
+    /**
+     * Returns normalized weights of a Kaiser-windowed sinc filter for halving
+     * an image, for the 2*radius source pixels centered on each result pixel.
+     */
+    private static float[] kaiser(int radius, double beta)
+    {
+        float[] weights = new float[radius*2];
+        double sum = 0.0;
+        for (int i=0; i<weights.length; i++)
+        {
+            double d = i - radius + 0.5;
+            double t = d*0.5*Math.PI;
+            double sinc = t == 0.0 ? 1.0 : Math.sin(t)/t;
+            double r = d/radius;
+            double window = bessel0(beta*Math.sqrt(Math.max(1.0 - r*r, 0.0)))/bessel0(beta);
+            weights[i] = (float)(sinc*window);
+            sum += weights[i];
+        }
+        for (int i=0; i<weights.length; i++) weights[i] /= sum;
+        return weights;
+    }
+
+    public static float srgbToLinear(float v)
+    {
+        return v <= 0.04045f ? v/12.92f : (float)Math.pow((v + 0.055f)/1.055f, 2.4);
+    }
+
+    public static float linearToSrgb(float v)
+    {
+        return v <= 0.0031308f ? v*12.92f : (float)(1.055*Math.pow(v, 1.0/2.4) - 0.055);
+    }
+
+    /**
+     * Operates on a range of rows, from y0 inclusive to y1 exclusive.
+     */
+    @FunctionalInterface
+    public interface RowKernel
+    {
+        void rows(int y0, int y1);
+    }
+
+    @SuppressWarnings("serial") //Never serialized.
+    private static final class RowTask extends RecursiveAction
+    {
+        private final RowKernel kernel;
+        private final int y0, y1, grain;
+
+        private RowTask(RowKernel kernel, int y0, int y1, int grain)
+        {
+            this.kernel = kernel;
+            this.y0 = y0;
+            this.y1 = y1;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (y1 - y0 <= grain) kernel.rows(y0, y1);
+            else
+            {
+                int mid = (y0 + y1) >>> 1;
+                invokeAll(new RowTask(kernel, y0, mid, grain), new RowTask(kernel, mid, y1, grain));
+            }
+        }
+    }
+
+    /**
+     * Runs the given kernel over the given number of rows, splitting them
+     * across the common ForkJoinPool if there are enough samples.
+     */
+    public static void forEachRow(int height, int samplesPerRow, RowKernel kernel)
+    {
+        int grain = Math.max(GRAIN/Math.max(samplesPerRow, 1), 1);
+        if (height <= grain) kernel.rows(0, height);
+        else ForkJoinPool.commonPool().invoke(new RowTask(kernel, 0, height, grain));
+    }
+
+    private static int alphaBand(Image image)
+    {
+        return image.bands == 2 || image.bands == 4 ? image.bands - 1 : -1;
+    }
+
+    private static float read(Image image, int index)
+    {
+        switch (image.type)
+        {
+            case BYTE: return Byte.toUnsignedInt(image.buffer.get(index))/255.0f;
+            case CHAR: return image.buffer.getChar(index)/65535.0f;
+            case SHORT: return Math.max(image.buffer.getShort(index)/32767.0f, -1.0f);
+            case INT: return (float)Math.max(image.buffer.getInt(index)/2147483647.0, -1.0);
+            case FLOAT: return image.buffer.getFloat(index);
+            default: throw new IllegalArgumentException();
+        }
+    }
+
+    private static float readLinear(Image image, int index, boolean srgb)
+    {
+        if (!srgb || image.type == PrimType.FLOAT) return read(image, index);
+        if (image.type == PrimType.BYTE) return SRGB_TO_LINEAR[Byte.toUnsignedInt(image.buffer.get(index))];
+        return srgbToLinear(read(image, index));
+    }
+
+    private static void write(Image image, int index, float v)
+    {
+        switch (image.type)
+        {
+            case BYTE: image.buffer.put(index, (byte)Math.round(Math.min(Math.max(v, 0.0f), 1.0f)*255.0f)); break;
+            case CHAR: image.buffer.putChar(index, (char)Math.round(Math.min(Math.max(v, 0.0f), 1.0f)*65535.0f)); break;
+            case SHORT: image.buffer.putShort(index, (short)Math.round(Math.min(Math.max(v, -1.0f), 1.0f)*32767.0f)); break;
+            case INT: image.buffer.putInt(index, (int)Math.round(Math.min(Math.max(v, -1.0f), 1.0f)*2147483647.0)); break;
+            case FLOAT: image.buffer.putFloat(index, v); break;
+            default: throw new IllegalArgumentException();
+        }
+    }
+
+    private static void writeLinear(Image image, int index, float v, boolean srgb)
+    {
+        write(image, index, srgb && image.type != PrimType.FLOAT ? linearToSrgb(Math.max(v, 0.0f)) : v);
+    }
+
+    /**
+     * Downsamples the given image into the given target, which must be half
+     * its size, rounded down to no less than one pixel, with the same number of
+     * bands. The target may have a different primitive type.
+     *
+     * @param src The image to downsample.
+     * @param dst The image to write the result into.
+     * @param filter The filter to downsample with.
+     * @param srgb Whether color bands of integer images are sRGB-encoded.
+     * @return The target image.
+     */
+    public static Image downsample(Image src, Image dst, MipFilter filter, boolean srgb)
+    {
+        if (src.deleted() || dst.deleted()) throw new IllegalStateException("Image buffer deleted.");
+        if (dst.width != Math.max(src.width/2, 1) || dst.height != Math.max(src.height/2, 1))
+            throw new IllegalArgumentException("Target must be half the size of the source.");
+        if (dst.bands != src.bands) throw new IllegalArgumentException("Band count mismatch.");
+
+        int bands = src.bands, alpha = alphaBand(src);
+        int width = dst.width, rowSize = width*bands;
+        float[] weights = filter.weights;
+        int taps = weights.length;
+
+        //Split target rows into a few bands per thread, so that scratch space is allocated once per band.
+        int numBands = Math.min(dst.height, ForkJoinPool.getCommonPoolParallelism()*4);
+        long samplesPerBand = (long)dst.height*rowSize*taps*2/numBands;
+
+        forEachRow(numBands, (int)Math.min(samplesPerBand, Integer.MAX_VALUE), (band0, band1) ->
+        {
+            //Horizontally filtered source rows in linear space, for one filter footprint. Consecutive target rows
+            //share most of their source rows, so each is kept in slot sy % taps until it leaves the footprint.
+            float[] rows = new float[taps*rowSize];
+            int[] slotRow = new int[taps];
+            Arrays.fill(slotRow, Integer.MIN_VALUE);
+
+            for (int y=band0*dst.height/numBands; y<band1*dst.height/numBands; y++)
+            {
+                for (int t=0; t<taps; t++)
+                {
+                    int sy = y*2 + filter.offset + t;
+                    int slot = Math.floorMod(sy, taps);
+                    if (slotRow[slot] == sy) continue;
+                    slotRow[slot] = sy;
+
+                    int row = Math.min(Math.max(sy, 0), src.height - 1);
+                    for (int x=0, i=slot*rowSize; x<width; x++) for (int b=0; b<bands; b++, i++)
+                    {
+                        boolean color = srgb && b != alpha;
+                        float sum = 0.0f;
+                        for (int u=0; u<taps; u++)
+                        {
+                            int sx = Math.min(Math.max(x*2 + filter.offset + u, 0), src.width - 1);
+                            sum += weights[u]*readLinear(src, src.index(sx, row, b), color);
+                        }
+                        rows[i] = sum;
+                    }
+                }
+
+                for (int x=0; x<width; x++) for (int b=0; b<bands; b++)
+                {
+                    float sum = 0.0f;
+                    for (int t=0; t<taps; t++)
+                    {
+                        int slot = Math.floorMod(y*2 + filter.offset + t, taps);
+                        sum += weights[t]*rows[slot*rowSize + x*bands + b];
+                    }
+                    writeLinear(dst, dst.index(x, y, b), sum, srgb && b != alpha);
+                }
+            }
+        });
+
+        return dst;
+    }
+
+    /**
+     * Converts the given image into the given target, which must be the same
+     * size, but may have any primitive type and number of bands. Single color
+     * band images are expanded to gray, missing alpha is set to one, and extra
+     * bands are dropped.
+     *
+     * @param src The image to convert.
+     * @param dst The image to write the result into.
+     * @param srgb Whether color bands of integer images are sRGB-encoded.
+     * @return The target image.
+     */
+    public static Image convert(Image src, Image dst, boolean srgb)
+    {
+        if (src.deleted() || dst.deleted()) throw new IllegalStateException("Image buffer deleted.");
+        if (dst.width != src.width || dst.height != src.height)
+            throw new IllegalArgumentException("Image size mismatch.");
+
+        int srcAlpha = alphaBand(src), dstAlpha = alphaBand(dst);
+        int srcColors = srcAlpha >= 0 ? src.bands - 1 : src.bands;
+        int[] source = new int[dst.bands]; //Source band of each target band, or -1 for one.
+        for (int b=0; b<dst.bands; b++)
+        {
+            if (b == dstAlpha) source[b] = srcAlpha;
+            else source[b] = srcColors == 1 ? 0 : (b < srcColors ? b : -1);
+        }
+
+        boolean sameType = src.type == dst.type; //Samples may be copied straight through.
+
+        forEachRow(dst.height, dst.width*dst.bands, (y0, y1) ->
+        {
+            for (int y=y0; y<y1; y++) for (int x=0; x<dst.width; x++) for (int b=0; b<dst.bands; b++)
+            {
+                int i = dst.index(x, y, b);
+                int s = source[b];
+                if (s < 0) write(dst, i, b == dstAlpha ? 1.0f : 0.0f);
+                else if (sameType)
+                {
+                    int si = src.index(x, y, s);
+                    for (int k=0; k<dst.type.size; k++) dst.buffer.put(i + k, src.buffer.get(si + k));
+                }
+                else
+                {
+                    boolean color = srgb && b != dstAlpha;
+                    writeLinear(dst, i, readLinear(src, src.index(x, y, s), color), color);
+                }
+            }
+        });
+
+        return dst;
+    }
+
+    private ImageKernels()
+    {
+    }
+}
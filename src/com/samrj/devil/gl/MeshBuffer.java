@@ -109,8 +109,8 @@ public class MeshBuffer extends DGLObj implements VertexData
         
         attributes = new HashMap<>();
         
-        Profiler.addUsedVRAM(mesh.vertexData.remaining()*8L);
-        Profiler.addUsedVRAM(indexData.remaining()*8L);
+        Profiler.addUsedVRAM(Profiler.Category.MESHES, mesh.vertexData.remaining()*8L);
+        Profiler.addUsedVRAM(Profiler.Category.MESHES, indexData.remaining()*8L);
     }
     
     private void setName(Attribute att, String name)
@@ -182,8 +182,8 @@ public class MeshBuffer extends DGLObj implements VertexData
     @Override
     void delete()
     {
-        Profiler.removeUsedVRAM(mesh.vertexData.remaining()*8L);
-        Profiler.removeUsedVRAM((edges ? mesh.edgeIndexData : mesh.indexData).remaining()*8L);
+        Profiler.removeUsedVRAM(Profiler.Category.MESHES, mesh.vertexData.remaining()*8L);
+        Profiler.removeUsedVRAM(Profiler.Category.MESHES, (edges ? mesh.edgeIndexData : mesh.indexData).remaining()*8L);
         
         glDeleteBuffers(vbo);
         glDeleteBuffers(ibo);
@@ -2,48 +2,92 @@ package com.samrj.devil.gl;
 
 /**
  * General graphics performance/resource usage profiling class.
- * 
+ *
  * @author Samuel Johnson (SmashMaster)
  * @copyright 2016 Samuel Johnson
  * @license https://github.com/SmashMaster/DevilUtil/blob/master/LICENSE
  */
 public final class Profiler
 {
-    private static long usedVRAM;
-    
     /**
-     * Adds the given number of bits to the internal VRAM usage counter. Is
-     * called automatically for all DevilUtil classes. May be negative to
-     * indicate VRAM no longer in use.
-     * 
+     * Kinds of resources which video memory usage is tracked for.
+     */
+    public enum Category
+    {
+        TEXTURES, RENDERBUFFERS, MESHES, STREAMS, OTHER;
+    }
+
+    private static final Category[] CATEGORIES = Category.values();
+    private static final long[] usedVRAM = new long[CATEGORIES.length];
+
+    /**
+     * Adds the given number of bits to the VRAM usage counter for the given
+     * category. Is called automatically for all DevilUtil classes. May be
+     * negative to indicate VRAM no longer in use.
+     *
+     * @param category The kind of resource using the memory.
      * @param bits A number of bits to add.
      */
-    public static void addUsedVRAM(long bits)
+    public static void addUsedVRAM(Category category, long bits)
     {
-        usedVRAM += bits;
+        usedVRAM[category.ordinal()] += bits;
     }
-    
+
     /**
-     * Removes the given number of bits from the internal VRAM usage counter. Is
-     * called automatically for all DevilUtil classes.
-     * 
+     * Removes the given number of bits from the VRAM usage counter for the
+     * given category. Is called automatically for all DevilUtil classes.
+     *
+     * @param category The kind of resource which was using the memory.
+     * @param bits A number of bits to remove.
+     */
+    public static void removeUsedVRAM(Category category, long bits)
+    {
+        if (bits < 0) throw new IllegalArgumentException();
+        usedVRAM[category.ordinal()] -= bits;
+    }
+
+    /**
+     * Adds the given number of bits to the internal VRAM usage counter, under
+     * the OTHER category. May be negative to indicate VRAM no longer in use.
+     *
      * @param bits A number of bits to add.
      */
+    public static void addUsedVRAM(long bits)
+    {
+        addUsedVRAM(Category.OTHER, bits);
+    }
+
+    /**
+     * Removes the given number of bits from the internal VRAM usage counter,
+     * under the OTHER category.
+     *
+     * @param bits A number of bits to remove.
+     */
     public static void removeUsedVRAM(long bits)
     {
-        if (bits < 0) throw new IllegalArgumentException();
-        usedVRAM -= bits;
+        removeUsedVRAM(Category.OTHER, bits);
+    }
+
+    /**
+     * Returns approximately how many bits of video memory are currently being
+     * used by DevilUtil for the given category.
+     */
+    public static long getUsedVRAM(Category category)
+    {
+        return usedVRAM[category.ordinal()];
     }
-    
+
     /**
      * Returns approximately how many bits of video memory are currently being
      * used by DevilUtil.
      */
     public static long getUsedVRAM()
     {
-        return usedVRAM;
+        long total = 0;
+        for (long bits : usedVRAM) total += bits;
+        return total;
     }
-    
+
     private Profiler()
     {
     }
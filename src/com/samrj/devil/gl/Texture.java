@@ -23,6 +23,7 @@
 package com.samrj.devil.gl;
 
 import static org.lwjgl.opengl.GL11C.*;
+import static org.lwjgl.opengl.GL12C.GL_TEXTURE_BASE_LEVEL;
 import static org.lwjgl.opengl.GL13C.glActiveTexture;
 import static org.lwjgl.opengl.GL30C.glGenerateMipmap;
 
@@ -36,6 +37,7 @@ public abstract class Texture<T extends Texture<T>> extends DGLObj
 {
     public final int id, target, binding;
     int internalFormat = GL_NONE;
+    int baseLevel;
     private boolean deleted;
     private boolean hasMipmaps;
     private long vramUsage;
@@ -76,9 +78,45 @@ public abstract class Texture<T extends Texture<T>> extends DGLObj
         if (bits < 0) throw new IllegalArgumentException();
         if (deleted) return;
         if (hasMipmaps) bits *= 2;
-        Profiler.addUsedVRAM(bits - vramUsage);
+        Profiler.addUsedVRAM(Profiler.Category.TEXTURES, bits - vramUsage);
         vramUsage = bits;
     }
+    
+    final void addVRAMUsage(long bits)
+    {
+        if (deleted) return;
+        Profiler.addUsedVRAM(Profiler.Category.TEXTURES, bits);
+        vramUsage += bits;
+    }
+    
+    /**
+     * Makes level zero the base level again after a new image is specified.
+     * The texture must be bound.
+     */
+    final void resetBaseLevel()
+    {
+        if (baseLevel == 0) return;
+        glTexParameteri(target, GL_TEXTURE_BASE_LEVEL, 0);
+        baseLevel = 0;
+    }
+    
+    /**
+     * Returns approximately how many bits of video memory this texture uses.
+     */
+    public final long getVRAMUsage()
+    {
+        return vramUsage;
+    }
+    
+    /**
+     * Returns the lowest mipmap level of this texture which is resident in
+     * video memory. Levels below it have been evicted to save memory, and are
+     * not sampled from. Zero unless mipmap levels have been evicted.
+     */
+    public final int getBaseLevel()
+    {
+        return baseLevel;
+    }
 
     /**
      * Returns the OpenGL format of this uploaded texture, or GL_NONE if it has no storage.
@@ -130,7 +168,7 @@ public abstract class Texture<T extends Texture<T>> extends DGLObj
     @Override
     final void delete()
     {
-        Profiler.removeUsedVRAM(vramUsage);
+        Profiler.removeUsedVRAM(Profiler.Category.TEXTURES, vramUsage);
         glDeleteTextures(id);
         deleted = true;
     }
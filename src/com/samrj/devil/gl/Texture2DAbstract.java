@@ -25,6 +25,8 @@ package com.samrj.devil.gl;
 import com.samrj.devil.graphics.TexUtil;
 
 import static org.lwjgl.opengl.GL11C.*;
+import static org.lwjgl.opengl.GL12C.GL_TEXTURE_BASE_LEVEL;
+import static org.lwjgl.opengl.GL12C.GL_TEXTURE_MAX_LEVEL;
 import static org.lwjgl.opengl.GL13C.nglCompressedTexImage2D;
 import static org.lwjgl.system.MemoryUtil.NULL;
 
@@ -84,6 +86,7 @@ abstract class Texture2DAbstract<T extends Texture2DAbstract<T>> extends Texture
         int oldID = tempBind();
         nglTexImage2D(target, 0, format, width, height, 0, baseFormat, primType, NULL);
         internalFormat = format;
+        resetBaseLevel();
         tempUnbind(oldID);
         
         setVRAMUsage(TexUtil.getBits(format)*width*height);
@@ -116,6 +119,7 @@ abstract class Texture2DAbstract<T extends Texture2DAbstract<T>> extends Texture
         glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
         glTexImage2D(target, 0, format, width, height, 0, dataFormat, primType, image.buffer);
         internalFormat = format;
+        resetBaseLevel();
         tempUnbind(oldID);
         
         setVRAMUsage(TexUtil.getBits(format)*width*height);
@@ -139,7 +143,8 @@ abstract class Texture2DAbstract<T extends Texture2DAbstract<T>> extends Texture
     }
     
     /**
-     * Uploads the given compressed image to this texture. After calling, the
+     * Uploads the given compressed image, with all of its mipmap levels, to
+     * this texture. Only the first layer and face are used. After calling, the
      * image may be safely deleted from memory. Any previous image data
      * associated with this texture is released.
      * 
@@ -153,12 +158,20 @@ abstract class Texture2DAbstract<T extends Texture2DAbstract<T>> extends Texture
         width = image.width;
         height = image.height;
         
+        long bytes = 0;
         int oldID = tempBind();
-        nglCompressedTexImage2D(target, 0, image.format, width, height, 0, image.size(), image.address());
+        for (int level=0; level<image.levels; level++)
+        {
+            nglCompressedTexImage2D(target, level, image.format, image.width(level), image.height(level), 0,
+                    image.size(level), image.address(level, 0, 0));
+            bytes += image.size(level);
+        }
+        glTexParameteri(target, GL_TEXTURE_MAX_LEVEL, image.levels - 1);
         internalFormat = image.format;
+        resetBaseLevel();
         tempUnbind(oldID);
         
-        setVRAMUsage(image.size());
+        setVRAMUsage(bytes*8);
         
         return getThis();
     }
@@ -234,6 +247,83 @@ abstract class Texture2DAbstract<T extends Texture2DAbstract<T>> extends Texture
         return download(image, internalFormat);
     }
 
+    /**
+     * Returns the number of bits used by the given mipmap level.
+     */
+    long levelBits(int level)
+    {
+        long texelBits = TexUtil.getBits(internalFormat); //Keeps the product in long arithmetic.
+        return texelBits*Math.max(width >> level, 1)*Math.max(height >> level, 1);
+    }
+    
+    /**
+     * Frees every mipmap level below the given level from video memory, and
+     * makes it the base level, so only the smaller levels are sampled from.
+     * Evicted levels may be restored one at a time with streamLevel(). Only
+     * uncompressed formats are supported.
+     * 
+     * @param baseLevel The new base level. May not be below the current one.
+     * @return This texture.
+     */
+    public T evictLevels(int baseLevel)
+    {
+        if (baseLevel < this.baseLevel) throw new IllegalArgumentException("Use streamLevel() to restore levels.");
+        if (baseLevel == this.baseLevel) return getThis();
+        if (TexUtil.isCompressed(internalFormat))
+            throw new IllegalStateException("Cannot evict levels of a compressed texture.");
+        if (baseLevel >= TexUtil.getLevelCount(getWidth(), getHeight()))
+            throw new IllegalArgumentException("Level " + baseLevel + " is past the smallest mipmap level.");
+        
+        int dataFormat = TexUtil.getBaseFormat(internalFormat);
+        int primType = TexUtil.getGLPrimitiveType(internalFormat);
+        
+        int oldID = tempBind();
+        glTexParameteri(target, GL_TEXTURE_BASE_LEVEL, baseLevel);
+        for (int level=this.baseLevel; level<baseLevel; level++)
+        {
+            nglTexImage2D(target, level, internalFormat, 0, 0, 0, dataFormat, primType, NULL);
+            addVRAMUsage(-levelBits(level));
+        }
+        this.baseLevel = baseLevel;
+        tempUnbind(oldID);
+        
+        return getThis();
+    }
+    
+    /**
+     * Uploads the given image to the evicted mipmap level just below the base
+     * level, and makes it the new base level. The image must be the size of
+     * that level, and match this texture's format.
+     * 
+     * @param image The image to upload to the GPU.
+     * @return This texture.
+     */
+    public T streamLevel(Image image)
+    {
+        if (baseLevel == 0) throw new IllegalStateException("No evicted levels to restore.");
+        if (image.deleted()) throw new IllegalStateException("Image is deleted.");
+        
+        int level = baseLevel - 1;
+        if (image.width != Math.max(width >> level, 1) || image.height != Math.max(height >> level, 1))
+            throw new IllegalArgumentException("Incompatible image dimensions.");
+        
+        int dataFormat = TexUtil.getBaseFormat(internalFormat);
+        if (image.bands != TexUtil.getBands(dataFormat))
+            throw new IllegalArgumentException("Incompatible format bands.");
+        
+        int primType = TexUtil.getGLPrimitiveType(internalFormat);
+        int oldID = tempBind();
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+        glTexImage2D(target, level, internalFormat, image.width, image.height, 0, dataFormat, primType, image.buffer);
+        glTexParameteri(target, GL_TEXTURE_BASE_LEVEL, level);
+        baseLevel = level;
+        tempUnbind(oldID);
+        
+        addVRAMUsage(levelBits(level));
+        
+        return getThis();
+    }
+
     @Override
     public String toString()
     {
@@ -1,8 +1,14 @@
 package com.samrj.devil.gl;
 
+import com.samrj.devil.graphics.TexUtil;
+
 import static org.lwjgl.opengl.GL11C.*;
+import static org.lwjgl.opengl.GL12C.*;
+import static org.lwjgl.opengl.GL13C.nglCompressedTexImage3D;
+import static org.lwjgl.opengl.GL13C.nglCompressedTexSubImage3D;
 import static org.lwjgl.opengl.GL30C.GL_TEXTURE_2D_ARRAY;
 import static org.lwjgl.opengl.GL30C.GL_TEXTURE_BINDING_2D_ARRAY;
+import static org.lwjgl.system.MemoryUtil.NULL;
 
 /**
  * 2D texture array class.
@@ -25,6 +31,128 @@ public final class Texture2DArray extends Texture3DAbstract<Texture2DArray>
         tempUnbind(oldID);
     }
 
+    /**
+     * Uploads each layer of the given compressed image, with all of its mipmap
+     * levels, to this texture. After calling, the image may be safely deleted
+     * from memory. Any previous image data associated with this texture is
+     * released.
+     * 
+     * @param image The compressed image to upload. Must not be a cubemap.
+     * @return This texture.
+     */
+    public Texture2DArray image(ImageCompressed image)
+    {
+        if (image.deleted()) throw new IllegalStateException("Image is deleted.");
+        if (image.faces != 1) throw new IllegalArgumentException("Cannot upload cubemap to 2D texture array.");
+        
+        width = image.width;
+        height = image.height;
+        depth = image.layers;
+        
+        long bytes = 0;
+        int oldID = tempBind();
+        for (int level=0; level<image.levels; level++)
+        {
+            int w = image.width(level), h = image.height(level), size = image.size(level);
+            nglCompressedTexImage3D(target, level, image.format, w, h, depth, 0, size*depth, NULL);
+            for (int layer=0; layer<depth; layer++) nglCompressedTexSubImage3D(target, level, 0, 0, layer,
+                    w, h, 1, image.format, size, image.address(level, layer, 0));
+            bytes += (long)size*depth;
+        }
+        glTexParameteri(target, GL_TEXTURE_MAX_LEVEL, image.levels - 1);
+        internalFormat = image.format;
+        resetBaseLevel();
+        tempUnbind(oldID);
+        
+        setVRAMUsage(bytes*8);
+        
+        return this;
+    }
+    
+    /**
+     * Returns the number of bits used by the given mipmap level, over all
+     * layers.
+     */
+    long levelBits(int level)
+    {
+        long texelBits = TexUtil.getBits(internalFormat); //Keeps the product in long arithmetic.
+        return texelBits*Math.max(width >> level, 1)*Math.max(height >> level, 1)*depth;
+    }
+    
+    /**
+     * Frees every mipmap level below the given level from video memory, for
+     * all layers, and makes it the base level, so only the smaller levels are
+     * sampled from. Evicted levels may be restored one at a time with
+     * streamLevel(). Only uncompressed formats are supported.
+     * 
+     * @param baseLevel The new base level. May not be below the current one.
+     * @return This texture.
+     */
+    public Texture2DArray evictLevels(int baseLevel)
+    {
+        if (baseLevel < this.baseLevel) throw new IllegalArgumentException("Use streamLevel() to restore levels.");
+        if (baseLevel == this.baseLevel) return this;
+        if (TexUtil.isCompressed(internalFormat))
+            throw new IllegalStateException("Cannot evict levels of a compressed texture.");
+        if (baseLevel >= TexUtil.getLevelCount(getWidth(), getHeight()))
+            throw new IllegalArgumentException("Level " + baseLevel + " is past the smallest mipmap level.");
+        
+        int dataFormat = TexUtil.getBaseFormat(internalFormat);
+        int primType = TexUtil.getGLPrimitiveType(internalFormat);
+        
+        int oldID = tempBind();
+        glTexParameteri(target, GL_TEXTURE_BASE_LEVEL, baseLevel);
+        for (int level=this.baseLevel; level<baseLevel; level++)
+        {
+            nglTexImage3D(target, level, internalFormat, 0, 0, 0, 0, dataFormat, primType, NULL);
+            addVRAMUsage(-levelBits(level));
+        }
+        this.baseLevel = baseLevel;
+        tempUnbind(oldID);
+        
+        return this;
+    }
+    
+    /**
+     * Uploads the given images to the evicted mipmap level just below the base
+     * level, one per layer, and makes it the new base level. The images must
+     * be the size of that level, and match this texture's format.
+     * 
+     * @param layers The images to upload to the GPU, one for each layer.
+     * @return This texture.
+     */
+    public Texture2DArray streamLevel(Image... layers)
+    {
+        if (baseLevel == 0) throw new IllegalStateException("No evicted levels to restore.");
+        if (layers.length != depth) throw new IllegalArgumentException("Expected " + depth + " layers.");
+        
+        int level = baseLevel - 1;
+        int w = Math.max(width >> level, 1), h = Math.max(height >> level, 1);
+        int dataFormat = TexUtil.getBaseFormat(internalFormat);
+        for (Image image : layers)
+        {
+            if (image.deleted()) throw new IllegalStateException("Image is deleted.");
+            if (image.width != w || image.height != h)
+                throw new IllegalArgumentException("Incompatible image dimensions.");
+            if (image.bands != TexUtil.getBands(dataFormat))
+                throw new IllegalArgumentException("Incompatible format bands.");
+        }
+        
+        int primType = TexUtil.getGLPrimitiveType(internalFormat);
+        int oldID = tempBind();
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+        nglTexImage3D(target, level, internalFormat, w, h, depth, 0, dataFormat, primType, NULL);
+        for (int layer=0; layer<depth; layer++)
+            glTexSubImage3D(target, level, 0, 0, layer, w, h, 1, dataFormat, primType, layers[layer].buffer);
+        glTexParameteri(target, GL_TEXTURE_BASE_LEVEL, level);
+        baseLevel = level;
+        tempUnbind(oldID);
+        
+        addVRAMUsage(levelBits(level));
+        
+        return this;
+    }
+    
     @Override
     Texture2DArray getThis()
     {
@@ -18,7 +18,7 @@ import static org.lwjgl.system.MemoryUtil.NULL;
  */
 abstract class Texture3DAbstract<T extends Texture3DAbstract<T>> extends Texture<T>
 {
-    private int width, height, depth;
+    int width, height, depth;
     
     Texture3DAbstract(int target, int binding)
     {
@@ -75,6 +75,7 @@ abstract class Texture3DAbstract<T extends Texture3DAbstract<T>> extends Texture
         int oldID = tempBind();
         nglTexImage3D(target, 0, format, width, height, depth, 0, baseFormat, primType, NULL);
         internalFormat = format;
+        resetBaseLevel();
         tempUnbind(oldID);
         
         setVRAMUsage(TexUtil.getBits(format)*width*height*depth);
@@ -0,0 +1,57 @@
+package com.samrj.devil.gl;
+
+import static org.lwjgl.opengl.GL31C.*;
+
+/**
+ * OpenGL buffer texture class. Exposes the contents of a buffer object to
+ * shaders as a one-dimensional texture, read with {@code texelFetch()}.
+ * 
+ * @author Samuel Johnson (SmashMaster)
+ * @copyright 2022 Samuel Johnson
+ * @license https://github.com/SmashMaster/DevilUtil/blob/master/LICENSE
+ */
+public final class TextureBuffer extends Texture<TextureBuffer>
+{
+    private BufferObject buffer;
+    
+    TextureBuffer()
+    {
+        super(GL_TEXTURE_BUFFER, GL_TEXTURE_BINDING_BUFFER);
+    }
+    
+    @Override
+    TextureBuffer getThis()
+    {
+        return this;
+    }
+    
+    /**
+     * @return The buffer this texture reads from, or null if it has none.
+     */
+    public BufferObject getBuffer()
+    {
+        return buffer;
+    }
+    
+    /**
+     * Attaches the storage of the given buffer object to this texture. The
+     * texture does not own the buffer, so no VRAM usage is counted here.
+     * 
+     * @param buffer The buffer to read texels from.
+     * @param format The sized internal format of each texel.
+     * @return This texture.
+     */
+    public TextureBuffer buffer(BufferObject buffer, int format)
+    {
+        if (buffer == null) throw new NullPointerException();
+        
+        this.buffer = buffer;
+        
+        int oldID = tempBind();
+        glTexBuffer(target, format, buffer.id);
+        internalFormat = format;
+        tempUnbind(oldID);
+        
+        return this;
+    }
+}
@@ -5,6 +5,7 @@ import com.samrj.devil.math.Util.PrimType;
 
 import static org.lwjgl.opengl.GL11C.*;
 import static org.lwjgl.opengl.GL12C.GL_CLAMP_TO_EDGE;
+import static org.lwjgl.opengl.GL12C.GL_TEXTURE_MAX_LEVEL;
 import static org.lwjgl.opengl.GL12C.GL_TEXTURE_WRAP_R;
 import static org.lwjgl.opengl.GL13C.*;
 import static org.lwjgl.system.MemoryUtil.NULL;
@@ -118,6 +119,39 @@ public final class TextureCubemap extends Texture<TextureCubemap>
         return image(images, format);
     }
 
+    /**
+     * Uploads each face of the given compressed image, with all of its mipmap
+     * levels, to this cubemap. Only the first layer is used. After calling,
+     * the image may be safely deleted from memory.
+     *
+     * @param image The compressed cubemap to upload.
+     * @return This texture.
+     */
+    public TextureCubemap image(ImageCompressed image)
+    {
+        if (image.deleted()) throw new IllegalStateException("Image is deleted.");
+        if (image.faces != 6) throw new IllegalArgumentException("Expected 6 faces, got " + image.faces);
+        if (image.width != image.height) throw new IllegalArgumentException("Cubemap faces must be square.");
+
+        size = image.width;
+
+        long bytes = 0;
+        int oldID = tempBind();
+        for (int level=0; level<image.levels; level++)
+        {
+            for (int i=0; i<6; i++) nglCompressedTexImage2D(GL_TEXTURE_CUBE_MAP_POSITIVE_X + i, level, image.format,
+                    image.width(level), image.height(level), 0, image.size(level), image.address(level, 0, i));
+            bytes += image.size(level)*6L;
+        }
+        glTexParameteri(target, GL_TEXTURE_MAX_LEVEL, image.levels - 1);
+        internalFormat = image.format;
+        tempUnbind(oldID);
+
+        setVRAMUsage(bytes*8);
+
+        return getThis();
+    }
+
     /**
      * Downloads one face of this cubemap into the given image.
      */
@@ -0,0 +1,438 @@
+/*
+ * Copyright (c) 2022 Sam Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.samrj.devil.gl;
+
+import com.samrj.devil.graphics.TexUtil;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Keeps a set of mipmapped textures within a video memory budget, by evicting
+ * and restoring their largest mipmap levels. Textures which are used each
+ * frame report how far away they were seen; each is given as many levels as
+ * its distance calls for, and textures which have gone unused are cut down to
+ * their smallest level. When that is over budget, levels are taken from the
+ * least recently used, and then most distant, textures first.
+ *
+ * Evictions happen immediately, but restored levels are loaded from each
+ * texture's source and uploaded at most a fixed number of bytes per frame,
+ * most important textures first. Sources are called synchronously on the DGL
+ * thread during update(), so the byte limit bounds uploads but not the time
+ * spent loading; see {@link LevelSource}. The smallest level of each texture always
+ * stays resident, so textures may be sampled from at any time.
+ *
+ * All methods must be called on the DGL thread.
+ *
+ * @author Samuel Johnson (SmashMaster)
+ */
+public final class TextureStreamer
+{
+    /**
+     * Supplies the image data for evicted mipmap levels.
+     */
+    @FunctionalInterface
+    public interface LevelSource
+    {
+        /**
+         * Returns the images for the given mipmap level, one per texture
+         * layer. Called on the DGL thread during update(), which blocks until
+         * it returns, so sources should hand back levels that are already
+         * decoded in memory, for example kept from a worker thread, rather
+         * than reading and decoding files here. The streamer takes ownership of the images, and frees them
+         * once they are uploaded, whether or not they are tracked by DGL, so
+         * they must not be shared or deleted elsewhere.
+         *
+         * @param level The mipmap level to load.
+         * @return The images for each layer of the given level.
+         * @throws IOException If the level could not be loaded.
+         */
+        Image[] load(int level) throws IOException;
+    }
+
+    /**
+     * A texture whose residency is managed by this streamer.
+     */
+    public final class Entry
+    {
+        private final Texture<?> texture;
+        private final LevelSource source;
+        private final long[] levelBytes;
+        private long lastUsed = -1;
+        private float distance = Float.POSITIVE_INFINITY;
+        private int targetLevel;
+        private IOException error;
+
+        private Entry(Texture<?> texture, LevelSource source, long[] levelBytes)
+        {
+            this.texture = texture;
+            this.source = source;
+            this.levelBytes = levelBytes;
+        }
+
+        /**
+         * Marks this texture as used this frame, at the given distance from
+         * the viewer. May be called several times per frame, in which case
+         * the nearest distance is kept.
+         *
+         * @param distance The distance the texture was seen from.
+         */
+        public void touch(float distance)
+        {
+            if (lastUsed != frame) this.distance = distance;
+            else this.distance = Math.min(this.distance, distance);
+            lastUsed = frame;
+        }
+
+        /**
+         * Returns the texture this entry manages.
+         */
+        public Texture<?> getTexture()
+        {
+            return texture;
+        }
+
+        /**
+         * Returns the number of mipmap levels of this texture.
+         */
+        public int getLevels()
+        {
+            return levelBytes.length;
+        }
+
+        /**
+         * Returns the base level this streamer is trying to reach.
+         */
+        public int getTargetLevel()
+        {
+            return targetLevel;
+        }
+
+        /**
+         * Returns the last frame this texture was used, or -1 if never.
+         */
+        public long getLastUsedFrame()
+        {
+            return lastUsed;
+        }
+
+        /**
+         * Returns how many bytes of this texture are currently resident.
+         */
+        public long getResidentBytes()
+        {
+            return bytesFrom(texture.baseLevel);
+        }
+
+        /**
+         * Returns the error thrown by this texture's source, if any. No more
+         * levels are restored once a source has failed.
+         */
+        public IOException getError()
+        {
+            return error;
+        }
+
+        private long bytesFrom(int level)
+        {
+            long bytes = 0;
+            for (int i=level; i<levelBytes.length; i++) bytes += levelBytes[i];
+            return bytes;
+        }
+
+        private int distanceLevel()
+        {
+            int last = levelBytes.length - 1;
+            if (lastUsed < 0 || frame - lastUsed > idleFrames) return last;
+            if (distance <= detailDistance) return 0;
+            int level = (int)Math.floor(Math.log(distance/detailDistance)/Math.log(2.0));
+            return Math.min(Math.max(level, 0), last);
+        }
+    }
+
+    //Least important entries first: least recently used, then most distant.
+    private static final Comparator<Entry> PRIORITY = Comparator
+            .comparingLong((Entry e) -> e.lastUsed)
+            .thenComparing((Entry e) -> e.distance, Comparator.reverseOrder());
+
+    private final List<Entry> entries = new ArrayList<>();
+    private final List<Entry> sorted = new ArrayList<>();
+    private long budget, bytesPerFrame;
+    private float detailDistance = 8.0f;
+    private int idleFrames = 60;
+    private long frame;
+    private long bytesStreamed;
+
+    /**
+     * Creates a new texture streamer.
+     *
+     * @param budget The number of bytes of video memory that managed textures
+     *               may use in total.
+     * @param bytesPerFrame The maximum number of bytes to restore per frame.
+     */
+    public TextureStreamer(long budget, long bytesPerFrame)
+    {
+        setBudget(budget);
+        setBytesPerFrame(bytesPerFrame);
+    }
+
+    private static void checkTexture(Texture<?> texture, int levels, int width, int height)
+    {
+        if (TexUtil.isCompressed(texture.getInternalFormat()))
+            throw new IllegalArgumentException("Compressed textures cannot be streamed.");
+        if (levels <= 0 || levels > TexUtil.getLevelCount(width, height))
+            throw new IllegalArgumentException("Illegal level count " + levels);
+        if (texture.baseLevel >= levels)
+            throw new IllegalArgumentException("Base level is past the given level count.");
+    }
+
+    private Entry register(Texture<?> texture, long[] levelBytes, LevelSource source)
+    {
+        if (source == null) throw new NullPointerException();
+        Entry entry = new Entry(texture, source, levelBytes);
+        entry.targetLevel = texture.baseLevel;
+        entries.add(entry);
+        return entry;
+    }
+
+    /**
+     * Starts managing the residency of the given texture, which must have the
+     * given number of allocated mipmap levels, and an uncompressed format. The
+     * texture's size must not change until it is unregistered.
+     *
+     * @param texture The texture to manage.
+     * @param levels The number of mipmap levels the texture has.
+     * @param source The source to restore evicted levels from.
+     * @return The new entry, to be touched whenever the texture is used.
+     */
+    public Entry register(Texture2D texture, int levels, LevelSource source)
+    {
+        checkTexture(texture, levels, texture.getWidth(), texture.getHeight());
+        long[] levelBytes = new long[levels];
+        for (int i=0; i<levels; i++) levelBytes[i] = texture.levelBits(i)/8;
+        return register(texture, levelBytes, source);
+    }
+
+    /**
+     * Starts managing the residency of the given texture array, which must have
+     * the given number of allocated mipmap levels, and an uncompressed format.
+     * The texture's size must not change until it is unregistered.
+     *
+     * @param texture The texture array to manage.
+     * @param levels The number of mipmap levels the texture has.
+     * @param source The source to restore evicted levels from.
+     * @return The new entry, to be touched whenever the texture is used.
+     */
+    public Entry register(Texture2DArray texture, int levels, LevelSource source)
+    {
+        checkTexture(texture, levels, texture.getWidth(), texture.getHeight());
+        long[] levelBytes = new long[levels];
+        for (int i=0; i<levels; i++) levelBytes[i] = texture.levelBits(i)/8;
+        return register(texture, levelBytes, source);
+    }
+
+    /**
+     * Stops managing the given entry's texture, leaving it at its current
+     * residency. Must be called before the texture is deleted.
+     *
+     * @param entry The entry to remove.
+     */
+    public void unregister(Entry entry)
+    {
+        entries.remove(entry);
+    }
+
+    /**
+     * Sets the number of bytes of video memory that managed textures may use.
+     */
+    public void setBudget(long budget)
+    {
+        if (budget < 0) throw new IllegalArgumentException();
+        this.budget = budget;
+    }
+
+    /**
+     * Sets the maximum number of bytes to restore per frame. At least one
+     * level is always restored when any are needed, even if larger.
+     */
+    public void setBytesPerFrame(long bytesPerFrame)
+    {
+        if (bytesPerFrame <= 0) throw new IllegalArgumentException();
+        this.bytesPerFrame = bytesPerFrame;
+    }
+
+    /**
+     * Sets the distance up to which textures are given all of their levels.
+     * Each doubling of distance beyond it drops one level.
+     */
+    public void setDetailDistance(float detailDistance)
+    {
+        if (!(detailDistance > 0.0f)) throw new IllegalArgumentException();
+        this.detailDistance = detailDistance;
+    }
+
+    /**
+     * Sets the number of frames a texture may go unused before it is cut down
+     * to its smallest level.
+     */
+    public void setIdleFrames(int idleFrames)
+    {
+        if (idleFrames < 0) throw new IllegalArgumentException();
+        this.idleFrames = idleFrames;
+    }
+
+    /**
+     * Evicts and restores mipmap levels to suit the textures used this frame,
+     * and then advances to the next frame. Should be called once per frame,
+     * after all textures used in it have been touched.
+     */
+    public void update()
+    {
+        DGL.checkState();
+
+        sorted.clear();
+        sorted.addAll(entries);
+        sorted.sort(PRIORITY);
+
+        long targetBytes = 0;
+        for (Entry entry : sorted)
+        {
+            entry.targetLevel = entry.distanceLevel();
+            targetBytes += entry.bytesFrom(entry.targetLevel);
+        }
+
+        for (Entry entry : sorted)
+        {
+            if (targetBytes <= budget) break;
+            int last = entry.levelBytes.length - 1;
+            while (targetBytes > budget && entry.targetLevel < last)
+                targetBytes -= entry.levelBytes[entry.targetLevel++];
+        }
+
+        long residentBytes = 0;
+        for (Entry entry : sorted)
+        {
+            if (entry.targetLevel > entry.texture.baseLevel) evict(entry);
+            residentBytes += entry.getResidentBytes();
+        }
+
+        bytesStreamed = 0;
+        for (int i=sorted.size() - 1; i>=0 && bytesStreamed < bytesPerFrame; i--)
+        {
+            Entry entry = sorted.get(i);
+            while (entry.error == null && entry.texture.baseLevel > entry.targetLevel && bytesStreamed < bytesPerFrame)
+            {
+                long bytes = entry.levelBytes[entry.texture.baseLevel - 1];
+                if (residentBytes + bytes > budget) break;
+                if (!restore(entry)) break;
+                residentBytes += bytes;
+                bytesStreamed += bytes;
+            }
+        }
+
+        frame++;
+    }
+
+    private void evict(Entry entry)
+    {
+        if (entry.texture instanceof Texture2D) ((Texture2D)entry.texture).evictLevels(entry.targetLevel);
+        else ((Texture2DArray)entry.texture).evictLevels(entry.targetLevel);
+    }
+
+    private boolean restore(Entry entry)
+    {
+        Image[] images;
+        try
+        {
+            images = entry.source.load(entry.texture.baseLevel - 1);
+        }
+        catch (IOException e)
+        {
+            entry.error = e;
+            return false;
+        }
+
+        try
+        {
+            if (entry.texture instanceof Texture2D)
+            {
+                if (images.length != 1) throw new IllegalArgumentException("Expected one image for 2D texture.");
+                ((Texture2D)entry.texture).streamLevel(images[0]);
+            }
+            else ((Texture2DArray)entry.texture).streamLevel(images);
+        }
+        finally
+        {
+            for (Image image : images)
+            {
+                if (image.tracked) DGL.delete(image);
+                else image.free();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of textures being managed.
+     */
+    public int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Returns the current frame number.
+     */
+    public long getFrame()
+    {
+        return frame;
+    }
+
+    /**
+     * Returns the number of bytes of video memory that managed textures may use.
+     */
+    public long getBudget()
+    {
+        return budget;
+    }
+
+    /**
+     * Returns how many bytes of managed textures are currently resident.
+     */
+    public long getResidentBytes()
+    {
+        long bytes = 0;
+        for (Entry entry : entries) bytes += entry.getResidentBytes();
+        return bytes;
+    }
+
+    /**
+     * Returns how many bytes were restored during the last update.
+     */
+    public long getBytesStreamed()
+    {
+        return bytesStreamed;
+    }
+}
@@ -148,7 +148,7 @@ public final class VertexBuffer extends VertexBuilder
         
         state = State.COMPLETE;
         
-        Profiler.addUsedVRAM(debugVRAMUsage);
+        Profiler.addUsedVRAM(Profiler.Category.MESHES, debugVRAMUsage);
     }
     
     @Override
@@ -199,6 +199,6 @@ public final class VertexBuffer extends VertexBuilder
         
         state = State.DELETED;
         
-        Profiler.removeUsedVRAM(debugVRAMUsage);
+        Profiler.removeUsedVRAM(Profiler.Category.MESHES, debugVRAMUsage);
     }
 }
@@ -98,8 +98,8 @@ public final class VertexStream extends VertexBuilder
         
         state = State.READY;
         
-        Profiler.addUsedVRAM(vboSize*8L);
-        Profiler.addUsedVRAM(eboSize*8L);
+        Profiler.addUsedVRAM(Profiler.Category.STREAMS, vboSize*8L);
+        Profiler.addUsedVRAM(Profiler.Category.STREAMS, eboSize*8L);
     }
     
     /**
@@ -277,7 +277,7 @@ public final class VertexStream extends VertexBuilder
         
         state = State.DELETED;
         
-        Profiler.removeUsedVRAM(vboSize*8L);
-        Profiler.removeUsedVRAM(eboSize*8L);
+        Profiler.removeUsedVRAM(Profiler.Category.STREAMS, vboSize*8L);
+        Profiler.removeUsedVRAM(Profiler.Category.STREAMS, eboSize*8L);
     }
 }
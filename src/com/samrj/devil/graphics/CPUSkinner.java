@@ -0,0 +1,260 @@
+package com.samrj.devil.graphics;
+
+import com.samrj.devil.geo3d.GeoMesh;
+import com.samrj.devil.math.Mat4;
+import com.samrj.devil.math.Vec3;
+import com.samrj.devil.model.ArmatureSolver;
+import com.samrj.devil.model.ArmatureSolver.BoneSolver;
+import com.samrj.devil.model.Mesh;
+import com.samrj.devil.model.ModelObject;
+import com.samrj.devil.util.IOUtil;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Performs mesh deformation for armatures on the CPU, for when skinned geometry is needed outside of a shader, such as
+ * for hitbox raycasts or baking shadow proxies. The rest pose is copied out of the mesh once, so each update reads only
+ * primitive arrays. Large meshes are split across the common fork/join pool.
+ *
+ * @author Samuel Johnson (SmashMaster)
+ * @copyright 2022 Samuel Johnson
+ * @license https://github.com/SmashMaster/DevilUtil/blob/master/LICENSE
+ */
+public class CPUSkinner
+{
+    /**
+     * Meshes with at least this many vertices are skinned in parallel, in chunks of this size.
+     */
+    public static final int PARALLEL_CHUNK_SIZE = 8192;
+
+    public final int numVertices;
+    public final int numGroups;
+
+    private final List<BoneSolver> bones;
+    private final float[] matData; //3x4 affine matrices, row-major, one per bone.
+
+    private final float[] restPositions, restNormals;
+    private final int[] groupIndices;
+    private final float[] groupWeights;
+
+    private final float[] positions, normals;
+
+    private final int[] faceIndices, edgeIndices;
+    private Vec3[] geoVerts;
+    private GeoMesh geoMesh;
+
+    public CPUSkinner(ModelObject<Mesh> object, ArmatureSolver solver)
+    {
+        Mesh mesh = object.data.get();
+        numVertices = mesh.numVertices;
+        numGroups = mesh.numGroups;
+        bones = IOUtil.mapList(MeshSkinner.getVertexGroups(object), solver::getBone);
+        matData = new float[bones.size()*12];
+
+        restPositions = new float[numVertices*3];
+        restNormals = new float[numVertices*3];
+        groupIndices = new int[numVertices*numGroups];
+        groupWeights = new float[numVertices*numGroups];
+        if (numVertices > 0)
+        {
+            ByteBuffer data = mesh.vertexData.duplicate().order(mesh.vertexData.order());
+            data.position(mesh.positionOffset);
+            data.asFloatBuffer().get(restPositions);
+            data.position(mesh.normalOffset);
+            data.asFloatBuffer().get(restNormals);
+            if (numGroups > 0)
+            {
+                data.position(mesh.groupIndexOffset);
+                data.asIntBuffer().get(groupIndices);
+                data.position(mesh.groupWeightOffset);
+                data.asFloatBuffer().get(groupWeights);
+            }
+        }
+
+        positions = restPositions.clone();
+        normals = restNormals.clone();
+
+        faceIndices = new int[mesh.numTriangles*3];
+        if (mesh.indexData != null)
+            mesh.indexData.duplicate().order(mesh.indexData.order()).asIntBuffer().get(faceIndices);
+        edgeIndices = new int[mesh.numEdges*2];
+        if (mesh.edgeIndexData != null)
+            mesh.edgeIndexData.duplicate().order(mesh.edgeIndexData.order()).asIntBuffer().get(edgeIndices);
+    }
+
+    private void loadMatrices()
+    {
+        for (int bi=0; bi<bones.size(); bi++)
+        {
+            BoneSolver bone = bones.get(bi);
+            int o = bi*12;
+            if (bone == null)
+            {
+                Arrays.fill(matData, o, o + 12, 0.0f);
+                matData[o] = 1.0f;
+                matData[o + 5] = 1.0f;
+                matData[o + 10] = 1.0f;
+                continue;
+            }
+
+            Mat4 m = bone.skinMatrix;
+            matData[o] = m.a; matData[o + 1] = m.b; matData[o + 2] = m.c; matData[o + 3] = m.d;
+            matData[o + 4] = m.e; matData[o + 5] = m.f; matData[o + 6] = m.g; matData[o + 7] = m.h;
+            matData[o + 8] = m.i; matData[o + 9] = m.j; matData[o + 10] = m.k; matData[o + 11] = m.l;
+        }
+    }
+
+    /**
+     * Skins the vertices in the range [start, end). Weights are normalized, and vertices with no total weight keep
+     * their rest position.
+     */
+    private void skin(int start, int end)
+    {
+        for (int v=start; v<end; v++)
+        {
+            float a = 0.0f, b = 0.0f, c = 0.0f, d = 0.0f;
+            float e = 0.0f, f = 0.0f, g = 0.0f, h = 0.0f;
+            float i = 0.0f, j = 0.0f, k = 0.0f, l = 0.0f;
+            float totalWeight = 0.0f;
+
+            int gOffset = v*numGroups;
+            for (int gi=0; gi<numGroups; gi++)
+            {
+                float w = groupWeights[gOffset + gi];
+                if (w == 0.0f) continue;
+                int bi = groupIndices[gOffset + gi];
+                if (bi < 0 || bi >= bones.size()) continue;
+
+                int o = bi*12;
+                a += matData[o]*w; b += matData[o + 1]*w; c += matData[o + 2]*w; d += matData[o + 3]*w;
+                e += matData[o + 4]*w; f += matData[o + 5]*w; g += matData[o + 6]*w; h += matData[o + 7]*w;
+                i += matData[o + 8]*w; j += matData[o + 9]*w; k += matData[o + 10]*w; l += matData[o + 11]*w;
+                totalWeight += w;
+            }
+
+            int vOffset = v*3;
+            float px = restPositions[vOffset], py = restPositions[vOffset + 1], pz = restPositions[vOffset + 2];
+            float nx = restNormals[vOffset], ny = restNormals[vOffset + 1], nz = restNormals[vOffset + 2];
+
+            if (totalWeight == 0.0f)
+            {
+                positions[vOffset] = px; positions[vOffset + 1] = py; positions[vOffset + 2] = pz;
+                normals[vOffset] = nx; normals[vOffset + 1] = ny; normals[vOffset + 2] = nz;
+                continue;
+            }
+
+            float invWeight = 1.0f/totalWeight;
+            positions[vOffset] = (a*px + b*py + c*pz + d)*invWeight;
+            positions[vOffset + 1] = (e*px + f*py + g*pz + h)*invWeight;
+            positions[vOffset + 2] = (i*px + j*py + k*pz + l)*invWeight;
+
+            float tx = a*nx + b*ny + c*nz;
+            float ty = e*nx + f*ny + g*nz;
+            float tz = i*nx + j*ny + k*nz;
+            float lenSq = tx*tx + ty*ty + tz*tz;
+            float invLen = lenSq != 0.0f ? (float)(1.0/Math.sqrt(lenSq)) : 0.0f;
+            normals[vOffset] = tx*invLen;
+            normals[vOffset + 1] = ty*invLen;
+            normals[vOffset + 2] = tz*invLen;
+        }
+    }
+
+    /**
+     * Deforms this skinner's vertices using the current skin matrices of the armature solver. The solver should be
+     * solved before calling this.
+     */
+    public void update()
+    {
+        loadMatrices();
+
+        if (numVertices < PARALLEL_CHUNK_SIZE*2) skin(0, numVertices);
+        else
+        {
+            int numChunks = (numVertices + PARALLEL_CHUNK_SIZE - 1)/PARALLEL_CHUNK_SIZE;
+            IntStream.range(0, numChunks).parallel().forEach(chunk ->
+            {
+                int start = chunk*PARALLEL_CHUNK_SIZE;
+                skin(start, Math.min(start + PARALLEL_CHUNK_SIZE, numVertices));
+            });
+        }
+
+        if (geoMesh != null)
+        {
+            for (int v=0; v<numVertices; v++)
+            {
+                Vec3 vert = geoVerts[v];
+                vert.x = positions[v*3];
+                vert.y = positions[v*3 + 1];
+                vert.z = positions[v*3 + 2];
+            }
+            geoMesh.markBoundsDirty();
+        }
+    }
+
+    /**
+     * Returns the array of deformed vertex positions, tightly packed as xyz triplets. This array is reused between
+     * updates and must not be modified.
+     */
+    public float[] getPositions()
+    {
+        return positions;
+    }
+
+    /**
+     * Returns the array of deformed, normalized vertex normals, tightly packed as xyz triplets. This array is reused
+     * between updates and must not be modified.
+     */
+    public float[] getNormals()
+    {
+        return normals;
+    }
+
+    /**
+     * Stores the deformed position of the vertex at the given index in the given vector.
+     */
+    public void getPosition(int index, Vec3 result)
+    {
+        result.x = positions[index*3];
+        result.y = positions[index*3 + 1];
+        result.z = positions[index*3 + 2];
+    }
+
+    /**
+     * Stores the deformed normal of the vertex at the given index in the given vector.
+     */
+    public void getNormal(int index, Vec3 result)
+    {
+        result.x = normals[index*3];
+        result.y = normals[index*3 + 1];
+        result.z = normals[index*3 + 2];
+    }
+
+    /**
+     * Writes the deformed positions, then normals, into the given buffer at its current position, in the same layout
+     * as the position and normal sections of {@link Mesh#vertexData}.
+     */
+    public void write(ByteBuffer buffer)
+    {
+        for (float f : positions) buffer.putFloat(f);
+        for (float f : normals) buffer.putFloat(f);
+    }
+
+    /**
+     * Returns a geometry mesh which shares its vertices with this skinner, and can be used directly for Geo3D queries.
+     * The mesh is created on the first call, and its vertices and bounds are kept up to date by each call to update().
+     */
+    public GeoMesh getGeoMesh()
+    {
+        if (geoMesh == null)
+        {
+            geoVerts = new Vec3[numVertices];
+            for (int v=0; v<numVertices; v++)
+                geoVerts[v] = new Vec3(positions[v*3], positions[v*3 + 1], positions[v*3 + 2]);
+            geoMesh = new GeoMesh(Arrays.asList(geoVerts), edgeIndices, faceIndices);
+        }
+        return geoMesh;
+    }
+}
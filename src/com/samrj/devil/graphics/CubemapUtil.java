@@ -401,6 +401,406 @@ public class CubemapUtil
         return images[f.ordinal()].getSampleFiltered(uv.x, uv.y, false);
     }
 
+    // <editor-fold defaultstate="collapsed" desc="CPU prefiltering">
+
+    private static final int SH_COEFFICIENTS = 9;
+
+    /**
+     * Writes the unnormalized direction of the given face and UV coordinates into result. Allocation-free version
+     * of getDir().
+     */
+    private static void faceDir(int face, float u, float v, float[] result)
+    {
+        u = u*2.0f - 1.0f;
+        v = v*2.0f - 1.0f;
+
+        switch (face)
+        {
+            case 0 -> { result[0] = 1.0f; result[1] = -v; result[2] = -u; }
+            case 1 -> { result[0] = -1.0f; result[1] = -v; result[2] = u; }
+            case 2 -> { result[0] = u; result[1] = 1.0f; result[2] = v; }
+            case 3 -> { result[0] = u; result[1] = -1.0f; result[2] = -v; }
+            case 4 -> { result[0] = u; result[1] = -v; result[2] = 1.0f; }
+            default -> { result[0] = -u; result[1] = -v; result[2] = -1.0f; }
+        }
+    }
+
+    /**
+     * Writes the UV coordinates of the given direction into result, and returns its face. Allocation-free version
+     * of getUV().
+     */
+    private static int faceUV(float x, float y, float z, float[] result)
+    {
+        float absX = Math.abs(x), absY = Math.abs(y), absZ = Math.abs(z);
+        float max, u, v;
+        int face;
+
+        if (absX >= absY && absX >= absZ)
+        {
+            max = absX;
+            u = x > 0.0f ? -z : z;
+            v = -y;
+            face = x > 0.0f ? 0 : 1;
+        }
+        else if (absY >= absZ)
+        {
+            max = absY;
+            u = x;
+            v = y > 0.0f ? z : -z;
+            face = y > 0.0f ? 2 : 3;
+        }
+        else
+        {
+            max = absZ;
+            u = z > 0.0f ? x : -x;
+            v = -y;
+            face = z > 0.0f ? 4 : 5;
+        }
+
+        result[0] = 0.5f*(u/max + 1.0f);
+        result[1] = 0.5f*(v/max + 1.0f);
+        return face;
+    }
+
+    private static float areaElement(float x, float y)
+    {
+        return (float)Math.atan2(x*y, Math.sqrt(x*x + y*y + 1.0));
+    }
+
+    /**
+     * Returns the solid angle subtended by the given texel of a cubemap face with the given resolution.
+     */
+    private static float texelSolidAngle(int x, int y, int size)
+    {
+        float inv = 1.0f/size;
+        float x0 = (x*2.0f)*inv - 1.0f, x1 = x0 + 2.0f*inv;
+        float y0 = (y*2.0f)*inv - 1.0f, y1 = y0 + 2.0f*inv;
+        return areaElement(x0, y0) - areaElement(x0, y1) - areaElement(x1, y0) + areaElement(x1, y1);
+    }
+
+    /**
+     * Returns the given sample of the given image, normalized so that unsigned byte and char images range from 0 to
+     * 1. Images with fewer than three bands are treated as grayscale.
+     */
+    private static float texel(Image image, int x, int y, int b)
+    {
+        if (image.bands < 3) b = 0;
+        int index = image.index(x, y, b);
+        return switch (image.type)
+        {
+            case BYTE -> Byte.toUnsignedInt(image.buffer.get(index))/255.0f;
+            case CHAR -> image.buffer.getChar(index)/65535.0f;
+            case FLOAT -> image.buffer.getFloat(index);
+            default -> (float)image.get(x, y, b);
+        };
+    }
+
+    private static void writeTexel(Image image, int x, int y, int b, float value)
+    {
+        int index = image.index(x, y, b);
+        switch (image.type)
+        {
+            case BYTE -> image.buffer.put(index, (byte)Math.round(Math.min(Math.max(value, 0.0f), 1.0f)*255.0f));
+            case CHAR -> image.buffer.putChar(index, (char)Math.round(Math.min(Math.max(value, 0.0f), 1.0f)*65535.0f));
+            case SHORT -> image.buffer.putShort(index, (short)Math.round(value));
+            case INT -> image.buffer.putInt(index, Math.round(value));
+            case FLOAT -> image.buffer.putFloat(index, value);
+        }
+    }
+
+    private static int checkFaces(Image[] faces)
+    {
+        if (faces.length != 6) throw new IllegalArgumentException("Expected 6 faces, got " + faces.length);
+        int size = faces[0].width;
+        for (Image face : faces) if (face.width != size || face.height != size)
+            throw new IllegalArgumentException("Cubemap faces must be square and of equal size.");
+        return size;
+    }
+
+    private static void shBasis(float x, float y, float z, float[] result)
+    {
+        result[0] = 0.282095f;
+        result[1] = 0.488603f*y;
+        result[2] = 0.488603f*z;
+        result[3] = 0.488603f*x;
+        result[4] = 1.092548f*x*y;
+        result[5] = 1.092548f*y*z;
+        result[6] = 0.315392f*(3.0f*z*z - 1.0f);
+        result[7] = 1.092548f*x*z;
+        result[8] = 0.546274f*(x*x - y*y);
+    }
+
+    /**
+     * Projects the RGB radiance of the given cubemap faces onto the first nine (L2) real spherical harmonics, weighting
+     * each texel by its solid angle. Faces must be ordered as in Face, and are processed in parallel. Does not need an
+     * OpenGL context, so faces from Image.allocateUntracked() may be used to bake on a headless machine.
+     *
+     * @param faces Six square images of equal size.
+     * @return Nine RGB coefficients.
+     */
+    public static Vec3[] projectSH(Image[] faces)
+    {
+        int size = checkFaces(faces);
+        double[] total = new double[SH_COEFFICIENTS*3];
+
+        ImageKernels.forEachRow(6*size, size*SH_COEFFICIENTS*3, (row0, row1) ->
+        {
+            double[] sum = new double[SH_COEFFICIENTS*3];
+            float[] dir = new float[3], basis = new float[SH_COEFFICIENTS];
+
+            for (int row=row0; row<row1; row++)
+            {
+                int face = row/size, y = row%size;
+                Image image = faces[face];
+                for (int x=0; x<size; x++)
+                {
+                    faceDir(face, (x + 0.5f)/size, 1.0f - (y + 0.5f)/size, dir);
+                    float invLen = 1.0f/(float)Math.sqrt(dir[0]*dir[0] + dir[1]*dir[1] + dir[2]*dir[2]);
+                    shBasis(dir[0]*invLen, dir[1]*invLen, dir[2]*invLen, basis);
+
+                    float weight = texelSolidAngle(x, y, size);
+                    for (int b=0; b<3; b++)
+                    {
+                        float radiance = texel(image, x, y, b)*weight;
+                        for (int i=0; i<SH_COEFFICIENTS; i++) sum[i*3 + b] += radiance*basis[i];
+                    }
+                }
+            }
+
+            synchronized (total)
+            {
+                for (int i=0; i<total.length; i++) total[i] += sum[i];
+            }
+        });
+
+        Vec3[] result = new Vec3[SH_COEFFICIENTS];
+        for (int i=0; i<SH_COEFFICIENTS; i++)
+            result[i] = new Vec3((float)total[i*3], (float)total[i*3 + 1], (float)total[i*3 + 2]);
+        return result;
+    }
+
+    /**
+     * Evaluates the irradiance of the given L2 spherical harmonic radiance coefficients for a surface with the given
+     * normal, and stores it in result. Divide by pi for the outgoing radiance of a white Lambertian surface.
+     */
+    public static void evalSHIrradiance(Vec3[] sh, Vec3 normal, Vec3 result)
+    {
+        final float a0 = (float)Math.PI, a1 = (float)(2.0*Math.PI/3.0), a2 = (float)(Math.PI/4.0);
+        float x = normal.x, y = normal.y, z = normal.z;
+
+        result.set(0.0f);
+        addScaled(result, sh[0], a0*0.282095f);
+        addScaled(result, sh[1], a1*0.488603f*y);
+        addScaled(result, sh[2], a1*0.488603f*z);
+        addScaled(result, sh[3], a1*0.488603f*x);
+        addScaled(result, sh[4], a2*1.092548f*x*y);
+        addScaled(result, sh[5], a2*1.092548f*y*z);
+        addScaled(result, sh[6], a2*0.315392f*(3.0f*z*z - 1.0f));
+        addScaled(result, sh[7], a2*1.092548f*x*z);
+        addScaled(result, sh[8], a2*0.546274f*(x*x - y*y));
+    }
+
+    private static void addScaled(Vec3 result, Vec3 v, float s)
+    {
+        result.x += v.x*s;
+        result.y += v.y*s;
+        result.z += v.z*s;
+    }
+
+    /**
+     * Linear RGB copy of a cubemap with a box-filtered mip chain, for sampling from many threads.
+     */
+    private static final class CubeChain
+    {
+        private final int[] sizes;
+        private final float[][][] levels; //[level][face][(y*size + x)*3 + b]
+
+        private CubeChain(Image[] faces, int size)
+        {
+            int count = 32 - Integer.numberOfLeadingZeros(size);
+            sizes = new int[count];
+            levels = new float[count][6][];
+
+            sizes[0] = size;
+            for (int face=0; face<6; face++)
+            {
+                float[] data = new float[size*size*3];
+                Image image = faces[face];
+                for (int y=0; y<size; y++) for (int x=0; x<size; x++) for (int b=0; b<3; b++)
+                    data[(y*size + x)*3 + b] = texel(image, x, y, b);
+                levels[0][face] = data;
+            }
+
+            for (int level=1; level<count; level++)
+            {
+                int src = sizes[level - 1], dst = Math.max(src/2, 1);
+                sizes[level] = dst;
+                for (int face=0; face<6; face++)
+                {
+                    float[] in = levels[level - 1][face], out = new float[dst*dst*3];
+                    for (int y=0; y<dst; y++) for (int x=0; x<dst; x++) for (int b=0; b<3; b++)
+                    {
+                        int x0 = Math.min(x*2, src - 1), x1 = Math.min(x*2 + 1, src - 1);
+                        int y0 = Math.min(y*2, src - 1), y1 = Math.min(y*2 + 1, src - 1);
+                        out[(y*dst + x)*3 + b] = 0.25f*(in[(y0*src + x0)*3 + b] + in[(y0*src + x1)*3 + b]
+                                + in[(y1*src + x0)*3 + b] + in[(y1*src + x1)*3 + b]);
+                    }
+                    levels[level][face] = out;
+                }
+            }
+        }
+
+        /**
+         * Adds the bilinearly filtered color of the given level in the given direction, times the given weight, to
+         * result. The uv array is scratch space.
+         */
+        private void addSample(int level, float x, float y, float z, float weight, float[] uv, float[] result)
+        {
+            int face = faceUV(x, y, z, uv);
+            int size = sizes[level];
+            float[] data = levels[level][face];
+
+            float fx = uv[0]*size - 0.5f, fy = (1.0f - uv[1])*size - 0.5f;
+            int x0 = (int)Math.floor(fx), y0 = (int)Math.floor(fy);
+            float tx = fx - x0, ty = fy - y0;
+            int x1 = Math.min(x0 + 1, size - 1), y1 = Math.min(y0 + 1, size - 1);
+            x0 = Math.max(x0, 0);
+            y0 = Math.max(y0, 0);
+
+            for (int b=0; b<3; b++)
+            {
+                float c0 = data[(y0*size + x0)*3 + b]*(1.0f - tx) + data[(y0*size + x1)*3 + b]*tx;
+                float c1 = data[(y1*size + x0)*3 + b]*(1.0f - tx) + data[(y1*size + x1)*3 + b]*tx;
+                result[b] += (c0*(1.0f - ty) + c1*ty)*weight;
+            }
+        }
+
+        /**
+         * Adds the trilinearly filtered color at the given level of detail in the given direction, times the given
+         * weight, to result.
+         */
+        private void addSample(float lod, float x, float y, float z, float weight, float[] uv, float[] result)
+        {
+            lod = Math.min(Math.max(lod, 0.0f), sizes.length - 1);
+            int level = (int)lod;
+            float t = lod - level;
+            addSample(level, x, y, z, weight*(1.0f - t), uv, result);
+            if (t > 0.0f) addSample(level + 1, x, y, z, weight*t, uv, result);
+        }
+    }
+
+    /**
+     * Prefilters the given cubemap with the GGX distribution for image-based specular lighting, writing one level of
+     * roughness into each array of six faces in the given target. Roughness increases linearly from zero for the first
+     * target level to one for the last. Each target level may have any resolution, but usually halves each level.
+     *
+     * Uses importance sampling, reading from a mip chain of the source to avoid aliasing, as in Karis, "Real Shading
+     * in Unreal Engine 4". Levels are processed one at a time, each split across the common ForkJoinPool. Like
+     * projectSH(), this needs no OpenGL context when given images from Image.allocateUntracked().
+     *
+     * @param faces Six square images of equal size, ordered as in Face.
+     * @param target The arrays of six images to write each roughness level into.
+     * @param sampleCount The number of GGX samples per texel.
+     */
+    public static void prefilterGGX(Image[] faces, Image[][] target, int sampleCount)
+    {
+        int size = checkFaces(faces);
+        if (sampleCount <= 0) throw new IllegalArgumentException("Sample count must be positive.");
+        for (Image[] level : target) checkFaces(level);
+
+        CubeChain chain = new CubeChain(faces, size);
+        float texelAngle = (float)(4.0*Math.PI/(6.0*size*size));
+
+        //Sample directions depend only on roughness, so they are computed once per level in tangent space.
+        float[] lx = new float[sampleCount], ly = new float[sampleCount], lz = new float[sampleCount];
+        float[] lods = new float[sampleCount];
+
+        for (int level=0; level<target.length; level++)
+        {
+            Image[] dst = target[level];
+            int dstSize = dst[0].width;
+            float roughness = target.length > 1 ? level/(target.length - 1.0f) : 0.0f;
+            float alpha = roughness*roughness;
+            float mirrorLod = (float)(Math.log((double)size/dstSize)/Math.log(2.0));
+
+            int count = 0;
+            float totalWeight = 0.0f;
+            if (alpha > 0.0f) for (int i=0; i<sampleCount; i++)
+            {
+                //Hammersley point set.
+                float e1 = (i + 0.5f)/sampleCount;
+                float e2 = (Integer.reverse(i) >>> 1)/(float)(1 << 30)*0.5f;
+
+                float phi = (float)(2.0*Math.PI*e1);
+                float cosTheta = (float)Math.sqrt((1.0f - e2)/(1.0f + (alpha*alpha - 1.0f)*e2));
+                float sinTheta = (float)Math.sqrt(1.0f - cosTheta*cosTheta);
+                float hx = sinTheta*(float)Math.cos(phi), hy = sinTheta*(float)Math.sin(phi), hz = cosTheta;
+
+                //Reflect the view direction, which equals the normal, about the half vector.
+                float nl = 2.0f*hz*hz - 1.0f;
+                if (nl <= 0.0f) continue;
+
+                float d = (hz*hz*(alpha*alpha - 1.0f) + 1.0f);
+                float pdf = alpha*alpha/((float)Math.PI*d*d)*0.25f;
+                float sampleAngle = 1.0f/(sampleCount*pdf + 0.0001f);
+
+                lx[count] = 2.0f*hz*hx;
+                ly[count] = 2.0f*hz*hy;
+                lz[count] = nl;
+                lods[count] = Math.max(0.5f*(float)(Math.log(sampleAngle/texelAngle)/Math.log(2.0)) + 1.0f, mirrorLod);
+                totalWeight += nl;
+                count++;
+            }
+
+            int samples = count;
+            float invWeight = samples > 0 ? 1.0f/totalWeight : 1.0f;
+
+            ImageKernels.forEachRow(6*dstSize, dstSize*Math.max(samples, 1)*4, (row0, row1) ->
+            {
+                float[] n = new float[3], uv = new float[2], color = new float[3];
+
+                for (int row=row0; row<row1; row++)
+                {
+                    int face = row/dstSize, y = row%dstSize;
+                    Image image = dst[face];
+                    for (int x=0; x<dstSize; x++)
+                    {
+                        faceDir(face, (x + 0.5f)/dstSize, 1.0f - (y + 0.5f)/dstSize, n);
+                        float invLen = 1.0f/(float)Math.sqrt(n[0]*n[0] + n[1]*n[1] + n[2]*n[2]);
+                        float nx = n[0]*invLen, ny = n[1]*invLen, nz = n[2]*invLen;
+                        color[0] = 0.0f; color[1] = 0.0f; color[2] = 0.0f;
+
+                        if (samples == 0) chain.addSample(mirrorLod, nx, ny, nz, 1.0f, uv, color);
+                        else
+                        {
+                            //Tangent frame around the normal.
+                            float tx, ty, tz;
+                            if (Math.abs(nz) < 0.999f) { tx = -ny; ty = nx; tz = 0.0f; }
+                            else { tx = 0.0f; ty = -nz; tz = ny; }
+                            float invT = 1.0f/(float)Math.sqrt(tx*tx + ty*ty + tz*tz);
+                            tx *= invT; ty *= invT; tz *= invT;
+                            float bx = ny*tz - nz*ty, by = nz*tx - nx*tz, bz = nx*ty - ny*tx;
+
+                            for (int i=0; i<samples; i++)
+                            {
+                                float dx = tx*lx[i] + bx*ly[i] + nx*lz[i];
+                                float dy = ty*lx[i] + by*ly[i] + ny*lz[i];
+                                float dz = tz*lx[i] + bz*ly[i] + nz*lz[i];
+                                chain.addSample(lods[i], dx, dy, dz, lz[i]*invWeight, uv, color);
+                            }
+                        }
+
+                        int colorBands = image.bands >= 3 ? 3 : 1;
+                        for (int b=0; b<colorBands; b++) writeTexel(image, x, y, b, color[b]);
+                        if (image.bands == 2 || image.bands == 4) writeTexel(image, x, y, image.bands - 1, 1.0f);
+                    }
+                }
+            });
+        }
+    }
+
+    // </editor-fold>
+
     private CubemapUtil()
     {
     }
@@ -37,6 +37,9 @@ public class MeshSkinner
     private FloatBuffer prevMatData;
     private boolean onFirstFrame = true;
     
+    SkinPalette palette;
+    int paletteOffset = -1, prevPaletteOffset = -1;
+    
     public MeshSkinner(ModelObject<Mesh> object, ArmatureSolver solver)
     {
         Mesh mesh = object.data.get();
@@ -81,6 +84,70 @@ public class MeshSkinner
         glUniformMatrix4fv(loc, false, matData);
     }
     
+    /**
+     * Returns the number of bone matrices this skinner uploads.
+     */
+    public int numMatrices()
+    {
+        return bones.size();
+    }
+    
+    /**
+     * Copies this skinner's current or previous bone matrices to the given
+     * native address, and returns the given offset advanced by the number of
+     * matrices copied.
+     */
+    int copyMatrices(long address, boolean prev, int offset)
+    {
+        FloatBuffer src = prev ? prevMatData : matData;
+        memCopy(memAddress0(src), address, bones.size()*16*4L);
+        return offset + bones.size();
+    }
+    
+    /**
+     * Returns the skin palette this skinner belongs to, or null if it belongs
+     * to none.
+     */
+    public SkinPalette getPalette()
+    {
+        return palette;
+    }
+    
+    /**
+     * Returns the index of this skinner's first bone matrix within its skin
+     * palette, or -1 if it has not been assigned one yet.
+     */
+    public int getPaletteOffset()
+    {
+        return paletteOffset;
+    }
+    
+    /**
+     * Returns the index of this skinner's first previous bone matrix within its
+     * skin palette, or -1 if it has not been assigned one yet.
+     */
+    public int getPrevPaletteOffset()
+    {
+        return prevPaletteOffset;
+    }
+    
+    /**
+     * Loads this skinner's palette offsets to the shader uniforms with the
+     * given names, for drawing with a skin palette without instancing.
+     * 
+     * @param shader The shader program to load into.
+     * @param offsetName The name of the current matrix offset uniform.
+     * @param prevOffsetName The name of the previous matrix offset uniform, or
+     *                       null to skip it.
+     */
+    public void uniformPaletteOffsets(ShaderProgram shader, String offsetName, String prevOffsetName)
+    {
+        if (palette == null) throw new IllegalStateException("Skinner does not belong to a palette.");
+        
+        shader.uniform1i(offsetName, paletteOffset);
+        if (prevOffsetName != null) shader.uniform1i(prevOffsetName, prevPaletteOffset);
+    }
+    
     /**
      * Returns whether space has been allocated for previous bone matrices.
      */
@@ -113,6 +180,7 @@ public class MeshSkinner
      */
     public final void destroy()
     {
+        if (palette != null) palette.remove(this);
         memFree(matData);
         if (prevMatricesEnabled()) memFree(prevMatData);
     }
@@ -0,0 +1,187 @@
+package com.samrj.devil.graphics;
+
+import com.samrj.devil.gl.BufferObject;
+import com.samrj.devil.gl.DGL;
+import com.samrj.devil.gl.Profiler;
+import com.samrj.devil.gl.TextureBuffer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.lwjgl.opengl.GL11C.glGetInteger;
+import static org.lwjgl.opengl.GL15C.GL_STREAM_DRAW;
+import static org.lwjgl.opengl.GL30C.GL_RGBA32F;
+import static org.lwjgl.opengl.GL31C.*;
+import static org.lwjgl.system.MemoryUtil.*;
+
+/**
+ * Packs the bone matrices of many mesh skinners into a single buffer, which is uploaded once per frame. Each skinner
+ * is assigned an offset into the palette, so skinned meshes may share a shader and be drawn instanced by passing each
+ * instance's offset as per-instance data.
+ *
+ * In uniform buffer mode, the palette should be declared in GLSL as a std140 block containing a {@code mat4} array. In
+ * texture buffer mode, it should be declared as a {@code samplerBuffer}, with each matrix stored as four consecutive
+ * RGBA32F texel columns.
+ *
+ * @author Samuel Johnson (SmashMaster)
+ * @copyright 2022 Samuel Johnson
+ * @license https://github.com/SmashMaster/DevilUtil/blob/master/LICENSE
+ */
+public class SkinPalette
+{
+    private static final int MATRIX_BYTES = 16*4;
+
+    public enum Mode
+    {
+        UNIFORM_BUFFER, TEXTURE_BUFFER;
+    }
+
+    public final Mode mode;
+
+    private final List<MeshSkinner> skinners = new ArrayList<>();
+    private final BufferObject buffer;
+    private final TextureBuffer texture;
+    private final int maxBytes;
+
+    private ByteBuffer staging;
+    private int numMatrices;
+    private long vramUsage;
+
+    /**
+     * Creates a new skin palette using the given buffer mode. DGL must be initialized.
+     */
+    public SkinPalette(Mode mode)
+    {
+        this.mode = mode;
+
+        switch (mode)
+        {
+            case UNIFORM_BUFFER:
+                buffer = DGL.genBufferObject(GL_UNIFORM_BUFFER);
+                texture = null;
+                maxBytes = glGetInteger(GL_MAX_UNIFORM_BLOCK_SIZE);
+                break;
+            case TEXTURE_BUFFER:
+                buffer = DGL.genBufferObject(GL_TEXTURE_BUFFER);
+                texture = DGL.genTextureBuffer();
+                maxBytes = glGetInteger(GL_MAX_TEXTURE_BUFFER_SIZE)*16;
+                break;
+            default: throw new IllegalArgumentException();
+        }
+
+        staging = memAlloc(64*MATRIX_BYTES);
+    }
+
+    /**
+     * Adds the given skinner to this palette. Its offsets will be assigned on the next call to update().
+     */
+    public void add(MeshSkinner skinner)
+    {
+        if (skinner.palette != null) throw new IllegalStateException("Skinner already belongs to a palette.");
+        skinner.palette = this;
+        skinners.add(skinner);
+    }
+
+    /**
+     * Removes the given skinner from this palette.
+     */
+    public void remove(MeshSkinner skinner)
+    {
+        if (skinner.palette != this) throw new IllegalStateException("Skinner does not belong to this palette.");
+        skinners.remove(skinner);
+        skinner.palette = null;
+        skinner.paletteOffset = -1;
+        skinner.prevPaletteOffset = -1;
+    }
+
+    /**
+     * Packs the current and previous bone matrices of each skinner in this palette, assigns their offsets, and uploads
+     * them in a single buffer update. Each skinner should be updated before calling this.
+     */
+    public void update()
+    {
+        int matrices = 0;
+        for (MeshSkinner skinner : skinners)
+        {
+            matrices += skinner.numMatrices();
+            if (skinner.prevMatricesEnabled()) matrices += skinner.numMatrices();
+        }
+
+        int bytes = matrices*MATRIX_BYTES;
+        if (bytes > maxBytes) throw new IllegalStateException("Skin palette exceeds maximum buffer size.");
+        if (bytes > staging.capacity()) staging = memRealloc(staging, Math.min(Math.max(bytes, staging.capacity()*2), maxBytes));
+
+        long address = memAddress0(staging);
+        int offset = 0;
+        for (MeshSkinner skinner : skinners)
+        {
+            skinner.paletteOffset = offset;
+            offset = skinner.copyMatrices(address + offset*MATRIX_BYTES, false, offset);
+
+            if (skinner.prevMatricesEnabled())
+            {
+                skinner.prevPaletteOffset = offset;
+                offset = skinner.copyMatrices(address + offset*MATRIX_BYTES, true, offset);
+            }
+            else skinner.prevPaletteOffset = -1;
+        }
+
+        numMatrices = matrices;
+        staging.position(0);
+        staging.limit(bytes);
+        buffer.bufferData(staging, GL_STREAM_DRAW);
+        staging.clear();
+
+        if (texture != null && texture.getBuffer() == null) texture.buffer(buffer, GL_RGBA32F);
+
+        Profiler.addUsedVRAM(bytes*8L - vramUsage);
+        vramUsage = bytes*8L;
+    }
+
+    /**
+     * Binds this palette for drawing. In uniform buffer mode, the given index is the uniform block binding point. In
+     * texture buffer mode, it is the texture unit enum to bind to, such as {@code GL_TEXTURE0}.
+     */
+    public void bind(int index)
+    {
+        if (mode == Mode.UNIFORM_BUFFER) buffer.bindBufferBase(index);
+        else texture.bind(index);
+    }
+
+    /**
+     * Returns the total number of matrices uploaded by the last call to update().
+     */
+    public int getNumMatrices()
+    {
+        return numMatrices;
+    }
+
+    /**
+     * Returns the number of skinners in this palette.
+     */
+    public int getNumSkinners()
+    {
+        return skinners.size();
+    }
+
+    /**
+     * Releases the native memory and GPU resources of this palette, and detaches all of its skinners.
+     */
+    public void destroy()
+    {
+        for (MeshSkinner skinner : skinners)
+        {
+            skinner.palette = null;
+            skinner.paletteOffset = -1;
+            skinner.prevPaletteOffset = -1;
+        }
+        skinners.clear();
+
+        Profiler.removeUsedVRAM(vramUsage);
+        vramUsage = 0;
+        if (texture != null) DGL.delete(texture);
+        DGL.delete(buffer);
+        memFree(staging);
+    }
+}
@@ -347,6 +347,32 @@ public class TexUtil
         return getFormat(format).bits;
     }
 
+    /**
+     * Returns whether the given format is compressed, or otherwise has no fixed
+     * number of bits per texel, including formats this class does not know.
+     * 
+     * @param format An OpenGL texture format.
+     * @return Whether the given format is compressed.
+     */
+    public static boolean isCompressed(int format)
+    {
+        Format f = FORMATS.get(format);
+        return f == null || f.bits == 0;
+    }
+    
+    /**
+     * Returns the number of mipmap levels in a full chain for a texture of the
+     * given size, down to and including 1x1.
+     * 
+     * @param width The width of the largest level.
+     * @param height The height of the largest level.
+     * @return The number of levels in a full mipmap chain.
+     */
+    public static int getLevelCount(int width, int height)
+    {
+        return 32 - Integer.numberOfLeadingZeros(Math.max(width, height));
+    }
+    
     /**
      * @param filter an OpenGL texture minify filter.
      * @return whether or not the given filter is a mipmap filter.
@@ -22,6 +22,9 @@
 package com.samrj.devil.json;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 
 
 /**
@@ -314,9 +317,78 @@ public final class Json {
    *           if the input is not valid JSON
    */
   public static JsonValue parse(File file) throws IOException {
-    try (Reader r = new InputStreamReader(new FileInputStream(file))) {
-      return new JsonParser(file).parse(r);
+    return parse(file, true);
+  }
+
+  /**
+   * Reads the entire input from the given file and parses it as JSON. The input must contain a
+   * valid JSON value, optionally padded with whitespace.
+   * <p>
+   * Turning off location tracking saves allocating a {@link Location} for every value, which is
+   * worthwhile for large data files. Parse errors still report their location.
+   * </p>
+   *
+   * @param file
+   *          the file to read the JSON value from
+   * @param trackLocations
+   *          whether each value should record its location in the file
+   * @return a value that represents the parsed JSON
+   * @throws IOException
+   *           if an I/O error occurs in the reader
+   * @throws ParseException
+   *           if the input is not valid JSON
+   */
+  public static JsonValue parse(File file, boolean trackLocations) throws IOException {
+    JsonParser parser = new JsonParser(file);
+    parser.setTrackLocations(trackLocations);
+    return parser.parse(ByteBuffer.wrap(Files.readAllBytes(file.toPath())));
+  }
+
+  /**
+   * Parses the UTF-8 encoded bytes between the given buffer's position and limit as JSON, without
+   * decoding them to chars first. The buffer may be memory-mapped. Its position is not changed.
+   *
+   * @param bytes
+   *          the buffer to read the JSON value from
+   * @return a value that represents the parsed JSON
+   * @throws ParseException
+   *           if the input is not valid JSON
+   */
+  public static JsonValue parse(ByteBuffer bytes) {
+    if (bytes == null) {
+      throw new NullPointerException("bytes is null");
+    }
+    return new JsonParser(null).parse(bytes);
+  }
+
+  /**
+   * Parses the given UTF-8 encoded bytes as JSON, without decoding them to chars first.
+   *
+   * @param bytes
+   *          the bytes to read the JSON value from
+   * @return a value that represents the parsed JSON
+   * @throws ParseException
+   *           if the input is not valid JSON
+   */
+  public static JsonValue parse(byte[] bytes) {
+    if (bytes == null) {
+      throw new NullPointerException("bytes is null");
     }
+    return new JsonParser(null).parse(ByteBuffer.wrap(bytes));
+  }
+
+  /**
+   * Opens the given file for pull parsing, without building a tree of values. The returned reader
+   * must be closed.
+   *
+   * @param file
+   *          the file to read JSON from
+   * @return a pull parser over the file
+   * @throws IOException
+   *           if the file cannot be opened
+   */
+  public static JsonReader reader(File file) throws IOException {
+    return new JsonReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
   }
 
   private static String cutOffPointZero(String string) {
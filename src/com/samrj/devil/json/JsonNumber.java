@@ -28,7 +28,16 @@ import java.io.IOException;
 @SuppressWarnings("serial") // use default serial UID
 final class JsonNumber extends JsonValue {
 
+  private static final byte HAS_LONG = 1;
+  private static final byte HAS_FLOAT = 2;
+  private static final byte HAS_DOUBLE = 4;
+
   private final String string;
+  // Parsed lazily, and at most once per type
+  private transient byte cached;
+  private transient long longValue;
+  private transient float floatValue;
+  private transient double doubleValue;
 
   JsonNumber(File source, String string) {
     super(source);
@@ -55,22 +64,38 @@ final class JsonNumber extends JsonValue {
 
   @Override
   public int asInt() {
-    return Integer.parseInt(string, 10);
+    long value = asLong();
+    if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+      throw new NumberFormatException("For input string: \"" + string + "\"");
+    }
+    return (int)value;
   }
 
   @Override
   public long asLong() {
-    return Long.parseLong(string, 10);
+    if ((cached & HAS_LONG) == 0) {
+      longValue = Long.parseLong(string, 10);
+      cached |= HAS_LONG;
+    }
+    return longValue;
   }
 
   @Override
   public float asFloat() {
-    return Float.parseFloat(string);
+    if ((cached & HAS_FLOAT) == 0) {
+      floatValue = Float.parseFloat(string);
+      cached |= HAS_FLOAT;
+    }
+    return floatValue;
   }
 
   @Override
   public double asDouble() {
-    return Double.parseDouble(string);
+    if ((cached & HAS_DOUBLE) == 0) {
+      doubleValue = Double.parseDouble(string);
+      cached |= HAS_DOUBLE;
+    }
+    return doubleValue;
   }
 
   @Override
@@ -21,42 +21,22 @@
  ******************************************************************************/
 package com.samrj.devil.json;
 
+import com.samrj.devil.json.JsonReader.Token;
+
 import java.io.File;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.nio.ByteBuffer;
 
 
 /**
- * A streaming parser for JSON text.
+ * Builds a tree of JSON values from the tokens of a {@link JsonReader}.
  */
 final class JsonParser {
 
-  private static final int MAX_NESTING_LEVEL = 1000;
-  private static final int MIN_BUFFER_SIZE = 10;
-  private static final int DEFAULT_BUFFER_SIZE = 1024;
-
   private final File source;
-  private Reader reader;
-  private char[] buffer;
-  private int bufferOffset;
-  private int index;
-  private int fill;
-  private int line;
-  private int lineOffset;
-  private int current;
-  private StringBuilder captureBuffer;
-  private int captureStart;
-  private int nestingLevel;
-
-  /*
-   * |                      bufferOffset
-   *                        v
-   * [a|b|c|d|e|f|g|h|i|j|k|l|m|n|o|p|q|r|s|t]        < input
-   *                       [l|m|n|o|p|q|r|s|t|?|?]    < buffer
-   *                          ^               ^
-   *                       |  index           fill
-   */
+  private boolean trackLocations = true;
 
   /**
    * Creates a new JsonParser.
@@ -65,6 +45,13 @@ final class JsonParser {
     this.source = source;
   }
 
+  /**
+   * Sets whether each parsed value records its location in the input. Defaults to true.
+   */
+  void setTrackLocations(boolean trackLocations) {
+    this.trackLocations = trackLocations;
+  }
+
   /**
    * Parses the given input string. The input must contain a valid JSON value, optionally padded
    * with whitespace.
@@ -79,7 +66,8 @@ final class JsonParser {
     if (string == null) {
       throw new NullPointerException("string is null");
     }
-    int bufferSize = Math.max(MIN_BUFFER_SIZE, Math.min(DEFAULT_BUFFER_SIZE, string.length()));
+    int bufferSize = Math.max(JsonReader.MIN_BUFFER_SIZE,
+        Math.min(JsonReader.DEFAULT_BUFFER_SIZE, string.length()));
     try {
       return parse(new StringReader(string), bufferSize);
     } catch (IOException exception) {
@@ -105,7 +93,7 @@ final class JsonParser {
    *           if the input is not valid JSON
    */
   JsonValue parse(Reader reader) throws IOException {
-    return parse(reader, DEFAULT_BUFFER_SIZE);
+    return parse(reader, JsonReader.DEFAULT_BUFFER_SIZE);
   }
 
   /**
@@ -127,372 +115,80 @@ final class JsonParser {
    *           if the input is not valid JSON
    */
   JsonValue parse(Reader reader, int buffersize) throws IOException {
-    if (reader == null) {
-      throw new NullPointerException("reader is null");
-    }
-    if (buffersize <= 0) {
-      throw new IllegalArgumentException("buffersize is zero or negative");
-    }
-    this.reader = reader;
-    buffer = new char[buffersize];
-    bufferOffset = 0;
-    index = 0;
-    fill = 0;
-    line = 1;
-    lineOffset = 0;
-    current = 0;
-    captureStart = -1;
-    read();
-    skipWhiteSpace();
-    JsonValue value = readValue();
-    skipWhiteSpace();
-    if (!isEndOfText()) {
-      throw error("Unexpected character");
-    }
-    return value;
-  }
-
-  private JsonValue readValue() throws IOException {
-    switch (current) {
-      case 'n': return readNull();
-      case 't': return readTrue();
-      case 'f': return readFalse();
-      case '"': return readString();
-      case '[': return readArray();
-      case '{': return readObject();
-      case '-':
-      case '0':
-      case '1':
-      case '2':
-      case '3':
-      case '4':
-      case '5':
-      case '6':
-      case '7':
-      case '8':
-      case '9': return readNumber();
-      default: throw expected("value");
-    }
-  }
-
-  private JsonArray readArray() throws IOException {
-    JsonArray array = new JsonArray(source);
-    array.setLocation(getLocation());
-    read();
-    if (++nestingLevel > MAX_NESTING_LEVEL) {
-      throw error("Nesting too deep");
-    }
-    skipWhiteSpace();
-    if (readChar(']')) {
-      nestingLevel--;
-      return array;
-    }
-    do {
-      skipWhiteSpace();
-      JsonValue value = readValue();
-      array.add(value);
-      skipWhiteSpace();
-    } while (readChar(','));
-    if (!readChar(']')) {
-      throw expected("',' or ']'");
-    }
-    nestingLevel--;
-    return array;
-  }
-
-  private JsonObject readObject() throws IOException {
-    JsonObject object = new JsonObject(source);
-    object.setLocation(getLocation());
-    read();
-    if (++nestingLevel > MAX_NESTING_LEVEL) {
-      throw error("Nesting too deep");
-    }
-    skipWhiteSpace();
-    if (readChar('}')) {
-      nestingLevel--;
-      return object;
-    }
-    do {
-      skipWhiteSpace();
-      String name = readName();
-      skipWhiteSpace();
-      if (!readChar(':')) {
-        throw expected("':'");
-      }
-      skipWhiteSpace();
-      JsonValue value = readValue();
-      object.add(name, value);
-      skipWhiteSpace();
-    } while (readChar(','));
-    if (!readChar('}')) {
-      throw expected("',' or '}'");
-    }
-    nestingLevel--;
-    return object;
+    return parse(new JsonReader(reader, buffersize));
   }
 
-  private String readName() throws IOException {
-    if (current != '"') {
-      throw expected("name");
+  /**
+   * Parses the UTF-8 encoded bytes between the given buffer's position and limit as JSON. The
+   * input must contain a valid JSON value, optionally padded with whitespace.
+   *
+   * @param bytes
+   *          the buffer to read the input from, which may be memory-mapped
+   * @return the parsed JSON value
+   * @throws ParseException
+   *           if the input is not valid JSON
+   */
+  JsonValue parse(ByteBuffer bytes) {
+    try {
+      return parse(new JsonReader(bytes));
+    } catch (IOException exception) {
+      // Reading from a buffer does not throw IOException
+      throw new RuntimeException(exception);
     }
-    return readStringInternal();
-  }
-
-  private JsonValue readNull() throws IOException {
-    Location location = getLocation();
-    read();
-    readRequiredChar('u');
-    readRequiredChar('l');
-    readRequiredChar('l');
-    JsonValue value = JsonLiteral.makeNull(source);
-    value.setLocation(location);
-    return value;
   }
 
-  private JsonValue readTrue() throws IOException {
-    Location location = getLocation();
-    read();
-    readRequiredChar('r');
-    readRequiredChar('u');
-    readRequiredChar('e');
-    JsonValue value = JsonLiteral.makeTrue(source);
-    value.setLocation(location);
+  private JsonValue parse(JsonReader in) throws IOException {
+    in.setTrackLocations(trackLocations);
+    JsonValue value = readValue(in);
+    in.peek(); // throws unless only whitespace remains
     return value;
   }
 
-  private JsonValue readFalse() throws IOException {
-    Location location = getLocation();
-    read();
-    readRequiredChar('a');
-    readRequiredChar('l');
-    readRequiredChar('s');
-    readRequiredChar('e');
-    JsonValue value = JsonLiteral.makeFalse(source);
-    value.setLocation(location);
-    return value;
-  }
-
-  private void readRequiredChar(char ch) throws IOException {
-    if (!readChar(ch)) {
-      throw expected("'" + ch + "'");
-    }
-  }
-
-  private JsonString readString() throws IOException {
-    Location location = getLocation();
-    JsonString string = new JsonString(source, readStringInternal());
-    string.setLocation(location);
-    return string;
-  }
-
-  private String readStringInternal() throws IOException {
-    read();
-    startCapture();
-    while (current != '"') {
-      if (current == '\\') {
-        pauseCapture();
-        readEscape();
-        startCapture();
-      } else if (current < 0x20) {
-        throw expected("valid string character");
-      } else {
-        read();
-      }
-    }
-    String string = endCapture();
-    read();
-    return string;
-  }
-
-  private void readEscape() throws IOException {
-    read();
-    switch (current) {
-      case '"':
-      case '/':
-      case '\\':
-        captureBuffer.append((char)current);
+  private JsonValue readValue(JsonReader in) throws IOException {
+    Token token = in.nextToken();
+    Location location = in.getLocation();
+    JsonValue value;
+    switch (token) {
+      case NULL:
+        value = JsonLiteral.makeNull(source);
         break;
-      case 'b':
-        captureBuffer.append('\b');
+      case TRUE:
+        value = JsonLiteral.makeTrue(source);
         break;
-      case 'f':
-        captureBuffer.append('\f');
+      case FALSE:
+        value = JsonLiteral.makeFalse(source);
         break;
-      case 'n':
-        captureBuffer.append('\n');
+      case STRING:
+        value = new JsonString(source, in.getText());
         break;
-      case 'r':
-        captureBuffer.append('\r');
+      case NUMBER:
+        value = new JsonNumber(source, in.getText());
         break;
-      case 't':
-        captureBuffer.append('\t');
+      case BEGIN_ARRAY:
+        JsonArray array = new JsonArray(source);
+        while (in.hasNext()) {
+          array.add(readValue(in));
+        }
+        in.endArray();
+        value = array;
         break;
-      case 'u':
-        char[] hexChars = new char[4];
-        for (int i = 0; i < 4; i++) {
-          read();
-          if (!isHexDigit()) {
-            throw expected("hexadecimal digit");
-          }
-          hexChars[i] = (char)current;
+      case BEGIN_OBJECT:
+        JsonObject object = new JsonObject(source);
+        while (in.hasNext()) {
+          String name = in.nextName();
+          object.add(name, readValue(in));
         }
-        captureBuffer.append((char)Integer.parseInt(new String(hexChars), 16));
+        in.endObject();
+        value = object;
         break;
       default:
-        throw expected("valid escape sequence");
-    }
-    read();
-  }
-
-  private JsonNumber readNumber() throws IOException {
-    Location location = getLocation();
-    startCapture();
-    readChar('-');
-    int firstDigit = current;
-    if (!readDigit()) {
-      throw expected("digit");
-    }
-    if (firstDigit != '0') {
-      while (readDigit()) {
-      }
-    }
-    readFraction();
-    readExponent();
-    JsonNumber number = new JsonNumber(source, endCapture());
-    number.setLocation(location);
-    return number;
-  }
-
-  private boolean readFraction() throws IOException {
-    if (!readChar('.')) {
-      return false;
-    }
-    if (!readDigit()) {
-      throw expected("digit");
-    }
-    while (readDigit()) {
-    }
-    return true;
-  }
-
-  private boolean readExponent() throws IOException {
-    if (!readChar('e') && !readChar('E')) {
-      return false;
-    }
-    if (!readChar('+')) {
-      readChar('-');
-    }
-    if (!readDigit()) {
-      throw expected("digit");
-    }
-    while (readDigit()) {
-    }
-    return true;
-  }
-
-  private boolean readChar(char ch) throws IOException {
-    if (current != ch) {
-      return false;
-    }
-    read();
-    return true;
-  }
-
-  private boolean readDigit() throws IOException {
-    if (!isDigit()) {
-      return false;
-    }
-    read();
-    return true;
-  }
-
-  private void skipWhiteSpace() throws IOException {
-    while (isWhiteSpace()) {
-      read();
-    }
-  }
-
-  private void read() throws IOException {
-    if (index == fill) {
-      if (captureStart != -1) {
-        captureBuffer.append(buffer, captureStart, fill - captureStart);
-        captureStart = 0;
-      }
-      bufferOffset += fill;
-      fill = reader.read(buffer, 0, buffer.length);
-      index = 0;
-      if (fill == -1) {
-        current = -1;
-        index++;
-        return;
-      }
-    }
-    if (current == '\n') {
-      line++;
-      lineOffset = bufferOffset + index;
+        // JsonReader only ever yields a value token here
+        throw new IllegalStateException("Unexpected " + token);
     }
-    current = buffer[index++];
-  }
-
-  private void startCapture() {
-    if (captureBuffer == null) {
-      captureBuffer = new StringBuilder();
+    if (location != null) {
+      value.setLocation(location);
     }
-    captureStart = index - 1;
-  }
-
-  private void pauseCapture() {
-    int end = current == -1 ? index : index - 1;
-    captureBuffer.append(buffer, captureStart, end - captureStart);
-    captureStart = -1;
-  }
-
-  private String endCapture() {
-    int start = captureStart;
-    int end = index - 1;
-    captureStart = -1;
-    if (captureBuffer.length() > 0) {
-      captureBuffer.append(buffer, start, end - start);
-      String captured = captureBuffer.toString();
-      captureBuffer.setLength(0);
-      return captured;
-    }
-    return new String(buffer, start, end - start);
-  }
-
-  private Location getLocation() {
-    int offset = bufferOffset + index - 1;
-    int column = offset - lineOffset + 1;
-    return new Location(offset, line, column);
-  }
-
-  private ParseException expected(String expected) {
-    if (isEndOfText()) {
-      return error("Unexpected end of input");
-    }
-    return error("Expected " + expected);
-  }
-
-  private ParseException error(String message) {
-    return new ParseException(message, getLocation());
-  }
-
-  private boolean isWhiteSpace() {
-    return current == ' ' || current == '\t' || current == '\n' || current == '\r';
-  }
-
-  private boolean isDigit() {
-    return current >= '0' && current <= '9';
-  }
-
-  private boolean isHexDigit() {
-    return current >= '0' && current <= '9'
-        || current >= 'a' && current <= 'f'
-        || current >= 'A' && current <= 'F';
-  }
-
-  private boolean isEndOfText() {
-    return current == -1;
+    return value;
   }
 
 }
@@ -0,0 +1,983 @@
+/*******************************************************************************
+ * Copyright (c) 2013, 2016 EclipseSource.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package com.samrj.devil.json;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * A pull parser for JSON text. Reads one token at a time without building any {@link JsonValue}
+ * nodes, so large documents can be read in constant memory. The structure of the input is
+ * validated as it is read, exactly as {@link Json#parse(Reader)} would.
+ * <p>
+ * Tokens may be inspected with {@link #peek()} and consumed with {@link #nextToken()}, or
+ * consumed and converted in one step with the typed methods such as {@link #nextName()},
+ * {@link #nextFloat()} and {@link #skipValue()}.
+ * </p>
+ * <p>
+ * A reader may also be created directly over UTF-8 bytes, such as a memory-mapped file. This
+ * skips decoding to chars entirely: ASCII strings are copied straight out of the buffer, numbers
+ * are converted without an intermediate string where it is exact to do so, and repeated object
+ * names share one interned string. Locations then count bytes rather than chars.
+ * </p>
+ */
+public final class JsonReader implements Closeable {
+
+  /**
+   * The kinds of token a JSON document is made of.
+   */
+  public enum Token {
+    BEGIN_ARRAY, END_ARRAY, BEGIN_OBJECT, END_OBJECT, NAME, STRING, NUMBER, TRUE, FALSE, NULL,
+    END_DOCUMENT
+  }
+
+  static final int MIN_BUFFER_SIZE = 10;
+  static final int DEFAULT_BUFFER_SIZE = 1024;
+  private static final int MAX_NESTING_LEVEL = 1000;
+
+  private static final int EMPTY_DOCUMENT = 0;
+  private static final int NONEMPTY_DOCUMENT = 1;
+  private static final int EMPTY_ARRAY = 2;
+  private static final int NONEMPTY_ARRAY = 3;
+  private static final int EMPTY_OBJECT = 4;
+  private static final int DANGLING_NAME = 5;
+  private static final int NONEMPTY_OBJECT = 6;
+
+  private static final int SYMBOL_TABLE_SIZE = 256;
+  private static final int MAX_SYMBOL_LENGTH = 32;
+  private static final int MAX_FAST_DIGITS = 18;
+  private static final double[] DOUBLE_POWERS = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+    1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+  private static final float[] FLOAT_POWERS = {
+    1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+  };
+
+  private final Reader reader;
+  private final char[] buffer;
+  private final ByteBuffer bytes;
+  private int limit;
+  private byte[] scratch;
+  private String[] symbols;
+  private int bufferOffset;
+  private int index;
+  private int fill;
+  private int line = 1;
+  private int lineOffset;
+  private int current;
+  private boolean started;
+  private StringBuilder captureBuffer;
+  private int captureStart = -1;
+
+  private int[] stack = new int[32];
+  private int depth;
+
+  private boolean trackLocations = true;
+  private boolean discard;
+  private Token peeked;
+  private String text;
+  private Location location;
+
+  // The most recent number token, when reading bytes
+  private boolean pendingNumber;
+  private int numberStart;
+  private int numberEnd;
+  private boolean numberNegative;
+  private boolean numberInteger;
+  private boolean numberExact;
+  private long numberMantissa;
+  private int numberExponent;
+
+  /*
+   * |                      bufferOffset
+   *                        v
+   * [a|b|c|d|e|f|g|h|i|j|k|l|m|n|o|p|q|r|s|t]        < input
+   *                       [l|m|n|o|p|q|r|s|t|?|?]    < buffer
+   *                          ^               ^
+   *                       |  index           fill
+   */
+
+  /**
+   * Creates a new JsonReader over the given string.
+   *
+   * @param string
+   *          the input string
+   */
+  public JsonReader(String string) {
+    this(new StringReader(string),
+        Math.max(MIN_BUFFER_SIZE, Math.min(DEFAULT_BUFFER_SIZE, string.length())));
+  }
+
+  /**
+   * Creates a new JsonReader which reads characters in chunks into a default-sized input buffer.
+   * Hence, wrapping a reader in an additional <code>BufferedReader</code> likely won't improve
+   * reading performance.
+   *
+   * @param reader
+   *          the reader to read the input from
+   */
+  public JsonReader(Reader reader) {
+    this(reader, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Creates a new JsonReader which reads characters in chunks into an input buffer of the given
+   * size.
+   *
+   * @param reader
+   *          the reader to read the input from
+   * @param buffersize
+   *          the size of the input buffer in chars
+   */
+  public JsonReader(Reader reader, int buffersize) {
+    if (reader == null) {
+      throw new NullPointerException("reader is null");
+    }
+    if (buffersize <= 0) {
+      throw new IllegalArgumentException("buffersize is zero or negative");
+    }
+    this.reader = reader;
+    buffer = new char[buffersize];
+    bytes = null;
+    stack[depth++] = EMPTY_DOCUMENT;
+  }
+
+  /**
+   * Creates a new JsonReader over the UTF-8 encoded bytes between the given buffer's position and
+   * limit. The buffer's position is not changed, and its contents must not change while reading.
+   *
+   * @param bytes
+   *          the buffer to read the input from, which may be memory-mapped
+   */
+  public JsonReader(ByteBuffer bytes) {
+    if (bytes == null) {
+      throw new NullPointerException("bytes is null");
+    }
+    reader = null;
+    buffer = null;
+    this.bytes = bytes;
+    index = bytes.position();
+    limit = bytes.limit();
+    bufferOffset = -index;
+    lineOffset = 0;
+    scratch = new byte[64];
+    symbols = new String[SYMBOL_TABLE_SIZE];
+    stack[depth++] = EMPTY_DOCUMENT;
+  }
+
+  /**
+   * Creates a new JsonReader over the given UTF-8 encoded bytes.
+   *
+   * @param bytes
+   *          the input bytes
+   */
+  public JsonReader(byte[] bytes) {
+    this(ByteBuffer.wrap(bytes));
+  }
+
+  /**
+   * Sets whether the location of each token is recorded. Defaults to true. Turning this off saves
+   * allocating a {@link Location} for every token; parse errors still report their location.
+   *
+   * @param trackLocations
+   *          whether to record token locations
+   */
+  public void setTrackLocations(boolean trackLocations) {
+    this.trackLocations = trackLocations;
+    if (!trackLocations) {
+      location = null;
+    }
+  }
+
+  /**
+   * Returns the type of the next token without consuming it.
+   *
+   * @return the type of the next token
+   * @throws IOException
+   *           if an I/O error occurs in the reader
+   * @throws ParseException
+   *           if the input is not valid JSON
+   */
+  public Token peek() throws IOException {
+    if (peeked == null) {
+      peeked = doPeek();
+    }
+    return peeked;
+  }
+
+  /**
+   * Consumes the next token and returns its type. The text of a name, string or number token is
+   * then available from {@link #getText()}. Once the end of the document is reached, this keeps
+   * returning {@link Token#END_DOCUMENT}.
+   *
+   * @return the type of the consumed token
+   * @throws IOException
+   *           if an I/O error occurs in the reader
+   * @throws ParseException
+   *           if the input is not valid JSON
+   */
+  public Token nextToken() throws IOException {
+    Token token = peek();
+    peeked = null;
+    return token;
+  }
+
+  /**
+   * Returns the text of the most recently peeked or consumed name, string or number token, or
+   * <code>null</code> for any other token.
+   *
+   * @return the text of the current token
+   */
+  public String getText() {
+    if (pendingNumber) {
+      text = latin1(numberStart, numberEnd - numberStart);
+      pendingNumber = false;
+    }
+    return text;
+  }
+
+  /**
+   * Returns the location of the most recently peeked or consumed token, or <code>null</code> if
+   * location tracking is turned off.
+   *
+   * @return the location of the current token
+   */
+  public Location getLocation() {
+    return location;
+  }
+
+  /**
+   * Returns whether the current array or object has another element.
+   *
+   * @return <code>false</code> if the next token ends an array, object, or the document
+   * @throws IOException
+   *           if an I/O error occurs in the reader
+   */
+  public boolean hasNext() throws IOException {
+    Token token = peek();
+    return token != Token.END_ARRAY && token != Token.END_OBJECT && token != Token.END_DOCUMENT;
+  }
+
+  public void beginArray() throws IOException {
+    expect(Token.BEGIN_ARRAY);
+  }
+
+  public void endArray() throws IOException {
+    expect(Token.END_ARRAY);
+  }
+
+  public void beginObject() throws IOException {
+    expect(Token.BEGIN_OBJECT);
+  }
+
+  public void endObject() throws IOException {
+    expect(Token.END_OBJECT);
+  }
+
+  public String nextName() throws IOException {
+    expect(Token.NAME);
+    return text;
+  }
+
+  public String nextString() throws IOException {
+    expect(Token.STRING);
+    return text;
+  }
+
+  public int nextInt() throws IOException {
+    expect(Token.NUMBER);
+    if (pendingNumber && numberInteger && numberExact) {
+      long value = numberNegative ? -numberMantissa : numberMantissa;
+      if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+        return (int)value;
+      }
+    }
+    return Integer.parseInt(getText(), 10);
+  }
+
+  public long nextLong() throws IOException {
+    expect(Token.NUMBER);
+    if (pendingNumber && numberInteger && numberExact) {
+      return numberNegative ? -numberMantissa : numberMantissa;
+    }
+    return Long.parseLong(getText(), 10);
+  }
+
+  public float nextFloat() throws IOException {
+    expect(Token.NUMBER);
+    // Both operands are exact floats, so a single operation rounds correctly
+    if (pendingNumber && numberExact && numberMantissa < 1 << 24
+        && numberExponent >= -10 && numberExponent <= 10) {
+      float value = numberMantissa;
+      value = numberExponent < 0 ? value/FLOAT_POWERS[-numberExponent]
+                                 : value*FLOAT_POWERS[numberExponent];
+      return numberNegative ? -value : value;
+    }
+    return Float.parseFloat(getText());
+  }
+
+  public double nextDouble() throws IOException {
+    expect(Token.NUMBER);
+    // Both operands are exact doubles, so a single operation rounds correctly
+    if (pendingNumber && numberExact && numberMantissa < 1L << 53
+        && numberExponent >= -22 && numberExponent <= 22) {
+      double value = numberMantissa;
+      value = numberExponent < 0 ? value/DOUBLE_POWERS[-numberExponent]
+                                 : value*DOUBLE_POWERS[numberExponent];
+      return numberNegative ? -value : value;
+    }
+    return Double.parseDouble(getText());
+  }
+
+  public boolean nextBoolean() throws IOException {
+    Token token = peek();
+    if (token != Token.TRUE && token != Token.FALSE) {
+      throw error("Expected boolean but was " + token);
+    }
+    peeked = null;
+    return token == Token.TRUE;
+  }
+
+  public void nextNull() throws IOException {
+    expect(Token.NULL);
+  }
+
+  /**
+   * Skips the next value, including everything nested in it. If the next token is a name, skips
+   * both the name and its value. Skipped strings and numbers are validated but never copied.
+   *
+   * @throws IOException
+   *           if an I/O error occurs in the reader
+   * @throws ParseException
+   *           if the input is not valid JSON, or there is no value to skip
+   */
+  public void skipValue() throws IOException {
+    if (!hasNext()) {
+      throw error("Expected value but was " + peeked);
+    }
+    try {
+      int count = 0;
+      Token token;
+      do {
+        token = nextToken();
+        discard = true;
+        if (token == Token.BEGIN_ARRAY || token == Token.BEGIN_OBJECT) {
+          count++;
+        } else if (token == Token.END_ARRAY || token == Token.END_OBJECT) {
+          count--;
+        }
+      } while (count > 0 || token == Token.NAME);
+    } finally {
+      discard = false;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (reader != null) {
+      reader.close();
+    }
+  }
+
+  private void expect(Token token) throws IOException {
+    if (peek() != token) {
+      throw error("Expected " + token + " but was " + peeked);
+    }
+    peeked = null;
+  }
+
+  private Token doPeek() throws IOException {
+    if (!started) {
+      started = true;
+      read();
+    }
+    text = null;
+    pendingNumber = false;
+    skipWhiteSpace();
+    switch (stack[depth - 1]) {
+      case EMPTY_ARRAY:
+        if (current == ']') {
+          return endContainer(Token.END_ARRAY);
+        }
+        stack[depth - 1] = NONEMPTY_ARRAY;
+        return readValue();
+      case NONEMPTY_ARRAY:
+        if (current == ']') {
+          return endContainer(Token.END_ARRAY);
+        }
+        if (!readChar(',')) {
+          throw expected("',' or ']'");
+        }
+        skipWhiteSpace();
+        return readValue();
+      case EMPTY_OBJECT:
+        if (current == '}') {
+          return endContainer(Token.END_OBJECT);
+        }
+        return readName();
+      case NONEMPTY_OBJECT:
+        if (current == '}') {
+          return endContainer(Token.END_OBJECT);
+        }
+        if (!readChar(',')) {
+          throw expected("',' or '}'");
+        }
+        skipWhiteSpace();
+        return readName();
+      case DANGLING_NAME:
+        if (!readChar(':')) {
+          throw expected("':'");
+        }
+        skipWhiteSpace();
+        stack[depth - 1] = NONEMPTY_OBJECT;
+        return readValue();
+      case EMPTY_DOCUMENT:
+        stack[depth - 1] = NONEMPTY_DOCUMENT;
+        return readValue();
+      default:
+        if (!isEndOfText()) {
+          throw error("Unexpected character");
+        }
+        markLocation();
+        return Token.END_DOCUMENT;
+    }
+  }
+
+  private Token endContainer(Token token) throws IOException {
+    markLocation();
+    read();
+    depth--;
+    return token;
+  }
+
+  private void push(int context) {
+    if (depth > MAX_NESTING_LEVEL) {
+      throw error("Nesting too deep");
+    }
+    if (depth == stack.length) {
+      int[] newStack = new int[depth*2];
+      System.arraycopy(stack, 0, newStack, 0, depth);
+      stack = newStack;
+    }
+    stack[depth++] = context;
+  }
+
+  private Token readName() throws IOException {
+    if (current != '"') {
+      throw expected("name");
+    }
+    markLocation();
+    text = bytes != null ? readStringBytes(true) : readStringInternal();
+    stack[depth - 1] = DANGLING_NAME;
+    return Token.NAME;
+  }
+
+  private Token readValue() throws IOException {
+    markLocation();
+    switch (current) {
+      case 'n':
+        read();
+        readRequiredChar('u');
+        readRequiredChar('l');
+        readRequiredChar('l');
+        return Token.NULL;
+      case 't':
+        read();
+        readRequiredChar('r');
+        readRequiredChar('u');
+        readRequiredChar('e');
+        return Token.TRUE;
+      case 'f':
+        read();
+        readRequiredChar('a');
+        readRequiredChar('l');
+        readRequiredChar('s');
+        readRequiredChar('e');
+        return Token.FALSE;
+      case '"':
+        text = bytes != null ? readStringBytes(false) : readStringInternal();
+        return Token.STRING;
+      case '[':
+        read();
+        push(EMPTY_ARRAY);
+        return Token.BEGIN_ARRAY;
+      case '{':
+        read();
+        push(EMPTY_OBJECT);
+        return Token.BEGIN_OBJECT;
+      case '-':
+      case '0':
+      case '1':
+      case '2':
+      case '3':
+      case '4':
+      case '5':
+      case '6':
+      case '7':
+      case '8':
+      case '9':
+        if (bytes != null) {
+          readNumberBytes();
+        } else {
+          text = readNumber();
+        }
+        return Token.NUMBER;
+      default:
+        throw expected("value");
+    }
+  }
+
+  private void readRequiredChar(char ch) throws IOException {
+    if (!readChar(ch)) {
+      throw expected("'" + ch + "'");
+    }
+  }
+
+  private String readStringInternal() throws IOException {
+    read();
+    if (!discard) {
+      startCapture();
+    }
+    while (current != '"') {
+      if (current == '\\') {
+        if (!discard) {
+          pauseCapture();
+        }
+        readEscape();
+        if (!discard) {
+          startCapture();
+        }
+      } else if (current < 0x20) {
+        throw expected("valid string character");
+      } else {
+        read();
+      }
+    }
+    String string = discard ? null : endCapture();
+    read();
+    return string;
+  }
+
+  private void readEscape() throws IOException {
+    read();
+    char ch;
+    switch (current) {
+      case '"':
+      case '/':
+      case '\\':
+        ch = (char)current;
+        break;
+      case 'b':
+        ch = '\b';
+        break;
+      case 'f':
+        ch = '\f';
+        break;
+      case 'n':
+        ch = '\n';
+        break;
+      case 'r':
+        ch = '\r';
+        break;
+      case 't':
+        ch = '\t';
+        break;
+      case 'u':
+        int code = 0;
+        for (int i = 0; i < 4; i++) {
+          read();
+          if (!isHexDigit()) {
+            throw expected("hexadecimal digit");
+          }
+          code = (code << 4) | Character.digit(current, 16);
+        }
+        ch = (char)code;
+        break;
+      default:
+        throw expected("valid escape sequence");
+    }
+    if (!discard) {
+      captureBuffer.append(ch);
+    }
+    read();
+  }
+
+  private String readNumber() throws IOException {
+    if (!discard) {
+      startCapture();
+    }
+    readChar('-');
+    int firstDigit = current;
+    if (!readDigit()) {
+      throw expected("digit");
+    }
+    if (firstDigit != '0') {
+      while (readDigit()) {
+      }
+    }
+    readFraction();
+    readExponent();
+    return discard ? null : endCapture();
+  }
+
+  private void readNumberBytes() throws IOException {
+    numberStart = index - 1;
+    numberNegative = readChar('-');
+    numberInteger = true;
+    numberExact = true;
+    long mantissa = 0;
+    int digits = 0;
+    int exponent = 0;
+    if (!isDigit()) {
+      throw expected("digit");
+    }
+    if (current == '0') {
+      read();
+    } else {
+      while (isDigit()) {
+        if (digits < MAX_FAST_DIGITS) {
+          mantissa = mantissa*10 + (current - '0');
+          digits++;
+        } else {
+          numberExact = false;
+        }
+        read();
+      }
+    }
+    if (readChar('.')) {
+      numberInteger = false;
+      if (!isDigit()) {
+        throw expected("digit");
+      }
+      while (isDigit()) {
+        if (mantissa == 0 && current == '0') {
+          exponent--;
+        } else if (digits < MAX_FAST_DIGITS) {
+          mantissa = mantissa*10 + (current - '0');
+          digits++;
+          exponent--;
+        } else {
+          numberExact = false;
+        }
+        read();
+      }
+    }
+    if (readChar('e') || readChar('E')) {
+      numberInteger = false;
+      boolean negative = false;
+      if (!readChar('+')) {
+        negative = readChar('-');
+      }
+      if (!isDigit()) {
+        throw expected("digit");
+      }
+      int value = 0;
+      while (isDigit()) {
+        if (value < 100000) {
+          value = value*10 + (current - '0');
+        } else {
+          numberExact = false;
+        }
+        read();
+      }
+      exponent += negative ? -value : value;
+    }
+    numberEnd = index - 1;
+    numberMantissa = mantissa;
+    numberExponent = exponent;
+    pendingNumber = true;
+  }
+
+  private boolean readFraction() throws IOException {
+    if (!readChar('.')) {
+      return false;
+    }
+    if (!readDigit()) {
+      throw expected("digit");
+    }
+    while (readDigit()) {
+    }
+    return true;
+  }
+
+  private boolean readExponent() throws IOException {
+    if (!readChar('e') && !readChar('E')) {
+      return false;
+    }
+    if (!readChar('+')) {
+      readChar('-');
+    }
+    if (!readDigit()) {
+      throw expected("digit");
+    }
+    while (readDigit()) {
+    }
+    return true;
+  }
+
+  private boolean readChar(char ch) throws IOException {
+    if (current != ch) {
+      return false;
+    }
+    read();
+    return true;
+  }
+
+  private boolean readDigit() throws IOException {
+    if (!isDigit()) {
+      return false;
+    }
+    read();
+    return true;
+  }
+
+  private void skipWhiteSpace() throws IOException {
+    while (isWhiteSpace()) {
+      read();
+    }
+  }
+
+  private String readStringBytes(boolean symbol) throws IOException {
+    // Fast path for ASCII without escapes; the current char is the opening quote
+    int start = index;
+    int hash = 0;
+    for (int i = start; i < limit; i++) {
+      byte b = bytes.get(i);
+      if (b == '"') {
+        String string = null;
+        if (!discard) {
+          string = symbol ? symbol(start, i - start, hash) : latin1(start, i - start);
+        }
+        index = i + 1;
+        read();
+        return string;
+      }
+      if (b == '\\' || b < 0x20) {
+        break;
+      }
+      hash = 31*hash + b;
+    }
+    if (captureBuffer == null) {
+      captureBuffer = new StringBuilder();
+    }
+    read();
+    while (current != '"') {
+      if (current == '\\') {
+        readEscape();
+      } else if (current < 0x20) {
+        throw expected("valid string character");
+      } else if (current < 0x80) {
+        if (!discard) {
+          captureBuffer.append((char)current);
+        }
+        read();
+      } else {
+        readUTF8();
+      }
+    }
+    read();
+    if (discard) {
+      return null;
+    }
+    String string = captureBuffer.toString();
+    captureBuffer.setLength(0);
+    return string;
+  }
+
+  private void readUTF8() throws IOException {
+    int codePoint;
+    int extra;
+    int min;
+    if ((current & 0xE0) == 0xC0) {
+      codePoint = current & 0x1F;
+      extra = 1;
+      min = 0x80;
+    } else if ((current & 0xF0) == 0xE0) {
+      codePoint = current & 0x0F;
+      extra = 2;
+      min = 0x800;
+    } else if ((current & 0xF8) == 0xF0) {
+      codePoint = current & 0x07;
+      extra = 3;
+      min = 0x10000;
+    } else {
+      codePoint = -1;
+      extra = 0;
+      min = 0;
+    }
+    for (int i = 0; i < extra; i++) {
+      int b = index < limit ? bytes.get(index) : 0;
+      if ((b & 0xC0) != 0x80) {
+        codePoint = -1;
+        break;
+      }
+      codePoint = (codePoint << 6) | (b & 0x3F);
+      index++;
+    }
+    if (!discard) {
+      if (codePoint < min || codePoint > 0x10FFFF || codePoint >= 0xD800 && codePoint <= 0xDFFF) {
+        captureBuffer.append('\uFFFD');
+      } else {
+        captureBuffer.appendCodePoint(codePoint);
+      }
+    }
+    read();
+  }
+
+  private String latin1(int start, int length) {
+    if (bytes.hasArray()) {
+      return new String(bytes.array(), bytes.arrayOffset() + start, length, StandardCharsets.ISO_8859_1);
+    }
+    if (scratch.length < length) {
+      scratch = new byte[Math.max(length, scratch.length*2)];
+    }
+    bytes.get(start, scratch, 0, length);
+    return new String(scratch, 0, length, StandardCharsets.ISO_8859_1);
+  }
+
+  private String symbol(int start, int length, int hash) {
+    if (length > MAX_SYMBOL_LENGTH) {
+      return latin1(start, length);
+    }
+    int slot = (hash ^ (hash >>> 16)) & (SYMBOL_TABLE_SIZE - 1);
+    String symbol = symbols[slot];
+    if (symbol == null || !matches(symbol, start, length)) {
+      symbol = latin1(start, length);
+      symbols[slot] = symbol;
+    }
+    return symbol;
+  }
+
+  private boolean matches(String symbol, int start, int length) {
+    if (symbol.length() != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (symbol.charAt(i) != bytes.get(start + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void read() throws IOException {
+    if (bytes != null) {
+      if (current == '\n') {
+        line++;
+        lineOffset = bufferOffset + index;
+      }
+      current = index < limit ? bytes.get(index) & 0xFF : -1;
+      index++;
+      return;
+    }
+    if (index == fill) {
+      if (captureStart != -1) {
+        captureBuffer.append(buffer, captureStart, fill - captureStart);
+        captureStart = 0;
+      }
+      bufferOffset += fill;
+      fill = reader.read(buffer, 0, buffer.length);
+      index = 0;
+      if (fill == -1) {
+        current = -1;
+        index++;
+        return;
+      }
+    }
+    if (current == '\n') {
+      line++;
+      lineOffset = bufferOffset + index;
+    }
+    current = buffer[index++];
+  }
+
+  private void startCapture() {
+    if (captureBuffer == null) {
+      captureBuffer = new StringBuilder();
+    }
+    captureStart = index - 1;
+  }
+
+  private void pauseCapture() {
+    int end = current == -1 ? index : index - 1;
+    captureBuffer.append(buffer, captureStart, end - captureStart);
+    captureStart = -1;
+  }
+
+  private String endCapture() {
+    int start = captureStart;
+    int end = index - 1;
+    captureStart = -1;
+    if (captureBuffer.length() > 0) {
+      captureBuffer.append(buffer, start, end - start);
+      String captured = captureBuffer.toString();
+      captureBuffer.setLength(0);
+      return captured;
+    }
+    return new String(buffer, start, end - start);
+  }
+
+  private void markLocation() {
+    if (trackLocations) {
+      location = currentLocation();
+    }
+  }
+
+  private Location currentLocation() {
+    int offset = bufferOffset + index - 1;
+    int column = offset - lineOffset + 1;
+    return new Location(offset, line, column);
+  }
+
+  private ParseException expected(String expected) {
+    if (isEndOfText()) {
+      return error("Unexpected end of input");
+    }
+    return error("Expected " + expected);
+  }
+
+  private ParseException error(String message) {
+    return new ParseException(message, currentLocation());
+  }
+
+  private boolean isWhiteSpace() {
+    return current == ' ' || current == '\t' || current == '\n' || current == '\r';
+  }
+
+  private boolean isDigit() {
+    return current >= '0' && current <= '9';
+  }
+
+  private boolean isHexDigit() {
+    return current >= '0' && current <= '9'
+        || current >= 'a' && current <= 'f'
+        || current >= 'A' && current <= 'F';
+  }
+
+  private boolean isEndOfText() {
+    return current == -1;
+  }
+
+}
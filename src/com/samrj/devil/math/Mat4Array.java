@@ -0,0 +1,248 @@
+package com.samrj.devil.math;
+
+import com.samrj.devil.util.FloatBufferable;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+import static com.samrj.devil.math.Vec3Array.checkLength;
+
+/**
+ * Packed array of 4x4 matrices, stored as one float array per entry, named as
+ * in Mat4. Bulk methods operate on every matrix at once, in simple loops which
+ * the JIT compiler can vectorize.
+ *
+ * Each bulk method performs the same floating point operations, in the same
+ * order, as its counterpart in Mat4, and so gives bit-identical results. The
+ * result array may be the same as an input array.
+ *
+ * @author Samuel Johnson (SmashMaster)
+ * @copyright 2022 Samuel Johnson
+ * @license https://github.com/SmashMaster/DevilUtil/blob/master/LICENSE
+ */
+public class Mat4Array implements FloatBufferable
+{
+    // <editor-fold defaultstate="collapsed" desc="Static bulk methods">
+    /**
+     * Multiplies each matrix in {@code m0} by the matching matrix in
+     * {@code m1}, and stores the results in {@code result}. Equivalent to
+     * Mat4.mult(Mat4, Mat4, Mat4).
+     *
+     * @param m0 The left-hand matrices to multiply.
+     * @param m1 The right-hand matrices to multiply by.
+     * @param result The array in which to store the results.
+     */
+    public static final void mult(Mat4Array m0, Mat4Array m1, Mat4Array result)
+    {
+        if (m1.length != m0.length) throw new IllegalArgumentException("Matrix count mismatch.");
+        checkLength(m0.length, result.length);
+        float[] la = m0.a, lb = m0.b, lc = m0.c, ld = m0.d,
+                le = m0.e, lf = m0.f, lg = m0.g, lh = m0.h,
+                li = m0.i, lj = m0.j, lk = m0.k, ll = m0.l,
+                lm = m0.m, ln = m0.n, lo = m0.o, lp = m0.p;
+        float[] ra = m1.a, rb = m1.b, rc = m1.c, rd = m1.d,
+                re = m1.e, rf = m1.f, rg = m1.g, rh = m1.h,
+                ri = m1.i, rj = m1.j, rk = m1.k, rl = m1.l,
+                rm = m1.m, rn = m1.n, ro = m1.o, rp = m1.p;
+        float[] oa = result.a, ob = result.b, oc = result.c, od = result.d,
+                oe = result.e, of = result.f, og = result.g, oh = result.h,
+                oi = result.i, oj = result.j, ok = result.k, ol = result.l,
+                om = result.m, on = result.n, oo = result.o, op = result.p;
+
+        for (int x=0; x<m0.length; x++)
+        {
+            float a = la[x]*ra[x] + lb[x]*re[x] + lc[x]*ri[x] + ld[x]*rm[x];
+            float b = la[x]*rb[x] + lb[x]*rf[x] + lc[x]*rj[x] + ld[x]*rn[x];
+            float c = la[x]*rc[x] + lb[x]*rg[x] + lc[x]*rk[x] + ld[x]*ro[x];
+            float d = la[x]*rd[x] + lb[x]*rh[x] + lc[x]*rl[x] + ld[x]*rp[x];
+
+            float e = le[x]*ra[x] + lf[x]*re[x] + lg[x]*ri[x] + lh[x]*rm[x];
+            float f = le[x]*rb[x] + lf[x]*rf[x] + lg[x]*rj[x] + lh[x]*rn[x];
+            float g = le[x]*rc[x] + lf[x]*rg[x] + lg[x]*rk[x] + lh[x]*ro[x];
+            float h = le[x]*rd[x] + lf[x]*rh[x] + lg[x]*rl[x] + lh[x]*rp[x];
+
+            float i = li[x]*ra[x] + lj[x]*re[x] + lk[x]*ri[x] + ll[x]*rm[x];
+            float j = li[x]*rb[x] + lj[x]*rf[x] + lk[x]*rj[x] + ll[x]*rn[x];
+            float k = li[x]*rc[x] + lj[x]*rg[x] + lk[x]*rk[x] + ll[x]*ro[x];
+            float l = li[x]*rd[x] + lj[x]*rh[x] + lk[x]*rl[x] + ll[x]*rp[x];
+
+            float m = lm[x]*ra[x] + ln[x]*re[x] + lo[x]*ri[x] + lp[x]*rm[x];
+            float n = lm[x]*rb[x] + ln[x]*rf[x] + lo[x]*rj[x] + lp[x]*rn[x];
+            float o = lm[x]*rc[x] + ln[x]*rg[x] + lo[x]*rk[x] + lp[x]*ro[x];
+            float p = lm[x]*rd[x] + ln[x]*rh[x] + lo[x]*rl[x] + lp[x]*rp[x];
+
+            oa[x] = a; ob[x] = b; oc[x] = c; od[x] = d;
+            oe[x] = e; of[x] = f; og[x] = g; oh[x] = h;
+            oi[x] = i; oj[x] = j; ok[x] = k; ol[x] = l;
+            om[x] = m; on[x] = n; oo[x] = o; op[x] = p;
+        }
+    }
+
+    /**
+     * Multiplies {@code m0} by each matrix in {@code m1}, and stores the
+     * results in {@code result}. Useful for moving many local transforms into
+     * the same parent space. Equivalent to Mat4.mult(Mat4, Mat4, Mat4).
+     *
+     * @param m0 The left-hand matrix to multiply.
+     * @param m1 The right-hand matrices to multiply by.
+     * @param result The array in which to store the results.
+     */
+    public static final void mult(Mat4 m0, Mat4Array m1, Mat4Array result)
+    {
+        checkLength(m1.length, result.length);
+        float[] ra = m1.a, rb = m1.b, rc = m1.c, rd = m1.d,
+                re = m1.e, rf = m1.f, rg = m1.g, rh = m1.h,
+                ri = m1.i, rj = m1.j, rk = m1.k, rl = m1.l,
+                rm = m1.m, rn = m1.n, ro = m1.o, rp = m1.p;
+        float[] oa = result.a, ob = result.b, oc = result.c, od = result.d,
+                oe = result.e, of = result.f, og = result.g, oh = result.h,
+                oi = result.i, oj = result.j, ok = result.k, ol = result.l,
+                om = result.m, on = result.n, oo = result.o, op = result.p;
+
+        for (int x=0; x<m1.length; x++)
+        {
+            float a = m0.a*ra[x] + m0.b*re[x] + m0.c*ri[x] + m0.d*rm[x];
+            float b = m0.a*rb[x] + m0.b*rf[x] + m0.c*rj[x] + m0.d*rn[x];
+            float c = m0.a*rc[x] + m0.b*rg[x] + m0.c*rk[x] + m0.d*ro[x];
+            float d = m0.a*rd[x] + m0.b*rh[x] + m0.c*rl[x] + m0.d*rp[x];
+
+            float e = m0.e*ra[x] + m0.f*re[x] + m0.g*ri[x] + m0.h*rm[x];
+            float f = m0.e*rb[x] + m0.f*rf[x] + m0.g*rj[x] + m0.h*rn[x];
+            float g = m0.e*rc[x] + m0.f*rg[x] + m0.g*rk[x] + m0.h*ro[x];
+            float h = m0.e*rd[x] + m0.f*rh[x] + m0.g*rl[x] + m0.h*rp[x];
+
+            float i = m0.i*ra[x] + m0.j*re[x] + m0.k*ri[x] + m0.l*rm[x];
+            float j = m0.i*rb[x] + m0.j*rf[x] + m0.k*rj[x] + m0.l*rn[x];
+            float k = m0.i*rc[x] + m0.j*rg[x] + m0.k*rk[x] + m0.l*ro[x];
+            float l = m0.i*rd[x] + m0.j*rh[x] + m0.k*rl[x] + m0.l*rp[x];
+
+            float m = m0.m*ra[x] + m0.n*re[x] + m0.o*ri[x] + m0.p*rm[x];
+            float n = m0.m*rb[x] + m0.n*rf[x] + m0.o*rj[x] + m0.p*rn[x];
+            float o = m0.m*rc[x] + m0.n*rg[x] + m0.o*rk[x] + m0.p*ro[x];
+            float p = m0.m*rd[x] + m0.n*rh[x] + m0.o*rl[x] + m0.p*rp[x];
+
+            oa[x] = a; ob[x] = b; oc[x] = c; od[x] = d;
+            oe[x] = e; of[x] = f; og[x] = g; oh[x] = h;
+            oi[x] = i; oj[x] = j; ok[x] = k; ol[x] = l;
+            om[x] = m; on[x] = n; oo[x] = o; op[x] = p;
+        }
+    }
+    // </editor-fold>
+
+    public final int length;
+    public final float[] a, b, c, d,
+                         e, f, g, h,
+                         i, j, k, l,
+                         m, n, o, p;
+
+    /**
+     * Creates a new array of the given number of identity matrices.
+     *
+     * @param length The number of matrices.
+     */
+    public Mat4Array(int length)
+    {
+        if (length < 0) throw new IllegalArgumentException("Negative length.");
+        this.length = length;
+        a = new float[length]; b = new float[length]; c = new float[length]; d = new float[length];
+        e = new float[length]; f = new float[length]; g = new float[length]; h = new float[length];
+        i = new float[length]; j = new float[length]; k = new float[length]; l = new float[length];
+        m = new float[length]; n = new float[length]; o = new float[length]; p = new float[length];
+        for (int x=0; x<length; x++)
+        {
+            a[x] = 1.0f; f[x] = 1.0f; k[x] = 1.0f; p[x] = 1.0f;
+        }
+    }
+
+    /**
+     * Copies the matrix at the given index into {@code result}.
+     *
+     * @param index The index of the matrix to get.
+     * @param result The matrix in which to store the result.
+     * @return The given result matrix.
+     */
+    public Mat4 get(int index, Mat4 result)
+    {
+        result.a = a[index]; result.b = b[index]; result.c = c[index]; result.d = d[index];
+        result.e = e[index]; result.f = f[index]; result.g = g[index]; result.h = h[index];
+        result.i = i[index]; result.j = j[index]; result.k = k[index]; result.l = l[index];
+        result.m = m[index]; result.n = n[index]; result.o = o[index]; result.p = p[index];
+        return result;
+    }
+
+    /**
+     * Sets the matrix at the given index to the given matrix.
+     *
+     * @param index The index of the matrix to set.
+     * @param x The matrix to copy.
+     * @return This array.
+     */
+    public Mat4Array set(int index, Mat4 x)
+    {
+        a[index] = x.a; b[index] = x.b; c[index] = x.c; d[index] = x.d;
+        e[index] = x.e; f[index] = x.f; g[index] = x.g; h[index] = x.h;
+        i[index] = x.i; j[index] = x.j; k[index] = x.k; l[index] = x.l;
+        m[index] = x.m; n[index] = x.n; o[index] = x.o; p[index] = x.p;
+        return this;
+    }
+
+    // <editor-fold defaultstate="collapsed" desc="Bufferable methods">
+    @Override
+    public void read(FloatBuffer buffer)
+    {
+        for (int x=0; x<length; x++)
+        {
+            a[x] = buffer.get(); e[x] = buffer.get(); i[x] = buffer.get(); m[x] = buffer.get();
+            b[x] = buffer.get(); f[x] = buffer.get(); j[x] = buffer.get(); n[x] = buffer.get();
+            c[x] = buffer.get(); g[x] = buffer.get(); k[x] = buffer.get(); o[x] = buffer.get();
+            d[x] = buffer.get(); h[x] = buffer.get(); l[x] = buffer.get(); p[x] = buffer.get();
+        }
+    }
+
+    /**
+     * Writes each matrix into the given buffer, in the same column-major layout
+     * as Mat4.write().
+     */
+    @Override
+    public void write(FloatBuffer buffer)
+    {
+        for (int x=0; x<length; x++)
+        {
+            buffer.put(a[x]); buffer.put(e[x]); buffer.put(i[x]); buffer.put(m[x]);
+            buffer.put(b[x]); buffer.put(f[x]); buffer.put(j[x]); buffer.put(n[x]);
+            buffer.put(c[x]); buffer.put(g[x]); buffer.put(k[x]); buffer.put(o[x]);
+            buffer.put(d[x]); buffer.put(h[x]); buffer.put(l[x]); buffer.put(p[x]);
+        }
+    }
+
+    @Override
+    public void read(ByteBuffer buffer)
+    {
+        for (int x=0; x<length; x++)
+        {
+            a[x] = buffer.getFloat(); e[x] = buffer.getFloat(); i[x] = buffer.getFloat(); m[x] = buffer.getFloat();
+            b[x] = buffer.getFloat(); f[x] = buffer.getFloat(); j[x] = buffer.getFloat(); n[x] = buffer.getFloat();
+            c[x] = buffer.getFloat(); g[x] = buffer.getFloat(); k[x] = buffer.getFloat(); o[x] = buffer.getFloat();
+            d[x] = buffer.getFloat(); h[x] = buffer.getFloat(); l[x] = buffer.getFloat(); p[x] = buffer.getFloat();
+        }
+    }
+
+    @Override
+    public void write(ByteBuffer buffer)
+    {
+        for (int x=0; x<length; x++)
+        {
+            buffer.putFloat(a[x]); buffer.putFloat(e[x]); buffer.putFloat(i[x]); buffer.putFloat(m[x]);
+            buffer.putFloat(b[x]); buffer.putFloat(f[x]); buffer.putFloat(j[x]); buffer.putFloat(n[x]);
+            buffer.putFloat(c[x]); buffer.putFloat(g[x]); buffer.putFloat(k[x]); buffer.putFloat(o[x]);
+            buffer.putFloat(d[x]); buffer.putFloat(h[x]); buffer.putFloat(l[x]); buffer.putFloat(p[x]);
+        }
+    }
+
+    @Override
+    public int bufferSize()
+    {
+        return length*64;
+    }
+    // </editor-fold>
+}
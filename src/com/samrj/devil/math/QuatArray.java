@@ -0,0 +1,210 @@
+package com.samrj.devil.math;
+
+import com.samrj.devil.util.FloatBufferable;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+import static com.samrj.devil.math.Vec3Array.checkLength;
+
+/**
+ * Packed array of quaternions, stored as one float array per component. Bulk
+ * methods operate on every quaternion at once.
+ *
+ * Each bulk method performs the same floating point operations, in the same
+ * order, as its counterpart in Quat, and so gives bit-identical results. The
+ * result array may be the same as an input array.
+ *
+ * @author Samuel Johnson (SmashMaster)
+ * @copyright 2022 Samuel Johnson
+ * @license https://github.com/SmashMaster/DevilUtil/blob/master/LICENSE
+ */
+public class QuatArray implements FloatBufferable
+{
+    // <editor-fold defaultstate="collapsed" desc="Static bulk methods">
+    /**
+     * Normalizes each quaternion in {@code q} and stores the results in
+     * {@code result}. Equivalent to Quat.normalize(Quat, Quat).
+     *
+     * @param q The quaternions to normalize.
+     * @param result The array in which to store the results.
+     */
+    public static final void normalize(QuatArray q, QuatArray result)
+    {
+        checkLength(q.length, result.length);
+        float[] qw = q.w, qx = q.x, qy = q.y, qz = q.z;
+        float[] rw = result.w, rx = result.x, ry = result.y, rz = result.z;
+
+        for (int n=0; n<q.length; n++)
+        {
+            float w = qw[n], x = qx[n], y = qy[n], z = qz[n];
+            float length = (float)Math.sqrt(w*w + x*x + y*y + z*z);
+            rw[n] = w/length; rx[n] = x/length; ry[n] = y/length; rz[n] = z/length;
+        }
+    }
+
+    private static void slerp(QuatArray q0, QuatArray q1, int n, float t, QuatArray result)
+    {
+        float w0 = q0.w[n], x0 = q0.x[n], y0 = q0.y[n], z0 = q0.z[n];
+        float w1 = q1.w[n], x1 = q1.x[n], y1 = q1.y[n], z1 = q1.z[n];
+
+        float dot = w0*w1 + x0*x1 + y0*y1 + z0*z1;
+        if (dot < 0.0)
+        {
+            dot = -dot;
+            w0 = -w0; x0 = -x0; y0 = -y0; z0 = -z0;
+        }
+
+        float w, x, y, z;
+        if (dot > 0.9995f)
+        {
+            w = (w1 - w0)*t + w0;
+            x = (x1 - x0)*t + x0;
+            y = (y1 - y0)*t + y0;
+            z = (z1 - z0)*t + z0;
+        }
+        else
+        {
+            float ang = (float)Math.acos(dot);
+            float s0 = (float)Math.sin((1.0f - t)*ang);
+            float s1 = (float)Math.sin(t*ang);
+            w = w0*s0 + w1*s1;
+            x = x0*s0 + x1*s1;
+            y = y0*s0 + y1*s1;
+            z = z0*s0 + z1*s1;
+        }
+
+        float length = (float)Math.sqrt(w*w + x*x + y*y + z*z);
+        result.w[n] = w/length; result.x[n] = x/length; result.y[n] = y/length; result.z[n] = z/length;
+    }
+
+    /**
+     * Performs a spherical linear interpolation between each pair of
+     * quaternions in {@code q0} and {@code q1}, and stores the results in
+     * {@code result}. Equivalent to Quat.slerp(Quat, Quat, float, Quat).
+     *
+     * @param q0 The 'start' quaternions to interpolate from.
+     * @param q1 The 'end' quaternions to interpolate to.
+     * @param t The scalar interpolant, between zero and one (inclusive).
+     * @param result The array in which to store the results.
+     */
+    public static final void slerp(QuatArray q0, QuatArray q1, float t, QuatArray result)
+    {
+        if (q1.length != q0.length) throw new IllegalArgumentException("Quaternion count mismatch.");
+        checkLength(q0.length, result.length);
+        for (int n=0; n<q0.length; n++) slerp(q0, q1, n, t, result);
+    }
+
+    /**
+     * Performs a spherical linear interpolation between each pair of
+     * quaternions in {@code q0} and {@code q1}, each by its own interpolant,
+     * and stores the results in {@code result}.
+     *
+     * @param q0 The 'start' quaternions to interpolate from.
+     * @param q1 The 'end' quaternions to interpolate to.
+     * @param t The scalar interpolant for each pair.
+     * @param result The array in which to store the results.
+     */
+    public static final void slerp(QuatArray q0, QuatArray q1, float[] t, QuatArray result)
+    {
+        if (q1.length != q0.length) throw new IllegalArgumentException("Quaternion count mismatch.");
+        checkLength(q0.length, t.length);
+        checkLength(q0.length, result.length);
+        for (int n=0; n<q0.length; n++) slerp(q0, q1, n, t[n], result);
+    }
+    // </editor-fold>
+
+    public final int length;
+    public final float[] w, x, y, z;
+
+    /**
+     * Creates a new array of the given number of identity quaternions.
+     *
+     * @param length The number of quaternions.
+     */
+    public QuatArray(int length)
+    {
+        if (length < 0) throw new IllegalArgumentException("Negative length.");
+        this.length = length;
+        w = new float[length];
+        x = new float[length];
+        y = new float[length];
+        z = new float[length];
+        Arrays.fill(w, 1.0f);
+    }
+
+    /**
+     * Copies the quaternion at the given index into {@code result}.
+     *
+     * @param index The index of the quaternion to get.
+     * @param result The quaternion in which to store the result.
+     * @return The given result quaternion.
+     */
+    public Quat get(int index, Quat result)
+    {
+        result.w = w[index]; result.x = x[index]; result.y = y[index]; result.z = z[index];
+        return result;
+    }
+
+    /**
+     * Sets the quaternion at the given index to the given quaternion.
+     *
+     * @param index The index of the quaternion to set.
+     * @param q The quaternion to copy.
+     * @return This array.
+     */
+    public QuatArray set(int index, Quat q)
+    {
+        w[index] = q.w; x[index] = q.x; y[index] = q.y; z[index] = q.z;
+        return this;
+    }
+
+    // <editor-fold defaultstate="collapsed" desc="Bufferable methods">
+    @Override
+    public void read(FloatBuffer buffer)
+    {
+        for (int n=0; n<length; n++)
+        {
+            x[n] = buffer.get(); y[n] = buffer.get(); z[n] = buffer.get(); w[n] = buffer.get();
+        }
+    }
+
+    /**
+     * Writes each quaternion into the given buffer, with components
+     * interleaved in the same layout as Quat.write().
+     */
+    @Override
+    public void write(FloatBuffer buffer)
+    {
+        for (int n=0; n<length; n++)
+        {
+            buffer.put(x[n]); buffer.put(y[n]); buffer.put(z[n]); buffer.put(w[n]);
+        }
+    }
+
+    @Override
+    public void read(ByteBuffer buffer)
+    {
+        for (int n=0; n<length; n++)
+        {
+            x[n] = buffer.getFloat(); y[n] = buffer.getFloat(); z[n] = buffer.getFloat(); w[n] = buffer.getFloat();
+        }
+    }
+
+    @Override
+    public void write(ByteBuffer buffer)
+    {
+        for (int n=0; n<length; n++)
+        {
+            buffer.putFloat(x[n]); buffer.putFloat(y[n]); buffer.putFloat(z[n]); buffer.putFloat(w[n]);
+        }
+    }
+
+    @Override
+    public int bufferSize()
+    {
+        return length*16;
+    }
+    // </editor-fold>
+}
@@ -0,0 +1,249 @@
+package com.samrj.devil.math;
+
+import com.samrj.devil.util.FloatBufferable;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * Packed array of three-dimensional vectors, stored as one float array per
+ * component. Bulk methods operate on every vector at once, in simple loops
+ * which the JIT compiler can vectorize.
+ *
+ * Each bulk method performs the same floating point operations, in the same
+ * order, as its counterpart in Vec3, and so gives bit-identical results. The
+ * result array may be the same as an input array.
+ *
+ * @author Samuel Johnson (SmashMaster)
+ * @copyright 2022 Samuel Johnson
+ * @license https://github.com/SmashMaster/DevilUtil/blob/master/LICENSE
+ */
+public class Vec3Array implements FloatBufferable
+{
+    static void checkLength(int length, int resultLength)
+    {
+        if (resultLength < length) throw new IllegalArgumentException("Result array too short.");
+    }
+
+    // <editor-fold defaultstate="collapsed" desc="Static bulk methods">
+    /**
+     * Multiplies each vector in {@code v} by {@code m} as a point, and stores
+     * the results in {@code result}. Equivalent to Vec3.mult(Vec3, Mat4, Vec3).
+     *
+     * @param v The vectors to multiply.
+     * @param m The 4x4 matrix to multiply the vectors by.
+     * @param result The array in which to store the results.
+     */
+    public static final void mult(Vec3Array v, Mat4 m, Vec3Array result)
+    {
+        checkLength(v.length, result.length);
+        float[] vx = v.x, vy = v.y, vz = v.z, rx = result.x, ry = result.y, rz = result.z;
+        float a = m.a, b = m.b, c = m.c, d = m.d;
+        float e = m.e, f = m.f, g = m.g, h = m.h;
+        float i = m.i, j = m.j, k = m.k, l = m.l;
+
+        for (int n=0; n<v.length; n++)
+        {
+            float x = a*vx[n] + b*vy[n] + c*vz[n] + d;
+            float y = e*vx[n] + f*vy[n] + g*vz[n] + h;
+            float z = i*vx[n] + j*vy[n] + k*vz[n] + l;
+            rx[n] = x; ry[n] = y; rz[n] = z;
+        }
+    }
+
+    /**
+     * Multiplies each vector in {@code v} by {@code m}, and stores the results
+     * in {@code result}. Suitable for directions, and for normals if given a
+     * normal matrix. Equivalent to Vec3.mult(Vec3, Mat3, Vec3).
+     *
+     * @param v The vectors to multiply.
+     * @param m The 3x3 matrix to multiply the vectors by.
+     * @param result The array in which to store the results.
+     */
+    public static final void mult(Vec3Array v, Mat3 m, Vec3Array result)
+    {
+        checkLength(v.length, result.length);
+        float[] vx = v.x, vy = v.y, vz = v.z, rx = result.x, ry = result.y, rz = result.z;
+        float a = m.a, b = m.b, c = m.c;
+        float d = m.d, e = m.e, f = m.f;
+        float g = m.g, h = m.h, i = m.i;
+
+        for (int n=0; n<v.length; n++)
+        {
+            float x = a*vx[n] + b*vy[n] + c*vz[n];
+            float y = d*vx[n] + e*vy[n] + f*vz[n];
+            float z = g*vx[n] + h*vy[n] + i*vz[n];
+            rx[n] = x; ry[n] = y; rz[n] = z;
+        }
+    }
+
+    /**
+     * Multiplies each vector in {@code v} by {@code m} as a normal, then
+     * normalizes it, and stores the results in {@code result}. Equivalent to
+     * Vec3.mult(Vec3, Mat3, Vec3) followed by Vec3.normalize(Vec3, Vec3).
+     *
+     * @param v The normals to transform.
+     * @param m The normal matrix to multiply the vectors by.
+     * @param result The array in which to store the results.
+     */
+    public static final void multNormals(Vec3Array v, Mat3 m, Vec3Array result)
+    {
+        mult(v, m, result);
+        normalize(result, result);
+    }
+
+    /**
+     * Normalizes each vector in {@code v} and stores the results in
+     * {@code result}. Equivalent to Vec3.normalize(Vec3, Vec3).
+     *
+     * @param v The vectors to normalize.
+     * @param result The array in which to store the results.
+     */
+    public static final void normalize(Vec3Array v, Vec3Array result)
+    {
+        checkLength(v.length, result.length);
+        float[] vx = v.x, vy = v.y, vz = v.z, rx = result.x, ry = result.y, rz = result.z;
+
+        for (int n=0; n<v.length; n++)
+        {
+            float x = vx[n], y = vy[n], z = vz[n];
+            float length = (float)Math.sqrt(x*x + y*y + z*z);
+            rx[n] = x/length; ry[n] = y/length; rz[n] = z/length;
+        }
+    }
+
+    /**
+     * Transforms each of the axis-aligned boxes given by {@code min} and
+     * {@code max} by {@code m}, and stores the smallest axis-aligned boxes
+     * containing the results in {@code resultMin} and {@code resultMax}.
+     *
+     * @param min The minimum corner of each box.
+     * @param max The maximum corner of each box.
+     * @param m The 4x4 matrix to transform the boxes by.
+     * @param resultMin The array in which to store the minimum corners.
+     * @param resultMax The array in which to store the maximum corners.
+     */
+    public static final void transformBounds(Vec3Array min, Vec3Array max, Mat4 m, Vec3Array resultMin, Vec3Array resultMax)
+    {
+        if (max.length != min.length) throw new IllegalArgumentException("Box corner count mismatch.");
+        checkLength(min.length, resultMin.length);
+        checkLength(min.length, resultMax.length);
+        float[] x0 = min.x, y0 = min.y, z0 = min.z, x1 = max.x, y1 = max.y, z1 = max.z;
+        float[] rx0 = resultMin.x, ry0 = resultMin.y, rz0 = resultMin.z;
+        float[] rx1 = resultMax.x, ry1 = resultMax.y, rz1 = resultMax.z;
+        float a = m.a, b = m.b, c = m.c, d = m.d;
+        float e = m.e, f = m.f, g = m.g, h = m.h;
+        float i = m.i, j = m.j, k = m.k, l = m.l;
+
+        for (int n=0; n<min.length; n++)
+        {
+            //Each result coordinate is a sum of terms, each of which is least
+            //at one corner and greatest at the opposite corner.
+            float ax0 = a*x0[n], ax1 = a*x1[n], by0 = b*y0[n], by1 = b*y1[n], cz0 = c*z0[n], cz1 = c*z1[n];
+            float ex0 = e*x0[n], ex1 = e*x1[n], fy0 = f*y0[n], fy1 = f*y1[n], gz0 = g*z0[n], gz1 = g*z1[n];
+            float ix0 = i*x0[n], ix1 = i*x1[n], jy0 = j*y0[n], jy1 = j*y1[n], kz0 = k*z0[n], kz1 = k*z1[n];
+
+            float minX = Math.min(ax0, ax1) + Math.min(by0, by1) + Math.min(cz0, cz1) + d;
+            float minY = Math.min(ex0, ex1) + Math.min(fy0, fy1) + Math.min(gz0, gz1) + h;
+            float minZ = Math.min(ix0, ix1) + Math.min(jy0, jy1) + Math.min(kz0, kz1) + l;
+            float maxX = Math.max(ax0, ax1) + Math.max(by0, by1) + Math.max(cz0, cz1) + d;
+            float maxY = Math.max(ex0, ex1) + Math.max(fy0, fy1) + Math.max(gz0, gz1) + h;
+            float maxZ = Math.max(ix0, ix1) + Math.max(jy0, jy1) + Math.max(kz0, kz1) + l;
+
+            rx0[n] = minX; ry0[n] = minY; rz0[n] = minZ;
+            rx1[n] = maxX; ry1[n] = maxY; rz1[n] = maxZ;
+        }
+    }
+    // </editor-fold>
+
+    public final int length;
+    public final float[] x, y, z;
+
+    /**
+     * Creates a new array of the given number of zero vectors.
+     *
+     * @param length The number of vectors.
+     */
+    public Vec3Array(int length)
+    {
+        if (length < 0) throw new IllegalArgumentException("Negative length.");
+        this.length = length;
+        x = new float[length];
+        y = new float[length];
+        z = new float[length];
+    }
+
+    /**
+     * Copies the vector at the given index into {@code result}.
+     *
+     * @param index The index of the vector to get.
+     * @param result The vector in which to store the result.
+     * @return The given result vector.
+     */
+    public Vec3 get(int index, Vec3 result)
+    {
+        result.x = x[index]; result.y = y[index]; result.z = z[index];
+        return result;
+    }
+
+    /**
+     * Sets the vector at the given index to the given vector.
+     *
+     * @param index The index of the vector to set.
+     * @param v The vector to copy.
+     * @return This array.
+     */
+    public Vec3Array set(int index, Vec3 v)
+    {
+        x[index] = v.x; y[index] = v.y; z[index] = v.z;
+        return this;
+    }
+
+    // <editor-fold defaultstate="collapsed" desc="Bufferable methods">
+    @Override
+    public void read(FloatBuffer buffer)
+    {
+        for (int n=0; n<length; n++)
+        {
+            x[n] = buffer.get(); y[n] = buffer.get(); z[n] = buffer.get();
+        }
+    }
+
+    /**
+     * Writes each vector into the given buffer, with components interleaved in
+     * the same layout as Vec3.write().
+     */
+    @Override
+    public void write(FloatBuffer buffer)
+    {
+        for (int n=0; n<length; n++)
+        {
+            buffer.put(x[n]); buffer.put(y[n]); buffer.put(z[n]);
+        }
+    }
+
+    @Override
+    public void read(ByteBuffer buffer)
+    {
+        for (int n=0; n<length; n++)
+        {
+            x[n] = buffer.getFloat(); y[n] = buffer.getFloat(); z[n] = buffer.getFloat();
+        }
+    }
+
+    @Override
+    public void write(ByteBuffer buffer)
+    {
+        for (int n=0; n<length; n++)
+        {
+            buffer.putFloat(x[n]); buffer.putFloat(y[n]); buffer.putFloat(z[n]);
+        }
+    }
+
+    @Override
+    public int bufferSize()
+    {
+        return length*12;
+    }
+    // </editor-fold>
+}
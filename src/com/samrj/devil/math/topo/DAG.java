@@ -28,6 +28,10 @@ import java.util.stream.Stream;
 /**
  * Hash-map based directed acyclic graph. To be used mainly for topological sorting.
  * 
+ * The topological order is maintained incrementally using the Pearce-Kelly
+ * dynamic topological sort, so adding or removing vertices and edges never
+ * requires the whole graph to be re-sorted.
+ * 
  * @author Samuel Johnson (SmashMaster)
  * @param <TYPE> The kind of data to store in the node.
  */
@@ -128,7 +132,7 @@ public class DAG<TYPE> implements Iterable<TYPE>
         order.add(v);
         modCount++;
 
-        return false;
+        return true;
     }
 
     /**
@@ -422,6 +426,7 @@ public class DAG<TYPE> implements Iterable<TYPE>
     {
         vertices.clear();
         order.clear();
+        modCount++;
     }
 
     public int size()
@@ -50,7 +50,7 @@ public final class ArmatureSolver
     private final List<Constraint> constraints;
     private final List<IKConstraint> ikConstraints;
     private final Set<BoneSolver> nonconstrained;
-    private List<Constraint> solveOrder;
+    private final DAG<Constraint> solveGraph;
     
     /**
      * Creates a new armature solver from the given armature object.
@@ -73,6 +73,7 @@ public final class ArmatureSolver
         for (CopyRotationConstraint.Definition def : object.copyRotConstraints)
             constraints.add(new CopyRotationConstraint(def, this));
         nonconstrained = Collections.newSetFromMap(new IdentityHashMap<>());
+        solveGraph = new DAG<>();
         sortSolvables();
     }
     
@@ -98,14 +99,31 @@ public final class ArmatureSolver
     }
     
     /**
-     * Adds the given constraint to this solver.
+     * Adds the given constraint to this solver. The solve order is updated
+     * incrementally, so this is cheap enough to call every frame.
      * 
      * @param c A constraint.
      */
     public void addConstraint(Constraint c)
     {
-        solveOrder = null;
         constraints.add(c);
+        c.populateSolveGraph(solveGraph);
+        c.removeSolved(nonconstrained);
+    }
+    
+    /**
+     * Removes the given constraint from this solver, if present. The solve
+     * order is updated incrementally.
+     * 
+     * @param c A constraint.
+     * @return Whether the constraint was removed.
+     */
+    public boolean removeConstraint(Constraint c)
+    {
+        if (!constraints.remove(c)) return false;
+        solveGraph.remove(c);
+        updateNonconstrained();
+        return true;
     }
     
     /**
@@ -114,26 +132,33 @@ public final class ArmatureSolver
      */
     public void clearConstraints()
     {
-        solveOrder = null;
+        for (Constraint c : constraints) solveGraph.remove(c);
         constraints.clear();
+        updateNonconstrained();
     }
     
-    /**
-     * Generates a solve order by performing a topological sort on the set of
-     * bones and constraints belonging to this solver.
-     */
-    public void sortSolvables()
+    private void updateNonconstrained()
     {
         nonconstrained.clear();
         nonconstrained.addAll(bones);
         for (IKConstraint ik : ikConstraints) ik.removeSolved(nonconstrained);
         for (Constraint s : constraints) s.removeSolved(nonconstrained);
+    }
+    
+    /**
+     * Rebuilds the solve order from scratch by performing a topological sort
+     * on the set of bones and constraints belonging to this solver. Not
+     * necessary after adding or removing constraints, which keep the order up
+     * to date.
+     */
+    public void sortSolvables()
+    {
+        updateNonconstrained();
         
-        DAG<Constraint> solveGraph = new DAG<>();
+        solveGraph.clear();
         for (BoneSolver bone : bones) bone.populateSolveGraph(solveGraph);
         for (IKConstraint ik : ikConstraints) ik.populateSolveGraph(solveGraph);
         for (Constraint s : constraints) s.populateSolveGraph(solveGraph);
-        solveOrder = solveGraph.sort();
     }
     
     /**
@@ -153,15 +178,13 @@ public final class ArmatureSolver
      */
     public void solve()
     {
-        if (solveOrder == null) throw new IllegalStateException("Unsorted. Call sortSolvables() first.");
-        
         for (BoneSolver bone : nonconstrained)
         {
             bone.finalTransform.set(bone.poseTransform);
             bone.finalTransform.rot.normalize();
         }
         
-        for (Constraint s : solveOrder) s.solve();
+        for (Constraint s : solveGraph) s.solve();
     }
     
     /**
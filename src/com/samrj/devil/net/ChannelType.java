@@ -0,0 +1,30 @@
+package com.samrj.devil.net;
+
+/**
+ * Delivery guarantees for messages sent through a MessagePacker.
+ *
+ * @author Samuel Johnson (SmashMaster)
+ * @copyright 2022 Samuel Johnson
+ * @license https://github.com/SmashMaster/DevilUtil/blob/master/LICENSE
+ */
+@Deprecated
+public enum ChannelType
+{
+    /**
+     * Messages may be dropped, duplicated, or delivered out of order.
+     */
+    UNRELIABLE,
+
+    /**
+     * Messages may be dropped, but are never duplicated, and any message older
+     * than one already delivered is discarded. Useful for state which is
+     * entirely replaced by newer messages.
+     */
+    UNRELIABLE_SEQUENCED,
+
+    /**
+     * Messages are resent until acknowledged, and are delivered exactly once,
+     * in the order they were sent.
+     */
+    RELIABLE_ORDERED;
+}
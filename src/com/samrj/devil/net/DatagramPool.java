@@ -0,0 +1,70 @@
+package com.samrj.devil.net;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of direct, little-endian buffers large enough to hold any packet, used
+ * to receive datagrams without allocating memory for each one. Buffers may be
+ * acquired on one thread and released on another.
+ *
+ * @author Samuel Johnson (SmashMaster)
+ * @copyright 2022 Samuel Johnson
+ * @license https://github.com/SmashMaster/DevilUtil/blob/master/LICENSE
+ */
+@Deprecated
+class DatagramPool
+{
+    private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger numFree = new AtomicInteger();
+    private final int maxPooled;
+
+    /**
+     * Creates a new pool which keeps at most the given number of released
+     * buffers for reuse. Any further released buffers are left to the garbage
+     * collector.
+     */
+    DatagramPool(int maxPooled)
+    {
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * Returns a cleared buffer from this pool, allocating a new one if none are
+     * free.
+     */
+    ByteBuffer acquire()
+    {
+        ByteBuffer buffer = free.poll();
+        if (buffer == null) buffer = ByteBuffer.allocateDirect(Peer.MAX_PACKET_SIZE);
+        else
+        {
+            numFree.decrementAndGet();
+            buffer.clear();
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN); //Users may have changed it.
+        return buffer;
+    }
+
+    /**
+     * Returns the given buffer to this pool. Buffers which did not come from a
+     * pool are ignored. A buffer must not be used after it is released, and
+     * must not be released twice.
+     */
+    void release(ByteBuffer buffer)
+    {
+        if (buffer == null || !buffer.isDirect() || buffer.capacity() != Peer.MAX_PACKET_SIZE) return;
+        if (numFree.incrementAndGet() <= maxPooled) free.add(buffer);
+        else numFree.decrementAndGet();
+    }
+
+    /**
+     * Discards every free buffer in this pool.
+     */
+    void clear()
+    {
+        while (free.poll() != null) numFree.decrementAndGet();
+    }
+}
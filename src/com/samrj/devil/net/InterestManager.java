@@ -0,0 +1,323 @@
+package com.samrj.devil.net;
+
+import com.samrj.devil.math.Vec3;
+import com.samrj.devil.math.zorder.ZOrderCurve;
+
+import java.util.*;
+
+/**
+ * Area-of-interest filtering for server broadcasts. Keeps entities in a
+ * spatial hash of cubic cells, and tracks a spherical view region for each
+ * client, so that each client only needs to be sent the entities near it.
+ *
+ * Entities and clients may be added, moved and removed freely. Relevancy is
+ * only recomputed during update(), and only for clients which moved or whose
+ * view region overlaps a cell whose contents changed, at which point enter and
+ * leave events are fired. Entities which move within their cell are instead
+ * checked individually against the clients whose view regions overlap it. The relevant entities of a client may then be selected
+ * directly from the full entity map, for example to pass to a
+ * {@link SnapshotSender}, which sends removals for entities which leave.
+ *
+ * Cells are keyed by their z-order curve index, wrapped every 1024 cells along
+ * each axis. View regions should span much fewer cells than that.
+ *
+ * @author Samuel Johnson (SmashMaster)
+ * @copyright 2022 Samuel Johnson
+ * @license https://github.com/SmashMaster/DevilUtil/blob/master/LICENSE
+ */
+@Deprecated
+public class InterestManager<C>
+{
+    private static final int WRAP = 1023;
+
+    /**
+     * Receives notifications when entities become relevant or irrelevant to a
+     * client.
+     */
+    public interface Listener<C>
+    {
+        void enter(C client, int entity);
+        void leave(C client, int entity);
+    }
+
+    private static class Entity
+    {
+        private final int id;
+        private final Vec3 position = new Vec3();
+        private int cell;
+        private boolean moved; //Whether this is in the list of entities moved within their cell.
+
+        private Entity(int id)
+        {
+            this.id = id;
+        }
+    }
+
+    private static class Observer
+    {
+        private final Vec3 center = new Vec3();
+        private float radius;
+        private int x0, y0, z0, x1, y1, z1; //Range of cells the view region overlaps.
+        private boolean moved = true;
+        private Set<Integer> relevant = new HashSet<>();
+        private Set<Integer> next = new HashSet<>();
+        private Set<Integer> view = Collections.unmodifiableSet(relevant);
+    }
+
+    private final float cellSize;
+    private final Map<Integer, Entity> entities = new HashMap<>();
+    private final Map<Integer, List<Entity>> cells = new HashMap<>();
+    private final Map<C, Observer> observers = new HashMap<>();
+    private final Set<Integer> dirtyCells = new HashSet<>();
+    private final List<Entity> movedEntities = new ArrayList<>();
+    private Listener<C> listener;
+
+    /**
+     * Creates a new interest manager with the given cell size. A good cell
+     * size is close to the typical view radius.
+     */
+    public InterestManager(float cellSize)
+    {
+        if (cellSize <= 0.0f) throw new IllegalArgumentException("Cell size must be positive.");
+        this.cellSize = cellSize;
+    }
+
+    public void setListener(Listener<C> listener)
+    {
+        this.listener = listener;
+    }
+
+    private int cellCoord(float v)
+    {
+        return (int)Math.floor(v/cellSize) & WRAP;
+    }
+
+    private int cellOf(Vec3 v)
+    {
+        return ZOrderCurve.encode3(cellCoord(v.x), cellCoord(v.y), cellCoord(v.z));
+    }
+
+    private void removeFromCell(Entity entity)
+    {
+        List<Entity> list = cells.get(entity.cell);
+        list.remove(entity);
+        if (list.isEmpty()) cells.remove(entity.cell);
+        dirtyCells.add(entity.cell);
+    }
+
+    private void addToCell(Entity entity)
+    {
+        cells.computeIfAbsent(entity.cell, c -> new ArrayList<>()).add(entity);
+        dirtyCells.add(entity.cell);
+    }
+
+    /**
+     * Adds an entity with the given ID at the given position, or moves it if
+     * it already exists.
+     */
+    public void putEntity(int id, Vec3 position)
+    {
+        Entity entity = entities.get(id);
+        int cell = cellOf(position);
+
+        if (entity == null)
+        {
+            entity = new Entity(id);
+            entities.put(id, entity);
+            entity.position.set(position);
+            entity.cell = cell;
+            addToCell(entity);
+        }
+        else if (cell != entity.cell)
+        {
+            removeFromCell(entity);
+            entity.position.set(position);
+            entity.cell = cell;
+            addToCell(entity);
+        }
+        else if (!entity.position.equals(position))
+        {
+            entity.position.set(position);
+            if (!entity.moved)
+            {
+                entity.moved = true;
+                movedEntities.add(entity);
+            }
+        }
+    }
+
+    /**
+     * Removes the entity with the given ID, if it exists. Clients which could
+     * see it will receive a leave event during the next update.
+     */
+    public void removeEntity(int id)
+    {
+        Entity entity = entities.remove(id);
+        if (entity != null) removeFromCell(entity);
+    }
+
+    /**
+     * Adds a client with a spherical view region of the given center and
+     * radius, or moves its region if it already exists.
+     */
+    public void putClient(C client, Vec3 center, float radius)
+    {
+        if (radius < 0.0f) throw new IllegalArgumentException("Radius must not be negative.");
+        Observer observer = observers.get(client);
+        if (observer == null)
+        {
+            observer = new Observer();
+            observers.put(client, observer);
+        }
+        else if (observer.center.equals(center) && observer.radius == radius) return;
+
+        observer.center.set(center);
+        observer.radius = radius;
+        observer.x0 = (int)Math.floor((center.x - radius)/cellSize);
+        observer.y0 = (int)Math.floor((center.y - radius)/cellSize);
+        observer.z0 = (int)Math.floor((center.z - radius)/cellSize);
+        observer.x1 = (int)Math.floor((center.x + radius)/cellSize);
+        observer.y1 = (int)Math.floor((center.y + radius)/cellSize);
+        observer.z1 = (int)Math.floor((center.z + radius)/cellSize);
+        observer.moved = true;
+    }
+
+    /**
+     * Removes the given client. No leave events are fired for it.
+     */
+    public void removeClient(C client)
+    {
+        observers.remove(client);
+    }
+
+    private boolean overlapsDirtyCell(Observer observer)
+    {
+        if (dirtyCells.isEmpty()) return false;
+
+        for (int z=observer.z0; z<=observer.z1; z++) for (int y=observer.y0; y<=observer.y1; y++)
+            for (int x=observer.x0; x<=observer.x1; x++)
+                if (dirtyCells.contains(ZOrderCurve.encode3(x & WRAP, y & WRAP, z & WRAP))) return true;
+        return false;
+    }
+
+    //Whether the given wrapped cell coordinate lies within the given unwrapped range.
+    private static boolean spans(int c0, int c1, int c)
+    {
+        return c1 - c0 >= WRAP || ((c - c0) & WRAP) <= c1 - c0;
+    }
+
+    private boolean overlapsCell(Observer observer, Vec3 position)
+    {
+        return spans(observer.x0, observer.x1, cellCoord(position.x))
+            && spans(observer.y0, observer.y1, cellCoord(position.y))
+            && spans(observer.z0, observer.z1, cellCoord(position.z));
+    }
+
+    /**
+     * Updates the given client's relevant set for entities which moved within
+     * their cell, without gathering every cell it overlaps.
+     */
+    private void checkMoved(C client, Observer observer)
+    {
+        float radiusSq = observer.radius*observer.radius;
+
+        for (int pass=0; pass<2; pass++) for (Entity entity : movedEntities) //Leave events first.
+        {
+            if (entities.get(entity.id) != entity || !overlapsCell(observer, entity.position)) continue;
+            boolean inside = entity.position.squareDist(observer.center) <= radiusSq;
+
+            if (pass == 0 && !inside && observer.relevant.remove(entity.id))
+            {
+                if (listener != null) listener.leave(client, entity.id);
+            }
+            else if (pass == 1 && inside && observer.relevant.add(entity.id))
+            {
+                if (listener != null) listener.enter(client, entity.id);
+            }
+        }
+    }
+
+    private void gather(Observer observer, Set<Integer> result)
+    {
+        float radiusSq = observer.radius*observer.radius;
+
+        for (int z=observer.z0; z<=observer.z1; z++) for (int y=observer.y0; y<=observer.y1; y++)
+            for (int x=observer.x0; x<=observer.x1; x++)
+        {
+            List<Entity> list = cells.get(ZOrderCurve.encode3(x & WRAP, y & WRAP, z & WRAP));
+            if (list == null) continue;
+
+            //Cells wrap around, so the list may also hold distant entities.
+            for (Entity entity : list)
+                if (entity.position.squareDist(observer.center) <= radiusSq) result.add(entity.id);
+        }
+    }
+
+    /**
+     * Recomputes the relevant entities of every client which moved, or whose
+     * view region overlaps a cell with entities that were added, moved, or
+     * removed since the last update. Fires leave events, then enter events.
+     */
+    public void update()
+    {
+        for (Map.Entry<C, Observer> entry : observers.entrySet())
+        {
+            C client = entry.getKey();
+            Observer observer = entry.getValue();
+            if (!observer.moved && !overlapsDirtyCell(observer))
+            {
+                if (!movedEntities.isEmpty()) checkMoved(client, observer);
+                continue;
+            }
+            observer.moved = false;
+
+            Set<Integer> previous = observer.relevant;
+            Set<Integer> current = observer.next;
+            current.clear();
+            gather(observer, current);
+
+            observer.relevant = current;
+            observer.next = previous;
+            observer.view = Collections.unmodifiableSet(current);
+
+            if (listener == null) continue;
+            for (Integer id : previous) if (!current.contains(id)) listener.leave(client, id);
+            for (Integer id : current) if (!previous.contains(id)) listener.enter(client, id);
+        }
+
+        dirtyCells.clear();
+        for (Entity entity : movedEntities) entity.moved = false;
+        movedEntities.clear();
+    }
+
+    /**
+     * Returns the IDs of the entities relevant to the given client as of the
+     * last update, or an empty set if the client is unknown.
+     */
+    public Set<Integer> getRelevant(C client)
+    {
+        Observer observer = observers.get(client);
+        return observer != null ? observer.view : Collections.emptySet();
+    }
+
+    public boolean isRelevant(C client, int entity)
+    {
+        return getRelevant(client).contains(entity);
+    }
+
+    /**
+     * Copies the entries of the given entity map which are relevant to the
+     * given client into the given result map, and returns it. The result is
+     * cleared first, so one map may be reused for every client.
+     */
+    public <V> Map<Integer, V> select(C client, Map<Integer, V> entities, Map<Integer, V> result)
+    {
+        result.clear();
+        for (Integer id : getRelevant(client))
+        {
+            V value = entities.get(id);
+            if (value != null) result.put(id, value);
+        }
+        return result;
+    }
+}
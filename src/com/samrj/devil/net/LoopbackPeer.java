@@ -0,0 +1,169 @@
+package com.samrj.devil.net;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * In-process peer connected directly to another loopback peer, which can
+ * simulate packet loss, latency, jitter, and duplication. Useful for testing
+ * protocols built on top of peers without any sockets.
+ *
+ * @author Samuel Johnson (SmashMaster)
+ * @copyright 2022 Samuel Johnson
+ * @license https://github.com/SmashMaster/DevilUtil/blob/master/LICENSE
+ */
+@Deprecated
+public class LoopbackPeer implements Peer
+{
+    /**
+     * Creates two loopback peers connected to each other, which share the given
+     * random seed.
+     */
+    public static LoopbackPeer[] pair(long seed)
+    {
+        Random random = new Random(seed);
+        LoopbackPeer a = new LoopbackPeer(random);
+        LoopbackPeer b = new LoopbackPeer(random);
+        a.remote = b;
+        b.remote = a;
+        return new LoopbackPeer[] {a, b};
+    }
+
+    private final Random random;
+    private LoopbackPeer remote;
+    private boolean closed;
+    private float time;
+    private long nextOrder;
+
+    private float lossChance, duplicateChance, latency, jitter;
+
+    private final PriorityQueue<InFlight> inFlight = new PriorityQueue<>();
+    private final ArrayDeque<byte[]> inbox = new ArrayDeque<>();
+
+    private LoopbackPeer(Random random)
+    {
+        this.random = random;
+    }
+
+    /**
+     * Sets the probability that each datagram sent by this peer is dropped.
+     */
+    public void setLossChance(float lossChance)
+    {
+        this.lossChance = lossChance;
+    }
+
+    /**
+     * Sets the probability that each datagram sent by this peer is delivered
+     * twice.
+     */
+    public void setDuplicateChance(float duplicateChance)
+    {
+        this.duplicateChance = duplicateChance;
+    }
+
+    /**
+     * Sets the one-way delay of datagrams sent by this peer, in seconds. Each
+     * datagram is delayed by up to the given jitter on top of the latency, so
+     * datagrams may arrive out of order.
+     */
+    public void setLatency(float latency, float jitter)
+    {
+        this.latency = latency;
+        this.jitter = jitter;
+    }
+
+    /**
+     * Advances the simulated clock of this peer, moving any datagrams which
+     * have arrived into its inbox.
+     */
+    public void update(float dt)
+    {
+        time += dt;
+        while (!inFlight.isEmpty() && inFlight.peek().arrival <= time)
+            inbox.addLast(inFlight.poll().datagram);
+    }
+
+    private void deliver(byte[] datagram)
+    {
+        float arrival = remote.time + latency + random.nextFloat()*jitter;
+        remote.inFlight.add(new InFlight(arrival, nextOrder++, datagram));
+    }
+
+    @Override
+    public boolean isConnectionPending()
+    {
+        return false;
+    }
+
+    @Override
+    public boolean isConnected()
+    {
+        return !closed;
+    }
+
+    @Override
+    public boolean isDisconnected()
+    {
+        return closed;
+    }
+
+    @Override
+    public boolean hasDatagrams()
+    {
+        return !inbox.isEmpty();
+    }
+
+    @Override
+    public byte[] receive()
+    {
+        return inbox.pollFirst();
+    }
+
+    /**
+     * Sends a copy of the given datagram to the remote peer, subject to the
+     * simulated network conditions. If the datagram exceeds 1187 bytes, throws
+     * IOException.
+     */
+    @Override
+    public void send(byte[] datagram) throws IOException
+    {
+        if (closed || remote.closed) return;
+        if (datagram.length > MAX_PAYLOAD_SIZE) throw new IOException("Datagram length must not exceed " + MAX_PAYLOAD_SIZE);
+
+        if (random.nextFloat() < lossChance) return;
+        deliver(datagram.clone());
+        if (random.nextFloat() < duplicateChance) deliver(datagram.clone());
+    }
+
+    @Override
+    public void close()
+    {
+        closed = true;
+        inFlight.clear();
+        inbox.clear();
+    }
+
+    private static class InFlight implements Comparable<InFlight>
+    {
+        private final float arrival;
+        private final long order;
+        private final byte[] datagram;
+
+        private InFlight(float arrival, long order, byte[] datagram)
+        {
+            this.arrival = arrival;
+            this.order = order;
+            this.datagram = datagram;
+        }
+
+        @Override
+        public int compareTo(InFlight o)
+        {
+            int result = Float.compare(arrival, o.arrival);
+            return result != 0 ? result : Long.compare(order, o.order);
+        }
+    }
+}
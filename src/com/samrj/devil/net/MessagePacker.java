@@ -0,0 +1,835 @@
+package com.samrj.devil.net;
+
+import com.samrj.devil.util.IOUtil;
+import com.samrj.devil.util.IntList;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Message layer over a peer. Coalesces many small messages into each datagram,
+ * and splits messages too large for one datagram into fragments which are
+ * reassembled on the other end. Both ends of a connection must use a packer.
+ *
+ * Each datagram starts with a sequence number, followed by the latest sequence
+ * number received from the other end, a bitfield of the 32 before it, and the
+ * next reliable message ID expected from the other end. These acknowledgements
+ * ride along with regular traffic, and drive the resending of messages sent on
+ * a {@link ChannelType#RELIABLE_ORDERED} channel. Resend timers are derived
+ * from a smoothed round trip time estimate.
+ *
+ * Messages are buffered until flush() is called, which should be done once per
+ * tick. Received datagrams are unpacked by update(), which should be called
+ * after the underlying peer has been updated.
+ *
+ * @author Samuel Johnson (SmashMaster)
+ * @copyright 2022 Samuel Johnson
+ * @license https://github.com/SmashMaster/DevilUtil/blob/master/LICENSE
+ */
+@Deprecated
+public class MessagePacker
+{
+    private static final int ENTRY_MESSAGE = 1;
+    private static final int ENTRY_FRAGMENT = 2;
+    private static final int ENTRY_SEQUENCED = 3;
+    private static final int ENTRY_SEQUENCED_FRAGMENT = 4;
+    private static final int ENTRY_RELIABLE = 5;
+
+    private static final int RELIABLE_FLAG_LAST = 1;
+
+    //Sequence number, ack, ack bitfield, next expected reliable ID, and flags.
+    private static final int PACKET_HEADER_SIZE = 2 + 2 + 4 + 2 + 1;
+    private static final int PACKET_FLAG_ACK = 1;
+    private static final int PACKET_CAPACITY = Peer.MAX_PAYLOAD_SIZE - PACKET_HEADER_SIZE;
+
+    //Worst case size of a fragment entry header: type byte, sequence, and four VLQs.
+    private static final int FRAGMENT_HEADER_SIZE = 1 + 2 + 5*4;
+    private static final int FRAGMENT_SIZE = PACKET_CAPACITY - FRAGMENT_HEADER_SIZE;
+
+    //Worst case size of a reliable entry header: type byte, id, flags, and a VLQ.
+    private static final int RELIABLE_HEADER_SIZE = 1 + 2 + 1 + 5;
+    private static final int RELIABLE_CHUNK_SIZE = PACKET_CAPACITY - RELIABLE_HEADER_SIZE;
+
+    /**
+     * The maximum number of fragments a single unreliable message may be split
+     * into.
+     */
+    public static final int MAX_FRAGMENTS = 1024;
+
+    /**
+     * The largest message which may be sent through a packer.
+     */
+    public static final int MAX_MESSAGE_SIZE = FRAGMENT_SIZE*MAX_FRAGMENTS;
+
+    /**
+     * The maximum number of reliable chunks which may be awaiting
+     * acknowledgement at once. Further reliable messages wait to be sent.
+     */
+    public static final int RELIABLE_WINDOW = 1024;
+
+    private static final int ACK_BITS = 32;
+    private static final int SENT_HISTORY = 1024;
+    private static final float FRAGMENT_TIME_OUT = 5.0f;
+    private static final float METRICS_PERIOD = 1.0f;
+    private static final float INITIAL_RTO = 0.25f;
+    private static final float MIN_RTO = 0.05f;
+    private static final float MAX_RTO = 2.0f;
+
+    /**
+     * Returns whether sequence number a is more recent than b, accounting for
+     * wrap-around.
+     */
+    static boolean sequenceGreater(int a, int b)
+    {
+        int diff = (a - b) & 0xFFFF;
+        return diff != 0 && diff < 0x8000;
+    }
+
+    private final Peer peer;
+    private final ByteBuffer packet, ackPacket;
+    private int packetMessages;
+    private float time;
+
+    //Outgoing state
+    private int localSequence;
+    private int nextFragmentedID;
+    private int nextSequencedID;
+    private int nextReliableID;
+    private final SentPacket[] sentPackets = new SentPacket[SENT_HISTORY];
+    private final ArrayDeque<ReliableChunk> reliableQueue = new ArrayDeque<>();
+    private final ReliableChunk[] reliableInFlight = new ReliableChunk[RELIABLE_WINDOW];
+    private final IntList packetReliableIDs = new IntList();
+
+    //Incoming state
+    private boolean receivedAny;
+    private int remoteSequence;
+    private int receivedBits;
+    private boolean ackRequested;
+    private int receivedSinceAck;
+    private boolean receivedAnySequenced;
+    private int lastSequencedID;
+    private int nextReceiveReliableID;
+    private final Map<Integer, ReliableChunk> reliableReceived = new HashMap<>();
+    private final ArrayDeque<byte[]> assembling = new ArrayDeque<>();
+    private int assemblingLength;
+    private final Map<Integer, PartialMessage> partials = new HashMap<>();
+    private final ArrayDeque<byte[]> inbox = new ArrayDeque<>();
+
+    //Round trip time estimation
+    private boolean hasRTT;
+    private float smoothedRTT, rttVariance, rto = INITIAL_RTO;
+
+    private long packetsSent, packetsReceived, messagesSent, messagesReceived, bytesSent, bytesReceived;
+    private long malformedPackets, duplicatePackets, expiredMessages, resends, packetsAcked, packetsLost;
+    private long periodPacketsSent, periodPacketsReceived;
+    private float periodTime, packetsSentPerSecond, packetsReceivedPerSecond;
+
+    /**
+     * Creates a new packer which sends and receives through the given peer.
+     */
+    public MessagePacker(Peer peer)
+    {
+        if (peer == null) throw new NullPointerException();
+        this.peer = peer;
+        packet = ByteBuffer.allocate(Peer.MAX_PAYLOAD_SIZE);
+        packet.order(ByteOrder.LITTLE_ENDIAN);
+        packet.position(PACKET_HEADER_SIZE);
+        ackPacket = ByteBuffer.allocate(PACKET_HEADER_SIZE);
+        ackPacket.order(ByteOrder.LITTLE_ENDIAN);
+        for (int i=0; i<SENT_HISTORY; i++) sentPackets[i] = new SentPacket();
+    }
+
+    /**
+     * Returns the peer this packer sends through.
+     */
+    public Peer getPeer()
+    {
+        return peer;
+    }
+
+    private static int messageEntrySize(int length)
+    {
+        return 1 + IOUtil.sizeOfVLQ(length) + length;
+    }
+
+    /**
+     * Queues the given message to be sent unreliably on the next flush.
+     */
+    public void send(byte[] message) throws IOException
+    {
+        send(message, ChannelType.UNRELIABLE);
+    }
+
+    /**
+     * Queues the given message to be sent on the next flush, with the delivery
+     * guarantees of the given channel type. If an unreliable message does not
+     * fit in the current packet, the current packet is sent first. If it does
+     * not fit in any single packet, it is split into fragments.
+     */
+    public void send(byte[] message, ChannelType channel) throws IOException
+    {
+        if (message.length > MAX_MESSAGE_SIZE)
+            throw new IOException("Message length must not exceed " + MAX_MESSAGE_SIZE);
+
+        switch (channel)
+        {
+            case UNRELIABLE: sendUnreliable(message, false); break;
+            case UNRELIABLE_SEQUENCED: sendUnreliable(message, true); break;
+            case RELIABLE_ORDERED: sendReliable(message); break;
+        }
+
+        messagesSent++;
+    }
+
+    private void sendUnreliable(byte[] message, boolean sequenced) throws IOException
+    {
+        int sequence = sequenced ? (nextSequencedID++ & 0xFFFF) : 0;
+        int entrySize = messageEntrySize(message.length) + (sequenced ? 2 : 0);
+
+        if (entrySize <= PACKET_CAPACITY)
+        {
+            if (entrySize > packet.remaining()) flushPacket();
+            packet.put((byte)(sequenced ? ENTRY_SEQUENCED : ENTRY_MESSAGE));
+            if (sequenced) packet.putShort((short)sequence);
+            IOUtil.writeVLQ(packet, message.length);
+            packet.put(message);
+            packetMessages++;
+            bytesSent += entrySize;
+            return;
+        }
+
+        flushPacket();
+        int id = nextFragmentedID++;
+        int count = (message.length + FRAGMENT_SIZE - 1)/FRAGMENT_SIZE;
+        for (int i=0; i<count; i++)
+        {
+            int offset = i*FRAGMENT_SIZE;
+            int length = Math.min(FRAGMENT_SIZE, message.length - offset);
+            int start = packet.position();
+            packet.put((byte)(sequenced ? ENTRY_SEQUENCED_FRAGMENT : ENTRY_FRAGMENT));
+            if (sequenced) packet.putShort((short)sequence);
+            IOUtil.writeVLQ(packet, id);
+            IOUtil.writeVLQ(packet, i);
+            IOUtil.writeVLQ(packet, count);
+            IOUtil.writeVLQ(packet, length);
+            packet.put(message, offset, length);
+            bytesSent += packet.position() - start;
+
+            //Leave the last fragment in the packet, so later messages may share it.
+            if (i < count - 1) flushPacket();
+        }
+        packetMessages++;
+    }
+
+    private void sendReliable(byte[] message)
+    {
+        //Large messages become consecutive chunks, which ordered delivery joins back together.
+        int offset = 0;
+        do
+        {
+            int length = Math.min(RELIABLE_CHUNK_SIZE, message.length - offset);
+            byte[] data = Arrays.copyOfRange(message, offset, offset + length);
+            offset += length;
+            reliableQueue.addLast(new ReliableChunk(nextReliableID, data, offset == message.length));
+            nextReliableID = (nextReliableID + 1) & 0xFFFF;
+        }
+        while (offset < message.length);
+    }
+
+    private void writeHeader(ByteBuffer buffer, int sequence)
+    {
+        buffer.putShort(0, (short)sequence);
+        buffer.putShort(2, (short)remoteSequence);
+        buffer.putInt(4, receivedBits);
+        buffer.putShort(8, (short)nextReceiveReliableID);
+        buffer.put(10, (byte)(receivedAny ? PACKET_FLAG_ACK : 0));
+    }
+
+    private void recordSent(int sequence)
+    {
+        SentPacket sent = sentPackets[sequence % SENT_HISTORY];
+        if (sent.inUse && !sent.acked) packetsLost++;
+        sent.inUse = true;
+        sent.sequence = sequence;
+        sent.time = time;
+        sent.acked = false;
+        sent.reliableIDs.clear();
+        for (int i=0; i<packetReliableIDs.size(); i++) sent.reliableIDs.add(packetReliableIDs.get(i));
+        packetReliableIDs.clear();
+
+        ackRequested = false;
+        receivedSinceAck = 0;
+        packetsSent++;
+        periodPacketsSent++;
+    }
+
+    private void flushPacket() throws IOException
+    {
+        if (packet.position() == PACKET_HEADER_SIZE && !ackRequested) return;
+
+        int sequence = localSequence;
+        localSequence = (localSequence + 1) & 0xFFFF;
+        writeHeader(packet, sequence);
+
+        packet.flip();
+        peer.send(packet);
+        packet.clear();
+        packet.position(PACKET_HEADER_SIZE);
+        recordSent(sequence);
+    }
+
+    //Sends a packet with no entries, leaving the current packet untouched. Reliable entries are only written during
+    //flush(), so this never steals their IDs.
+    private void sendAck() throws IOException
+    {
+        int sequence = localSequence;
+        localSequence = (localSequence + 1) & 0xFFFF;
+
+        ackPacket.clear();
+        writeHeader(ackPacket, sequence);
+        peer.send(ackPacket);
+        recordSent(sequence);
+    }
+
+    private int reliableWindowStart()
+    {
+        return reliableQueue.isEmpty() ? nextReliableID : reliableQueue.peekFirst().id;
+    }
+
+    /**
+     * Sends any messages queued in the current packet, and sends or resends
+     * any reliable messages which are due. Should be called once per tick,
+     * after all messages for that tick have been queued.
+     */
+    public void flush() throws IOException
+    {
+        int windowStart = reliableWindowStart();
+        for (ReliableChunk chunk : reliableQueue)
+        {
+            if (((chunk.id - windowStart) & 0xFFFF) >= RELIABLE_WINDOW) break;
+            if (chunk.acked) continue;
+            if (chunk.sendCount > 0 && time - chunk.lastSent < resendDelay(chunk.sendCount)) continue;
+
+            int entrySize = 1 + 2 + 1 + IOUtil.sizeOfVLQ(chunk.data.length) + chunk.data.length;
+            if (entrySize > packet.remaining()) flushPacket();
+
+            packet.put((byte)ENTRY_RELIABLE);
+            packet.putShort((short)chunk.id);
+            packet.put((byte)(chunk.last ? RELIABLE_FLAG_LAST : 0));
+            IOUtil.writeVLQ(packet, chunk.data.length);
+            packet.put(chunk.data);
+            packetReliableIDs.add(chunk.id);
+            reliableInFlight[chunk.id % RELIABLE_WINDOW] = chunk;
+
+            if (chunk.sendCount > 0) resends++;
+            else bytesSent += entrySize;
+            chunk.sendCount++;
+            chunk.lastSent = time;
+        }
+
+        flushPacket();
+        packetMessages = 0;
+    }
+
+    /**
+     * Returns the number of messages waiting in the current unsent packet.
+     */
+    public int getQueuedMessages()
+    {
+        return packetMessages;
+    }
+
+    /**
+     * Returns the number of reliable chunks which have not been acknowledged
+     * yet.
+     */
+    public int getUnackedReliable()
+    {
+        int count = 0;
+        for (ReliableChunk chunk : reliableQueue) if (!chunk.acked) count++;
+        return count;
+    }
+
+    //Backs off exponentially for chunks which keep getting lost, but never waits longer than the maximum timeout.
+    private float resendDelay(int sendCount)
+    {
+        return Math.min(rto*(1 << Math.min(sendCount - 1, 4)), MAX_RTO);
+    }
+
+    private void addRTTSample(float rtt)
+    {
+        if (!hasRTT)
+        {
+            smoothedRTT = rtt;
+            rttVariance = rtt*0.5f;
+            hasRTT = true;
+        }
+        else
+        {
+            rttVariance = 0.75f*rttVariance + 0.25f*Math.abs(smoothedRTT - rtt);
+            smoothedRTT = 0.875f*smoothedRTT + 0.125f*rtt;
+        }
+        rto = Math.max(MIN_RTO, Math.min(smoothedRTT + 4.0f*rttVariance, MAX_RTO));
+    }
+
+    private void ackPacket(int sequence)
+    {
+        SentPacket sent = sentPackets[sequence % SENT_HISTORY];
+        if (!sent.inUse || sent.sequence != sequence || sent.acked) return;
+
+        sent.acked = true;
+        packetsAcked++;
+        addRTTSample(time - sent.time);
+
+        for (int i=0; i<sent.reliableIDs.size(); i++)
+        {
+            int id = sent.reliableIDs.get(i);
+            ReliableChunk chunk = reliableInFlight[id % RELIABLE_WINDOW];
+            if (chunk != null && chunk.id == id) chunk.acked = true;
+        }
+    }
+
+    //Every chunk before the next ID the other end expects has been delivered, even if the packets acknowledging them
+    //were lost.
+    private void ackReliable(int nextExpected)
+    {
+        while (!reliableQueue.isEmpty())
+        {
+            ReliableChunk chunk = reliableQueue.peekFirst();
+            if (!chunk.acked && !sequenceGreater(nextExpected, chunk.id)) break;
+            reliableQueue.pollFirst();
+            reliableInFlight[chunk.id % RELIABLE_WINDOW] = null;
+        }
+    }
+
+    private boolean receiveSequence(int sequence)
+    {
+        if (!receivedAny)
+        {
+            receivedAny = true;
+            remoteSequence = sequence;
+            receivedBits = 0;
+            receivedSinceAck++;
+            return true;
+        }
+
+        if (sequenceGreater(sequence, remoteSequence))
+        {
+            int diff = (sequence - remoteSequence) & 0xFFFF;
+            receivedBits = diff > ACK_BITS ? 0 : ((diff == ACK_BITS ? 0 : receivedBits << diff) | (1 << (diff - 1)));
+            remoteSequence = sequence;
+            receivedSinceAck++;
+            return true;
+        }
+
+        int diff = (remoteSequence - sequence) & 0xFFFF;
+        if (diff == 0) return false;
+        if (diff > ACK_BITS) return true; //Too old to acknowledge, but its entries may still be useful.
+        int bit = 1 << (diff - 1);
+        if ((receivedBits & bit) != 0) return false;
+        receivedBits |= bit;
+        receivedSinceAck++;
+        return true;
+    }
+
+    private void deliverSequenced(int sequence, byte[] message)
+    {
+        if (receivedAnySequenced && !sequenceGreater(sequence, lastSequencedID)) return;
+        receivedAnySequenced = true;
+        lastSequencedID = sequence;
+        inbox.addLast(message);
+        messagesReceived++;
+    }
+
+    private void receiveReliable(int id, boolean last, byte[] data)
+    {
+        if (((id - nextReceiveReliableID) & 0xFFFF) >= RELIABLE_WINDOW) return; //Already delivered.
+        reliableReceived.putIfAbsent(id, new ReliableChunk(id, data, last));
+
+        ReliableChunk chunk;
+        while ((chunk = reliableReceived.remove(nextReceiveReliableID)) != null)
+        {
+            nextReceiveReliableID = (nextReceiveReliableID + 1) & 0xFFFF;
+            assembling.addLast(chunk.data);
+            assemblingLength += chunk.data.length;
+            if (!chunk.last) continue;
+
+            byte[] message = new byte[assemblingLength];
+            int offset = 0;
+            for (byte[] part : assembling)
+            {
+                System.arraycopy(part, 0, message, offset, part.length);
+                offset += part.length;
+            }
+            assembling.clear();
+            assemblingLength = 0;
+            inbox.addLast(message);
+            messagesReceived++;
+        }
+    }
+
+    private void receiveFragment(ByteBuffer buffer, boolean sequenced)
+    {
+        int sequence = sequenced ? Short.toUnsignedInt(buffer.getShort()) : 0;
+        int id = IOUtil.readVLQ(buffer);
+        int index = IOUtil.readVLQ(buffer);
+        int count = IOUtil.readVLQ(buffer);
+        int length = IOUtil.readVLQ(buffer);
+        if (count <= 1 || count > MAX_FRAGMENTS || index < 0 || index >= count) throw new BufferUnderflowException();
+        if (length < 0 || length > buffer.remaining() || length > FRAGMENT_SIZE) throw new BufferUnderflowException();
+
+        byte[] fragment = new byte[length];
+        buffer.get(fragment);
+
+        PartialMessage partial = partials.get(id);
+        if (partial == null || partial.fragments.length != count)
+        {
+            partial = new PartialMessage(count);
+            partials.put(id, partial);
+        }
+
+        if (partial.add(index, fragment))
+        {
+            partials.remove(id);
+            byte[] message = partial.assemble();
+            if (sequenced) deliverSequenced(sequence, message);
+            else
+            {
+                inbox.addLast(message);
+                messagesReceived++;
+            }
+        }
+    }
+
+    private void unpack(ByteBuffer buffer)
+    {
+        if (buffer.remaining() < PACKET_HEADER_SIZE)
+        {
+            malformedPackets++;
+            return;
+        }
+
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        int sequence = Short.toUnsignedInt(buffer.getShort());
+        int ack = Short.toUnsignedInt(buffer.getShort());
+        int ackBits = buffer.getInt();
+        int reliableAck = Short.toUnsignedInt(buffer.getShort());
+        int flags = Byte.toUnsignedInt(buffer.get());
+
+        if (!receiveSequence(sequence))
+        {
+            duplicatePackets++;
+            return;
+        }
+
+        if ((flags & PACKET_FLAG_ACK) != 0)
+        {
+            ackPacket(ack);
+            for (int i=0; i<ACK_BITS; i++)
+                if ((ackBits & (1 << i)) != 0) ackPacket((ack - 1 - i) & 0xFFFF);
+            ackReliable(reliableAck);
+        }
+
+        //Acknowledge anything with entries promptly, but never acknowledge an acknowledgement.
+        if (buffer.hasRemaining()) ackRequested = true;
+
+        try
+        {
+            while (buffer.hasRemaining())
+            {
+                int type = Byte.toUnsignedInt(buffer.get());
+                switch (type)
+                {
+                    case ENTRY_MESSAGE:
+                    case ENTRY_SEQUENCED:
+                    {
+                        int seq = type == ENTRY_SEQUENCED ? Short.toUnsignedInt(buffer.getShort()) : 0;
+                        int length = IOUtil.readVLQ(buffer);
+                        if (length < 0 || length > buffer.remaining()) throw new BufferUnderflowException();
+                        byte[] message = new byte[length];
+                        buffer.get(message);
+                        if (type == ENTRY_SEQUENCED) deliverSequenced(seq, message);
+                        else
+                        {
+                            inbox.addLast(message);
+                            messagesReceived++;
+                        }
+                        break;
+                    }
+                    case ENTRY_FRAGMENT: receiveFragment(buffer, false); break;
+                    case ENTRY_SEQUENCED_FRAGMENT: receiveFragment(buffer, true); break;
+                    case ENTRY_RELIABLE:
+                    {
+                        int id = Short.toUnsignedInt(buffer.getShort());
+                        boolean last = (buffer.get() & RELIABLE_FLAG_LAST) != 0;
+                        int length = IOUtil.readVLQ(buffer);
+                        if (length < 0 || length > buffer.remaining()) throw new BufferUnderflowException();
+                        byte[] data = new byte[length];
+                        buffer.get(data);
+                        receiveReliable(id, last, data);
+                        break;
+                    }
+                    default: throw new BufferUnderflowException();
+                }
+            }
+        }
+        catch (BufferUnderflowException e)
+        {
+            //Keep whatever was unpacked before the malformed entry.
+            malformedPackets++;
+        }
+    }
+
+    /**
+     * Unpacks every datagram waiting in the underlying peer's inbox, and
+     * discards partially received messages which have timed out. Should be
+     * called every tick, after the underlying peer is updated.
+     *
+     * If more datagrams arrive than one acknowledgement bitfield can cover, an
+     * acknowledgement is sent immediately, so a much faster sender on the other
+     * end does not resend data which already arrived.
+     */
+    public void update(float dt) throws IOException
+    {
+        time += dt;
+
+        while (peer.hasDatagrams())
+        {
+            ByteBuffer datagram = peer.receiveBuffer();
+            bytesReceived += datagram.remaining();
+            packetsReceived++;
+            periodPacketsReceived++;
+            unpack(datagram);
+            peer.release(datagram);
+            if (receivedSinceAck >= ACK_BITS) sendAck();
+        }
+
+        for (Iterator<PartialMessage> it = partials.values().iterator(); it.hasNext();)
+        {
+            PartialMessage partial = it.next();
+            partial.age += dt;
+            if (partial.age >= FRAGMENT_TIME_OUT)
+            {
+                it.remove();
+                expiredMessages++;
+            }
+        }
+
+        periodTime += dt;
+        if (periodTime >= METRICS_PERIOD)
+        {
+            packetsSentPerSecond = periodPacketsSent/periodTime;
+            packetsReceivedPerSecond = periodPacketsReceived/periodTime;
+            periodPacketsSent = 0;
+            periodPacketsReceived = 0;
+            periodTime = 0.0f;
+        }
+    }
+
+    /**
+     * Returns true if one or more messages are waiting in this packer's inbox.
+     */
+    public boolean hasMessages()
+    {
+        return !inbox.isEmpty();
+    }
+
+    /**
+     * Returns the next message received by this packer, or null if the inbox is
+     * empty.
+     */
+    public byte[] receive()
+    {
+        return inbox.pollFirst();
+    }
+
+    /**
+     * Returns the smoothed round trip time estimate in seconds, or zero if no
+     * packets have been acknowledged yet.
+     */
+    public float getRoundTripTime()
+    {
+        return smoothedRTT;
+    }
+
+    /**
+     * Returns the current timeout after which unacknowledged reliable messages
+     * are resent, in seconds.
+     */
+    public float getResendTimeout()
+    {
+        return rto;
+    }
+
+    /**
+     * Returns the fraction of sent packets which were never acknowledged.
+     */
+    public float getPacketLoss()
+    {
+        long resolved = packetsAcked + packetsLost;
+        return resolved == 0 ? 0.0f : packetsLost/(float)resolved;
+    }
+
+    /**
+     * Returns the number of datagrams sent over the last metrics period.
+     */
+    public float getPacketsSentPerSecond()
+    {
+        return packetsSentPerSecond;
+    }
+
+    /**
+     * Returns the number of datagrams received over the last metrics period.
+     */
+    public float getPacketsReceivedPerSecond()
+    {
+        return packetsReceivedPerSecond;
+    }
+
+    /**
+     * Returns the average number of payload bytes sent per message, including
+     * framing overhead but not resends.
+     */
+    public float getBytesPerMessage()
+    {
+        return messagesSent == 0 ? 0.0f : bytesSent/(float)messagesSent;
+    }
+
+    /**
+     * Returns the average number of messages sent per datagram.
+     */
+    public float getMessagesPerPacket()
+    {
+        return packetsSent == 0 ? 0.0f : messagesSent/(float)packetsSent;
+    }
+
+    public long getPacketsSent()
+    {
+        return packetsSent;
+    }
+
+    public long getPacketsReceived()
+    {
+        return packetsReceived;
+    }
+
+    public long getMessagesSent()
+    {
+        return messagesSent;
+    }
+
+    public long getMessagesReceived()
+    {
+        return messagesReceived;
+    }
+
+    public long getBytesSent()
+    {
+        return bytesSent;
+    }
+
+    public long getBytesReceived()
+    {
+        return bytesReceived;
+    }
+
+    /**
+     * Returns the number of times a reliable chunk has been resent.
+     */
+    public long getResends()
+    {
+        return resends;
+    }
+
+    /**
+     * Returns the number of received datagrams which contained a malformed
+     * entry, and were partially or entirely discarded.
+     */
+    public long getMalformedPackets()
+    {
+        return malformedPackets;
+    }
+
+    /**
+     * Returns the number of received datagrams which were discarded because
+     * they had already been received.
+     */
+    public long getDuplicatePackets()
+    {
+        return duplicatePackets;
+    }
+
+    /**
+     * Returns the number of fragmented messages which were discarded because
+     * not all of their fragments arrived in time.
+     */
+    public long getExpiredMessages()
+    {
+        return expiredMessages;
+    }
+
+    private static class SentPacket
+    {
+        private boolean inUse, acked;
+        private int sequence;
+        private float time;
+        private final IntList reliableIDs = new IntList(4);
+    }
+
+    private static class ReliableChunk
+    {
+        private final int id;
+        private final byte[] data;
+        private final boolean last;
+        private boolean acked;
+        private int sendCount;
+        private float lastSent;
+
+        private ReliableChunk(int id, byte[] data, boolean last)
+        {
+            this.id = id;
+            this.data = data;
+            this.last = last;
+        }
+    }
+
+    private static class PartialMessage
+    {
+        private final byte[][] fragments;
+        private int received, length;
+        private float age;
+
+        private PartialMessage(int count)
+        {
+            fragments = new byte[count][];
+        }
+
+        private boolean add(int index, byte[] fragment)
+        {
+            if (fragments[index] != null) return false; //Duplicate.
+            fragments[index] = fragment;
+            length += fragment.length;
+            return ++received == fragments.length;
+        }
+
+        private byte[] assemble()
+        {
+            byte[] message = new byte[length];
+            int offset = 0;
+            for (byte[] fragment : fragments)
+            {
+                System.arraycopy(fragment, 0, message, offset, fragment.length);
+                offset += fragment.length;
+            }
+            return message;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.samrj.devil.net;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * Symmetric peer interface, for clients and servers.
@@ -42,11 +43,42 @@ public interface Peer extends AutoCloseable
      */
     public byte[] receive();
     
+    /**
+     * Returns the next datagram received by this peer, or null if the inbox
+     * is empty. The datagram lies between the buffer's position and limit. The
+     * buffer may belong to a pool owned by this peer, so it must be passed to
+     * release() once it is no longer needed, and not used afterwards.
+     */
+    public default ByteBuffer receiveBuffer()
+    {
+        byte[] datagram = receive();
+        return datagram != null ? ByteBuffer.wrap(datagram) : null;
+    }
+    
+    /**
+     * Returns a buffer obtained from receiveBuffer() to this peer.
+     */
+    public default void release(ByteBuffer buffer)
+    {
+    }
+    
     /**
      * Sends the given datagram. If this peer is not connected, this method will
      * do nothing.
      */
     public void send(byte[] datagram) throws IOException;
+    
+    /**
+     * Sends the remaining bytes of the given buffer as a datagram, advancing
+     * its position to its limit. If this peer is not connected, this method
+     * will do nothing.
+     */
+    public default void send(ByteBuffer datagram) throws IOException
+    {
+        byte[] array = new byte[datagram.remaining()];
+        datagram.get(array);
+        send(array);
+    }
 
     /**
      * Disconnects this peer.
@@ -0,0 +1,130 @@
+package com.samrj.devil.net;
+
+import com.samrj.devil.util.IOUtil;
+import com.samrj.devil.util.Struct;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.*;
+
+/**
+ * Decodes snapshots written by a {@link SnapshotSender}. Must be configured
+ * with the same precisions as the sender.
+ *
+ * @author Samuel Johnson (SmashMaster)
+ * @copyright 2022 Samuel Johnson
+ * @license https://github.com/SmashMaster/DevilUtil/blob/master/LICENSE
+ */
+@Deprecated
+public class SnapshotReceiver<T extends Enum<T>>
+{
+    private final Class<T> nameEnum;
+    private final Map<T, Float> precision;
+    private final List<Map<Integer, Struct<T>>> history = new ArrayList<>(Collections.nCopies(SnapshotSender.HISTORY, null));
+    private final int[] historySequence = new int[SnapshotSender.HISTORY];
+
+    private Map<Integer, Struct<T>> latest = Collections.emptyMap();
+    private int latestSequence = -1;
+
+    public SnapshotReceiver(Class<T> nameEnum)
+    {
+        this.nameEnum = nameEnum;
+        precision = new EnumMap<>(nameEnum);
+    }
+
+    /**
+     * Quantizes the float or float array field with the given name to a
+     * multiple of the given precision. The sender must use the same precision.
+     */
+    public void setPrecision(T name, float precision)
+    {
+        if (precision <= 0.0f) throw new IllegalArgumentException("Precision must be positive.");
+        this.precision.put(name, precision);
+    }
+
+    private Map<Integer, Struct<T>> getReceived(int sequence)
+    {
+        int index = sequence % SnapshotSender.HISTORY;
+        Map<Integer, Struct<T>> received = history.get(index);
+        return received != null && historySequence[index] == sequence ? received : null;
+    }
+
+    /**
+     * Decodes the given snapshot. Returns the sequence number of the snapshot,
+     * which should be sent back to the sender to be acknowledged, or -1 if
+     * the snapshot could not be decoded because its baseline was never
+     * received or is too old. Snapshots may arrive out of order, but only the
+     * newest becomes visible through getEntities().
+     */
+    public int read(ByteBuffer buffer)
+    {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        int sequence = Short.toUnsignedInt(buffer.getShort());
+        boolean hasBaseline = buffer.get() != 0;
+        int baselineSequence = Short.toUnsignedInt(buffer.getShort());
+
+        Map<Integer, Struct<T>> baseline = Collections.emptyMap();
+        if (hasBaseline)
+        {
+            baseline = getReceived(baselineSequence);
+            if (baseline == null) return -1;
+        }
+
+        Map<Integer, Struct<T>> snapshot = new HashMap<>(baseline);
+
+        int numChanged = IOUtil.readVLQ(buffer);
+        if (numChanged < 0) throw new BufferUnderflowException();
+        for (int i=0; i<numChanged; i++)
+        {
+            int id = IOUtil.readVLQ(buffer);
+            Struct<T> struct = new Struct<>(nameEnum);
+            struct.readDelta(baseline.get(id), precision, buffer);
+            snapshot.put(id, struct);
+        }
+
+        int numRemoved = IOUtil.readVLQ(buffer);
+        if (numRemoved < 0) throw new BufferUnderflowException();
+        for (int i=0; i<numRemoved; i++) snapshot.remove(IOUtil.readVLQ(buffer));
+
+        int index = sequence % SnapshotSender.HISTORY;
+        history.set(index, snapshot);
+        historySequence[index] = sequence;
+
+        if (latestSequence < 0 || MessagePacker.sequenceGreater(sequence, latestSequence))
+        {
+            latest = Collections.unmodifiableMap(snapshot);
+            latestSequence = sequence;
+        }
+
+        return sequence;
+    }
+
+    /**
+     * Decodes the given snapshot. See {@link #read(ByteBuffer)}.
+     */
+    public int read(byte[] snapshot)
+    {
+        return read(ByteBuffer.wrap(snapshot));
+    }
+
+    /**
+     * Returns the entities in the newest snapshot decoded so far, keyed by ID.
+     * The returned structs are used as baselines for later snapshots, and must
+     * not be modified.
+     */
+    public Map<Integer, Struct<T>> getEntities()
+    {
+        return latest;
+    }
+
+    /**
+     * Returns the sequence number of the newest snapshot decoded so far, or -1
+     * if none have been decoded.
+     */
+    public int getSequence()
+    {
+        return latestSequence;
+    }
+}
@@ -0,0 +1,161 @@
+package com.samrj.devil.net;
+
+import com.samrj.devil.util.IOUtil;
+import com.samrj.devil.util.Struct;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.*;
+
+/**
+ * Delta-compressed entity state replication for a single client. Each call to
+ * write() produces a snapshot of every entity, encoded against the most recent
+ * snapshot the client has acknowledged: unchanged entities are skipped
+ * entirely, and changed entities only include the fields which differ, as
+ * written by {@link Struct#writeDelta}. Until a snapshot is acknowledged, full
+ * state is sent.
+ *
+ * Snapshots may be sent unreliably. The client should decode them with a
+ * {@link SnapshotReceiver} configured with the same precisions, and send back
+ * the sequence number of each snapshot it decodes, which must be passed to
+ * acknowledge().
+ *
+ * @author Samuel Johnson (SmashMaster)
+ * @copyright 2022 Samuel Johnson
+ * @license https://github.com/SmashMaster/DevilUtil/blob/master/LICENSE
+ */
+@Deprecated
+public class SnapshotSender<T extends Enum<T>>
+{
+    /**
+     * The number of sent snapshots which are remembered. Acknowledgements for
+     * older snapshots are ignored.
+     */
+    public static final int HISTORY = 64;
+
+    private final Map<T, Float> precision;
+    private final List<Map<Integer, Struct<T>>> history = new ArrayList<>(Collections.nCopies(HISTORY, null));
+    private final int[] historySequence = new int[HISTORY];
+
+    private ByteBuffer buffer = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+    private final List<Map.Entry<Integer, Struct<T>>> changed = new ArrayList<>();
+    private int nextSequence;
+    private int ackedSequence = -1;
+    private long bytesSent;
+
+    public SnapshotSender(Class<T> nameEnum)
+    {
+        precision = new EnumMap<>(nameEnum);
+    }
+
+    /**
+     * Quantizes the float or float array field with the given name to a
+     * multiple of the given precision. The receiver must use the same
+     * precision.
+     */
+    public void setPrecision(T name, float precision)
+    {
+        if (precision <= 0.0f) throw new IllegalArgumentException("Precision must be positive.");
+        this.precision.put(name, precision);
+    }
+
+    private Map<Integer, Struct<T>> getSent(int sequence)
+    {
+        int index = sequence % HISTORY;
+        Map<Integer, Struct<T>> sent = history.get(index);
+        return sent != null && historySequence[index] == sequence ? sent : null;
+    }
+
+    /**
+     * Marks the snapshot with the given sequence number as received, so later
+     * snapshots may be encoded against it.
+     */
+    public void acknowledge(int sequence)
+    {
+        sequence &= 0xFFFF;
+        if (getSent(sequence) == null) return; //Too old, or never sent.
+        if (getBaselineSequence() < 0 || MessagePacker.sequenceGreater(sequence, ackedSequence)) ackedSequence = sequence;
+    }
+
+    /**
+     * Returns the sequence number of the baseline the next snapshot will be
+     * encoded against, or -1 if it will contain full state.
+     */
+    public int getBaselineSequence()
+    {
+        return ackedSequence >= 0 && getSent(ackedSequence) != null ? ackedSequence : -1;
+    }
+
+    /**
+     * Encodes a snapshot of the given entities, keyed by non-negative entity
+     * ID. The given structs are copied, so they may be modified afterwards.
+     */
+    public byte[] write(Map<Integer, Struct<T>> entities)
+    {
+        int sequence = nextSequence;
+        nextSequence = (nextSequence + 1) & 0xFFFF;
+
+        int baselineSequence = getBaselineSequence();
+        Map<Integer, Struct<T>> baseline = baselineSequence >= 0 ? getSent(baselineSequence) : Collections.emptyMap();
+        Map<Integer, Struct<T>> sent = new HashMap<>();
+
+        changed.clear();
+        for (Map.Entry<Integer, Struct<T>> entry : entities.entrySet())
+        {
+            Struct<T> base = baseline.get(entry.getKey());
+            if (base != null && entry.getValue().deltaEquals(base, precision)) sent.put(entry.getKey(), base);
+            else
+            {
+                changed.add(entry);
+                sent.put(entry.getKey(), entry.getValue().quantize(precision));
+            }
+        }
+
+        while (true)
+        {
+            try
+            {
+                buffer.clear();
+                buffer.putShort((short)sequence);
+                buffer.put(baselineSequence >= 0 ? (byte)1 : (byte)0);
+                buffer.putShort((short)baselineSequence);
+
+                IOUtil.writeVLQ(buffer, changed.size());
+                for (Map.Entry<Integer, Struct<T>> entry : changed)
+                {
+                    IOUtil.writeVLQ(buffer, entry.getKey());
+                    entry.getValue().writeDelta(baseline.get(entry.getKey()), precision, buffer);
+                }
+
+                int removed = 0;
+                for (Integer id : baseline.keySet()) if (!entities.containsKey(id)) removed++;
+                IOUtil.writeVLQ(buffer, removed);
+                for (Integer id : baseline.keySet()) if (!entities.containsKey(id)) IOUtil.writeVLQ(buffer, id);
+                break;
+            }
+            catch (BufferOverflowException e)
+            {
+                buffer = ByteBuffer.allocate(buffer.capacity()*2).order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+
+        int index = sequence % HISTORY;
+        history.set(index, sent);
+        historySequence[index] = sequence;
+
+        byte[] snapshot = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(snapshot);
+        bytesSent += snapshot.length;
+        return snapshot;
+    }
+
+    /**
+     * Returns the total number of bytes of snapshots written.
+     */
+    public long getBytesSent()
+    {
+        return bytesSent;
+    }
+}
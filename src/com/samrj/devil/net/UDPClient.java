@@ -59,6 +59,7 @@ public class UDPClient implements Peer
     private static final int STATE_CHALLENGED = 1;
     private static final int STATE_CONNECTED = 2;
     private static final int STATE_DISCONNECTED = 3;
+    private static final int MAX_POOLED_BUFFERS = 64;
     
     private final DatagramChannel channel;
     private final byte[] password;
@@ -74,7 +75,9 @@ public class UDPClient implements Peer
     private byte[] challengeResponse;
     private byte[] identifier;
     
-    private final ArrayDeque<byte[]> inbox = new ArrayDeque<>();
+    private final DatagramPool pool = new DatagramPool(MAX_POOLED_BUFFERS);
+    private final ArrayDeque<ByteBuffer> inbox = new ArrayDeque<>();
+    private final ByteBuffer sendBuffer;
     
     /**
      * Attempts to connect with the given hostname and port, using the given
@@ -88,6 +91,8 @@ public class UDPClient implements Peer
         this.password = NetUtil.bytes(password);
         nonce = new byte[16];
         NetUtil.getCSPRNG().nextBytes(nonce);
+        sendBuffer = ByteBuffer.allocateDirect(MAX_PACKET_SIZE);
+        sendBuffer.order(ByteOrder.LITTLE_ENDIAN);
     }
     
     /**
@@ -150,7 +155,11 @@ public class UDPClient implements Peer
         }
     }
     
-    private void incomingPacket(ByteBuffer buffer) throws ClientException, IOException
+    /**
+     * Returns true if the given buffer was queued in the inbox, and must not be
+     * reused.
+     */
+    private boolean incomingPacket(ByteBuffer buffer) throws ClientException, IOException
     {
         switch (state)
         {
@@ -252,15 +261,14 @@ public class UDPClient implements Peer
                         close();
                         throw new ServerDisconnectedException();
                     case UDPServer.MESSAGE:
-                        byte[] message = new byte[buffer.remaining()];
-                        buffer.get(message);
-                        inbox.addLast(message);
+                        inbox.addLast(buffer);
                         lastHeardFromServer = 0.0f;
                         verbosity.high(log, () -> "Client: Message received.");
-                        break;
+                        return true;
                 }
                 break;
         }
+        return false;
     }
     
     private void outgoingPacket(ByteBuffer buffer) throws IOException
@@ -328,13 +336,18 @@ public class UDPClient implements Peer
             //INCOMING
             while (true)
             {
-                buffer.clear();
-                if (channel.read(buffer) <= 0) break;
-                buffer.flip();
+                ByteBuffer packet = pool.acquire();
+                if (channel.read(packet) <= 0)
+                {
+                    pool.release(packet);
+                    break;
+                }
+                packet.flip();
                 
+                boolean queued = false;
                 try
                 {
-                    incomingPacket(buffer);
+                    queued = incomingPacket(packet);
                 }
                 catch (ClientException t)
                 {
@@ -349,6 +362,10 @@ public class UDPClient implements Peer
                     }
                     else verbosity.medium(log, () -> "CLIENT: Packet threw " + t);
                 }
+                finally
+                {
+                    if (!queued) pool.release(packet);
+                }
             }
             
             //OUTGOING
@@ -372,10 +389,32 @@ public class UDPClient implements Peer
     
     @Override
     public byte[] receive()
+    {
+        ByteBuffer buffer = inbox.pollFirst();
+        if (buffer == null) return null;
+        byte[] datagram = new byte[buffer.remaining()];
+        buffer.get(datagram);
+        pool.release(buffer);
+        return datagram;
+    }
+    
+    /**
+     * Returns the next datagram received by this client without copying it, or
+     * null if the inbox is empty. The buffer must be passed to release() once
+     * it is no longer needed.
+     */
+    @Override
+    public ByteBuffer receiveBuffer()
     {
         return inbox.pollFirst();
     }
     
+    @Override
+    public void release(ByteBuffer buffer)
+    {
+        pool.release(buffer);
+    }
+    
     /**
      * Sends the given datagram. If this client is not connected, this
      * method will do nothing. If the datagram exceeds 1187 bytes, throws
@@ -384,20 +423,31 @@ public class UDPClient implements Peer
     @Override
     public void send(byte[] datagram) throws IOException
     {
-        if (state != STATE_CONNECTED) return;
-        if (datagram.length > MAX_PAYLOAD_SIZE) throw new IOException("Datagram length must not exceed " + MAX_PAYLOAD_SIZE);
-        
-        try (MemoryStack stack = MemoryStack.stackPush())
+        send(ByteBuffer.wrap(datagram));
+    }
+    
+    /**
+     * Sends the remaining bytes of the given buffer as a datagram, without
+     * allocating any memory. If this client is not connected, this method will
+     * do nothing. If the datagram exceeds 1187 bytes, throws IOException.
+     */
+    @Override
+    public void send(ByteBuffer datagram) throws IOException
+    {
+        if (state != STATE_CONNECTED)
         {
-            ByteBuffer buffer = stack.malloc(HEADER_SIZE + datagram.length);
-            buffer.order(ByteOrder.LITTLE_ENDIAN);
-            buffer.position(4);
-            buffer.put((byte)MESSAGE);
-            buffer.put(identifier);
-            buffer.put(datagram);
-            NetUtil.flipAndBufferChecksum(buffer);
-            channel.write(buffer);
+            datagram.position(datagram.limit());
+            return;
         }
+        if (datagram.remaining() > MAX_PAYLOAD_SIZE) throw new IOException("Datagram length must not exceed " + MAX_PAYLOAD_SIZE);
+        
+        sendBuffer.clear();
+        sendBuffer.position(4);
+        sendBuffer.put((byte)MESSAGE);
+        sendBuffer.put(identifier);
+        sendBuffer.put(datagram);
+        NetUtil.flipAndBufferChecksum(sendBuffer);
+        channel.write(sendBuffer);
     }
 
     @Override
@@ -407,5 +457,6 @@ public class UDPClient implements Peer
         channel.close();
         state = STATE_DISCONNECTED;
         inbox.clear();
+        pool.clear();
     }
 }
@@ -30,16 +30,23 @@ import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.DatagramChannel;
 import java.security.MessageDigest;
 import java.security.SecureRandom;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * UDP game server. Establishes a connection with a UDP game client through
  * basic handshaking. Provides no guarantees of reliability once the handshake
  * is complete: datagrams can be dropped, duplicated, or delivered out of order.
  * 
+ * By default, all I/O happens during update(). Alternatively, a dedicated
+ * receive thread may be started with startReceiveThread(), which validates
+ * incoming packets and handles handshakes as they arrive, so that update()
+ * only has to hand over messages which are already validated.
+ * 
  * @author Samuel Johnson (SmashMaster)
  */
 @Deprecated
@@ -59,6 +66,7 @@ public class UDPServer implements AutoCloseable
     private static final float PENDING_TIME_OUT = 5.0f;
     private static final float CONNECTED_CHECK_UP = 10.0f;
     private static final float CONNECTED_TIME_OUT = 60.0f;
+    private static final int MAX_POOLED_BUFFERS = 1024;
     
     private final DatagramChannel channel;
     private final byte[] password;
@@ -67,6 +75,13 @@ public class UDPServer implements AutoCloseable
     private final Map<SocketAddress, ServerClient> clients = new HashMap<>();
     private final Set<ServerClient> connectedClients = Collections.newSetFromMap(new IdentityHashMap<>());
     private final int capacity;
+    private final DatagramPool pool = new DatagramPool(MAX_POOLED_BUFFERS);
+    private final ByteBuffer sendBuffer;
+    
+    //Guards the handshake state, client states, and clients map while a receive thread is running.
+    private final Object lock = new Object();
+    private final List<ServerClient> newlyConnected = new ArrayList<>();
+    private Thread receiveThread;
     
     private PrintStream log;
     private LogVerbosity verbosity = LogVerbosity.OFF;
@@ -84,6 +99,8 @@ public class UDPServer implements AutoCloseable
         csprng = NetUtil.getCSPRNG();
         digest = NetUtil.getDigest();
         this.capacity = capacity;
+        sendBuffer = ByteBuffer.allocateDirect(Peer.MAX_PACKET_SIZE);
+        sendBuffer.order(ByteOrder.LITTLE_ENDIAN);
     }
     
     /**
@@ -103,6 +120,65 @@ public class UDPServer implements AutoCloseable
         this.verbosity = verbosity;
     }
     
+    /**
+     * Starts a daemon thread which blocks on the socket and processes incoming
+     * packets as soon as they arrive. Checksums are verified and handshakes are
+     * completed on that thread, and messages are queued in lock-free per-client
+     * queues. Newly connected clients and their messages become visible to the
+     * game thread on the next call to update(). May only be called once.
+     */
+    public void startReceiveThread() throws IOException
+    {
+        if (receiveThread != null) throw new IllegalStateException("Receive thread already started.");
+        channel.configureBlocking(true);
+        receiveThread = new Thread(this::receiveLoop, "UDPServer receive " + getPort());
+        receiveThread.setDaemon(true);
+        receiveThread.start();
+    }
+    
+    private boolean onReceiveThread()
+    {
+        return receiveThread != null && Thread.currentThread() == receiveThread;
+    }
+    
+    private void receiveLoop()
+    {
+        while (channel.isOpen())
+        {
+            ByteBuffer packet = pool.acquire();
+            boolean queued = false;
+            try
+            {
+                SocketAddress address = channel.receive(packet);
+                packet.flip();
+                if (address == null || !validPacket(packet)) continue;
+                queued = incomingPacket(packet, address);
+            }
+            catch (ClosedChannelException e)
+            {
+                break;
+            }
+            catch (Throwable t)
+            {
+                logPacketException(t);
+            }
+            finally
+            {
+                if (!queued) pool.release(packet);
+            }
+        }
+    }
+    
+    private void logPacketException(Throwable t)
+    {
+        if (verbosity == LogVerbosity.HIGH)
+        {
+            log.print("SERVER: ");
+            t.printStackTrace(log);
+        }
+        else verbosity.medium(log, () -> "SERVER: Packet threw " + t);
+    }
+    
     /**
      * Returns a set of all connected clients.
      */
@@ -156,52 +232,90 @@ public class UDPServer implements AutoCloseable
         }
     }
     
-    private void incomingPacket(ByteBuffer buffer, SocketAddress address) throws IOException
+    /**
+     * Returns true if the given packet is long enough to be valid, and its
+     * checksum is correct.
+     */
+    private static boolean validPacket(ByteBuffer buffer)
     {
-        ServerClient client = clients.get(address);
+        return buffer.limit() >= 13 && !NetUtil.failedChecksum(buffer);
+    }
+    
+    /**
+     * Handles a packet which has passed validPacket(). Returns true if the
+     * given buffer was queued in a client's inbox, and must not be reused.
+     * Takes the lock only while it touches clients, so that a flood of
+     * connection requests does not stall update().
+     */
+    private boolean incomingPacket(ByteBuffer buffer, SocketAddress address) throws IOException
+    {
+        synchronized (lock)
+        {
+            ServerClient client = clients.get(address);
+            if (client != null) return clientPacket(buffer, client, address);
+        }
+        
+        connectionRequest(buffer, address);
+        return false;
+    }
+    
+    /**
+     * Handles a packet from an address with no client yet. The challenge is
+     * generated and hashed before taking the lock.
+     */
+    private void connectionRequest(ByteBuffer buffer, SocketAddress address) throws IOException
+    {
+        if (buffer.limit() != 1000) return;
+        if (Byte.toUnsignedInt(buffer.get()) != UDPClient.CONNECTION_REQUEST) return;
+        
+        byte[] nonce = new byte[16];
+        buffer.get(nonce);
+        
+        byte[] serverNonce = new byte[16];
+        csprng.nextBytes(serverNonce);
         
-        if (client == null)
+        digest.update(nonce);
+        digest.update(serverNonce);
+        if (password.length != 0) digest.update(password);
+        byte[] expectedChallengeResponse = digest.digest();
+        
+        synchronized (lock)
         {
-            if (buffer.limit() != 1000) return;
-            if (NetUtil.failedChecksum(buffer)) return;
-            if (Byte.toUnsignedInt(buffer.get()) != UDPClient.CONNECTION_REQUEST) return;
-            
-            byte[] nonce = new byte[16];
-            buffer.get(nonce);
+            if (clients.containsKey(address)) return;
             
-            if (connectedClients.size() >= capacity)
+            if (numConnected() >= capacity)
             {
                 sendServerFull(address, nonce);
                 return;
             }
             
-            client = new ServerClient(address);
-            clients.put(address, client);
-            
+            ServerClient client = new ServerClient(address);
             client.nonce = nonce;
-            client.serverNonce = new byte[16];
-            csprng.nextBytes(client.serverNonce);
-            
-            digest.update(client.nonce);
-            digest.update(client.serverNonce);
-            if (password.length != 0) digest.update(password);
-            client.expectedChallengeResponse = digest.digest();
-            
-            verbosity.medium(log, () -> "SERVER: Connection requested by client " + address);
+            client.serverNonce = serverNonce;
+            client.expectedChallengeResponse = expectedChallengeResponse;
+            clients.put(address, client);
         }
-        else switch (client.state)
+        
+        verbosity.medium(log, () -> "SERVER: Connection requested by client " + address);
+    }
+    
+    /**
+     * Handles a packet from an existing client. Must hold the lock.
+     */
+    private boolean clientPacket(ByteBuffer buffer, ServerClient client, SocketAddress address) throws IOException
+    {
+        switch (client.state)
         {
             case CLIENT_STATE_CONNECTION_PENDING:
                 if (buffer.limit() != 37) break;
-                if (NetUtil.failedChecksum(buffer)) break;
                 if (Byte.toUnsignedInt(buffer.get()) != UDPClient.CHALLENGE_RESPONSE) break;
                 
-                if (connectedClients.size() >= capacity)
+                if (numConnected() >= capacity)
                 {
                     clients.remove(address);
                     client.state = CLIENT_STATE_DISCONNECTED;
                     sendServerFull(address, client.nonce);
-                    return;
+                    return false;
                 }
                 
                 byte[] challengeResponse = new byte[32];
@@ -224,13 +338,13 @@ public class UDPServer implements AutoCloseable
                 client.lastHeardFrom = 0.0f;
                 client.lastSpokenTo = Float.POSITIVE_INFINITY;
                 
-                connectedClients.add(client);
+                //The game thread may be iterating over connected clients, so let update() add it.
+                if (onReceiveThread()) newlyConnected.add(client);
+                else connectedClients.add(client);
                 
                 verbosity.low(log, () -> "SERVER: Connection completed by client " + address);
                 break;
             case CLIENT_STATE_CONNECTED:
-                if (buffer.limit() < 13) break;
-                if (NetUtil.failedChecksum(buffer)) break;
                 int type = Byte.toUnsignedInt(buffer.get());
                 
                 byte[] pIdentifier = new byte[8];
@@ -254,15 +368,15 @@ public class UDPServer implements AutoCloseable
                         verbosity.low(log, () -> "SERVER: Client " + address + " disconnected");
                         break;
                     case UDPClient.MESSAGE:
-                        byte[] message = new byte[buffer.remaining()];
-                        buffer.get(message);
-                        client.inbox.addLast(message);
+                        if (onReceiveThread()) client.incoming.add(buffer);
+                        else client.inbox.addLast(buffer);
                         client.lastHeardFrom = 0.0f;
                         verbosity.high(log, () -> "SERVER: Message from client " + address);
-                        break;
+                        return true;
                 }
                 break;
         }
+        return false;
     }
     
     private void outgoingPacket(ByteBuffer buffer, ServerClient client) throws IOException
@@ -294,10 +408,16 @@ public class UDPServer implements AutoCloseable
         }
     }
     
+    private int numConnected()
+    {
+        return connectedClients.size() + newlyConnected.size();
+    }
+    
     /**
      * Sends and receives datagrams. This should be called frequently to ensure
      * messages are received in a timely manner, and that clients do not time
-     * out.
+     * out. If the receive thread is running, this only hands over clients and
+     * messages which it has already validated.
      */
     public void update(float dt) throws IOException
     {
@@ -307,51 +427,79 @@ public class UDPServer implements AutoCloseable
             buffer.order(ByteOrder.LITTLE_ENDIAN);
             
             //INCOMING
-            while (true)
+            while (receiveThread == null)
             {
-                buffer.clear();
-                SocketAddress address = channel.receive(buffer);
-                if (address == null) break;
-                buffer.flip();
+                ByteBuffer packet = pool.acquire();
+                SocketAddress address = channel.receive(packet);
+                if (address == null)
+                {
+                    pool.release(packet);
+                    break;
+                }
+                packet.flip();
                 
+                boolean queued = false;
                 try
                 {
-                    incomingPacket(buffer, address);
+                    if (validPacket(packet)) queued = incomingPacket(packet, address);
                 }
                 catch (Throwable t)
                 {
-                    if (verbosity == LogVerbosity.HIGH)
-                    {
-                        log.print("SERVER: ");
-                        t.printStackTrace(log);
-                    }
-                    else verbosity.medium(log, () -> "SERVER: Packet threw " + t);
+                    logPacketException(t);
+                }
+                finally
+                {
+                    if (!queued) pool.release(packet);
                 }
             }
             
-            //OUTGOING
-            for (Iterator<ServerClient> it = clients.values().iterator(); it.hasNext();)
+            synchronized (lock)
             {
-                ServerClient client = it.next();
-                float timeOut = client.state == CLIENT_STATE_CONNECTED ? CONNECTED_TIME_OUT : PENDING_TIME_OUT;
-                if (client.lastHeardFrom >= timeOut)
+                if (receiveThread != null)
                 {
-                    it.remove();
-                    client.state = CLIENT_STATE_DISCONNECTED;
-                    connectedClients.remove(client);
-                    verbosity.low(log, () -> "SERVER: Timed out client " + client.address);
-                    continue;
+                    for (Iterator<ServerClient> it = connectedClients.iterator(); it.hasNext();)
+                    {
+                        ServerClient client = it.next();
+                        if (client.state != CLIENT_STATE_DISCONNECTED) continue;
+                        it.remove();
+                        client.clearInbox();
+                    }
+                    
+                    for (ServerClient client : newlyConnected)
+                        if (client.state == CLIENT_STATE_CONNECTED) connectedClients.add(client);
+                    newlyConnected.clear();
                 }
                 
-                float checkUp = client.state == CLIENT_STATE_CONNECTED ? CONNECTED_CHECK_UP : PENDING_CHECK_UP;
-                if (client.lastSpokenTo >= checkUp)
+                //OUTGOING
+                for (Iterator<ServerClient> it = clients.values().iterator(); it.hasNext();)
                 {
-                    outgoingPacket(buffer, client);
-                    client.lastSpokenTo = 0.0f;
-                }
+                    ServerClient client = it.next();
+                    float timeOut = client.state == CLIENT_STATE_CONNECTED ? CONNECTED_TIME_OUT : PENDING_TIME_OUT;
+                    if (client.lastHeardFrom >= timeOut)
+                    {
+                        it.remove();
+                        client.state = CLIENT_STATE_DISCONNECTED;
+                        connectedClients.remove(client);
+                        verbosity.low(log, () -> "SERVER: Timed out client " + client.address);
+                        continue;
+                    }
+
+                    float checkUp = client.state == CLIENT_STATE_CONNECTED ? CONNECTED_CHECK_UP : PENDING_CHECK_UP;
+                    if (client.lastSpokenTo >= checkUp)
+                    {
+                        outgoingPacket(buffer, client);
+                        client.lastSpokenTo = 0.0f;
+                    }
 
-                client.lastHeardFrom += dt;
-                client.lastSpokenTo += dt;
+                    client.lastHeardFrom += dt;
+                    client.lastSpokenTo += dt;
+                }
+            }
+            
+            if (receiveThread != null) for (ServerClient client : connectedClients)
+            {
+                ByteBuffer message;
+                while ((message = client.incoming.poll()) != null) client.inbox.addLast(message);
             }
         }
     }
@@ -362,14 +510,33 @@ public class UDPServer implements AutoCloseable
     @Override
     public void close() throws IOException
     {
-        for (ServerClient client : clients.values())
+        synchronized (lock)
         {
-            if (client.state == CLIENT_STATE_CONNECTED && channel.isOpen()) sendDisconnect(client);
-            client.state = CLIENT_STATE_DISCONNECTED;
+            for (ServerClient client : clients.values())
+            {
+                if (client.state == CLIENT_STATE_CONNECTED && channel.isOpen()) sendDisconnect(client);
+                client.state = CLIENT_STATE_DISCONNECTED;
+                client.clearInbox();
+            }
+            clients.clear();
+            connectedClients.clear();
+            newlyConnected.clear();
         }
-        clients.clear();
-        connectedClients.clear();
+        
+        //Closing the channel wakes the receive thread up.
         channel.close();
+        if (receiveThread != null && !onReceiveThread())
+        {
+            try
+            {
+                receiveThread.join();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+        pool.clear();
     }
     
     /**
@@ -378,7 +545,7 @@ public class UDPServer implements AutoCloseable
     public class ServerClient implements Peer
     {
         private final SocketAddress address;
-        private int state = CLIENT_STATE_CONNECTION_PENDING;
+        private volatile int state = CLIENT_STATE_CONNECTION_PENDING;
         private float lastHeardFrom = 0.0f;
         private float lastSpokenTo = Float.POSITIVE_INFINITY;
         
@@ -387,13 +554,20 @@ public class UDPServer implements AutoCloseable
         private byte[] expectedChallengeResponse;
         private byte[] identifier;
         
-        private final ArrayDeque<byte[]> inbox = new ArrayDeque<>();
+        private final ArrayDeque<ByteBuffer> inbox = new ArrayDeque<>();
+        private final ConcurrentLinkedQueue<ByteBuffer> incoming = new ConcurrentLinkedQueue<>();
         
         private ServerClient(SocketAddress address)
         {
             this.address = address;
         }
         
+        private void clearInbox()
+        {
+            inbox.clear();
+            incoming.clear();
+        }
+        
         /**
          * Returns the SocketAddress this client is connecting from.
          */
@@ -428,10 +602,33 @@ public class UDPServer implements AutoCloseable
         
         @Override
         public byte[] receive()
+        {
+            ByteBuffer buffer = inbox.pollFirst();
+            if (buffer == null) return null;
+            byte[] datagram = new byte[buffer.remaining()];
+            buffer.get(datagram);
+            pool.release(buffer);
+            return datagram;
+        }
+        
+        /**
+         * Returns the next datagram received from this client without copying
+         * it, or null if the inbox is empty. The buffer belongs to a pool
+         * shared by every client of this server, and must be passed to
+         * release() once it is no longer needed.
+         */
+        @Override
+        public ByteBuffer receiveBuffer()
         {
             return inbox.pollFirst();
         }
         
+        @Override
+        public void release(ByteBuffer buffer)
+        {
+            pool.release(buffer);
+        }
+        
         /**
          * Sends the given datagram. If this client is not connected, this
          * method will do nothing. If the datagram exceeds 1187 bytes, throws
@@ -440,34 +637,49 @@ public class UDPServer implements AutoCloseable
         @Override
         public void send(byte[] datagram) throws IOException
         {
-            if (state != CLIENT_STATE_CONNECTED) return;
-            if (datagram.length > MAX_PAYLOAD_SIZE) throw new IOException("Datagram length must not exceed " + MAX_PAYLOAD_SIZE);
-
-            try (MemoryStack stack = MemoryStack.stackPush())
+            send(ByteBuffer.wrap(datagram));
+        }
+        
+        /**
+         * Sends the remaining bytes of the given buffer as a datagram, without
+         * allocating any memory. If this client is not connected, this method
+         * will do nothing. If the datagram exceeds 1187 bytes, throws
+         * IOException.
+         */
+        @Override
+        public void send(ByteBuffer datagram) throws IOException
+        {
+            if (state != CLIENT_STATE_CONNECTED)
             {
-                ByteBuffer buffer = stack.malloc(HEADER_SIZE + datagram.length);
-                buffer.order(ByteOrder.LITTLE_ENDIAN);
-                buffer.position(4);
-                buffer.put((byte)MESSAGE);
-                buffer.put(identifier);
-                buffer.put(datagram);
-                NetUtil.flipAndBufferChecksum(buffer);
-                channel.send(buffer, address);
+                datagram.position(datagram.limit());
+                return;
             }
+            if (datagram.remaining() > MAX_PAYLOAD_SIZE) throw new IOException("Datagram length must not exceed " + MAX_PAYLOAD_SIZE);
+
+            sendBuffer.clear();
+            sendBuffer.position(4);
+            sendBuffer.put((byte)MESSAGE);
+            sendBuffer.put(identifier);
+            sendBuffer.put(datagram);
+            NetUtil.flipAndBufferChecksum(sendBuffer);
+            channel.send(sendBuffer, address);
         }
         
         @Override
         public void close() throws IOException
         {
-            if (state == CLIENT_STATE_DISCONNECTED) return;
-            if (state == CLIENT_STATE_CONNECTED)
+            synchronized (lock)
             {
-                if (channel.isOpen()) sendDisconnect(this);
+                if (state == CLIENT_STATE_DISCONNECTED) return;
+                if (state == CLIENT_STATE_CONNECTED && channel.isOpen()) sendDisconnect(this);
+                state = CLIENT_STATE_DISCONNECTED;
+                clients.remove(address);
+                
+                //If closed by the receive thread, update() removes this client instead.
+                if (onReceiveThread()) return;
                 connectedClients.remove(this);
+                clearInbox();
             }
-            state = CLIENT_STATE_DISCONNECTED;
-            clients.remove(address);
-            inbox.clear();
         }
     }
 }
@@ -303,8 +303,30 @@ public final class IOUtil
     {
         if (string == null) return sizeOfVLQ(-1);
 
-        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
-        return sizeOfVLQ(bytes.length) + bytes.length;
+        int length = lengthOfUTF8(string);
+        return sizeOfVLQ(length) + length;
+    }
+
+    /**
+     * Returns the number of bytes in the UTF-8 encoding of the given string, without encoding it.
+     */
+    public static int lengthOfUTF8(String string)
+    {
+        int length = 0;
+        for (int i=0, n=string.length(); i<n; i++)
+        {
+            char c = string.charAt(i);
+            if (c < 0x80) length++;
+            else if (c < 0x800) length += 2;
+            else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(string.charAt(i + 1)))
+            {
+                length += 4;
+                i++;
+            }
+            else if (Character.isSurrogate(c)) length++; //Unpaired surrogates are encoded as '?'.
+            else length += 3;
+        }
+        return length;
     }
 
     private IOUtil()
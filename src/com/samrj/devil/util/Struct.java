@@ -23,7 +23,6 @@
 package com.samrj.devil.util;
 
 import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 /**
@@ -34,7 +33,7 @@ import java.util.*;
  */
 public final class Struct<T extends Enum<T>> implements Bufferable
 {
-    private enum Type
+    enum Type
     {
         BYTE("byte"), BYTE_ARRAY("byte[]"), SHORT("short"), SHORT_ARRAY("short[]"),
         INT("int"), INT_ARRAY("int[]"), LONG("long"), LONG_ARRAY("long[]"),
@@ -42,7 +41,7 @@ public final class Struct<T extends Enum<T>> implements Bufferable
         BOOLEAN("boolean"), BOOLEAN_ARRAY("boolean[]"), CHAR("char"), CHAR_ARRAY("char[]"),
         STRING("String"), STRING_ARRAY("String[]"), STRUCT("Struct"), STRUCT_ARRAY("Struct[]");
 
-        private final String java;
+        final String java;
 
         private Type(String java)
         {
@@ -74,11 +73,6 @@ public final class Struct<T extends Enum<T>> implements Bufferable
         void write(ByteBuffer buffer, int name);
     }
 
-    private static int stringSize(String string)
-    {
-        return 4 + string.getBytes(StandardCharsets.UTF_8).length;
-    }
-
     private final Class<T> nameEnum;
     private final T[] names;
     private final Map<T, Field> fields;
@@ -126,129 +120,250 @@ public final class Struct<T extends Enum<T>> implements Bufferable
         read(buffer);
     }
 
-    @Override
-    public void read(ByteBuffer buffer)
+    private Object readValue(ByteBuffer buffer, Type type)
     {
-        int fieldCount = buffer.getInt();
-
-        for (int fi=0; fi<fieldCount; fi++)
+        switch (type)
         {
-            int name = nameReader.read(buffer);
-            Type type = Type.values()[buffer.get() & 0xFF];
-
-            Object value;
-
-            switch (type) //Write value.
+            case BYTE: return buffer.get();
+            case BYTE_ARRAY:
             {
-                case BYTE: value = buffer.get(); break;
-                case BYTE_ARRAY:
-                {
-                    int length = buffer.getInt();
-                    byte[] array = new byte[length];
-                    buffer.get(array);
-                    value = array;
-                    break;
-                }
-                case SHORT: value = buffer.getShort(); break;
-                case SHORT_ARRAY:
-                {
-                    int length = buffer.getInt();
-                    short[] array = new short[length];
-                    for (int i=0; i<length; i++) array[i] = buffer.getShort();
-                    value = array;
-                    break;
-                }
-                case INT: value = buffer.getInt(); break;
-                case INT_ARRAY:
-                {
-                    int length = buffer.getInt();
-                    int[] array = new int[length];
-                    for (int i=0; i<length; i++) array[i] = buffer.getInt();
-                    value = array;
-                    break;
-                }
-                case LONG: value = buffer.getLong(); break;
-                case LONG_ARRAY:
-                {
-                    int length = buffer.getInt();
-                    long[] array = new long[length];
-                    for (int i=0; i<length; i++) array[i] = buffer.getLong();
-                    value = array;
-                    break;
-                }
-                case FLOAT: value = buffer.getFloat(); break;
-                case FLOAT_ARRAY:
-                {
-                    int length = buffer.getInt();
-                    float[] array = new float[length];
-                    for (int i=0; i<length; i++) array[i] = buffer.getFloat();
-                    value = array;
-                    break;
-                }
-                case DOUBLE: value = buffer.getDouble(); break;
-                case DOUBLE_ARRAY:
-                {
-                    int length = buffer.getInt();
-                    double[] array = new double[length];
-                    for (int i=0; i<length; i++) array[i] = buffer.getDouble();
-                    value = array;
-                    break;
-                }
-                case BOOLEAN: value = (buffer.get() != 0); break;
-                case BOOLEAN_ARRAY:
-                {
-                    int numBits = buffer.getInt();
-                    int numBytes = (numBits + 7)/8;
-                    byte[] bytes = new byte[numBytes];
-                    buffer.get(bytes);
-                    BitSet bits = BitSet.valueOf(bytes);
-                    boolean[] array = new boolean[numBits];
-                    for (int i=0; i<numBits; i++) array[i] = bits.get(i);
-                    value = array;
-                    break;
-                }
-                case CHAR: value = buffer.getChar(); break;
-                case CHAR_ARRAY:
-                {
-                    int length = buffer.getInt();
-                    char[] array = new char[length];
-                    for (int i=0; i<length; i++) array[i] = buffer.getChar();
-                    value = array;
-                    break;
-                }
-                case STRING: value = IOUtil.readUTF8(buffer); break;
-                case STRING_ARRAY:
-                {
-                    int length = buffer.getInt();
-                    String[] array = new String[length];
-                    for (int i=0; i<length; i++) array[i] = IOUtil.readUTF8(buffer);
-                    value = array;
-                    break;
-                }
-                case STRUCT:
+                int length = buffer.getInt();
+                byte[] array = new byte[length];
+                buffer.get(array);
+                return array;
+            }
+            case SHORT: return buffer.getShort();
+            case SHORT_ARRAY:
+            {
+                int length = buffer.getInt();
+                short[] array = new short[length];
+                for (int i=0; i<length; i++) array[i] = buffer.getShort();
+                return array;
+            }
+            case INT: return buffer.getInt();
+            case INT_ARRAY:
+            {
+                int length = buffer.getInt();
+                int[] array = new int[length];
+                for (int i=0; i<length; i++) array[i] = buffer.getInt();
+                return array;
+            }
+            case LONG: return buffer.getLong();
+            case LONG_ARRAY:
+            {
+                int length = buffer.getInt();
+                long[] array = new long[length];
+                for (int i=0; i<length; i++) array[i] = buffer.getLong();
+                return array;
+            }
+            case FLOAT: return buffer.getFloat();
+            case FLOAT_ARRAY:
+            {
+                int length = buffer.getInt();
+                float[] array = new float[length];
+                for (int i=0; i<length; i++) array[i] = buffer.getFloat();
+                return array;
+            }
+            case DOUBLE: return buffer.getDouble();
+            case DOUBLE_ARRAY:
+            {
+                int length = buffer.getInt();
+                double[] array = new double[length];
+                for (int i=0; i<length; i++) array[i] = buffer.getDouble();
+                return array;
+            }
+            case BOOLEAN: return (buffer.get() != 0);
+            case BOOLEAN_ARRAY:
+            {
+                int numBits = buffer.getInt();
+                int numBytes = (numBits + 7)/8;
+                byte[] bytes = new byte[numBytes];
+                buffer.get(bytes);
+                BitSet bits = BitSet.valueOf(bytes);
+                boolean[] array = new boolean[numBits];
+                for (int i=0; i<numBits; i++) array[i] = bits.get(i);
+                return array;
+            }
+            case CHAR: return buffer.getChar();
+            case CHAR_ARRAY:
+            {
+                int length = buffer.getInt();
+                char[] array = new char[length];
+                for (int i=0; i<length; i++) array[i] = buffer.getChar();
+                return array;
+            }
+            case STRING: return IOUtil.readUTF8(buffer);
+            case STRING_ARRAY:
+            {
+                int length = buffer.getInt();
+                String[] array = new String[length];
+                for (int i=0; i<length; i++) array[i] = IOUtil.readUTF8(buffer);
+                return array;
+            }
+            case STRUCT:
+            {
+                Struct struct = new Struct(nameEnum);
+                struct.read(buffer);
+                return struct;
+            }
+            case STRUCT_ARRAY:
+            {
+                int length = buffer.getInt();
+                Struct[] array = new Struct[length];
+                for (int i=0; i<length; i++)
                 {
                     Struct struct = new Struct(nameEnum);
                     struct.read(buffer);
-                    value = struct;
-                    break;
-                }
-                case STRUCT_ARRAY:
-                {
-                    int length = buffer.getInt();
-                    Struct[] array = new Struct[length];
-                    for (int i=0; i<length; i++)
-                    {
-                        Struct struct = new Struct(nameEnum);
-                        struct.read(buffer);
-                        array[i] = struct;
-                    }
-                    value = array;
-                    break;
+                    array[i] = struct;
                 }
-                default: throw new RuntimeException("Unknown type: " + type);
+                return array;
             }
+            default: throw new RuntimeException("Unknown type: " + type);
+        }
+    }
 
-            fields.put(names[name], new Field(type, value));
+    private static void writeValue(ByteBuffer buffer, Type type, Object value)
+    {
+        switch (type)
+        {
+            case BYTE: buffer.put((byte)value); break;
+            case BYTE_ARRAY:
+            {
+                byte[] array = (byte[])value;
+                buffer.putInt(array.length);
+                buffer.put(array);
+                break;
+            }
+            case SHORT: buffer.putShort((short)value); break;
+            case SHORT_ARRAY:
+            {
+                short[] array = (short[])value;
+                buffer.putInt(array.length);
+                for (int i=0; i<array.length; i++) buffer.putShort(array[i]);
+                break;
+            }
+            case INT: buffer.putInt((int)value); break;
+            case INT_ARRAY:
+            {
+                int[] array = (int[])value;
+                buffer.putInt(array.length);
+                for (int i=0; i<array.length; i++) buffer.putInt(array[i]);
+                break;
+            }
+            case LONG: buffer.putLong((long)value); break;
+            case LONG_ARRAY:
+            {
+                long[] array = (long[])value;
+                buffer.putInt(array.length);
+                for (int i=0; i<array.length; i++) buffer.putLong(array[i]);
+                break;
+            }
+            case FLOAT: buffer.putFloat((float)value); break;
+            case FLOAT_ARRAY:
+            {
+                float[] array = (float[])value;
+                buffer.putInt(array.length);
+                for (int i=0; i<array.length; i++) buffer.putFloat(array[i]);
+                break;
+            }
+            case DOUBLE: buffer.putDouble((double)value); break;
+            case DOUBLE_ARRAY:
+            {
+                double[] array = (double[])value;
+                buffer.putInt(array.length);
+                for (int i=0; i<array.length; i++) buffer.putDouble(array[i]);
+                break;
+            }
+            case BOOLEAN: buffer.put(((boolean)value) ? (byte)1 : (byte)0); break;
+            case BOOLEAN_ARRAY:
+            {
+                boolean[] array = (boolean[])value;
+                int byteCount = (array.length + 7)/8;
+                buffer.putInt(array.length);
+                BitSet bits = new BitSet(array.length);
+                for (int i=0; i<array.length; i++) if (array[i]) bits.set(i);
+                byte[] bytes = bits.toByteArray();
+                buffer.put(bytes);
+                for (int i=bytes.length; i<byteCount; i++) buffer.put((byte)0); //Must pad since BitSet chops off trailing zeroes.
+                break;
+            }
+            case CHAR: buffer.putChar((char)value); break;
+            case CHAR_ARRAY:
+            {
+                char[] array = (char[])value;
+                buffer.putInt(array.length);
+                for (int i=0; i<array.length; i++) buffer.putChar(array[i]);
+                break;
+            }
+            case STRING: IOUtil.writeUTF8(buffer, (String)value); break;
+            case STRING_ARRAY:
+            {
+                String[] array = (String[])value;
+                buffer.putInt(array.length);
+                for (int i=0; i<array.length; i++) IOUtil.writeUTF8(buffer, (String)array[i]);
+                break;
+            }
+            case STRUCT: ((Struct)value).write(buffer); break;
+            case STRUCT_ARRAY:
+            {
+                Struct[] array = (Struct[])value;
+                buffer.putInt(array.length);
+                for (int i=0; i<array.length; i++) ((Struct)array[i]).write(buffer);
+                break;
+            }
+        }
+    }
+
+    private static int valueSize(Type type, Object value)
+    {
+        switch (type)
+        {
+            case BYTE: return 1;
+            case BYTE_ARRAY: return 4 + ((byte[])value).length;
+            case SHORT: return 2;
+            case SHORT_ARRAY: return 4 + ((short[])value).length*2;
+            case INT: return 4;
+            case INT_ARRAY: return 4 + ((int[])value).length*4;
+            case LONG: return 8;
+            case LONG_ARRAY: return 4 + ((long[])value).length*8;
+            case FLOAT: return 4;
+            case FLOAT_ARRAY: return 4 + ((float[])value).length*4;
+            case DOUBLE: return 8;
+            case DOUBLE_ARRAY: return 4 + ((double[])value).length*8;
+            case BOOLEAN: return 1;
+            case BOOLEAN_ARRAY: return 4 + (((boolean[])value).length + 7)/8;
+            case CHAR: return 2;
+            case CHAR_ARRAY: return 4 + ((char[])value).length*2;
+            case STRING: return IOUtil.sizeOfUTF8((String)value);
+            case STRING_ARRAY:
+            {
+                String[] array = (String[])value;
+                int size = 4;
+                for (int i=0; i<array.length; i++) size += IOUtil.sizeOfUTF8(array[i]);
+                return size;
+            }
+            case STRUCT: return ((Struct)value).bufferSize();
+            case STRUCT_ARRAY:
+            {
+                Struct[] array = (Struct[])value;
+                int size = 4;
+                for (int i=0; i<array.length; i++) size += ((Struct)array[i]).bufferSize();
+                return size;
+            }
+            default: throw new RuntimeException("Unknown type: " + type);
+        }
+    }
+
+    @Override
+    public void read(ByteBuffer buffer)
+    {
+        int fieldCount = buffer.getInt();
+
+        for (int fi=0; fi<fieldCount; fi++)
+        {
+            int name = nameReader.read(buffer);
+            Type type = Type.values()[buffer.get() & 0xFF];
+            fields.put(names[name], new Field(type, readValue(buffer, type)));
         }
     }
 
@@ -260,101 +375,10 @@ public final class Struct<T extends Enum<T>> implements Bufferable
 
         for (Map.Entry<T, Field> entry : fields.entrySet())
         {
-            T name = entry.getKey();
             Field field = entry.getValue();
-            Type type = field.type;
-            Object value = field.value;
-
-            nameWriter.write(buffer, name.ordinal()); //Write name.
-            buffer.put((byte)type.ordinal()); //Write type.
-            switch (type) //Write value.
-            {
-                case BYTE: buffer.put((byte)value); break;
-                case BYTE_ARRAY:
-                {
-                    byte[] array = (byte[])value;
-                    buffer.putInt(array.length);
-                    buffer.put(array);
-                    break;
-                }
-                case SHORT: buffer.putShort((short)value); break;
-                case SHORT_ARRAY:
-                {
-                    short[] array = (short[])value;
-                    buffer.putInt(array.length);
-                    for (int i=0; i<array.length; i++) buffer.putShort(array[i]);
-                    break;
-                }
-                case INT: buffer.putInt((int)value); break;
-                case INT_ARRAY:
-                {
-                    int[] array = (int[])value;
-                    buffer.putInt(array.length);
-                    for (int i=0; i<array.length; i++) buffer.putInt(array[i]);
-                    break;
-                }
-                case LONG: buffer.putLong((long)value); break;
-                case LONG_ARRAY:
-                {
-                    long[] array = (long[])value;
-                    buffer.putInt(array.length);
-                    for (int i=0; i<array.length; i++) buffer.putLong(array[i]);
-                    break;
-                }
-                case FLOAT: buffer.putFloat((float)value); break;
-                case FLOAT_ARRAY:
-                {
-                    float[] array = (float[])value;
-                    buffer.putInt(array.length);
-                    for (int i=0; i<array.length; i++) buffer.putFloat(array[i]);
-                    break;
-                }
-                case DOUBLE: buffer.putDouble((double)value); break;
-                case DOUBLE_ARRAY:
-                {
-                    double[] array = (double[])value;
-                    buffer.putInt(array.length);
-                    for (int i=0; i<array.length; i++) buffer.putDouble(array[i]);
-                    break;
-                }
-                case BOOLEAN: buffer.put(((boolean)value) ? (byte)1 : (byte)0); break;
-                case BOOLEAN_ARRAY:
-                {
-                    boolean[] array = (boolean[])value;
-                    int byteCount = (array.length + 7)/8;
-                    buffer.putInt(array.length);
-                    BitSet bits = new BitSet(array.length);
-                    for (int i=0; i<array.length; i++) if (array[i]) bits.set(i);
-                    byte[] bytes = bits.toByteArray();
-                    buffer.put(bytes);
-                    for (int i=bytes.length; i<byteCount; i++) buffer.put((byte)0); //Must pad since BitSet chops off trailing zeroes.
-                    break;
-                }
-                case CHAR: buffer.putChar((char)value); break;
-                case CHAR_ARRAY:
-                {
-                    char[] array = (char[])value;
-                    buffer.putInt(array.length);
-                    for (int i=0; i<array.length; i++) buffer.putChar(array[i]);
-                    break;
-                }
-                case STRING: IOUtil.writeUTF8(buffer, (String)value); break;
-                case STRING_ARRAY:
-                {
-                    String[] array = (String[])value;
-                    buffer.putInt(array.length);
-                    for (int i=0; i<array.length; i++) IOUtil.writeUTF8(buffer, (String)array[i]);
-                    break;
-                }
-                case STRUCT: ((Struct)value).write(buffer); break;
-                case STRUCT_ARRAY:
-                {
-                    Struct[] array = (Struct[])value;
-                    buffer.putInt(array.length);
-                    for (int i=0; i<array.length; i++) ((Struct)array[i]).write(buffer);
-                    break;
-                }
-            }
+            nameWriter.write(buffer, entry.getKey().ordinal()); //Write name.
+            buffer.put((byte)field.type.ordinal()); //Write type.
+            writeValue(buffer, field.type, field.value);
         }
     }
 
@@ -362,97 +386,248 @@ public final class Struct<T extends Enum<T>> implements Bufferable
     public int bufferSize()
     {
         int size = 4; //Field count
+        for (Field field : fields.values()) size += nameSize + 1 + valueSize(field.type, field.value); //Name, type, value.
+        return size;
+    }
+
+    private static final int DELTA_REMOVED = 0xFF;
+
+    private static boolean quantized(Type type, Float precision)
+    {
+        return precision != null && (type == Type.FLOAT || type == Type.FLOAT_ARRAY);
+    }
+
+    private static Object quantizeValue(Type type, Object value, float precision)
+    {
+        if (type == Type.FLOAT) return Math.round((float)value/precision)*precision;
+
+        float[] array = (float[])value;
+        float[] result = new float[array.length];
+        for (int i=0; i<array.length; i++) result[i] = Math.round(array[i]/precision)*precision;
+        return result;
+    }
+
+    private static boolean valueEquals(Type type, Object a, Object b)
+    {
+        switch (type)
+        {
+            case BYTE_ARRAY: return Arrays.equals((byte[])a, (byte[])b);
+            case SHORT_ARRAY: return Arrays.equals((short[])a, (short[])b);
+            case INT_ARRAY: return Arrays.equals((int[])a, (int[])b);
+            case LONG_ARRAY: return Arrays.equals((long[])a, (long[])b);
+            case FLOAT_ARRAY: return Arrays.equals((float[])a, (float[])b);
+            case DOUBLE_ARRAY: return Arrays.equals((double[])a, (double[])b);
+            case BOOLEAN_ARRAY: return Arrays.equals((boolean[])a, (boolean[])b);
+            case CHAR_ARRAY: return Arrays.equals((char[])a, (char[])b);
+            case STRING_ARRAY: return Arrays.equals((String[])a, (String[])b);
+            case STRUCT: return ((Struct<?>)a).contentEquals((Struct<?>)b);
+            case STRUCT_ARRAY:
+            {
+                Struct<?>[] arrayA = (Struct<?>[])a, arrayB = (Struct<?>[])b;
+                if (arrayA.length != arrayB.length) return false;
+                for (int i=0; i<arrayA.length; i++) if (!arrayA[i].contentEquals(arrayB[i])) return false;
+                return true;
+            }
+            default: return a.equals(b);
+        }
+    }
+
+    private static Object copyValue(Type type, Object value)
+    {
+        switch (type)
+        {
+            case BYTE_ARRAY: return ((byte[])value).clone();
+            case SHORT_ARRAY: return ((short[])value).clone();
+            case INT_ARRAY: return ((int[])value).clone();
+            case LONG_ARRAY: return ((long[])value).clone();
+            case FLOAT_ARRAY: return ((float[])value).clone();
+            case DOUBLE_ARRAY: return ((double[])value).clone();
+            case BOOLEAN_ARRAY: return ((boolean[])value).clone();
+            case CHAR_ARRAY: return ((char[])value).clone();
+            case STRING_ARRAY: return ((String[])value).clone();
+            case STRUCT: return ((Struct<?>)value).quantize(null);
+            case STRUCT_ARRAY:
+            {
+                Struct<?>[] array = (Struct<?>[])value;
+                Struct<?>[] result = new Struct<?>[array.length];
+                for (int i=0; i<array.length; i++) result[i] = array[i].quantize(null);
+                return result;
+            }
+            default: return value; //Boxed primitives and strings are immutable.
+        }
+    }
 
+    private boolean fieldEquals(Field field, Field other, Float precision)
+    {
+        if (field.type != other.type) return false;
+        if (!quantized(field.type, precision)) return valueEquals(field.type, field.value, other.value);
+        return valueEquals(field.type, quantizeValue(field.type, field.value, precision),
+                                       quantizeValue(other.type, other.value, precision));
+    }
+
+    private boolean contentEquals(Struct<?> other)
+    {
+        if (other.nameEnum != nameEnum || other.fields.size() != fields.size()) return false;
+        for (Map.Entry<T, Field> entry : fields.entrySet())
+        {
+            Field otherField = other.fields.get(entry.getKey());
+            if (otherField == null || !fieldEquals(entry.getValue(), otherField, null)) return false;
+        }
+        return true;
+    }
+
+    //A missing current field counts as changed if the baseline has it, since it must be marked as removed.
+    private boolean deltaChanged(Field field, Field baseField, Float precision)
+    {
+        if (field == null) return baseField != null;
+        return baseField == null || !fieldEquals(field, baseField, precision);
+    }
+
+    /**
+     * Returns a deep copy of this struct in which every float and float array field whose name is mapped to a precision
+     * in the given map is rounded to a multiple of that precision, exactly as it would be read back from a delta. The
+     * map may be null.
+     */
+    public Struct<T> quantize(Map<T, Float> precision)
+    {
+        Struct<T> result = new Struct<>(nameEnum);
         for (Map.Entry<T, Field> entry : fields.entrySet())
         {
-            T name = entry.getKey();
             Field field = entry.getValue();
-            Type type = field.type;
-            Object value = field.value;
+            Float p = precision != null ? precision.get(entry.getKey()) : null;
+            Object value = quantized(field.type, p) ? quantizeValue(field.type, field.value, p) : copyValue(field.type, field.value);
+            result.fields.put(entry.getKey(), new Field(field.type, value));
+        }
+        return result;
+    }
+
+    /**
+     * Writes only the fields of this struct which differ from the given baseline: a bitmask with one bit per name,
+     * followed by the type and value of each marked field. Fields which are in the baseline but not in this struct are
+     * marked as removed. If the baseline is null, every field is written.
+     *
+     * Float and float array fields whose names are mapped to a precision in the given map are compared and written as
+     * variable-length multiples of that precision, which is usually much smaller than a full float. The map may be
+     * null, but must be the same when the delta is read.
+     */
+    public void writeDelta(Struct<T> baseline, Map<T, Float> precision, ByteBuffer buffer)
+    {
+        int maskPos = buffer.position();
+        int maskSize = (names.length + 7)/8;
+        for (int i=0; i<maskSize; i++) buffer.put((byte)0);
+
+        for (int i=0; i<names.length; i++)
+        {
+            T name = names[i];
+            Field field = fields.get(name);
+            Field baseField = baseline != null ? baseline.fields.get(name) : null;
+            Float p = precision != null ? precision.get(name) : null;
+            if (!deltaChanged(field, baseField, p)) continue;
+
+            int maskByte = maskPos + (i >>> 3);
+            buffer.put(maskByte, (byte)(buffer.get(maskByte) | (1 << (i & 7))));
 
-            size += nameSize; //Name
-            size++; //Type
-            switch (type)
+            if (field == null)
             {
-                case BYTE: size++; break;
-                case BYTE_ARRAY:
-                {
-                    byte[] array = (byte[])value;
-                    size += 4 + array.length;
-                    break;
-                }
-                case SHORT: size += 2; break;
-                case SHORT_ARRAY:
-                {
-                    short[] array = (short[])value;
-                    size += 4 + array.length*2;
-                    break;
-                }
-                case INT: size += 4; break;
-                case INT_ARRAY:
-                {
-                    int[] array = (int[])value;
-                    size += 4 + array.length*4;
-                    break;
-                }
-                case LONG: size += 8; break;
-                case LONG_ARRAY:
-                {
-                    long[] array = (long[])value;
-                    size += 4 + array.length*8;
-                    break;
-                }
-                case FLOAT: size += 4; break;
-                case FLOAT_ARRAY:
-                {
-                    float[] array = (float[])value;
-                    size += 4 + array.length*4;
-                    break;
-                }
-                case DOUBLE: size += 8; break;
-                case DOUBLE_ARRAY:
-                {
-                    double[] array = (double[])value;
-                    size += 4 + array.length*8;
-                    break;
-                }
-                case BOOLEAN: size++; break;
-                case BOOLEAN_ARRAY:
-                {
-                    boolean[] array = (boolean[])value;
-                    int bytes = (array.length + 7)/8;
-                    size += 4 + bytes;
-                    break;
-                }
-                case CHAR: size += 2; break;
-                case CHAR_ARRAY:
-                {
-                    char[] array = (char[])value;
-                    size += 4 + array.length*2;
-                    break;
-                }
-                case STRING: size += stringSize((String)value); break;
-                case STRING_ARRAY:
-                {
-                    String[] array = (String[])value;
-                    size += 4;
-                    for (int i=0; i<array.length; i++) size += stringSize(array[i]);
-                    break;
-                }
-                case STRUCT: size += ((Struct)value).bufferSize(); break;
-                case STRUCT_ARRAY:
-                {
-                    Struct[] array = (Struct[])value;
-                    size += 4;
-                    for (int i=0; i<array.length; i++) size += ((Struct)array[i]).bufferSize();
-                    break;
-                }
+                buffer.put((byte)DELTA_REMOVED);
+                continue;
+            }
+
+            buffer.put((byte)field.type.ordinal());
+            if (!quantized(field.type, p)) writeValue(buffer, field.type, field.value);
+            else if (field.type == Type.FLOAT) IOUtil.writeVLQ(buffer, Math.round((float)field.value/p));
+            else
+            {
+                float[] array = (float[])field.value;
+                IOUtil.writeVLQ(buffer, array.length);
+                for (int j=0; j<array.length; j++) IOUtil.writeVLQ(buffer, Math.round(array[j]/p));
+            }
+        }
+    }
+
+    /**
+     * Returns true if writeDelta() would mark no fields for the given baseline and precision map.
+     */
+    public boolean deltaEquals(Struct<T> baseline, Map<T, Float> precision)
+    {
+        for (T name : names)
+        {
+            Field baseField = baseline != null ? baseline.fields.get(name) : null;
+            Float p = precision != null ? precision.get(name) : null;
+            if (deltaChanged(fields.get(name), baseField, p)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of bytes writeDelta() would write for the given baseline and precision map.
+     */
+    public int deltaSize(Struct<T> baseline, Map<T, Float> precision)
+    {
+        int size = (names.length + 7)/8;
+
+        for (T name : names)
+        {
+            Field field = fields.get(name);
+            Field baseField = baseline != null ? baseline.fields.get(name) : null;
+            Float p = precision != null ? precision.get(name) : null;
+            if (!deltaChanged(field, baseField, p)) continue;
+
+            size++; //Type or removal marker.
+            if (field == null) continue;
+
+            if (!quantized(field.type, p)) size += valueSize(field.type, field.value);
+            else if (field.type == Type.FLOAT) size += IOUtil.sizeOfVLQ(Math.round((float)field.value/p));
+            else
+            {
+                float[] array = (float[])field.value;
+                size += IOUtil.sizeOfVLQ(array.length);
+                for (int j=0; j<array.length; j++) size += IOUtil.sizeOfVLQ(Math.round(array[j]/p));
             }
         }
 
         return size;
     }
 
+    /**
+     * Replaces the fields of this struct with those of the given baseline, then applies a delta written by
+     * writeDelta() against that same baseline. The baseline may be null, and is not modified.
+     */
+    public void readDelta(Struct<T> baseline, Map<T, Float> precision, ByteBuffer buffer)
+    {
+        fields.clear();
+        if (baseline != null) fields.putAll(baseline.fields);
+
+        byte[] mask = new byte[(names.length + 7)/8];
+        buffer.get(mask);
+
+        for (int i=0; i<names.length; i++)
+        {
+            if ((mask[i >>> 3] & (1 << (i & 7))) == 0) continue;
+
+            T name = names[i];
+            int typeIndex = buffer.get() & 0xFF;
+            if (typeIndex == DELTA_REMOVED)
+            {
+                fields.remove(name);
+                continue;
+            }
+
+            Type type = Type.values()[typeIndex];
+            Float p = precision != null ? precision.get(name) : null;
+            Object value;
+            if (!quantized(type, p)) value = readValue(buffer, type);
+            else if (type == Type.FLOAT) value = IOUtil.readVLQ(buffer)*p;
+            else
+            {
+                float[] array = new float[IOUtil.readVLQ(buffer)];
+                for (int j=0; j<array.length; j++) array[j] = IOUtil.readVLQ(buffer)*p;
+                value = array;
+            }
+            fields.put(name, new Field(type, value));
+        }
+    }
+
     public boolean contains(T name)
     {
         return fields.containsKey(name);
@@ -0,0 +1,485 @@
+/*
+ * Copyright (c) 2022 Sam Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.samrj.devil.util;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A fixed schema for messages which are sent often. Unlike {@link Struct}, every field is declared once up front, and
+ * is always present. Fields are stored unboxed in reusable instances, and are encoded without any names or type tags:
+ * fixed-size fields are written at precomputed offsets, followed by any variable-length integers and strings in the
+ * order they were declared.
+ *
+ * Fields must all be added before the first instance is created.
+ *
+ * @author Samuel Johnson (SmashMaster)
+ */
+public final class StructSchema<T extends Enum<T>>
+{
+    private static final int BYTE = 0, SHORT = 1, INT = 2, LONG = 3, FLOAT = 4, DOUBLE = 5, BOOLEAN = 6, CHAR = 7;
+    private static final int FLOAT_ARRAY = 8, VAR_INT = 9, STRING = 10;
+    private static final int[] SIZES = {1, 2, 4, 8, 4, 8, 1, 2};
+    private static final String[] KIND_NAMES = {"byte", "short", "int", "long", "float", "double", "boolean", "char",
+                                                "float[]", "varint", "String"};
+
+    private final T[] names;
+    private final int[] slots; //Name ordinal -> field index.
+
+    private int numFields;
+    private int[] kinds = new int[8];
+    private int[] offsets = new int[8]; //Byte offset for fixed fields, or index into floats/strings.
+    private int[] lengths = new int[8]; //Array length.
+    private int[] variableFields = new int[0];
+    private int fixedSize, numFloats, numStrings;
+    private boolean sealed;
+
+    public StructSchema(Class<T> nameEnum)
+    {
+        if (!nameEnum.isEnum()) throw new IllegalArgumentException("Expected enum.");
+        names = nameEnum.getEnumConstants();
+        slots = new int[names.length];
+        Arrays.fill(slots, -1);
+    }
+
+    private StructSchema<T> add(T name, int kind, int length)
+    {
+        if (sealed) throw new IllegalStateException("Cannot add fields after instances have been created.");
+        if (slots[name.ordinal()] >= 0) throw new IllegalArgumentException("Duplicate field " + name);
+
+        if (numFields == kinds.length)
+        {
+            kinds = Arrays.copyOf(kinds, numFields*2);
+            offsets = Arrays.copyOf(offsets, numFields*2);
+            lengths = Arrays.copyOf(lengths, numFields*2);
+        }
+
+        int field = numFields++;
+        slots[name.ordinal()] = field;
+        kinds[field] = kind;
+        lengths[field] = length;
+
+        switch (kind)
+        {
+            case FLOAT_ARRAY:
+                offsets[field] = numFloats;
+                numFloats += length;
+                break;
+            case STRING:
+                offsets[field] = numStrings++;
+                addVariable(field);
+                break;
+            case VAR_INT:
+                addVariable(field);
+                break;
+            default:
+                offsets[field] = fixedSize;
+                fixedSize += SIZES[kind];
+        }
+
+        return this;
+    }
+
+    private void addVariable(int field)
+    {
+        variableFields = Arrays.copyOf(variableFields, variableFields.length + 1);
+        variableFields[variableFields.length - 1] = field;
+    }
+
+    public StructSchema<T> addByte(T name)
+    {
+        return add(name, BYTE, 0);
+    }
+
+    public StructSchema<T> addShort(T name)
+    {
+        return add(name, SHORT, 0);
+    }
+
+    public StructSchema<T> addInt(T name)
+    {
+        return add(name, INT, 0);
+    }
+
+    public StructSchema<T> addLong(T name)
+    {
+        return add(name, LONG, 0);
+    }
+
+    public StructSchema<T> addFloat(T name)
+    {
+        return add(name, FLOAT, 0);
+    }
+
+    public StructSchema<T> addDouble(T name)
+    {
+        return add(name, DOUBLE, 0);
+    }
+
+    public StructSchema<T> addBoolean(T name)
+    {
+        return add(name, BOOLEAN, 0);
+    }
+
+    public StructSchema<T> addChar(T name)
+    {
+        return add(name, CHAR, 0);
+    }
+
+    /**
+     * Adds a float array field of a fixed length, such as a vector or quaternion.
+     */
+    public StructSchema<T> addFloatArray(T name, int length)
+    {
+        if (length <= 0) throw new IllegalArgumentException("Length must be positive.");
+        return add(name, FLOAT_ARRAY, length);
+    }
+
+    /**
+     * Adds an int field which is written as a variable-length quantity, taking fewer bytes for values near zero.
+     */
+    public StructSchema<T> addVarInt(T name)
+    {
+        return add(name, VAR_INT, 0);
+    }
+
+    public StructSchema<T> addString(T name)
+    {
+        return add(name, STRING, 0);
+    }
+
+    /**
+     * Returns the number of bytes taken by the fixed-size fields of this schema, which is the size of every instance
+     * if it has no variable-length fields.
+     */
+    public int getFixedSize()
+    {
+        return fixedSize;
+    }
+
+    /**
+     * Creates a new, zeroed instance of this schema. Once an instance has been created, no more fields may be added.
+     */
+    public Instance newInstance()
+    {
+        sealed = true;
+        return new Instance();
+    }
+
+    private int field(T name, int kind)
+    {
+        int field = slots[name.ordinal()];
+        if (field < 0) throw new IllegalArgumentException("No such field " + name);
+        if (kinds[field] != kind) throw new IllegalArgumentException(name + " is " + KIND_NAMES[kinds[field]] + ", not " + KIND_NAMES[kind]);
+        return field;
+    }
+
+    /**
+     * A reusable set of values for this schema. Reading into an instance overwrites every field, and allocates nothing
+     * except for strings.
+     */
+    public final class Instance implements Bufferable
+    {
+        private final long[] values = new long[numFields];
+        private final float[] floats = new float[numFloats];
+        private final String[] strings = new String[numStrings];
+
+        private Instance()
+        {
+        }
+
+        public StructSchema<T> getSchema()
+        {
+            return StructSchema.this;
+        }
+
+        @Override
+        public void read(ByteBuffer buffer)
+        {
+            int base = buffer.position();
+            for (int i=0; i<numFields; i++)
+            {
+                int offset = base + offsets[i];
+                switch (kinds[i])
+                {
+                    case BYTE: values[i] = buffer.get(offset); break;
+                    case SHORT: values[i] = buffer.getShort(offset); break;
+                    case INT: values[i] = buffer.getInt(offset); break;
+                    case LONG: values[i] = buffer.getLong(offset); break;
+                    case FLOAT: values[i] = buffer.getInt(offset); break;
+                    case DOUBLE: values[i] = buffer.getLong(offset); break;
+                    case BOOLEAN: values[i] = buffer.get(offset); break;
+                    case CHAR: values[i] = buffer.getChar(offset); break;
+                }
+            }
+            buffer.position(base + fixedSize);
+
+            for (int i=0; i<numFields; i++) if (kinds[i] == FLOAT_ARRAY)
+                for (int j=0, o=offsets[i]; j<lengths[i]; j++) floats[o + j] = buffer.getFloat();
+
+            for (int i : variableFields)
+            {
+                if (kinds[i] == VAR_INT) values[i] = IOUtil.readVLQ(buffer);
+                else strings[offsets[i]] = IOUtil.readUTF8(buffer);
+            }
+        }
+
+        @Override
+        public void write(ByteBuffer buffer)
+        {
+            int base = buffer.position();
+            for (int i=0; i<numFields; i++)
+            {
+                int offset = base + offsets[i];
+                switch (kinds[i])
+                {
+                    case BYTE: buffer.put(offset, (byte)values[i]); break;
+                    case SHORT: buffer.putShort(offset, (short)values[i]); break;
+                    case INT: buffer.putInt(offset, (int)values[i]); break;
+                    case LONG: buffer.putLong(offset, values[i]); break;
+                    case FLOAT: buffer.putInt(offset, (int)values[i]); break;
+                    case DOUBLE: buffer.putLong(offset, values[i]); break;
+                    case BOOLEAN: buffer.put(offset, (byte)values[i]); break;
+                    case CHAR: buffer.putChar(offset, (char)values[i]); break;
+                }
+            }
+            buffer.position(base + fixedSize);
+
+            for (int i=0; i<numFields; i++) if (kinds[i] == FLOAT_ARRAY)
+                for (int j=0, o=offsets[i]; j<lengths[i]; j++) buffer.putFloat(floats[o + j]);
+
+            for (int i : variableFields)
+            {
+                if (kinds[i] == VAR_INT) IOUtil.writeVLQ(buffer, (int)values[i]);
+                else IOUtil.writeUTF8(buffer, strings[offsets[i]]);
+            }
+        }
+
+        @Override
+        public int bufferSize()
+        {
+            int size = fixedSize + numFloats*4;
+            for (int i : variableFields)
+            {
+                if (kinds[i] == VAR_INT) size += IOUtil.sizeOfVLQ((int)values[i]);
+                else size += IOUtil.sizeOfUTF8(strings[offsets[i]]);
+            }
+            return size;
+        }
+
+        /**
+         * Copies every field of the given instance of the same schema into this one.
+         */
+        public Instance set(Instance other)
+        {
+            if (other.getSchema() != StructSchema.this) throw new IllegalArgumentException("Different schema.");
+            System.arraycopy(other.values, 0, values, 0, values.length);
+            System.arraycopy(other.floats, 0, floats, 0, floats.length);
+            System.arraycopy(other.strings, 0, strings, 0, strings.length);
+            return this;
+        }
+
+        public byte getByte(T name)
+        {
+            return (byte)values[field(name, BYTE)];
+        }
+
+        public Instance setByte(T name, byte value)
+        {
+            values[field(name, BYTE)] = value;
+            return this;
+        }
+
+        public short getShort(T name)
+        {
+            return (short)values[field(name, SHORT)];
+        }
+
+        public Instance setShort(T name, short value)
+        {
+            values[field(name, SHORT)] = value;
+            return this;
+        }
+
+        public int getInt(T name)
+        {
+            int field = slots[name.ordinal()];
+            if (field >= 0 && kinds[field] == VAR_INT) return (int)values[field];
+            return (int)values[field(name, INT)];
+        }
+
+        public Instance setInt(T name, int value)
+        {
+            int field = slots[name.ordinal()];
+            if (field < 0 || kinds[field] != VAR_INT) field = field(name, INT);
+            values[field] = value;
+            return this;
+        }
+
+        public long getLong(T name)
+        {
+            return values[field(name, LONG)];
+        }
+
+        public Instance setLong(T name, long value)
+        {
+            values[field(name, LONG)] = value;
+            return this;
+        }
+
+        public float getFloat(T name)
+        {
+            return Float.intBitsToFloat((int)values[field(name, FLOAT)]);
+        }
+
+        public Instance setFloat(T name, float value)
+        {
+            values[field(name, FLOAT)] = Float.floatToRawIntBits(value);
+            return this;
+        }
+
+        public double getDouble(T name)
+        {
+            return Double.longBitsToDouble(values[field(name, DOUBLE)]);
+        }
+
+        public Instance setDouble(T name, double value)
+        {
+            values[field(name, DOUBLE)] = Double.doubleToRawLongBits(value);
+            return this;
+        }
+
+        public boolean getBoolean(T name)
+        {
+            return values[field(name, BOOLEAN)] != 0;
+        }
+
+        public Instance setBoolean(T name, boolean value)
+        {
+            values[field(name, BOOLEAN)] = value ? 1 : 0;
+            return this;
+        }
+
+        public char getChar(T name)
+        {
+            return (char)values[field(name, CHAR)];
+        }
+
+        public Instance setChar(T name, char value)
+        {
+            values[field(name, CHAR)] = value;
+            return this;
+        }
+
+        /**
+         * Returns element i of the given float array field.
+         */
+        public float getFloat(T name, int i)
+        {
+            int field = field(name, FLOAT_ARRAY);
+            if (i < 0 || i >= lengths[field]) throw new IndexOutOfBoundsException();
+            return floats[offsets[field] + i];
+        }
+
+        /**
+         * Sets element i of the given float array field.
+         */
+        public Instance setFloat(T name, int i, float value)
+        {
+            int field = field(name, FLOAT_ARRAY);
+            if (i < 0 || i >= lengths[field]) throw new IndexOutOfBoundsException();
+            floats[offsets[field] + i] = value;
+            return this;
+        }
+
+        /**
+         * Copies the given float array field into the given array, and returns it.
+         */
+        public float[] getFloatArray(T name, float[] result)
+        {
+            int field = field(name, FLOAT_ARRAY);
+            System.arraycopy(floats, offsets[field], result, 0, lengths[field]);
+            return result;
+        }
+
+        /**
+         * Copies the given array into the given float array field. The array must be exactly as long as the field.
+         */
+        public Instance setFloatArray(T name, float[] array)
+        {
+            int field = field(name, FLOAT_ARRAY);
+            if (array.length != lengths[field]) throw new IllegalArgumentException("Expected length " + lengths[field]);
+            System.arraycopy(array, 0, floats, offsets[field], array.length);
+            return this;
+        }
+
+        public String getString(T name)
+        {
+            return strings[offsets[field(name, STRING)]];
+        }
+
+        public Instance setString(T name, String value)
+        {
+            strings[offsets[field(name, STRING)]] = value;
+            return this;
+        }
+
+        private String valueString(int field)
+        {
+            long value = values[field];
+            switch (kinds[field])
+            {
+                case FLOAT: return Float.toString(Float.intBitsToFloat((int)value));
+                case DOUBLE: return Double.toString(Double.longBitsToDouble(value));
+                case BOOLEAN: return Boolean.toString(value != 0);
+                case CHAR: return "'" + (char)value + "'";
+                case FLOAT_ARRAY: return Arrays.toString(Arrays.copyOfRange(floats, offsets[field], offsets[field] + lengths[field]));
+                case STRING:
+                    String string = strings[offsets[field]];
+                    return string != null ? '"' + string + '"' : "null";
+                default: return Long.toString(value);
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            StringBuilder builder = new StringBuilder();
+            builder.append("StructSchema.Instance {\n");
+            for (T name : names)
+            {
+                int field = slots[name.ordinal()];
+                if (field < 0) continue;
+                builder.append("    ");
+                builder.append(KIND_NAMES[kinds[field]]);
+                builder.append(' ');
+                builder.append(name);
+                builder.append(" = ");
+                builder.append(valueString(field));
+                builder.append(";\n");
+            }
+            builder.append('}');
+            return builder.toString();
+        }
+    }
+}
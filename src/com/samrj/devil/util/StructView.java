@@ -0,0 +1,434 @@
+/*
+ * Copyright (c) 2022 Sam Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.samrj.devil.util;
+
+import com.samrj.devil.util.Struct.Type;
+
+import java.nio.*;
+import java.util.NoSuchElementException;
+
+/**
+ * A read-only view of a {@link Struct} encoded in a buffer. The field offsets are indexed in a single pass when the
+ * view is created, but no values are decoded until they are asked for, so a handler which only looks at one or two
+ * fields of a large message does not pay for the rest. Arrays are returned as views of the underlying buffer, and
+ * nested structs as views of their own.
+ *
+ * The buffer's contents must not change while the view is in use.
+ *
+ * @author Samuel Johnson (SmashMaster)
+ */
+public final class StructView<T extends Enum<T>>
+{
+    private static final Type[] TYPES = Type.values();
+
+    private final Class<T> nameEnum;
+    private final int numNames, nameSize;
+    private final ByteBuffer buffer;
+    private final int start, end;
+    private final int numFields;
+    private final int[] names;
+    private final Type[] types;
+    private final int[] offsets;
+
+    /**
+     * Creates a view of the struct at the given buffer's position, and advances its position past the struct, just as
+     * {@link Struct#read(ByteBuffer)} would.
+     */
+    public StructView(Class<T> nameEnum, ByteBuffer buffer)
+    {
+        if (!nameEnum.isEnum()) throw new IllegalArgumentException("Expected enum.");
+        this.nameEnum = nameEnum;
+        numNames = nameEnum.getEnumConstants().length;
+        nameSize = numNames <= 0xFF ? 1 : numNames <= 0xFFFF ? 2 : 4;
+        this.buffer = buffer.duplicate().order(buffer.order());
+
+        start = buffer.position();
+        numFields = this.buffer.getInt();
+        if (numFields < 0) throw new IllegalArgumentException("Negative field count.");
+        names = new int[numFields];
+        types = new Type[numFields];
+        offsets = new int[numFields];
+
+        for (int i=0; i<numFields; i++)
+        {
+            names[i] = readName(this.buffer);
+            types[i] = readType(this.buffer);
+            offsets[i] = this.buffer.position();
+            skipValue(this.buffer, types[i]);
+        }
+
+        end = this.buffer.position();
+        buffer.position(end);
+    }
+
+    private int readName(ByteBuffer scan)
+    {
+        int name;
+        switch (nameSize)
+        {
+            case 1: name = scan.get() & 0xFF; break;
+            case 2: name = scan.getShort() & 0xFFFF; break;
+            default: name = scan.getInt();
+        }
+        if (name < 0 || name >= numNames) throw new IllegalArgumentException("Unknown name: " + name);
+        return name;
+    }
+
+    private static Type readType(ByteBuffer scan)
+    {
+        int type = scan.get() & 0xFF;
+        if (type >= TYPES.length) throw new IllegalArgumentException("Unknown type: " + type);
+        return TYPES[type];
+    }
+
+    private static int readLength(ByteBuffer scan)
+    {
+        int length = scan.getInt();
+        if (length < 0) throw new IllegalArgumentException("Negative array length.");
+        return length;
+    }
+
+    private static void skip(ByteBuffer scan, long bytes)
+    {
+        if (bytes > scan.remaining()) throw new BufferUnderflowException();
+        scan.position(scan.position() + (int)bytes);
+    }
+
+    private static void skipString(ByteBuffer scan)
+    {
+        int length = IOUtil.readVLQ(scan);
+        if (length > 0) skip(scan, length);
+    }
+
+    private void skipStruct(ByteBuffer scan)
+    {
+        int count = scan.getInt();
+        if (count < 0) throw new IllegalArgumentException("Negative field count.");
+        for (int i=0; i<count; i++)
+        {
+            readName(scan);
+            skipValue(scan, readType(scan));
+        }
+    }
+
+    private void skipValue(ByteBuffer scan, Type type)
+    {
+        switch (type)
+        {
+            case BYTE: case BOOLEAN: skip(scan, 1); break;
+            case SHORT: case CHAR: skip(scan, 2); break;
+            case INT: case FLOAT: skip(scan, 4); break;
+            case LONG: case DOUBLE: skip(scan, 8); break;
+            case BYTE_ARRAY: skip(scan, readLength(scan)); break;
+            case SHORT_ARRAY: case CHAR_ARRAY: skip(scan, readLength(scan)*2L); break;
+            case INT_ARRAY: case FLOAT_ARRAY: skip(scan, readLength(scan)*4L); break;
+            case LONG_ARRAY: case DOUBLE_ARRAY: skip(scan, readLength(scan)*8L); break;
+            case BOOLEAN_ARRAY: skip(scan, (readLength(scan) + 7L)/8); break;
+            case STRING: skipString(scan); break;
+            case STRING_ARRAY:
+            {
+                int length = readLength(scan);
+                for (int i=0; i<length; i++) skipString(scan);
+                break;
+            }
+            case STRUCT: skipStruct(scan); break;
+            case STRUCT_ARRAY:
+            {
+                int length = readLength(scan);
+                for (int i=0; i<length; i++) skipStruct(scan);
+                break;
+            }
+            default: throw new RuntimeException("Unknown type: " + type);
+        }
+    }
+
+    /**
+     * Returns the index of the given field, or -1 if it is absent. Like Struct.read(), the last occurrence of a name
+     * wins.
+     */
+    private int find(T name)
+    {
+        int ordinal = name.ordinal();
+        for (int i=numFields - 1; i>=0; i--) if (names[i] == ordinal) return i;
+        return -1;
+    }
+
+    private int require(T name, Type type)
+    {
+        int i = find(name);
+        if (i < 0) throw new NoSuchElementException();
+        if (types[i] != type) throw new ClassCastException(name + " is " + types[i].java + ", not " + type.java);
+        return offsets[i];
+    }
+
+    private ByteBuffer scanner(int offset)
+    {
+        return buffer.duplicate().order(buffer.order()).position(offset);
+    }
+
+    private ByteBuffer arraySlice(int offset, int elementSize)
+    {
+        int length = buffer.getInt(offset);
+        return buffer.slice(offset + 4, length*elementSize).asReadOnlyBuffer().order(buffer.order());
+    }
+
+    /**
+     * Returns a scanner positioned at the given element of the string or struct array at the given offset.
+     */
+    private ByteBuffer element(int offset, int index, boolean struct)
+    {
+        ByteBuffer scan = scanner(offset);
+        int length = scan.getInt();
+        if (index < 0 || index >= length) throw new IndexOutOfBoundsException(index);
+        for (int i=0; i<index; i++)
+        {
+            if (struct) skipStruct(scan);
+            else skipString(scan);
+        }
+        return scan;
+    }
+
+    public boolean contains(T name)
+    {
+        return find(name) >= 0;
+    }
+
+    /**
+     * Returns the number of encoded fields, including any duplicate names.
+     */
+    public int getFieldCount()
+    {
+        return numFields;
+    }
+
+    /**
+     * Returns the length of the given array field.
+     */
+    public int length(T name)
+    {
+        int i = find(name);
+        if (i < 0) throw new NoSuchElementException();
+        switch (types[i])
+        {
+            case BYTE_ARRAY: case SHORT_ARRAY: case INT_ARRAY: case LONG_ARRAY: case FLOAT_ARRAY:
+            case DOUBLE_ARRAY: case BOOLEAN_ARRAY: case CHAR_ARRAY: case STRING_ARRAY: case STRUCT_ARRAY:
+                return buffer.getInt(offsets[i]);
+            default: throw new ClassCastException(name + " is " + types[i].java + ", not an array");
+        }
+    }
+
+    public byte requireByte(T name)
+    {
+        return buffer.get(require(name, Type.BYTE));
+    }
+
+    /**
+     * Returns a read-only view of the given byte array field.
+     */
+    public ByteBuffer requireByteArray(T name)
+    {
+        return arraySlice(require(name, Type.BYTE_ARRAY), 1);
+    }
+
+    public short requireShort(T name)
+    {
+        return buffer.getShort(require(name, Type.SHORT));
+    }
+
+    /**
+     * Returns a read-only view of the given short array field.
+     */
+    public ShortBuffer requireShortArray(T name)
+    {
+        return arraySlice(require(name, Type.SHORT_ARRAY), 2).asShortBuffer();
+    }
+
+    public int requireInt(T name)
+    {
+        return buffer.getInt(require(name, Type.INT));
+    }
+
+    /**
+     * Returns a read-only view of the given int array field.
+     */
+    public IntBuffer requireIntArray(T name)
+    {
+        return arraySlice(require(name, Type.INT_ARRAY), 4).asIntBuffer();
+    }
+
+    public long requireLong(T name)
+    {
+        return buffer.getLong(require(name, Type.LONG));
+    }
+
+    /**
+     * Returns a read-only view of the given long array field.
+     */
+    public LongBuffer requireLongArray(T name)
+    {
+        return arraySlice(require(name, Type.LONG_ARRAY), 8).asLongBuffer();
+    }
+
+    public float requireFloat(T name)
+    {
+        return buffer.getFloat(require(name, Type.FLOAT));
+    }
+
+    /**
+     * Returns a read-only view of the given float array field.
+     */
+    public FloatBuffer requireFloatArray(T name)
+    {
+        return arraySlice(require(name, Type.FLOAT_ARRAY), 4).asFloatBuffer();
+    }
+
+    public double requireDouble(T name)
+    {
+        return buffer.getDouble(require(name, Type.DOUBLE));
+    }
+
+    /**
+     * Returns a read-only view of the given double array field.
+     */
+    public DoubleBuffer requireDoubleArray(T name)
+    {
+        return arraySlice(require(name, Type.DOUBLE_ARRAY), 8).asDoubleBuffer();
+    }
+
+    public boolean requireBoolean(T name)
+    {
+        return buffer.get(require(name, Type.BOOLEAN)) != 0;
+    }
+
+    /**
+     * Returns element i of the given boolean array field.
+     */
+    public boolean requireBoolean(T name, int i)
+    {
+        int offset = require(name, Type.BOOLEAN_ARRAY);
+        if (i < 0 || i >= buffer.getInt(offset)) throw new IndexOutOfBoundsException(i);
+        return (buffer.get(offset + 4 + i/8) & (1 << (i & 7))) != 0;
+    }
+
+    public char requireChar(T name)
+    {
+        return buffer.getChar(require(name, Type.CHAR));
+    }
+
+    /**
+     * Returns a read-only view of the given char array field.
+     */
+    public CharBuffer requireCharArray(T name)
+    {
+        return arraySlice(require(name, Type.CHAR_ARRAY), 2).asCharBuffer();
+    }
+
+    /**
+     * Decodes and returns the given string field.
+     */
+    public String requireString(T name)
+    {
+        return IOUtil.readUTF8(scanner(require(name, Type.STRING)));
+    }
+
+    /**
+     * Decodes and returns element i of the given string array field. Every preceding element must be skipped, so
+     * iterating over a large array this way is quadratic.
+     */
+    public String requireString(T name, int i)
+    {
+        return IOUtil.readUTF8(element(require(name, Type.STRING_ARRAY), i, false));
+    }
+
+    /**
+     * Returns a new view of the given nested struct field.
+     */
+    public StructView<T> requireStruct(T name)
+    {
+        return new StructView<>(nameEnum, scanner(require(name, Type.STRUCT)));
+    }
+
+    /**
+     * Returns a new view of element i of the given struct array field. Every preceding element must be skipped, so
+     * prefer {@link #requireStructArray(Enum)} to visit every element.
+     */
+    public StructView<T> requireStruct(T name, int i)
+    {
+        return new StructView<>(nameEnum, element(require(name, Type.STRUCT_ARRAY), i, true));
+    }
+
+    /**
+     * Returns new views of every element of the given struct array field, indexed in a single pass.
+     */
+    public StructView<T>[] requireStructArray(T name)
+    {
+        ByteBuffer scan = scanner(require(name, Type.STRUCT_ARRAY));
+        @SuppressWarnings("unchecked") //Every element is created below as a StructView<T>.
+        StructView<T>[] array = (StructView<T>[])new StructView<?>[scan.getInt()];
+        for (int i=0; i<array.length; i++) array[i] = new StructView<>(nameEnum, scan);
+        return array;
+    }
+
+    /**
+     * Fully decodes this view into a new struct.
+     */
+    public Struct<T> toStruct()
+    {
+        return new Struct<>(nameEnum, scanner(start));
+    }
+
+    /**
+     * Returns the number of bytes the viewed struct takes in its buffer.
+     */
+    public int bufferSize()
+    {
+        return end - start;
+    }
+
+    /**
+     * Copies the viewed struct's encoded bytes into the given buffer, without decoding or re-encoding them. Useful
+     * for forwarding a message unchanged.
+     */
+    public void write(ByteBuffer buffer)
+    {
+        buffer.put(this.buffer.slice(start, end - start));
+    }
+
+    @Override
+    public String toString()
+    {
+        T[] constants = nameEnum.getEnumConstants();
+        StringBuilder builder = new StringBuilder();
+        builder.append("StructView {\n");
+        for (int i=0; i<numFields; i++)
+        {
+            builder.append("    ");
+            builder.append(types[i].java);
+            builder.append(' ');
+            builder.append(constants[names[i]]);
+            builder.append(";\n");
+        }
+        builder.append('}');
+        return builder.toString();
+    }
+}